@@ -18,6 +18,8 @@
 
 package com.orangelabs.rcs.core;
 
+import java.util.concurrent.ScheduledFuture;
+
 import com.orangelabs.rcs.addressbook.AddressBookManager;
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.service.capability.CapabilityService;
@@ -28,7 +30,9 @@ import com.orangelabs.rcs.core.ims.service.richcall.RichcallService;
 import com.orangelabs.rcs.core.ims.service.sip.SipService;
 import com.orangelabs.rcs.core.ims.service.terms.TermsConditionsService;
 import com.orangelabs.rcs.platform.AndroidFactory;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.DeviceUtils;
+import com.orangelabs.rcs.utils.PeriodicRefresher;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -63,6 +67,16 @@ public class Core {
 	 */
 	private AddressBookManager addressBookManager;
 
+	/**
+	 * Period of the report of the executor statistics in seconds
+	 */
+	private static final int STATISTICS_PERIOD = 900;
+
+	/**
+	 * Periodic report of the executor statistics
+	 */
+	private ScheduledFuture<?> statisticsReport = null;
+
     /**
      * The logger
      */
@@ -198,6 +212,13 @@ public class Core {
     	if (logger.isActivated()) {
     		logger.info("RCS core service has been started with success");
     	}
+
+    	// Start the report of the executor statistics
+    	statisticsReport = CoreExecutor.scheduleWithFixedDelay(new Runnable() {
+    		public void run() {
+    			reportStatistics();
+    		}
+    	}, STATISTICS_PERIOD * 1000L, STATISTICS_PERIOD * 1000L);
     }
     	
     /**
@@ -225,12 +246,30 @@ public class Core {
     		}
     	}
     	
+    	// Stop the report of the executor statistics
+    	if (statisticsReport != null) {
+    		statisticsReport.cancel(false);
+    		statisticsReport = null;
+    	}
+    	reportStatistics();
+
     	// Notify event listener
 		listener.handleCoreLayerStopped();
 
     	started = false;
     	if (logger.isActivated()) {
     		logger.info("RCS core service has been stopped with success");
+    	}
+    }
+
+    /**
+     * Report the statistics of the executors: threads, waiting tasks and
+     * latencies of each pool, and the wake-ups done by the timers
+     */
+    private void reportStatistics() {
+    	if (logger.isActivated()) {
+    		logger.info("Executor statistics: " + CoreExecutor.getStatistics());
+    		logger.info("Timer wake-ups during the last hour: " + PeriodicRefresher.getWakeUpsPerHour());
     	}
     }
 
@@ -309,6 +309,15 @@ public class ImsModule implements SipEventListener {
     	}
     }
 
+	/**
+	 * Returns the service dispatcher
+	 * 
+	 * @return Service dispatcher
+	 */
+	public ImsServiceDispatcher getServiceDispatcher() {
+		return serviceDispatcher;
+	}
+
 	/**
 	 * Returns the call manager
 	 * 
@@ -26,6 +26,7 @@ import com.orangelabs.rcs.platform.network.NetworkFactory;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.provider.settings.RcsSettingsData;
 import com.orangelabs.rcs.service.LauncherUtils;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 import android.content.BroadcastReceiver;
@@ -110,6 +111,11 @@ public class ImsConnectionManager implements Runnable {
      */
     private boolean imsServicesStarted = false;
 
+    /**
+     * Polling wake-up flag
+     */
+    private boolean wakeUp = false;
+
     /**
      * The logger
      */
@@ -264,12 +270,11 @@ public class ImsConnectionManager implements Runnable {
 	private BroadcastReceiver networkStateListener = new BroadcastReceiver() {
         @Override
         public void onReceive(Context context, final Intent intent) {
-        	Thread t = new Thread() {
+        	CoreExecutor.executeBlocking(new Runnable() {
         		public void run() {
         			connectionEvent(intent);
         		}
-        	};
-        	t.start();
+        	});
         }
     };    
 
@@ -349,6 +354,9 @@ public class ImsConnectionManager implements Runnable {
 
 			// Load the user profile for the new network interface
 			loadUserProfile();
+
+			// Reload the DNS servers of the new network
+			currentNetworkInterface.getDnsResolver().refresh();
 			
 			// update DNS entry
 						try {
@@ -386,6 +394,9 @@ public class ImsConnectionManager implements Runnable {
     						logger.debug("Disconnect from IMS: IP address has changed");
     					}
     					disconnectFromIms();
+
+    					// Reload the DNS servers of the network
+    					currentNetworkInterface.getDnsResolver().refresh();
 				    } else {
                         if (logger.isActivated()) {
                             logger.debug("IP address available (again)");
@@ -566,6 +577,49 @@ public class ImsConnectionManager implements Runnable {
         }
 	}
 
+	/**
+	 * The IMS proxy has failed: the polling is woken up to register at once
+	 * with the next candidate, if there is still one which has not failed
+	 */
+	public void handleProxyFailure() {
+        // Force to use the next candidate
+		mDnsResolvedFields = null;
+
+		if (currentNetworkInterface.hasHealthyProxy()) {
+			if (logger.isActivated()) {
+				logger.debug("Fail over to the next IMS proxy");
+			}
+			wakeUpPolling();
+		}
+	}
+
+	/**
+	 * Wake up the polling thread
+	 */
+	private synchronized void wakeUpPolling() {
+		wakeUp = true;
+		notifyAll();
+	}
+
+	/**
+	 * Pause the polling until the delay expires or the polling is woken up
+	 * 
+	 * @param delay Delay in seconds
+	 * @throws InterruptedException
+	 */
+	private synchronized void pausePolling(int delay) throws InterruptedException {
+		long end = System.currentTimeMillis() + delay * 1000L;
+		long remaining = delay * 1000L;
+		while (!wakeUp && (remaining > 0)) {
+			wait(remaining);
+			remaining = end - System.currentTimeMillis();
+		}
+		if (wakeUp && logger.isActivated()) {
+			logger.debug("Polling woken up");
+		}
+		wakeUp = false;
+	}
+
 	/**
 	 * Background processing
 	 */
@@ -668,16 +722,16 @@ public class ImsConnectionManager implements Runnable {
     	        	if (logger.isActivated()) {
     	        		logger.debug("Wait " + retryPeriod + "s before retry registration (failures=" + nbFailures + ", coeff="+ coeff + ")");
     	        	}
-    				Thread.sleep(retryPeriod * 1000);
+    				pausePolling(retryPeriod);
                 } else if (!imsServicesStarted) {
                     int retryPeriod = 5;
                     if (logger.isActivated()) {
                         logger.debug("Wait " + retryPeriod + "s before retry to start services");
                     }
-                    Thread.sleep(retryPeriod * 1000);
+                    pausePolling(retryPeriod);
 	    		} else {
     				// Pause before the next service check
-	    			Thread.sleep(servicePollingPeriod * 1000);
+	    			pausePolling(servicePollingPeriod);
 	    		}
             } catch(InterruptedException e) {
                 break;
@@ -0,0 +1,400 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.network;
+
+import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Hashtable;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import org.xbill.DNS.AAAARecord;
+import org.xbill.DNS.ARecord;
+import org.xbill.DNS.ExtendedResolver;
+import org.xbill.DNS.Lookup;
+import org.xbill.DNS.Record;
+import org.xbill.DNS.Resolver;
+import org.xbill.DNS.ResolverConfig;
+import org.xbill.DNS.TextParseException;
+import org.xbill.DNS.Type;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * DNS resolver used to discover the IMS proxy. The answers are kept in a
+ * cache honouring their TTL: an expired answer is still returned for a while
+ * and refreshed in background, so that a re-registration does not wait for
+ * the DNS. Address lookups of several hosts are done in parallel.
+ */
+public class ImsDnsResolver {
+	/**
+	 * Max number of threads doing lookups in parallel
+	 */
+	private final static int MAX_LOOKUP_THREADS = 4;
+
+	/**
+	 * Max period during which an expired answer is returned (in seconds)
+	 */
+	private final static int MAX_STALE_PERIOD = 3600;
+
+	/**
+	 * Period during which a negative answer is kept (in seconds)
+	 */
+	private final static int NEGATIVE_TTL = 30;
+
+	/**
+	 * Max time to wait the address lookups (in seconds)
+	 */
+	private final static int LOOKUP_TIMEOUT = 20;
+
+	/**
+	 * DNS resolver
+	 */
+	private Resolver resolver = null;
+
+	/**
+	 * Cache of answers indexed by name and type
+	 */
+	private Hashtable<String, CacheEntry> cache = new Hashtable<String, CacheEntry>();
+
+	/**
+	 * Thread pool for parallel and background lookups
+	 */
+	private ThreadPoolExecutor threadPool;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 */
+	public ImsDnsResolver() {
+		threadPool = new ThreadPoolExecutor(MAX_LOOKUP_THREADS, MAX_LOOKUP_THREADS,
+				30, TimeUnit.SECONDS,
+				new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					public Thread newThread(Runnable r) {
+						Thread t = new Thread(r, "DnsLookup");
+						t.setDaemon(true);
+						return t;
+					}
+				});
+		threadPool.allowCoreThreadTimeOut(true);
+	}
+
+	/**
+	 * Reload the DNS servers of the current network, the cached answers are kept
+	 */
+	public synchronized void refresh() {
+		resolver = null;
+	}
+
+	/**
+	 * Remove all the cached answers
+	 */
+	public void clear() {
+		cache.clear();
+	}
+
+	/**
+	 * Returns the DNS resolver, created from the current system configuration
+	 * 
+	 * @return Resolver
+	 * @throws UnknownHostException
+	 */
+	private synchronized Resolver getResolver() throws UnknownHostException {
+		if (resolver == null) {
+			ResolverConfig.refresh();
+			resolver = new ExtendedResolver();
+		}
+		return resolver;
+	}
+
+	/**
+	 * Lookup DNS records
+	 * 
+	 * @param name Domain name
+	 * @param type Record type
+	 * @return Records (empty if none) or null if the lookup has failed
+	 */
+	public Record[] lookup(String name, int type) {
+		String key = getKey(name, type);
+		CacheEntry entry = cache.get(key);
+		if (entry != null) {
+			long now = System.currentTimeMillis();
+			if (now < entry.expiration) {
+				if (logger.isActivated()) {
+					logger.debug("DNS " + Type.string(type) + " answer for " + name + " found in cache");
+				}
+				return entry.records;
+			}
+			if (now < entry.expiration + MAX_STALE_PERIOD * 1000L) {
+				// Use the expired answer while it is refreshed
+				if (logger.isActivated()) {
+					logger.debug("DNS " + Type.string(type) + " answer for " + name + " expired: refresh in background");
+				}
+				refreshInBackground(name, type, entry);
+				return entry.records;
+			}
+		}
+		return query(name, type);
+	}
+
+	/**
+	 * Lookup the IPv4 and IPv6 addresses of several hosts in parallel
+	 * 
+	 * @param hosts List of hosts
+	 * @return Addresses of each host, in the order of the hosts, IPv4 addresses first
+	 */
+	public List<List<String>> lookupAddresses(List<String> hosts) {
+		List<Future<Record[]>> ipv4 = new ArrayList<Future<Record[]>>();
+		List<Future<Record[]>> ipv6 = new ArrayList<Future<Record[]>>();
+		for(String host : hosts) {
+			ipv4.add(submitLookup(host, Type.A));
+			ipv6.add(submitLookup(host, Type.AAAA));
+		}
+
+		List<List<String>> result = new ArrayList<List<String>>();
+		long deadline = System.currentTimeMillis() + LOOKUP_TIMEOUT * 1000L;
+		for(int i=0; i < hosts.size(); i++) {
+			List<String> addresses = new ArrayList<String>();
+			addAddresses(addresses, getLookupResult(ipv4.get(i), deadline));
+			addAddresses(addresses, getLookupResult(ipv6.get(i), deadline));
+			result.add(addresses);
+		}
+		return result;
+	}
+
+	/**
+	 * Lookup the addresses of a host
+	 * 
+	 * @param host Host
+	 * @return Addresses, IPv4 addresses first
+	 */
+	public List<String> lookupAddresses(String host) {
+		List<String> hosts = new ArrayList<String>();
+		hosts.add(host);
+		return lookupAddresses(hosts).get(0);
+	}
+
+	/**
+	 * Query the DNS and update the cache
+	 * 
+	 * @param name Domain name
+	 * @param type Record type
+	 * @return Records (empty if none) or null if the lookup has failed
+	 */
+	private Record[] query(String name, int type) {
+		if (logger.isActivated()) {
+			logger.debug("DNS " + Type.string(type) + " lookup for " + name);
+		}
+		try {
+			Lookup lookup = new Lookup(name, type);
+			lookup.setResolver(getResolver());
+			// The answers are cached here with their TTL
+			lookup.setCache(null);
+			Record[] records = lookup.run();
+			int code = lookup.getResult();
+			long ttl;
+			if ((code == Lookup.SUCCESSFUL) && (records.length > 0)) {
+				ttl = Long.MAX_VALUE;
+				for(int i=0; i < records.length; i++) {
+					ttl = Math.min(ttl, records[i].getTTL());
+				}
+			} else
+			if ((code == Lookup.SUCCESSFUL) || (code == Lookup.HOST_NOT_FOUND) || (code == Lookup.TYPE_NOT_FOUND)) {
+				records = new Record[0];
+				ttl = NEGATIVE_TTL;
+			} else {
+				if (logger.isActivated()) {
+					logger.warn("Lookup error: " + code + "/" + lookup.getErrorString());
+				}
+				// Network error: keep the expired answer if any
+				CacheEntry entry = cache.get(getKey(name, type));
+				return (entry != null) ? entry.records : null;
+			}
+			cache.put(getKey(name, type), new CacheEntry(records, ttl));
+			return records;
+		} catch(TextParseException e) {
+			if (logger.isActivated()) {
+				logger.debug("Not a valid DNS name");
+			}
+			return null;
+		} catch(IllegalArgumentException e) {
+			if (logger.isActivated()) {
+				logger.debug("Not a valid DNS type");
+			}
+			return null;
+		} catch(UnknownHostException e) {
+			if (logger.isActivated()) {
+				logger.debug("No DNS server available");
+			}
+			return null;
+		}
+	}
+
+	/**
+	 * Refresh an expired answer in background
+	 * 
+	 * @param name Domain name
+	 * @param type Record type
+	 * @param entry Expired cache entry
+	 */
+	private void refreshInBackground(final String name, final int type, final CacheEntry entry) {
+		synchronized(entry) {
+			if (entry.refreshing) {
+				return;
+			}
+			entry.refreshing = true;
+		}
+		try {
+			threadPool.execute(new Runnable() {
+				public void run() {
+					try {
+						query(name, type);
+					} finally {
+						// The entry is kept when the lookup has failed: it may be refreshed again
+						entry.refreshing = false;
+					}
+				}
+			});
+		} catch(RejectedExecutionException e) {
+			entry.refreshing = false;
+		}
+	}
+
+	/**
+	 * Submit a lookup to the thread pool
+	 * 
+	 * @param name Domain name
+	 * @param type Record type
+	 * @return Future result
+	 */
+	private Future<Record[]> submitLookup(final String name, final int type) {
+		return threadPool.submit(new Callable<Record[]>() {
+			public Record[] call() {
+				return lookup(name, type);
+			}
+		});
+	}
+
+	/**
+	 * Wait the result of a lookup
+	 * 
+	 * @param future Future result
+	 * @param deadline Deadline
+	 * @return Records or null
+	 */
+	private Record[] getLookupResult(Future<Record[]> future, long deadline) {
+		try {
+			long timeout = Math.max(0, deadline - System.currentTimeMillis());
+			return future.get(timeout, TimeUnit.MILLISECONDS);
+		} catch(TimeoutException e) {
+			future.cancel(true);
+			if (logger.isActivated()) {
+				logger.warn("DNS lookup timeout");
+			}
+			return null;
+		} catch(ExecutionException e) {
+			if (logger.isActivated()) {
+				logger.error("DNS lookup has failed", e.getCause());
+			}
+			return null;
+		} catch(InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		}
+	}
+
+	/**
+	 * Add the addresses of A or AAAA records
+	 * 
+	 * @param addresses List of addresses
+	 * @param records Records
+	 */
+	private static void addAddresses(List<String> addresses, Record[] records) {
+		if (records == null) {
+			return;
+		}
+		for(int i=0; i < records.length; i++) {
+			String address = null;
+			if (records[i] instanceof ARecord) {
+				address = ((ARecord)records[i]).getAddress().getHostAddress();
+			} else
+			if (records[i] instanceof AAAARecord) {
+				address = ((AAAARecord)records[i]).getAddress().getHostAddress();
+			}
+			if ((address != null) && !addresses.contains(address)) {
+				addresses.add(address);
+			}
+		}
+	}
+
+	/**
+	 * Returns the cache key of a lookup
+	 * 
+	 * @param name Domain name
+	 * @param type Record type
+	 * @return Key
+	 */
+	private static String getKey(String name, int type) {
+		return type + ":" + name.toLowerCase();
+	}
+
+	/**
+	 * Cached answer
+	 */
+	private static class CacheEntry {
+		/**
+		 * Records
+		 */
+		private Record[] records;
+
+		/**
+		 * Expiration date
+		 */
+		private long expiration;
+
+		/**
+		 * Refresh in progress
+		 */
+		private volatile boolean refreshing = false;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param records Records
+		 * @param ttl TTL in seconds
+		 */
+		public CacheEntry(Record[] records, long ttl) {
+			this.records = records;
+			this.expiration = System.currentTimeMillis() + ttl * 1000L;
+		}
+	}
+}
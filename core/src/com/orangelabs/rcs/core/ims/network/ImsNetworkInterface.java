@@ -22,16 +22,16 @@ package com.orangelabs.rcs.core.ims.network;
 
 import java.net.InetAddress;
 import java.net.UnknownHostException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
 
 import javax2.sip.ListeningPoint;
 
-import org.xbill.DNS.ExtendedResolver;
-import org.xbill.DNS.Lookup;
 import org.xbill.DNS.NAPTRRecord;
 import org.xbill.DNS.Record;
-import org.xbill.DNS.ResolverConfig;
 import org.xbill.DNS.SRVRecord;
-import org.xbill.DNS.TextParseException;
 import org.xbill.DNS.Type;
 
 import com.orangelabs.rcs.core.CoreException;
@@ -42,7 +42,9 @@ import com.orangelabs.rcs.core.ims.network.registration.HttpDigestRegistrationPr
 import com.orangelabs.rcs.core.ims.network.registration.RegistrationManager;
 import com.orangelabs.rcs.core.ims.network.registration.RegistrationProcedure;
 import com.orangelabs.rcs.core.ims.network.sip.SipManager;
+import com.orangelabs.rcs.core.ims.protocol.sip.KeepAliveListener;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipInterface;
 import com.orangelabs.rcs.core.ims.userprofile.GibaUserProfileInterface;
 import com.orangelabs.rcs.core.ims.userprofile.SettingsUserProfileInterface;
 import com.orangelabs.rcs.core.ims.userprofile.UserProfile;
@@ -56,7 +58,7 @@ import com.orangelabs.rcs.utils.logger.Logger;
  *
  * @author Jean-Marc AUFFRET
  */
-public abstract class ImsNetworkInterface {
+public abstract class ImsNetworkInterface implements KeepAliveListener {
 	
 	// Changed by Deutsche Telekom
 	private static final String REGEX_IPV4 = "\\b((25[0-5]|2[0-4][0-9]|[01]?[0-9][0-9]?)(\\.|$)){4}\\b";
@@ -65,14 +67,22 @@ public abstract class ImsNetworkInterface {
     /**
      * Class containing the resolved fields
      */
-    public class DnsResolvedFields {
+    public static class DnsResolvedFields {
         public String ipAddress = null;
         public int port = -1;
+        public int priority = 0;
+        public int weight = 0;
 
         public DnsResolvedFields(String ipAddress, int port) {
             this.ipAddress = ipAddress;
             this.port = port;
         }
+
+        public DnsResolvedFields(String ipAddress, int port, int priority, int weight) {
+            this(ipAddress, port);
+            this.priority = priority;
+            this.weight = weight;
+        }
     }
     
 	/**
@@ -146,6 +156,16 @@ public abstract class ImsNetworkInterface {
 	 */
 	private boolean tcpFallback = false;
 
+	/**
+	 * DNS resolver of the IMS proxy
+	 */
+	private ImsDnsResolver dnsResolver = new ImsDnsResolver();
+
+	/**
+	 * Failover candidates of the IMS proxy
+	 */
+	private ProxyCandidateManager proxyCandidates;
+
 	/**
      * The logger
      */
@@ -171,6 +191,7 @@ public abstract class ImsNetworkInterface {
         this.imsProxyPort = proxyPort;
         this.imsProxyProtocol = proxyProtocol;
 		this.imsAuthentMode = authentMode;
+		this.proxyCandidates = new ProxyCandidateManager(proxyProtocol);
 		if (proxyProtocol.equalsIgnoreCase(ListeningPoint.UDP))
 			this.tcpFallback = RcsSettings.getInstance().isTcpFallback();
 		
@@ -354,47 +375,16 @@ public abstract class ImsNetworkInterface {
     }
 
     /**
-     * Get DNS records
-     * 
-     * @param domain Domain
-     * @param resolver Resolver
-     * @param type (Type.SRV or Type.NAPTR)
-     * @return SRV records or null if no record
+     * Returns the DNS resolver of the IMS proxy
+     *
+     * @return DNS resolver
      */
-    private Record[] getDnsRequest(String domain, ExtendedResolver resolver, int type) {
-        try {
-            if (logger.isActivated()) {
-                if (type == Type.SRV) {
-                    logger.debug("DNS SRV lookup for " + domain);
-                } else if (type == Type.NAPTR) {
-                    logger.debug("DNS NAPTR lookup for " + domain);
-                }
-            }
-            Lookup lookup = new Lookup(domain, type);
-            lookup.setResolver(resolver);
-            Record[] result = lookup.run();
-            int code = lookup.getResult();
-            if (code != Lookup.SUCCESSFUL) {
-                if (logger.isActivated()) {
-                    logger.warn("Lookup error: " + code + "/" + lookup.getErrorString());
-                }
-            }
-            return result;
-        } catch(TextParseException e) {
-            if (logger.isActivated()) {
-                logger.debug("Not a valid DNS name");
-            }
-            return null;
-        } catch(IllegalArgumentException e) {
-            if (logger.isActivated()) {
-                logger.debug("Not a valid DNS type");
-            }
-            return null;
-        }
+    public ImsDnsResolver getDnsResolver() {
+    	return dnsResolver;
     }
 
     /**
-     * Get DNS A record
+     * Get DNS A record from the system resolver
      * 
      * @param domain Domain
      * @return IP address or null if no record
@@ -414,65 +404,181 @@ public abstract class ImsNetworkInterface {
     }
     
     /**
-     * Get best DNS SRV record
+     * Sort DNS SRV records: lowest priority first, then highest weight
      * 
      * @param records SRV records
-     * @return IP address
+     * @return Sorted SRV records
      */
-	private SRVRecord getBestDnsSRV(Record[] records) {
-		SRVRecord result = null;
+	private SRVRecord[] sortDnsSRV(Record[] records) {
+		SRVRecord[] result = new SRVRecord[records.length];
         for (int i = 0; i < records.length; i++) {
-        	SRVRecord srv = (SRVRecord)records[i];
+        	result[i] = (SRVRecord)records[i];
 			if (logger.isActivated()) {
-				logger.debug("SRV record: " + srv.toString());
+				logger.debug("SRV record: " + result[i].toString());
 			}
-			if (result == null) {
-				// First record
-				result = srv;
-			} else {
-				// Next record
-				if (srv.getPriority() < result.getPriority()) {
-					// Lowest priority
-					result = srv;
-				} else
-				if (srv.getPriority() == result.getPriority()) {
-					// Highest weight
-					if (srv.getWeight() > result.getWeight()) {
-						result = srv;
-					}
+        }
+        Arrays.sort(result, new Comparator<SRVRecord>() {
+			public int compare(SRVRecord srv1, SRVRecord srv2) {
+				if (srv1.getPriority() != srv2.getPriority()) {
+					return (srv1.getPriority() < srv2.getPriority()) ? -1 : 1;
 				}
+				return (srv1.getWeight() > srv2.getWeight()) ? -1 : ((srv1.getWeight() == srv2.getWeight()) ? 0 : 1);
 			}
+        });
+        return result;
+	}
+
+    /**
+     * Sort DNS NAPTR records: lowest order first, then lowest preference
+     * 
+     * @param records NAPTR records
+     * @return Sorted NAPTR records
+     */
+	private NAPTRRecord[] sortDnsNAPTR(Record[] records) {
+		NAPTRRecord[] result = new NAPTRRecord[records.length];
+        for (int i = 0; i < records.length; i++) {
+        	result[i] = (NAPTRRecord)records[i];
         }
+        Arrays.sort(result, new Comparator<NAPTRRecord>() {
+			public int compare(NAPTRRecord naptr1, NAPTRRecord naptr2) {
+				if (naptr1.getOrder() != naptr2.getOrder()) {
+					return (naptr1.getOrder() < naptr2.getOrder()) ? -1 : 1;
+				}
+				return (naptr1.getPreference() < naptr2.getPreference()) ? -1 : ((naptr1.getPreference() == naptr2.getPreference()) ? 0 : 1);
+			}
+        });
         return result;
 	}
-	
+
+	/**
+	 * Add the candidates of a list of SRV records, the targets being resolved in parallel
+	 * 
+	 * @param candidates List of candidates
+	 * @param srvRecords SRV records
+	 */
+	private void addSrvCandidates(List<DnsResolvedFields> candidates, SRVRecord[] srvRecords) {
+		List<String> targets = new ArrayList<String>();
+		for (int i = 0; i < srvRecords.length; i++) {
+			targets.add(srvRecords[i].getTarget().toString());
+		}
+		List<List<String>> addresses = dnsResolver.lookupAddresses(targets);
+		for (int i = 0; i < srvRecords.length; i++) {
+			addCandidates(candidates, addresses.get(i), srvRecords[i].getPort(),
+					srvRecords[i].getPriority(), srvRecords[i].getWeight());
+		}
+	}
+
+	/**
+	 * Add candidates with the same port
+	 * 
+	 * @param candidates List of candidates
+	 * @param addresses IP addresses
+	 * @param port Port
+	 */
+	private void addCandidates(List<DnsResolvedFields> candidates, List<String> addresses, int port) {
+		addCandidates(candidates, addresses, port, 0, 0);
+	}
+
+	/**
+	 * Add candidates with the same port and SRV priority
+	 * 
+	 * @param candidates List of candidates
+	 * @param addresses IP addresses
+	 * @param port Port
+	 * @param priority SRV priority
+	 * @param weight SRV weight
+	 */
+	private void addCandidates(List<DnsResolvedFields> candidates, List<String> addresses, int port, int priority, int weight) {
+		for (String address : addresses) {
+			boolean found = false;
+			for (DnsResolvedFields candidate : candidates) {
+				if (candidate.ipAddress.equals(address) && (candidate.port == port)) {
+					found = true;
+					break;
+				}
+			}
+			if (!found) {
+				candidates.add(new DnsResolvedFields(address, port, priority, weight));
+			}
+		}
+	}
+
 	// Changed by Deutsche Telekom
 	/**
-	 * Get the DNS resolved fields.
+	 * Get the DNS resolved fields: the preferred candidate which has not failed.
+	 * If the DNS is unreachable, the candidates of the previous discovery are used.
 	 * 
 	 * @return The {@link DnsResolvedFields} object containing the DNS resolved fields.  
 	 */
 	protected DnsResolvedFields getDnsResolvedFields() throws Exception {
-        // Changed by Deutsche Telekom
-		DnsResolvedFields dnsResolvedFields;
-		boolean useDns = true;
+		try {
+			proxyCandidates.setCandidates(getDnsResolvedCandidates());
+		} catch(Exception e) {
+			if (proxyCandidates.isEmpty()) {
+				throw e;
+			}
+			if (logger.isActivated()) {
+				logger.warn("IMS proxy discovery has failed: use the known candidates");
+			}
+		}
+		return proxyCandidates.getCandidate();
+	}
+
+	/**
+	 * Is there a candidate of the IMS proxy which has not failed
+	 * 
+	 * @return Boolean
+	 */
+	public boolean hasHealthyProxy() {
+		return proxyCandidates.hasHealthyCandidate();
+	}
+
+	/**
+	 * The IMS proxy in use has not answered: it is skipped until it is
+	 * reachable again and the connection manager retries at once with the
+	 * next candidate
+	 */
+	public void handleProxyFailure() {
+		SipInterface stack = sip.getSipStack();
+		if (stack != null) {
+			proxyCandidates.reportFailure(stack.getOutboundProxyAddr(), stack.getOutboundProxyPort());
+		}
+		imsModule.getImsConnectionManager().handleProxyFailure();
+	}
+
+	/**
+	 * The keep-alive to the IMS proxy has failed
+	 */
+	public void keepAliveFailed() {
+		if (logger.isActivated()) {
+			logger.info("Keep-alive has failed: the registration is restarted");
+		}
+		registration.stopRegistration();
+		handleProxyFailure();
+	}
+
+	/**
+	 * The NAT binding must be checked by a re-registration
+	 */
+	public void natBindingCheckRequired() {
+		registration.registration();
+	}
+
+	/**
+	 * Get the addresses of the IMS proxy, ordered by preference
+	 * 
+	 * @return Non empty list of {@link DnsResolvedFields}
+	 * @throws Exception
+	 */
+	public List<DnsResolvedFields> getDnsResolvedCandidates() throws Exception {
+		List<DnsResolvedFields> candidates = new ArrayList<DnsResolvedFields>();
 		if (imsProxyAddr.matches(REGEX_IPV4)) {
-        	useDns = false;
-        	dnsResolvedFields = new DnsResolvedFields(imsProxyAddr, imsProxyPort);
+        	candidates.add(new DnsResolvedFields(imsProxyAddr, imsProxyPort));
         
         	  if (logger.isActivated()) {
                   logger.warn("IP address found instead of FQDN!");
               }
-        }
-		else {
-			dnsResolvedFields = new DnsResolvedFields(null, imsProxyPort);
-		}
-          
-        if (useDns) {
-            // Set DNS resolver
-            ResolverConfig.refresh();
-            ExtendedResolver resolver = new ExtendedResolver(); 
-
+        } else {
             // Resolve the IMS proxy configuration: first try to resolve via
             // a NAPTR query, then a SRV query and finally via A query
             if (logger.isActivated()) {
@@ -494,27 +600,26 @@ public abstract class ImsNetworkInterface {
             }
 
             boolean resolved = false;
-            Record[] naptrRecords = getDnsRequest(imsProxyAddr, resolver, Type.NAPTR);
+            Record[] naptrRecords = dnsResolver.lookup(imsProxyAddr, Type.NAPTR);
             if ((naptrRecords != null) && (naptrRecords.length > 0)) {
                 // First try with NAPTR
                 if (logger.isActivated()) {
                     logger.debug("NAPTR records found: " + naptrRecords.length);
                 }
-                for (int i = 0; i < naptrRecords.length; i++) {
-                    NAPTRRecord naptr = (NAPTRRecord)naptrRecords[i];
+                NAPTRRecord[] sortedRecords = sortDnsNAPTR(naptrRecords);
+                for (int i = 0; i < sortedRecords.length; i++) {
+                    NAPTRRecord naptr = sortedRecords[i];
                     if (logger.isActivated()) {
                         logger.debug("NAPTR record: " + naptr.toString());
                     }
-                    if ((naptr != null) && naptr.getService().equalsIgnoreCase(service)) {
+                    if (naptr.getService().equalsIgnoreCase(service)) {
                         // DNS SRV lookup
-						Record[] srvRecords = getDnsRequest(naptr.getReplacement().toString(), resolver, Type.SRV);
+						Record[] srvRecords = dnsResolver.lookup(naptr.getReplacement().toString(), Type.SRV);
                         if ((srvRecords != null) && (srvRecords.length > 0)) {
-                            SRVRecord srvRecord = getBestDnsSRV(srvRecords);
-                            dnsResolvedFields.ipAddress = getDnsA(srvRecord.getTarget().toString());
-                            dnsResolvedFields.port = srvRecord.getPort();
+                        	addSrvCandidates(candidates, sortDnsSRV(srvRecords));
                         } else {
                             // Direct DNS A lookup
-                            dnsResolvedFields.ipAddress = getDnsA(imsProxyAddr);
+                        	addCandidates(candidates, dnsResolver.lookupAddresses(imsProxyAddr), imsProxyPort);
                         }
                         resolved = true;
                     }
@@ -532,41 +637,38 @@ public abstract class ImsNetworkInterface {
                 } else {
                     query = "_sip._" + imsProxyProtocol.toLowerCase() + "." + imsProxyAddr;
                 }
-				Record[] srvRecords = getDnsRequest(query, resolver, Type.SRV);
+				Record[] srvRecords = dnsResolver.lookup(query, Type.SRV);
                 if ((srvRecords != null) && (srvRecords.length > 0)) {
-                    SRVRecord srvRecord = getBestDnsSRV(srvRecords);
-                    dnsResolvedFields.ipAddress = getDnsA(srvRecord.getTarget().toString());
-                    dnsResolvedFields.port = srvRecord.getPort();
-                    resolved = true;
-                }
-
-                if (!resolved) {
+                	addSrvCandidates(candidates, sortDnsSRV(srvRecords));
+                } else {
                     // If not resolved: direct DNS A lookup
                     if (logger.isActivated()) {
                         logger.debug("No SRV record found: use DNS A instead");
                     }
-                    dnsResolvedFields.ipAddress = getDnsA(imsProxyAddr);
+                    addCandidates(candidates, dnsResolver.lookupAddresses(imsProxyAddr), imsProxyPort);
                 }
             }       
         }
         
-        if (dnsResolvedFields.ipAddress == null) {
+        if (candidates.isEmpty()) {
             // Changed by Deutsche Telekom
             // Try to use IMS proxy address as a fallback
             String imsProxyAddrResolved = getDnsA(imsProxyAddr);
             if (imsProxyAddrResolved != null){
-                dnsResolvedFields = new DnsResolvedFields(imsProxyAddrResolved, imsProxyPort);
+            	candidates.add(new DnsResolvedFields(imsProxyAddrResolved, imsProxyPort));
             } else {
                 throw new SipException("Proxy IP address not found");
             }
         }
         
         if (logger.isActivated()) {
+        	DnsResolvedFields dnsResolvedFields = candidates.get(0);
             logger.debug("SIP outbound proxy configuration: " +
-                    dnsResolvedFields.ipAddress + ":" + dnsResolvedFields.port + ";" + imsProxyProtocol);
+                    dnsResolvedFields.ipAddress + ":" + dnsResolvedFields.port + ";" + imsProxyProtocol +
+                    " (" + candidates.size() + " candidates)");
         }
         
-        return dnsResolvedFields;
+        return candidates;
 	}
 	
 	/**
@@ -604,9 +706,11 @@ public abstract class ImsNetworkInterface {
 			if (logger.isActivated()) {
 				logger.debug("IMS registration successful");
 			}
+			proxyCandidates.reportSuccess(dnsResolvedFields.ipAddress, dnsResolvedFields.port);
 
             // Start keep-alive for NAT if activated
             if (isBehindNat() && RcsSettings.getInstance().isSipKeepAliveEnabled()) {
+                sip.getSipStack().getKeepAliveManager().setListener(this);
                 sip.getSipStack().getKeepAliveManager().start();
             }
 		} else {
@@ -686,6 +790,9 @@ public abstract class ImsNetworkInterface {
 		// Stop registration
 		registration.stopRegistration();
 
+		// Stop probing the IMS proxy
+		proxyCandidates.stop();
+
 		// Close the SIP stack
     	sip.closeStack();
     }
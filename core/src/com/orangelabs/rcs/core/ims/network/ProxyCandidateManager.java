@@ -0,0 +1,370 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.network;
+
+import java.io.IOException;
+import java.net.DatagramPacket;
+import java.net.DatagramSocket;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ScheduledFuture;
+
+import javax2.sip.ListeningPoint;
+
+import com.orangelabs.rcs.core.ims.network.ImsNetworkInterface.DnsResolvedFields;
+import com.orangelabs.rcs.utils.CoreExecutor;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Failover candidates of the IMS proxy. All the resolved addresses of the
+ * proxy are kept in their DNS order with their health: a candidate which has
+ * failed is skipped until a background probe finds it reachable again, so
+ * that a failover does not wait for a new DNS discovery.
+ */
+public class ProxyCandidateManager {
+	/**
+	 * Period between two probes of the failed candidates (in seconds)
+	 */
+	private final static int PROBE_PERIOD = 30;
+
+	/**
+	 * Max time to wait the answer of a probe (in seconds)
+	 */
+	private final static int PROBE_TIMEOUT = 5;
+
+	/**
+	 * Candidate and its health
+	 */
+	private static class Candidate {
+		DnsResolvedFields fields;
+		int failures = 0;
+		long lastFailure = 0;
+
+		Candidate(DnsResolvedFields fields) {
+			this.fields = fields;
+		}
+
+		boolean isHealthy() {
+			return failures == 0;
+		}
+
+		boolean matches(String ipAddress, int port) {
+			return fields.ipAddress.equals(ipAddress) && (fields.port == port);
+		}
+	}
+
+	/**
+	 * IMS proxy protocol
+	 */
+	private String protocol;
+
+	/**
+	 * Candidates in the order of preference
+	 */
+	private List<Candidate> candidates = new ArrayList<Candidate>();
+
+	/**
+	 * Next probing, null if the probing is stopped
+	 */
+	private ScheduledFuture<?> prober = null;
+
+	/**
+	 * Generation of the probing, changed at each scheduling and at each stop:
+	 * a probing which is no more the current one does nothing
+	 */
+	private int probeGeneration = 0;
+
+	/**
+	 * Random generator for the probe identifiers
+	 */
+	private Random random = new Random();
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param protocol IMS proxy protocol
+	 */
+	public ProxyCandidateManager(String protocol) {
+		this.protocol = protocol;
+	}
+
+	/**
+	 * Set the candidates resulting from a DNS discovery. The health of the
+	 * candidates which were already known is kept.
+	 *
+	 * @param fields Candidates in the order of preference
+	 */
+	public synchronized void setCandidates(List<DnsResolvedFields> fields) {
+		List<Candidate> result = new ArrayList<Candidate>();
+		for (DnsResolvedFields field : fields) {
+			Candidate candidate = find(field.ipAddress, field.port);
+			if (candidate == null) {
+				candidate = new Candidate(field);
+			} else {
+				candidate.fields = field;
+			}
+			result.add(candidate);
+		}
+		candidates = result;
+	}
+
+	/**
+	 * Is there no candidate
+	 *
+	 * @return Boolean
+	 */
+	public synchronized boolean isEmpty() {
+		return candidates.isEmpty();
+	}
+
+	/**
+	 * Returns the candidate to use: the first healthy one, else the one which
+	 * has failed the longest time ago
+	 *
+	 * @return Candidate or null if there is no candidate
+	 */
+	public synchronized DnsResolvedFields getCandidate() {
+		Candidate result = null;
+		for (Candidate candidate : candidates) {
+			if (candidate.isHealthy()) {
+				return candidate.fields;
+			}
+			if ((result == null) || (candidate.lastFailure < result.lastFailure)) {
+				result = candidate;
+			}
+		}
+		return (result != null) ? result.fields : null;
+	}
+
+	/**
+	 * Is there a healthy candidate
+	 *
+	 * @return Boolean
+	 */
+	public synchronized boolean hasHealthyCandidate() {
+		for (Candidate candidate : candidates) {
+			if (candidate.isHealthy()) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * A candidate has been used with success
+	 *
+	 * @param ipAddress IP address
+	 * @param port Port
+	 */
+	public synchronized void reportSuccess(String ipAddress, int port) {
+		Candidate candidate = find(ipAddress, port);
+		if ((candidate != null) && !candidate.isHealthy()) {
+			if (logger.isActivated()) {
+				logger.debug("IMS proxy " + ipAddress + ":" + port + " is reachable again");
+			}
+			candidate.failures = 0;
+		}
+	}
+
+	/**
+	 * A candidate has failed: it is skipped and probed in background until it
+	 * is reachable again
+	 *
+	 * @param ipAddress IP address
+	 * @param port Port
+	 */
+	public synchronized void reportFailure(String ipAddress, int port) {
+		Candidate candidate = find(ipAddress, port);
+		if (candidate == null) {
+			return;
+		}
+		candidate.failures++;
+		candidate.lastFailure = System.currentTimeMillis();
+		if (logger.isActivated()) {
+			logger.info("IMS proxy " + ipAddress + ":" + port + " has failed (failures=" + candidate.failures + ")");
+		}
+
+		// Start the probing if needed
+		if (prober == null) {
+			scheduleProbing();
+		}
+	}
+
+	/**
+	 * Stop the background probing
+	 */
+	public synchronized void stop() {
+		if (prober != null) {
+			prober.cancel(false);
+			prober = null;
+		}
+		probeGeneration++;
+	}
+
+	/**
+	 * Plan the next probing. The probing is started from the scheduler in the
+	 * pool of blocking tasks.
+	 */
+	private void scheduleProbing() {
+		final int generation = ++probeGeneration;
+		prober = CoreExecutor.schedule(new Runnable() {
+			public void run() {
+				CoreExecutor.executeBlocking(new Runnable() {
+					public void run() {
+						probeCandidates(generation);
+					}
+				});
+			}
+		}, PROBE_PERIOD * 1000L);
+	}
+
+	/**
+	 * Background probing of the failed candidates, repeated until all the
+	 * candidates are healthy
+	 *
+	 * @param generation Generation of the probing
+	 */
+	private void probeCandidates(int generation) {
+		List<DnsResolvedFields> failed = new ArrayList<DnsResolvedFields>();
+		synchronized(this) {
+			if (generation != probeGeneration) {
+				// Probing stopped or restarted meanwhile
+				return;
+			}
+			for (Candidate candidate : candidates) {
+				if (!candidate.isHealthy()) {
+					failed.add(candidate.fields);
+				}
+			}
+		}
+
+		for (DnsResolvedFields fields : failed) {
+			if (probe(fields.ipAddress, fields.port)) {
+				reportSuccess(fields.ipAddress, fields.port);
+			}
+		}
+
+		synchronized(this) {
+			if (generation != probeGeneration) {
+				// Probing stopped or restarted meanwhile
+				return;
+			}
+			prober = null;
+			for (Candidate candidate : candidates) {
+				if (!candidate.isHealthy()) {
+					scheduleProbing();
+					break;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Check if a candidate is reachable: a connection is opened for TCP and
+	 * TLS, an OPTIONS request is sent for UDP and any answer is accepted
+	 *
+	 * @param ipAddress IP address
+	 * @param port Port
+	 * @return Boolean
+	 */
+	public boolean probe(String ipAddress, int port) {
+		if (logger.isActivated()) {
+			logger.debug("Probe IMS proxy " + ipAddress + ":" + port);
+		}
+		try {
+			if (protocol.equalsIgnoreCase(ListeningPoint.UDP)) {
+				return probeUdp(ipAddress, port);
+			} else {
+				Socket socket = new Socket();
+				try {
+					socket.connect(new InetSocketAddress(ipAddress, port), PROBE_TIMEOUT * 1000);
+				} finally {
+					socket.close();
+				}
+				return true;
+			}
+		} catch(IOException e) {
+			if (logger.isActivated()) {
+				logger.debug("IMS proxy " + ipAddress + ":" + port + " is unreachable: " + e.getMessage());
+			}
+			return false;
+		}
+	}
+
+	/**
+	 * Probe a candidate over UDP
+	 *
+	 * @param ipAddress IP address
+	 * @param port Port
+	 * @return Boolean
+	 * @throws IOException
+	 */
+	private boolean probeUdp(String ipAddress, int port) throws IOException {
+		DatagramSocket socket = new DatagramSocket();
+		try {
+			InetAddress address = InetAddress.getByName(ipAddress);
+			socket.connect(address, port);
+			socket.setSoTimeout(PROBE_TIMEOUT * 1000);
+			String host = socket.getLocalAddress().getHostAddress();
+			if (host.indexOf(':') != -1) {
+				host = "[" + host + "]";
+			}
+			String id = Long.toHexString(random.nextLong());
+			String options = "OPTIONS sip:" + ipAddress + ":" + port + " SIP/2.0\r\n" +
+					"Via: SIP/2.0/UDP " + host + ":" + socket.getLocalPort() + ";branch=z9hG4bK" + id + "\r\n" +
+					"Max-Forwards: 0\r\n" +
+					"From: <sip:probe@" + host + ">;tag=" + id + "\r\n" +
+					"To: <sip:" + ipAddress + ">\r\n" +
+					"Call-ID: " + id + "@" + host + "\r\n" +
+					"CSeq: 1 OPTIONS\r\n" +
+					"Content-Length: 0\r\n\r\n";
+			byte[] data = options.getBytes("UTF-8");
+			socket.send(new DatagramPacket(data, data.length));
+			socket.receive(new DatagramPacket(new byte[2048], 2048));
+			return true;
+		} finally {
+			socket.close();
+		}
+	}
+
+	/**
+	 * Find a candidate
+	 *
+	 * @param ipAddress IP address
+	 * @param port Port
+	 * @return Candidate or null
+	 */
+	private Candidate find(String ipAddress, int port) {
+		for (Candidate candidate : candidates) {
+			if (candidate.matches(ipAddress, port)) {
+				return candidate;
+			}
+		}
+		return null;
+	}
+}
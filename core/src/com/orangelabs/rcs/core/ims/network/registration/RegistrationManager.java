@@ -40,6 +40,7 @@ import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.DeviceUtils;
 import com.orangelabs.rcs.utils.PeriodicRefresher;
 import com.orangelabs.rcs.utils.logger.Logger;
@@ -150,7 +151,7 @@ public class RegistrationManager extends PeriodicRefresher {
      * Restart registration procedure
      */
     public void restart() {
-        Thread t = new Thread() {
+        CoreExecutor.executeBlocking(new Runnable() {
             /**
              * Processing
              */
@@ -161,8 +162,7 @@ public class RegistrationManager extends PeriodicRefresher {
                 // Start a new registration
                 registration();
             }
-        };
-        t.start();
+        });
     }
 
     /**
@@ -224,6 +224,9 @@ public class RegistrationManager extends PeriodicRefresher {
         		logger.error("Registration has failed", e);
         	}
         	handleError(new ImsError(ImsError.UNEXPECTED_EXCEPTION, e.getMessage()));
+
+        	// The IMS proxy may be unreachable: try the next one
+        	networkInterface.handleProxyFailure();
         }
         registering = false;
         return registered;
@@ -361,6 +364,11 @@ public class RegistrationManager extends PeriodicRefresher {
         } else {
         	// No response received: timeout
         	handleError(new ImsError(ImsError.REGISTRATION_FAILED, "timeout"));
+
+        	// The IMS proxy is unreachable: try the next one
+        	if (register.getExpires() != 0) {
+        		networkInterface.handleProxyFailure();
+        	}
         }
 	}    
 
@@ -403,6 +411,8 @@ public class RegistrationManager extends PeriodicRefresher {
 		
     	// If the IP address of the Via header in the 200 OK response to the initial
         // SIP REGISTER request is different than the local IP address then there is a NAT 
+    	String oldPublicAddr = networkInterface.getNatPublicAddress();
+    	int oldPublicPort = networkInterface.getNatPublicPort();
     	String localIpAddr = networkInterface.getNetworkAccess().getIpAddress();
     	ViaHeader respViaHeader = ctx.getSipResponse().getViaHeaders().next();
     	String received = respViaHeader.getParameter("received");
@@ -432,6 +442,11 @@ public class RegistrationManager extends PeriodicRefresher {
         if (logger.isActivated()) {
             logger.debug("NAT traversal detection: " + networkInterface.isBehindNat());
         }
+
+        // The NAT binding has been lost if the public address has changed
+        boolean bindingLost = networkInterface.isBehindNat() && (oldPublicAddr != null) && (oldPublicPort != -1) &&
+        		(!oldPublicAddr.equals(networkInterface.getNatPublicAddress()) || (oldPublicPort != networkInterface.getNatPublicPort()));
+        networkInterface.getSipManager().getSipStack().getKeepAliveManager().natBindingRefreshed(bindingLost);
 		
         // Read the security header
     	registrationProcedure.readSecurityHeader(resp);
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.network.sip;
 
 import java.util.ListIterator;
+import java.util.concurrent.ScheduledFuture;
 
 import javax2.sip.header.ViaHeader;
 import javax2.sip.header.WarningHeader;
@@ -33,7 +34,9 @@ import com.orangelabs.rcs.core.ims.protocol.sip.SipMessage;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -180,65 +183,114 @@ public class SipManager {
             ctx.waitResponse(timeout);
 
             // Analyze the received response
-            if (message instanceof SipRequest
-                && !((SipRequest)message).getMethod().equals(Request.REGISTER)
-                    && ctx.isSipResponse()) {
-                // Check if not registered and warning header
-                WarningHeader warn = (WarningHeader)ctx.getSipResponse().getHeader(WarningHeader.NAME);
-                if ((ctx.getStatusCode() == 403) && (warn == null)) {
-                    // Launch new registration
-                    networkInterface.getRegistrationManager().restart();
+            analyzeResponse(message, ctx);
+            
+            // Return the transaction context 
+            return ctx;
+		} else {
+			throw new SipException("Stack not initialized");
+		}
+	}
 
-                    // Throw not registered exception 
-                    throw new SipException("Not registered");
-                }
+    /**
+     * Send a SIP request without blocking: the listener is notified from the
+     * stack thread when the final response or the transaction timeout is received,
+     * or when the transaction fails. If the stack notifies nothing within
+     * TIMEOUT seconds, the listener gets a context without response.
+     *
+     * @param request SIP request
+     * @param listener Transaction listener
+     * @return Transaction context
+     * @throws SipException
+     */
+    public SipTransactionContext sendSipRequestAsync(final SipRequest request, final SipTransactionListener listener) throws SipException {
+        if (sipstack != null) {
+            GuardedTransaction guard = new GuardedTransaction(request, listener);
+            SipTransactionContext ctx = sipstack.sendSipRequestAsync(request, guard);
+            guard.startTimer(ctx, TIMEOUT);
+            return ctx;
+		} else {
+			throw new SipException("Stack not initialized");
+		}
+	}
+
+    /**
+     * Send a SIP response without blocking: the listener is notified from the
+     * stack thread when the ACK is received
+     *
+     * @param response SIP response
+     * @param listener Transaction listener
+     * @return Transaction context
+     * @throws SipException
+     */
+    public SipTransactionContext sendSipResponseAsync(SipResponse response, SipTransactionListener listener) throws SipException {
+        if (sipstack != null) {
+            return sipstack.sendSipResponseAsync(response, listener);
+        } else {
+            throw new SipException("Stack not initialized");
+        }
+    }
+
+    /**
+     * Analyze the response received for a SIP message
+     *
+     * @param message SIP message
+     * @param ctx Transaction context
+     * @throws SipException
+     */
+    private void analyzeResponse(SipMessage message, SipTransactionContext ctx) throws SipException {
+        if (message instanceof SipRequest
+            && !((SipRequest)message).getMethod().equals(Request.REGISTER)
+                && ctx.isSipResponse()) {
+            // Check if not registered and warning header
+            WarningHeader warn = (WarningHeader)ctx.getSipResponse().getHeader(WarningHeader.NAME);
+            if ((ctx.getStatusCode() == 403) && (warn == null)) {
+                // Launch new registration
+                networkInterface.getRegistrationManager().restart();
+
+                // Throw not registered exception 
+                throw new SipException("Not registered");
             }
-            
-			KeepAliveManager keepAliveManager = networkInterface.getSipManager().getSipStack().getKeepAliveManager();
-			if (message instanceof SipRequest && ctx.isSipResponse()) {
-				String method = ((SipRequest) message).getMethod();
-				if (method != null && keepAliveManager != null) {
-					if (method.equals(Request.INVITE) || method.equals(Request.REGISTER)) {
-						// Message is a response to INVITE or REGISTER: analyze "keep" flag of "Via" header
-						int viaKeep = -1;
-						ListIterator<ViaHeader> iterator = ctx.getSipResponse().getViaHeaders();
-						if (iterator != null) {
-							ViaHeader respViaHeader = iterator.next();
-							// Retrieve "keep" value
-							String keepStr = respViaHeader.getParameter("keep");
-							if (keepStr != null) {
-								// Convert "keep" value to integer
-								try {
-									viaKeep = Integer.parseInt(keepStr);
-									if (viaKeep > 0) {
-										// If "keep" value is valid, set keep alive period
-										keepAliveManager.setPeriod(viaKeep);
-									} else {
-										if (logger.isActivated())
-											logger.warn("Non positive keep value \"" + keepStr + "\"");
-									}
-								} catch (NumberFormatException e) {
+        }
+        
+		KeepAliveManager keepAliveManager = networkInterface.getSipManager().getSipStack().getKeepAliveManager();
+		if (message instanceof SipRequest && ctx.isSipResponse()) {
+			String method = ((SipRequest) message).getMethod();
+			if (method != null && keepAliveManager != null) {
+				if (method.equals(Request.INVITE) || method.equals(Request.REGISTER)) {
+					// Message is a response to INVITE or REGISTER: analyze "keep" flag of "Via" header
+					int viaKeep = -1;
+					ListIterator<ViaHeader> iterator = ctx.getSipResponse().getViaHeaders();
+					if (iterator != null) {
+						ViaHeader respViaHeader = iterator.next();
+						// Retrieve "keep" value
+						String keepStr = respViaHeader.getParameter("keep");
+						if (keepStr != null) {
+							// Convert "keep" value to integer
+							try {
+								viaKeep = Integer.parseInt(keepStr);
+								if (viaKeep > 0) {
+									// If "keep" value is valid, set keep alive period
+									keepAliveManager.setPeriod(viaKeep);
+								} else {
 									if (logger.isActivated())
-										logger.warn("Non-numeric keep value \"" + keepStr + "\"");
+										logger.warn("Non positive keep value \"" + keepStr + "\"");
 								}
+							} catch (NumberFormatException e) {
+								if (logger.isActivated())
+									logger.warn("Non-numeric keep value \"" + keepStr + "\"");
 							}
 						}
-						// If "keep" value is invalid or not present, set keep alive period to default value
-						if (viaKeep <= 0) {
-							keepAliveManager.setPeriod(RcsSettings.getInstance().getSipKeepAlivePeriod());
-						}
+					}
+					// If "keep" value is invalid or not present, set keep alive period to default value
+					if (viaKeep <= 0) {
+						keepAliveManager.setPeriod(RcsSettings.getInstance().getSipKeepAlivePeriod());
 					}
 				}
 			}
-			
-            // Return the transaction context 
-            return ctx;
-		} else {
-			throw new SipException("Stack not initialized");
 		}
 	}
 
-
 	/**
      * Send a SIP response
      *
@@ -339,4 +391,70 @@ public class SipManager {
 			throw new SipException("Stack not initialized");
 		}
 	}
+
+    /**
+     * Request sent without blocking: only the first of the stack notification
+     * and of the guard timeout is passed to the listener
+     */
+    private class GuardedTransaction implements SipTransactionListener, Runnable {
+        private SipRequest request;
+        private SipTransactionListener listener;
+        private SipTransactionContext ctx = null;
+        private ScheduledFuture<?> timer = null;
+        private boolean completed = false;
+
+        GuardedTransaction(SipRequest request, SipTransactionListener listener) {
+            this.request = request;
+            this.listener = listener;
+        }
+
+        synchronized void startTimer(SipTransactionContext ctx, int timeout) {
+            if (!completed) {
+                this.ctx = ctx;
+                timer = CoreExecutor.schedule(this, timeout * 1000L);
+            }
+        }
+
+        synchronized boolean complete() {
+            if (completed) {
+                return false;
+            }
+            completed = true;
+            if (timer != null) {
+                timer.cancel(false);
+            }
+            return true;
+        }
+
+        public void transactionCompleted(SipTransactionContext ctx) {
+            if (!complete()) {
+                return;
+            }
+            try {
+                // Analyze the received response
+                analyzeResponse(request, ctx);
+            } catch(SipException e) {
+                listener.transactionFailed(e);
+                return;
+            }
+            listener.transactionCompleted(ctx);
+        }
+
+        public void transactionFailed(SipException e) {
+            if (complete()) {
+                listener.transactionFailed(e);
+            }
+        }
+
+        public void run() {
+            // Guard timeout: the context has no received message, a late
+            // notification of the stack is ignored
+            if (complete()) {
+                if (logger.isActivated()) {
+                    logger.debug("No notification of the stack before the timeout");
+                }
+                listener.transactionCompleted(ctx);
+            }
+        }
+    }
 }
@@ -56,6 +56,7 @@ import javax2.sip.message.Response;
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipInterface;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.service.SessionTimerManager;
@@ -265,55 +266,33 @@ public class SipMessageFactory {
 	 */
 	public static SipRequest createMessage(SipDialogPath dialog, String featureTag, String contentType, byte[] content) throws SipException {
 		try {			
-	        // Set request line header
-	        URI requestURI = SipUtils.ADDR_FACTORY.createURI(dialog.getTarget());
-	
-	        // Set Call-Id header
-	        CallIdHeader callIdHeader = SipUtils.HEADER_FACTORY.createCallIdHeader(dialog.getCallId()); 
-	        
-	        // Set the CSeq header
-	        CSeqHeader cseqHeader = SipUtils.HEADER_FACTORY.createCSeqHeader(dialog.getCseq(), Request.MESSAGE);
-	        
-	        // Set the From header
-	        Address fromAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getLocalParty());
-	        FromHeader fromHeader = SipUtils.HEADER_FACTORY.createFromHeader(fromAddress, dialog.getLocalTag());
-	
-	        // Set the To header
-	        Address toAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getRemoteParty());
-	        ToHeader toHeader = SipUtils.HEADER_FACTORY.createToHeader(toAddress, dialog.getRemoteTag());
-			
-	        // Create the request
-	        Request message = SipUtils.MSG_FACTORY.createRequest(requestURI,
-	                Request.MESSAGE,
-	                callIdHeader,
-	                cseqHeader,
-					fromHeader,
-					toHeader,
-					dialog.getSipStack().getViaHeaders(),
-					SipUtils.buildMaxForwardsHeader());       
-	        
-	        // Set the Route header
-	        Vector<String> route = dialog.getRoute();
-	        for(int i=0; i < route.size(); i++) {
-	        	Header routeHeader = SipUtils.HEADER_FACTORY.createHeader(RouteHeader.NAME, route.elementAt(i));
-	        	message.addHeader(routeHeader);
-	        }
+			// Create the request with the dialog headers
+	        Request message = createDialogRequest(dialog, Request.MESSAGE, dialog.getRemoteTag());
 	                
-	        // Set the P-Preferred-Identity header
-	        if (ImsModule.IMS_USER_PROFILE.getPreferredUri() != null) {
-	        	Header prefHeader = SipUtils.HEADER_FACTORY.createHeader(SipUtils.HEADER_P_PREFERRED_IDENTITY, ImsModule.IMS_USER_PROFILE.getPreferredUri());
-	        	message.addHeader(prefHeader);
-	        }
-
-	        // Set Contact header
-			message.addHeader(dialog.getSipStack().getContact());	        
-			
-	        // Set User-Agent header
-	        message.addHeader(SipUtils.buildUserAgentHeader());
+	        // Set the headers built once per registration
+	        SipInterface stack = dialog.getSipStack();
+	        String[] featureTags = (featureTag != null) ? new String [] { featureTag } : null;
+	        String key = SipRequestTemplate.getKey(Request.MESSAGE, featureTags);
+	        SipRequestTemplate template = stack.getRequestTemplate(key);
+	        if (template == null) {
+		        // Set the P-Preferred-Identity header
+		        if (ImsModule.IMS_USER_PROFILE.getPreferredUri() != null) {
+		        	Header prefHeader = SipUtils.HEADER_FACTORY.createHeader(SipUtils.HEADER_P_PREFERRED_IDENTITY, ImsModule.IMS_USER_PROFILE.getPreferredUri());
+		        	message.addHeader(prefHeader);
+		        }
 	
-	        // Set feature tags
-	        if (featureTag != null) {
-	        	SipUtils.setFeatureTags(message, new String [] { featureTag });
+		        // Set Contact header
+				message.addHeader(stack.getContact());	        
+				
+		        // Set User-Agent header
+		        message.addHeader(SipUtils.buildUserAgentHeader());
+		
+		        // Set feature tags
+		        SipUtils.setFeatureTags(message, featureTags);
+		        
+		        stack.setRequestTemplate(key, new SipRequestTemplate(message));
+	        } else {
+	        	template.apply(message);
 	        }
 	        
 	        // Set the message content
@@ -325,10 +304,6 @@ public class SipMessageFactory {
 			ContentLengthHeader contentLengthHeader = SipUtils.HEADER_FACTORY.createContentLengthHeader(content.length);
 			message.setContentLength(contentLengthHeader);
 			
-	        // Set "rport" (RFC3581)
-	        ViaHeader viaHeader = (ViaHeader)message.getHeader(ViaHeader.NAME);
-	        viaHeader.setRPort();
-
             // Add remote SIP instance ID
             SipUtils.setRemoteInstanceID(message, dialog.getRemoteSipInstance());
 
@@ -341,6 +316,31 @@ public class SipMessageFactory {
 		}
     }    
 
+	/**
+	 * Create a SIP MESSAGE request with a multipart/mixed content
+	 * 
+	 * @param dialog SIP dialog path
+	 * @param featureTag Feature tag
+	 * @param multipart Multipart content
+	 * @param boundary Boundary tag
+	 * @return SIP request
+	 * @throws SipException
+	 */
+	public static SipRequest createMultipartMessage(SipDialogPath dialog, String featureTag, byte[] multipart, String boundary) throws SipException {
+		SipRequest message = createMessage(dialog, featureTag, "multipart/mixed", multipart);
+		try {
+			// Set the boundary of the content type
+			ContentTypeHeader contentType = (ContentTypeHeader)message.getStackMessage().getHeader(ContentTypeHeader.NAME);
+			contentType.setParameter("boundary", boundary);
+			return message;
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't create SIP message", e);
+			}
+			throw new SipException("Can't create SIP MESSAGE message");
+		}
+	}
+
     /**
 	 * Create a SIP PUBLISH request
 	 * 
@@ -966,66 +966,41 @@ public class SipMessageFactory {
 	 */
     public static SipRequest createOptions(SipDialogPath dialog, String[] featureTags) throws SipException {
 		try {
-	        // Set request line header
-	        URI requestURI = SipUtils.ADDR_FACTORY.createURI(dialog.getTarget());
-	        
-	        // Set Call-Id header
-	        CallIdHeader callIdHeader = SipUtils.HEADER_FACTORY.createCallIdHeader(dialog.getCallId()); 
-	        
-	        // Set the CSeq header
-	        CSeqHeader cseqHeader = SipUtils.HEADER_FACTORY.createCSeqHeader(dialog.getCseq(), Request.OPTIONS);
+			// Create the request with the dialog headers
+			Request options = createDialogRequest(dialog, Request.OPTIONS, null);
+
+	        // Set the headers built once per registration
+	        SipInterface stack = dialog.getSipStack();
+	        String key = SipRequestTemplate.getKey(Request.OPTIONS, featureTags);
+	        SipRequestTemplate template = stack.getRequestTemplate(key);
+	        if (template == null) {
+		        // Set Contact header
+		        options.addHeader(stack.getContact());
+		        
+		        // Set Accept header
+		    	Header acceptHeader = SipUtils.HEADER_FACTORY.createHeader(AcceptHeader.NAME, "application/sdp");
+				options.addHeader(acceptHeader);
 	
-	        // Set the From header
-	        Address fromAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getLocalParty());
-	        FromHeader fromHeader = SipUtils.HEADER_FACTORY.createFromHeader(fromAddress, dialog.getLocalTag());
+				// Set feature tags
+	            SipUtils.setFeatureTags(options, featureTags);
 	
-	        // Set the To header
-	        Address toAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getRemoteParty());
-	        ToHeader toHeader = SipUtils.HEADER_FACTORY.createToHeader(toAddress, null);
+		        // Set Allow header
+		        SipUtils.buildAllowHeader(options);
 	
-			// Create the request
-	        Request options = SipUtils.MSG_FACTORY.createRequest(requestURI,
-	                Request.OPTIONS,
-	                callIdHeader,
-	                cseqHeader,
-					fromHeader,
-					toHeader,
-					dialog.getSipStack().getViaHeaders(),
-					SipUtils.buildMaxForwardsHeader());       
-	        
-			// Set Contact header
-	        options.addHeader(dialog.getSipStack().getContact());
-	        
-	        // Set Accept header
-	    	Header acceptHeader = SipUtils.HEADER_FACTORY.createHeader(AcceptHeader.NAME, "application/sdp");
-			options.addHeader(acceptHeader);
-
-			// Set feature tags
-            SipUtils.setFeatureTags(options, featureTags);
-
-	        // Set Allow header
-	        SipUtils.buildAllowHeader(options);
-
-	        // Set the Route header
-	        Vector<String> route = dialog.getRoute();
-	        for(int i=0; i < route.size(); i++) {
-	        	Header routeHeader = SipUtils.HEADER_FACTORY.createHeader(RouteHeader.NAME, route.elementAt(i));
-	        	options.addHeader(routeHeader);
-	        }
-	        
-	        // Set the P-Preferred-Identity header
-	        if (ImsModule.IMS_USER_PROFILE.getPreferredUri() != null) {
-	        	Header prefHeader = SipUtils.HEADER_FACTORY.createHeader(SipUtils.HEADER_P_PREFERRED_IDENTITY, ImsModule.IMS_USER_PROFILE.getPreferredUri());
-	        	options.addHeader(prefHeader);
+		        // Set the P-Preferred-Identity header
+		        if (ImsModule.IMS_USER_PROFILE.getPreferredUri() != null) {
+		        	Header prefHeader = SipUtils.HEADER_FACTORY.createHeader(SipUtils.HEADER_P_PREFERRED_IDENTITY, ImsModule.IMS_USER_PROFILE.getPreferredUri());
+		        	options.addHeader(prefHeader);
+		        }
+	
+				// Set User-Agent header
+		        options.addHeader(SipUtils.buildUserAgentHeader());
+		        
+		        stack.setRequestTemplate(key, new SipRequestTemplate(options));
+	        } else {
+	        	template.apply(options);
 	        }
 
-			// Set User-Agent header
-	        options.addHeader(SipUtils.buildUserAgentHeader());
-
-	        // Set "rport" (RFC3581)
-	        ViaHeader viaHeader = (ViaHeader)options.getHeader(ViaHeader.NAME);
-	        viaHeader.setRPort();
-
 	        return new SipRequest(options);
 		} catch(Exception e) {
 			if (logger.isActivated()) {
@@ -1035,6 +1010,58 @@ public class SipMessageFactory {
 		}
     }    
 
+    /**
+	 * Create a SIP request with the headers depending on the dialog: request-URI,
+	 * Call-ID, CSeq, From, To, Via and Route. The other headers are set by the caller.
+	 * 
+	 * @param dialog SIP dialog path
+	 * @param method SIP method
+	 * @param remoteTag Remote tag
+     * @return SIP request
+	 * @throws Exception
+	 */
+    private static Request createDialogRequest(SipDialogPath dialog, String method, String remoteTag) throws Exception {
+        // Set request line header
+        URI requestURI = SipUtils.ADDR_FACTORY.createURI(dialog.getTarget());
+        
+        // Set Call-Id header
+        CallIdHeader callIdHeader = SipUtils.HEADER_FACTORY.createCallIdHeader(dialog.getCallId()); 
+        
+        // Set the CSeq header
+        CSeqHeader cseqHeader = SipUtils.HEADER_FACTORY.createCSeqHeader(dialog.getCseq(), method);
+
+        // Set the From header
+        Address fromAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getLocalParty());
+        FromHeader fromHeader = SipUtils.HEADER_FACTORY.createFromHeader(fromAddress, dialog.getLocalTag());
+
+        // Set the To header
+        Address toAddress = SipUtils.ADDR_FACTORY.createAddress(dialog.getRemoteParty());
+        ToHeader toHeader = SipUtils.HEADER_FACTORY.createToHeader(toAddress, remoteTag);
+
+		// Create the request
+        Request request = SipUtils.MSG_FACTORY.createRequest(requestURI,
+                method,
+                callIdHeader,
+                cseqHeader,
+				fromHeader,
+				toHeader,
+				dialog.getSipStack().getViaHeaders(),
+				SipUtils.buildMaxForwardsHeader());       
+        
+        // Set the Route header
+        Vector<String> route = dialog.getRoute();
+        for(int i=0; i < route.size(); i++) {
+        	Header routeHeader = SipUtils.HEADER_FACTORY.createHeader(RouteHeader.NAME, route.elementAt(i));
+        	request.addHeader(routeHeader);
+        }
+
+        // Set "rport" (RFC3581)
+        ViaHeader viaHeader = (ViaHeader)request.getHeader(ViaHeader.NAME);
+        viaHeader.setRPort();
+
+        return request;
+    }
+
     /**
 	 * Create a 200 OK response for OPTIONS request
 	 * 
@@ -0,0 +1,129 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.network.sip;
+
+import gov2.nist.javax2.sip.header.SIPHeader;
+import gov2.nist.javax2.sip.message.SIPMessage;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+
+import javax2.sip.header.CSeqHeader;
+import javax2.sip.header.CallIdHeader;
+import javax2.sip.header.ContentLengthHeader;
+import javax2.sip.header.ContentTypeHeader;
+import javax2.sip.header.FromHeader;
+import javax2.sip.header.MaxForwardsHeader;
+import javax2.sip.header.RouteHeader;
+import javax2.sip.header.ToHeader;
+import javax2.sip.header.ViaHeader;
+import javax2.sip.message.Request;
+
+/**
+ * SIP request template. The headers which don't depend on the dialog
+ * (Contact, feature tags, Allow, P-Preferred-Identity, User-Agent...) are
+ * built once per registration and then shared by all the requests created
+ * from the template: the stack copies a shared header before modifying it.
+ */
+public class SipRequestTemplate {
+	/**
+	 * Names of the headers set for each request
+	 */
+	private final static String[] REQUEST_HEADERS = {
+		CallIdHeader.NAME,
+		CSeqHeader.NAME,
+		FromHeader.NAME,
+		ToHeader.NAME,
+		ViaHeader.NAME,
+		MaxForwardsHeader.NAME,
+		RouteHeader.NAME,
+		ContentTypeHeader.NAME,
+		ContentLengthHeader.NAME
+	};
+
+	/**
+	 * Shared headers
+	 */
+	private SIPHeader[] headers;
+
+	/**
+	 * Constructor
+	 * 
+	 * @param request Request from which the dialog independent headers are extracted
+	 */
+	public SipRequestTemplate(Request request) {
+		ArrayList<SIPHeader> list = new ArrayList<SIPHeader>();
+		Iterator<SIPHeader> iterator = ((SIPMessage)request).getHeaders();
+		while(iterator.hasNext()) {
+			SIPHeader header = iterator.next();
+			if (!isRequestHeader(header.getName())) {
+				// Copy the header so that the request keeps its own instance
+				SIPHeader shared = (SIPHeader)header.clone();
+				shared.setShared();
+				list.add(shared);
+			}
+		}
+		headers = list.toArray(new SIPHeader[list.size()]);
+	}
+
+	/**
+	 * Add the headers of the template to a request
+	 * 
+	 * @param request SIP request
+	 * @throws Exception
+	 */
+	public void apply(Request request) throws Exception {
+		SIPMessage message = (SIPMessage)request;
+		for(int i=0; i < headers.length; i++) {
+			message.attachHeader(headers[i], false);
+		}
+	}
+
+	/**
+	 * Build the key of a template
+	 * 
+	 * @param method SIP method
+	 * @param featureTags Feature tags
+	 * @return Key
+	 */
+	public static String getKey(String method, String[] featureTags) {
+		StringBuilder key = new StringBuilder(method);
+		if (featureTags != null) {
+			for(int i=0; i < featureTags.length; i++) {
+				key.append(';').append(featureTags[i]);
+			}
+		}
+		return key.toString();
+	}
+
+	/**
+	 * Test if a header is set for each request
+	 * 
+	 * @param name Header name
+	 * @return Boolean
+	 */
+	private static boolean isRequestHeader(String name) {
+		for(int i=0; i < REQUEST_HEADERS.length; i++) {
+			if (REQUEST_HEADERS[i].equalsIgnoreCase(name)) {
+				return true;
+			}
+		}
+		return false;
+	}
+}
@@ -27,8 +27,10 @@ import java.util.List;
 import java.util.Random;
 import java.util.Vector;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ScheduledFuture;
 
 import com.orangelabs.rcs.utils.CloseableUtils;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.IdGenerator;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -403,6 +405,7 @@ public class MsrpSession {
         this.totalSize = totalSize;
 
 		// Send content over MSRP 
+		ScheduledFuture<?> progressReport = null;
 		try {
 			byte data[] = new byte[MsrpConstants.CHUNK_MAX_SIZE];
 			long firstByte = 1;
@@ -423,25 +426,18 @@ public class MsrpSession {
             // Calculate number of needed chunks
             final int totalChunks = (int) Math.ceil(totalSize / (double) MsrpConstants.CHUNK_MAX_SIZE);
             
-			new Thread(new Runnable() {
-
-				@Override
-				public void run() {
-					if (msrpTransaction != null) {
-						while ((totalChunks - msrpTransaction.getNumberReceivedOk()) > 0 && !cancelTransfer) {
-							msrpEventListener.msrpTransferProgress(msrpTransaction.getNumberReceivedOk()
+            // Report the progress of the acknowledged chunks until the end of the transfer
+            final MsrpTransaction transaction = msrpTransaction;
+            if (transaction != null) {
+				progressReport = CoreExecutor.scheduleWithFixedDelay(new Runnable() {
+					public void run() {
+						if ((totalChunks - transaction.getNumberReceivedOk()) > 0 && !cancelTransfer) {
+							msrpEventListener.msrpTransferProgress(transaction.getNumberReceivedOk()
 									* MsrpConstants.CHUNK_MAX_SIZE, totalSize);
-							try {
-								Thread.sleep(500);
-							} catch (InterruptedException e) {
-								e.printStackTrace();
-							}
 						}
 					}
-
-				}
-
-			}).start();
+				}, 0, 500);
+            }
             
             // Changed by Deutsche Telekom
             String newTransactionId = null;
@@ -534,10 +530,70 @@ public class MsrpSession {
 			}
 			throw new MsrpException(e.getMessage());
 		} finally {
+			if (progressReport != null) {
+				progressReport.cancel(false);
+			}
 			CloseableUtils.close(inputStream);
 		}
 	}
 
+	/**
+	 * Write a content which fits in one chunk as a complete SEND request at
+	 * the end of a buffer, so that several contents are sent in one write by
+	 * {@link #sendFrames(ByteArrayOutputStream)} without waiting for their
+	 * responses. The errors are notified to the event listener as for
+	 * {@link #sendChunks(InputStream, String, String, long, TypeMsrpChunk)}.
+	 * 
+	 * @param frames Buffer of SEND requests
+	 * @param data Content
+	 * @param msgId Message ID
+	 * @param contentType Content type to be sent
+	 * @param typeMsrpChunk Type of MSRP chunk
+	 * @throws MsrpException
+	 */
+	public void writeMessage(ByteArrayOutputStream frames, byte[] data, String msgId, String contentType, TypeMsrpChunk typeMsrpChunk) throws MsrpException {
+		if (from == null) {
+			throw new MsrpException("From not set");
+		}
+		
+		if (to == null) {
+			throw new MsrpException("To not set");
+		}
+
+		if (data.length > MsrpConstants.CHUNK_MAX_SIZE) {
+			throw new MsrpException("Content exceeds a chunk");
+		}
+
+		try {
+			String newTransactionId = generateTransactionId();
+			String msrpMsgId = IdGenerator.generateMessageID();
+			addMsrpTransactionInfo(newTransactionId, msrpMsgId, msgId, typeMsrpChunk);
+			writeMsrpSendRequest(frames, newTransactionId, to, from, msrpMsgId, contentType, data.length,
+					data, 1, data.length, data.length);
+		} catch(IOException e) {
+			throw new MsrpException(e.getMessage());
+		}
+	}
+
+	/**
+	 * Send the SEND requests written by
+	 * {@link #writeMessage(ByteArrayOutputStream, byte[], String, String, TypeMsrpChunk)}
+	 * 
+	 * @param frames Buffer of SEND requests
+	 * @throws MsrpException
+	 */
+	public void sendFrames(ByteArrayOutputStream frames) throws MsrpException {
+		if (connection == null) {
+			throw new MsrpException("No connection set");
+		}
+
+		try {
+			connection.sendChunk(frames.toByteArray());
+		} catch(IOException e) {
+			throw new MsrpException(e.getMessage());
+		}
+	}
+
 	/**
 	 * Send empty chunk
 	 * 
@@ -593,11 +649,55 @@ public class MsrpSession {
     // Changed by Deutsche Telekom
 	private void sendMsrpSendRequest(String txId, String to, String from, String msrpMsgId, String contentType, int dataSize,
 			byte data[], long firstByte, long lastByte, long totalSize) throws MsrpException, IOException {
-		boolean isLastChunk = (lastByte == totalSize);
-
 		// Create request
 		ByteArrayOutputStream buffer = new ByteArrayOutputStream(4000);
-		buffer.reset();
+		writeMsrpSendRequest(buffer, txId, to, from, msrpMsgId, contentType, dataSize, data, firstByte, lastByte, totalSize);
+
+		// Send chunk
+		if (failureReportOption) {
+			if (msrpTransaction != null) {
+				msrpTransaction.handleRequest();
+				requestTransaction = null;
+			} else {
+				requestTransaction = new RequestTransaction();
+			}
+			connection.sendChunk(buffer.toByteArray());
+			buffer.close();
+			if (requestTransaction != null) {
+				requestTransaction.waitResponse();
+				if (!requestTransaction.isResponseReceived()) {
+					throw new MsrpException("timeout");
+				}
+			}
+		} else {
+			connection.sendChunk(buffer.toByteArray());
+			buffer.close();
+			if (msrpTransaction != null) {
+				msrpTransaction.handleRequest();
+			}
+		}
+	}
+
+	/**
+	 * Write a MSRP SEND request
+	 * 
+	 * @param buffer Buffer
+	 * @param txId Transaction ID
+	 * @param to To header
+	 * @param from From header
+	 * @param msrpMsgId MSRP message ID
+	 * @param contentType Content type 
+	 * @param dataSize Data chunk size
+	 * @param data Data chunk
+	 * @param firstByte First byte range
+	 * @param lastByte Last byte range
+	 * @param totalSize Total size
+	 * @throws IOException 
+	 */
+	private void writeMsrpSendRequest(ByteArrayOutputStream buffer, String txId, String to, String from, String msrpMsgId,
+			String contentType, int dataSize, byte data[], long firstByte, long lastByte, long totalSize) throws IOException {
+		boolean isLastChunk = (lastByte == totalSize);
+
 		buffer.write(MsrpConstants.MSRP_HEADER.getBytes());
 		buffer.write(MsrpConstants.CHAR_SP);
 		buffer.write(txId.getBytes());
@@ -653,30 +753,6 @@ public class MsrpSession {
 			buffer.write(MsrpConstants.FLAG_MORE_CHUNK);
 		}
 		buffer.write(MsrpConstants.NEW_LINE.getBytes());
-
-		// Send chunk
-		if (failureReportOption) {
-			if (msrpTransaction != null) {
-				msrpTransaction.handleRequest();
-				requestTransaction = null;
-			} else {
-				requestTransaction = new RequestTransaction();
-			}
-			connection.sendChunk(buffer.toByteArray());
-			buffer.close();
-			if (requestTransaction != null) {
-				requestTransaction.waitResponse();
-				if (!requestTransaction.isResponseReceived()) {
-					throw new MsrpException("timeout");
-				}
-			}
-		} else {
-			connection.sendChunk(buffer.toByteArray());
-			buffer.close();
-			if (msrpTransaction != null) {
-				msrpTransaction.handleRequest();
-			}
-		}
 	}
 	
 	/**
@@ -18,26 +18,135 @@
 
 package com.orangelabs.rcs.core.ims.protocol.sip;
 
+import gov2.nist.javax2.sip.ListeningPointExt;
+
+import java.util.concurrent.ScheduledFuture;
+
+import javax2.sip.ListeningPoint;
+
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.PeriodicRefresher;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
  * Keep-alive manager (see RFC 5626)
+ * <p>
+ * Over UDP the lifetime of the NAT binding is discovered by binary search:
+ * the binding is left idle for a tested period then checked by a
+ * re-registration, the binding being lost if the public address seen by the
+ * registrar has changed. The keep-alive then settles at a safety margin under
+ * the longest period for which the binding was kept. A loss is forgotten
+ * after a while, so that a short binding lifetime seen once (e.g. on another
+ * network) does not keep the period low for ever. A keep-alive may be
+ * anticipated to share the wake-up of another timer, and a re-registration
+ * restarts it since it refreshes the binding as well.
  *
  * @author BJ
  */
 public class KeepAliveManager extends PeriodicRefresher {
+	/**
+	 * Max keep-alive period tried by the discovery (in seconds)
+	 */
+	private final static int MAX_PERIOD = 1800;
+
+	/**
+	 * Resolution of the discovery (in seconds)
+	 */
+	private final static int RESOLUTION = 15;
+
+	/**
+	 * Part of the discovered binding lifetime used as keep-alive period
+	 */
+	private final static double SAFETY_MARGIN = 0.8;
+
+	/**
+	 * Part of the keep-alive period by which a keep-alive may be anticipated
+	 * to share the wake-up of another timer
+	 */
+	private final static double WAKE_UP_WINDOW = 0.2;
+
+	/**
+	 * Max time to wait the response to a keep-alive (in seconds)
+	 */
+	private final static int PONG_TIMEOUT = 5;
+
+	/**
+	 * Number of keep-alives sent before considering that the proxy does not
+	 * answer to the keep-alives
+	 */
+	private final static int PONG_DETECTION = 3;
+
+	/**
+	 * Number of missing responses after which the proxy is unreachable
+	 */
+	private final static int MAX_MISSING_PONGS = 3;
+
+	/**
+	 * Time after which a lost binding is forgotten (in seconds)
+	 */
+	private final static int LOSS_EXPIRY = 6 * 3600;
+
     /**
      * Keep-alive period (in seconds)
      */
 	private int period;
 	
+	/**
+	 * Longest idle period after which the NAT binding was kept (in seconds)
+	 */
+	private int keptPeriod;
+
+	/**
+	 * Shortest idle period after which the NAT binding was lost (in seconds)
+	 */
+	private int lostPeriod = MAX_PERIOD;
+
+	/**
+	 * Time of the last lost binding
+	 */
+	private long lastLoss = 0;
+
+	/**
+	 * Time of the last message which has refreshed the NAT binding
+	 */
+	private long lastRefresh = 0;
+
+	/**
+	 * Number of keep-alives sent
+	 */
+	private int keepAlives = 0;
+
+	/**
+	 * Does the proxy answer to the keep-alives
+	 */
+	private boolean pongSupported = false;
+
+	/**
+	 * Number of successive missing responses
+	 */
+	private int missingPongs = 0;
+
+	/**
+	 * Pending check of the response to the last keep-alive
+	 */
+	private ScheduledFuture<?> pongCheck = null;
+
+	/**
+	 * Timer state
+	 */
+	private boolean started = false;
+
     /**
      * SIP interface
      */
     private SipInterface sip;
     
+    /**
+     * Keep-alive listener
+     */
+    private KeepAliveListener listener = null;
+
 	/**
 	 * The logger
 	 */
@@ -49,56 +158,257 @@ public class KeepAliveManager extends PeriodicRefresher {
 	public KeepAliveManager(SipInterface sip) {
 		this.sip = sip;
 		this.period = RcsSettings.getInstance().getSipKeepAlivePeriod();
+		this.keptPeriod = period;
 	}
 	
 	/**
 	 * Start
 	 */
-	public void start() {
+	public synchronized void start() {
 		if (logger.isActivated()) {
 			logger.debug("Start keep-alive");
 		}
-		startTimer(period, 1);
+		started = true;
+		if (lastRefresh == 0) {
+			lastRefresh = System.currentTimeMillis();
+		}
+		scheduleNext();
 	}
 	
 	/**
 	 * Start
 	 */
-	public void stop() {
+	public synchronized void stop() {
 		if (logger.isActivated()) {
 			logger.debug("Stop keep-alive");
 		}
+		started = false;
 		stopTimer();
+		if (pongCheck != null) {
+			pongCheck.cancel(false);
+			pongCheck = null;
+		}
 	}
 	
+	/**
+	 * Is the NAT binding lifetime being discovered
+	 * 
+	 * @return Boolean
+	 */
+	private boolean isDiscovering() {
+		return (listener != null) && ListeningPoint.UDP.equalsIgnoreCase(sip.getProxyProtocol())
+				&& (lostPeriod - keptPeriod > RESOLUTION);
+	}
+
+	/**
+	 * Returns the current keep-alive period
+	 * 
+	 * @return Period in seconds
+	 */
+	public synchronized int getCurrentPeriod() {
+		if (isDiscovering()) {
+			return (keptPeriod + lostPeriod) / 2;
+		}
+		int result = Math.max(period, (int)(keptPeriod * SAFETY_MARGIN));
+		if (lostPeriod <= period) {
+			result = (int)(lostPeriod * SAFETY_MARGIN);
+		}
+		return Math.max(RESOLUTION, result);
+	}
+
+	/**
+	 * Schedule the next keep-alive from the last refresh of the NAT binding
+	 */
+	private void scheduleNext() {
+		int next = getCurrentPeriod();
+		int delay = next - (int)((System.currentTimeMillis() - lastRefresh) / 1000);
+		if (isDiscovering()) {
+			// The tested period must be respected
+			startTimer(Math.max(1, delay), 1);
+		} else {
+			startTimer(Math.max(1, delay), 1, (int)(next * WAKE_UP_WINDOW));
+		}
+	}
+
 	/**
      * Keep-alive processing
      */
     public void periodicProcessing() {
+    	boolean discovering;
+    	synchronized(this) {
+    		if (!started) {
+    			return;
+    		}
+    		discovering = isDiscovering();
+    		if (discovering && logger.isActivated()) {
+    			logger.debug("Check the NAT binding after " + getCurrentPeriod() + "s (kept=" + keptPeriod + "s, lost=" + lostPeriod + "s)");
+    		}
+    	}
+    	if (discovering) {
+    		// The re-registration restarts the timer, if it fails the keep-alive
+    		// is restarted by the next registration
+    		listener.natBindingCheckRequired();
+    		return;
+    	}
+
         try {
     		if (logger.isActivated()) {
-    			logger.debug("Send keep-alive");
+    			logger.debug("Send keep-alive (period=" + getCurrentPeriod() + "s, wake-ups/hour=" + getWakeUpsPerHour() + ")");
     		}
 
     		// Send a double-CRLF
-        	sip.getDefaultSipProvider().getListeningPoints()[0].sendHeartbeat(sip.getOutboundProxyAddr(), sip.getOutboundProxyPort());
-        	
-        	// Start timer
-    		startTimer(period, 1);
+    		long sent = System.currentTimeMillis();
+    		ListeningPoint lp = sip.getDefaultSipProvider().getListeningPoints()[0];
+        	lp.sendHeartbeat(sip.getOutboundProxyAddr(), sip.getOutboundProxyPort());
+        	synchronized(this) {
+        		lastRefresh = sent;
+        		keepAlives++;
+
+        		// Check the response of the proxy after a delay
+        		if (isPongExpected(lp)) {
+        			pongCheck = CoreExecutor.schedule(new PongCheck((ListeningPointExt)lp, sent), PONG_TIMEOUT * 1000L);
+        		}
+
+        		// Start timer
+        		if (started) {
+        			scheduleNext();
+        		}
+        	}
         } catch(Exception e) {
             if (logger.isActivated()) {
                 logger.error("SIP heartbeat has failed", e);
             }
+
+            // Notify listener
+            if (listener != null) {
+            	listener.keepAliveFailed();
+            }
         }
     }
 
+    /**
+     * Is a response (pong) of the proxy expected to a keep-alive
+     * 
+     * @param lp Listening point
+     * @return Boolean
+     */
+    private boolean isPongExpected(ListeningPoint lp) {
+    	if (!ListeningPoint.UDP.equalsIgnoreCase(sip.getProxyProtocol()) || !(lp instanceof ListeningPointExt)) {
+    		return false;
+    	}
+    	// After a few keep-alives without response the proxy is considered
+    	// as not answering to the keep-alives
+    	return pongSupported || (keepAlives <= PONG_DETECTION);
+    }
+
+    /**
+     * Check of the response (pong) of the proxy to a keep-alive sent over
+     * UDP, done once the response should have been received
+     */
+    private class PongCheck implements Runnable {
+    	private ListeningPointExt lp;
+    	private long sent;
+
+    	public PongCheck(ListeningPointExt lp, long sent) {
+    		this.lp = lp;
+    		this.sent = sent;
+    	}
+
+    	public void run() {
+    		boolean failed = false;
+    		synchronized(KeepAliveManager.this) {
+    			if (!started) {
+    				return;
+    			}
+    			pongCheck = null;
+    			if (lp.getLastHeartbeatResponse(sip.getOutboundProxyAddr(), sip.getOutboundProxyPort()) >= sent) {
+    				pongSupported = true;
+    				missingPongs = 0;
+    				return;
+    			}
+    			if (!pongSupported) {
+    				return;
+    			}
+    			missingPongs++;
+    			if (logger.isActivated()) {
+    				logger.warn("No response to the keep-alive (missing=" + missingPongs + ")");
+    			}
+    			if (missingPongs >= MAX_MISSING_PONGS) {
+    				missingPongs = 0;
+    				stopTimer();
+    				failed = true;
+    			}
+    		}
+    		if (failed && (listener != null)) {
+    			listener.keepAliveFailed();
+    		}
+    	}
+    }
+
+	/**
+	 * The NAT binding has been refreshed by a registration
+	 * 
+	 * @param lost True if the public address has changed, i.e. the binding was lost
+	 */
+	public synchronized void natBindingRefreshed(boolean lost) {
+		long now = System.currentTimeMillis();
+		if (lastRefresh > 0) {
+			int idle = (int)((now - lastRefresh) / 1000);
+			if (lost) {
+				if (logger.isActivated()) {
+					logger.info("NAT binding lost after " + idle + "s");
+				}
+				lastLoss = now;
+				lostPeriod = Math.max(RESOLUTION, Math.min(lostPeriod, idle));
+				if (keptPeriod >= lostPeriod) {
+					// The binding lifetime has decreased: discover it again
+					keptPeriod = RESOLUTION;
+				}
+			} else {
+				if ((lostPeriod < MAX_PERIOD) && (now - lastLoss > LOSS_EXPIRY * 1000L)) {
+					// No loss for a long time: try longer periods again
+					if (logger.isActivated()) {
+						logger.debug("NAT binding loss after " + lostPeriod + "s forgotten");
+					}
+					lostPeriod = MAX_PERIOD;
+				}
+				if ((idle > keptPeriod) && (idle < lostPeriod)) {
+					keptPeriod = idle;
+				}
+			}
+			if (!isDiscovering() && logger.isActivated()) {
+				logger.debug("Keep-alive period " + getCurrentPeriod() + "s (kept=" + keptPeriod + "s, lost=" + lostPeriod + "s)");
+			}
+		}
+		lastRefresh = now;
+
+		// The registration stands for a keep-alive
+		if (started) {
+			scheduleNext();
+		}
+	}
+
 	/**
 	 * @param period the keep alive period in seconds
 	 */
-	public void setPeriod(int period) {
+	public synchronized void setPeriod(int period) {
+		if (period == this.period) {
+			return;
+		}
 		this.period = period;
+		this.keptPeriod = period;
+		this.lostPeriod = MAX_PERIOD;
 		if (logger.isActivated()) {
 			logger.debug("Set keep-alive period \"" + period + "\"");
 		}
 	}
+
+	/**
+	 * Set the keep-alive listener
+	 * 
+	 * @param listener Listener
+	 */
+	public void setListener(KeepAliveListener listener) {
+		this.listener = listener;
+	}
 }
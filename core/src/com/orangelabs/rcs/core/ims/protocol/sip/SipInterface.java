@@ -23,6 +23,7 @@ import gov2.nist.javax2.sip.message.SIPMessage;
 import java.io.File;
 import java.text.ParseException;
 import java.util.ArrayList;
+import java.util.Hashtable;
 import java.util.ListIterator;
 import java.util.Properties;
 import java.util.Vector;
@@ -39,6 +40,7 @@ import javax2.sip.SipListener;
 import javax2.sip.SipProvider;
 import javax2.sip.SipStack;
 import javax2.sip.TimeoutEvent;
+import javax2.sip.Transaction;
 import javax2.sip.TransactionTerminatedEvent;
 import javax2.sip.address.Address;
 import javax2.sip.address.SipURI;
@@ -52,6 +54,7 @@ import javax2.sip.header.ViaHeader;
 import android.net.ConnectivityManager;
 
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
+import com.orangelabs.rcs.core.ims.network.sip.SipRequestTemplate;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.security.cert.KeyStoreManager;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
@@ -189,6 +192,11 @@ public class SipInterface implements SipListener {
      */
     private int timerT4 = 5000;
 
+    /**
+     * Request templates, reset when the registration data change
+     */
+    private Hashtable<String, SipRequestTemplate> requestTemplates = new Hashtable<String, SipRequestTemplate>();
+
     /**
      * The logger
      */
@@ -508,6 +516,7 @@ public class SipInterface implements SipListener {
      */
     public void setPublicGruu(String gruu) {
         this.publicGruu = gruu;
+        requestTemplates.clear();
     }
 
     /**
@@ -544,6 +553,7 @@ public class SipInterface implements SipListener {
      */
     public void setInstanceId(String id) {
         this.instanceId = id;
+        requestTemplates.clear();
     }
 
     /**
@@ -675,6 +685,27 @@ public class SipInterface implements SipListener {
                 }
             }
         }
+        requestTemplates.clear();
+    }
+
+    /**
+     * Returns a request template
+     *
+     * @param key Template key
+     * @return Request template or null if not yet built
+     */
+    public SipRequestTemplate getRequestTemplate(String key) {
+        return requestTemplates.get(key);
+    }
+
+    /**
+     * Set a request template, valid until the registration data change
+     *
+     * @param key Template key
+     * @param template Request template
+     */
+    public void setRequestTemplate(String key, SipRequestTemplate template) {
+        requestTemplates.put(key, template);
     }
 
     /**
@@ -727,6 +758,33 @@ public class SipInterface implements SipListener {
         }
    }
 
+    /**
+     * Notify the transaction context that its transaction has ended without
+     * a final response (IO exception or termination)
+     *
+     * @param transaction Stack transaction
+     * @param e Exception
+     */
+    private void failTransactionContext(Transaction transaction, SipException e) {
+        if (transaction.getRequest() == null) {
+            return;
+        }
+        String id = SipTransactionContext.getTransactionContextId(transaction.getRequest());
+        SipTransactionContext ctx;
+        synchronized(this) {
+            // The context may already belong to a new transaction of the same call
+            ctx = transactions.get(id);
+            if ((ctx == null) || (ctx.getTransaction() != transaction)) {
+                return;
+            }
+            transactions.remove(id);
+        }
+        if (logger.isActivated()) {
+            logger.debug("Transaction " + id + " has failed: " + e.getMessage());
+        }
+        ctx.transactionFailed(e);
+    }
+
     /**
      * Send a SIP message and create a context to wait a response
      *
@@ -735,6 +793,47 @@ public class SipInterface implements SipListener {
      * @throws SipException
      */
     public SipTransactionContext sendSipMessageAndWait(SipMessage message) throws SipException {
+        return sendSipMessage(message, null);
+    }
+
+    /**
+     * Send a SIP request without blocking the caller: the listener is notified
+     * from the stack thread when the final response or the transaction timeout
+     * is received, so it must not block.
+     *
+     * @param request SIP request
+     * @param listener Transaction listener
+     * @return Transaction context
+     * @throws SipException
+     */
+    public SipTransactionContext sendSipRequestAsync(SipRequest request, SipTransactionListener listener) throws SipException {
+        return sendSipMessage(request, listener);
+    }
+
+    /**
+     * Send a SIP response without blocking the caller: the listener is notified
+     * from the stack thread when the ACK is received, so it must not block.
+     * There is no timeout notification for a response.
+     *
+     * @param response SIP response
+     * @param listener Transaction listener
+     * @return Transaction context
+     * @throws SipException
+     */
+    public SipTransactionContext sendSipResponseAsync(SipResponse response, SipTransactionListener listener) throws SipException {
+        return sendSipMessage(response, listener);
+    }
+
+    /**
+     * Send a SIP message and create the associated transaction context
+     *
+     * @param message SIP message
+     * @param listener Transaction listener or null to wait the response synchronously
+     * @return Transaction context
+     * @throws SipException
+     */
+    private SipTransactionContext sendSipMessage(SipMessage message, SipTransactionListener listener) throws SipException {
+        String id = null;
         try {
             if (message instanceof SipRequest) {
                 // Send a request
@@ -750,8 +849,8 @@ public class SipInterface implements SipListener {
                 }
 
                 // Create a transaction context
-                SipTransactionContext ctx = new SipTransactionContext(transaction);
-                String id = SipTransactionContext.getTransactionContextId(req);
+                SipTransactionContext ctx = new SipTransactionContext(transaction, listener);
+                id = SipTransactionContext.getTransactionContextId(req);
                 transactions.put(id, ctx);
                 if (logger.isActivated()) {
                     logger.debug("Create a transaction context " + id);
@@ -784,8 +883,8 @@ public class SipInterface implements SipListener {
                 }
 
                 // Create a transaction context
-                SipTransactionContext ctx = new SipTransactionContext(transaction);
-                String id = SipTransactionContext.getTransactionContextId(resp);
+                SipTransactionContext ctx = new SipTransactionContext(transaction, listener);
+                id = SipTransactionContext.getTransactionContextId(resp);
                 transactions.put(id, ctx);
                 if (logger.isActivated()) {
                     logger.debug("Create a transaction context " + id);
@@ -808,6 +907,11 @@ public class SipInterface implements SipListener {
             if (logger.isActivated()) {
                 logger.error("Can't send SIP message", e);
             }
+
+            // The caller gets the exception, the context will never be notified
+            if (id != null) {
+                removeTransactionContext(id);
+            }
             throw new SipException("Can't send SIP message");
         }
     }
@@ -1068,6 +1172,12 @@ public class SipInterface implements SipListener {
         if (logger.isActivated()) {
             logger.debug("IO Exception on " + exceptionEvent.getTransport() + " transport");
         }
+
+        // The stack raises the event from the transaction which could not send its message
+        if (exceptionEvent.getSource() instanceof ClientTransaction) {
+            failTransactionContext((ClientTransaction)exceptionEvent.getSource(),
+                    new SipException("IO exception on " + exceptionEvent.getTransport() + " transport"));
+        }
     }
 
     /**
@@ -1200,5 +1310,12 @@ public class SipInterface implements SipListener {
         if (logger.isActivated()) {
             logger.debug("Transaction terminated");
         }
+
+        // A client transaction terminated without final response has failed. A server
+        // transaction is not failed: the ACK of a 2xx is received after its termination.
+        if (!transactionTerminatedEvent.isServerTransaction()) {
+            failTransactionContext(transactionTerminatedEvent.getClientTransaction(),
+                    new SipException("Transaction terminated without response"));
+        }
     }
 }
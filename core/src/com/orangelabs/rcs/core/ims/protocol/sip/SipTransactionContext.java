@@ -41,6 +41,11 @@ public class SipTransactionContext extends Object {
 	 */
 	private SipMessage recvMsg = null;
 
+	/**
+	 * Transaction listener
+	 */
+	private SipTransactionListener listener = null;
+
 	/**
 	 * Constructor
 	 * 
@@ -50,6 +55,17 @@ public class SipTransactionContext extends Object {
 		this.transaction = transaction;
 	}
 
+	/**
+	 * Constructor
+	 * 
+	 * @param transaction SIP transaction
+	 * @param listener Transaction listener notified when the response is received
+	 */
+	public SipTransactionContext(Transaction transaction, SipTransactionListener listener) {
+		this.transaction = transaction;
+		this.listener = listener;
+	}
+
 	/**
 	 * Get the SIP transaction
 	 * 
@@ -199,9 +215,31 @@ public class SipTransactionContext extends Object {
 			recvMsg = msg;
 			super.notify();
 		}
+		
+		// Notify the listener outside of the lock
+		if (listener != null) {
+			listener.transactionCompleted(this);
+		}
 	}
 
 	/**
+	 * The transaction has ended without a final response (IO exception or
+	 * termination): a waiting caller gets a timeout
+	 * 
+	 * @param e Exception
+	 */
+	public void transactionFailed(SipException e) {
+		synchronized(this) {
+			super.notify();
+		}
+		
+		// Notify the listener outside of the lock
+		if (listener != null) {
+			listener.transactionFailed(e);
+		}
+	}
+
+	/**
 	 * Reset transaction context
 	 */
 	public void resetContext() {
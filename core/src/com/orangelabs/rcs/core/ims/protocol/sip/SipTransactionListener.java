@@ -0,0 +1,40 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.protocol.sip;
+
+/**
+ * SIP transaction listener used to receive the response of a request
+ * sent asynchronously
+ */
+public interface SipTransactionListener {
+	/**
+	 * A final response or a timeout has been received for the transaction
+	 * 
+	 * @param ctx Transaction context
+	 */
+	public void transactionCompleted(SipTransactionContext ctx);
+
+	/**
+	 * The transaction has failed: no final response (IO exception or
+	 * termination) or the received response could not be processed
+	 * 
+	 * @param e Exception
+	 */
+	public void transactionFailed(SipException e);
+}
@@ -19,6 +19,17 @@
 package com.orangelabs.rcs.core.ims.service;
 
 import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.LinkedList;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.PriorityBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import javax2.sip.address.SipURI;
 import javax2.sip.header.ContactHeader;
@@ -40,25 +51,73 @@ import com.orangelabs.rcs.core.ims.service.im.chat.standfw.StoreAndForwardManage
 import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDocument;
 import com.orangelabs.rcs.core.ims.service.terms.TermsConditionsService;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
-import com.orangelabs.rcs.utils.FifoBuffer;
 import com.orangelabs.rcs.utils.IdGenerator;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * IMS service dispatcher
+ * IMS service dispatcher. Incoming requests are dispatched by a pool of
+ * threads: requests of the same dialog (i.e. Call-ID) are dispatched one
+ * after the other in their order of arrival, while independent dialogs are
+ * dispatched concurrently. When all the threads are busy, session requests
+ * (INVITE, BYE, CANCEL) are dispatched before the other requests.
  * 
  * @author jexa7410
  */
-public class ImsServiceDispatcher extends Thread {
+public class ImsServiceDispatcher {
+	/**
+	 * Max number of threads dispatching requests
+	 */
+	private final static int MAX_DISPATCH_THREADS = 4;
+
+	/**
+	 * Idle time before a dispatch thread is released (in seconds)
+	 */
+	private final static int KEEP_ALIVE_TIME = 30;
+
+	/**
+	 * Priority of session requests
+	 */
+	private final static int PRIORITY_HIGH = 0;
+
+	/**
+	 * Priority of instant messages and of the other requests
+	 */
+	private final static int PRIORITY_NORMAL = 1;
+
+	/**
+	 * Priority of capability and event requests
+	 */
+	private final static int PRIORITY_LOW = 2;
+
     /**
      * IMS module
      */
     private ImsModule imsModule;
 
     /**
-	 * Buffer of messages
+	 * Thread pool dispatching the requests
 	 */
-	private FifoBuffer buffer = new FifoBuffer();
+	private ThreadPoolExecutor threadPool = null;
+
+	/**
+	 * Requests waiting for the end of the previous request of their dialog, indexed by Call-ID
+	 */
+	private Map<String, LinkedList<DispatchTask>> dialogs = new HashMap<String, LinkedList<DispatchTask>>();
+
+	/**
+	 * Sequence number keeping the order of arrival between requests of the same priority
+	 */
+	private AtomicLong sequence = new AtomicLong();
+
+	/**
+	 * Number of requests waiting to be dispatched
+	 */
+	private AtomicInteger queueDepth = new AtomicInteger();
+
+	/**
+	 * Dispatch latency statistics indexed by method
+	 */
+	private ConcurrentHashMap<String, DispatchStatistics> statistics = new ConcurrentHashMap<String, DispatchStatistics>();
 
 	/**
 	 * SIP intent manager
@@ -76,11 +135,29 @@ public class ImsServiceDispatcher extends Thread {
 	 * @param imsModule IMS module
 	 */
 	public ImsServiceDispatcher(ImsModule imsModule) {
-		super("SipDispatcher");
-		
         this.imsModule = imsModule;
 	}
 	
+    /**
+     * Start the SIP dispatcher
+     */
+    public void start() {
+		if (logger.isActivated()) {
+			logger.info("Start background processing");
+		}
+		threadPool = new ThreadPoolExecutor(MAX_DISPATCH_THREADS, MAX_DISPATCH_THREADS,
+				KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+				new PriorityBlockingQueue<Runnable>(),
+				new ThreadFactory() {
+					private int count = 0;
+
+					public Thread newThread(Runnable r) {
+						return new Thread(r, "SipDispatcher-" + (++count));
+					}
+				});
+		threadPool.allowCoreThreadTimeOut(true);
+    }
+
     /**
      * Terminate the SIP dispatcher
      */
@@ -88,41 +165,164 @@ public class ImsServiceDispatcher extends Thread {
     	if (logger.isActivated()) {
     		logger.info("Terminate the multi-session manager");
     	}
-        buffer.close();
+    	if (threadPool != null) {
+    		threadPool.shutdownNow();
+    	}
+    	synchronized(dialogs) {
+    		dialogs.clear();
+    	}
+    	queueDepth.set(0);
         if (logger.isActivated()) {
         	logger.info("Multi-session manager has been terminated");
         }
     }
     
 	/**
-	 * Post a SIP request in the buffer
+	 * Post a SIP request to be dispatched
 	 * 
      * @param request SIP request
 	 */
 	public void postSipRequest(SipRequest request) {
-		buffer.addObject(request);
+		DispatchTask task = new DispatchTask(request);
+		queueDepth.incrementAndGet();
+		synchronized(dialogs) {
+			LinkedList<DispatchTask> pending = dialogs.get(task.dialogId);
+			if (pending != null) {
+				// A request of the same dialog is being dispatched: keep the order
+				pending.addLast(task);
+				return;
+			}
+			dialogs.put(task.dialogId, new LinkedList<DispatchTask>());
+		}
+		execute(task);
 	}
-    
+
 	/**
-	 * Background processing
+	 * Returns the number of requests waiting to be dispatched
+	 * 
+	 * @return Number of requests
 	 */
-	public void run() {
-		if (logger.isActivated()) {
-			logger.info("Start background processing");
+	public int getQueueDepth() {
+		return queueDepth.get();
+	}
+
+	/**
+	 * Returns the number of requests dispatched for a given method
+	 * 
+	 * @param method SIP method
+	 * @return Number of requests
+	 */
+	public long getDispatchCount(String method) {
+		DispatchStatistics stats = statistics.get(method);
+		return (stats != null) ? stats.getCount() : 0;
+	}
+
+	/**
+	 * Returns the average time between the reception and the dispatch of a request
+	 * 
+	 * @param method SIP method
+	 * @return Latency in milliseconds
+	 */
+	public long getAverageDispatchLatency(String method) {
+		DispatchStatistics stats = statistics.get(method);
+		return (stats != null) ? stats.getAverageLatency() : 0;
+	}
+
+	/**
+	 * Returns the maximum time between the reception and the dispatch of a request
+	 * 
+	 * @param method SIP method
+	 * @return Latency in milliseconds
+	 */
+	public long getMaxDispatchLatency(String method) {
+		DispatchStatistics stats = statistics.get(method);
+		return (stats != null) ? stats.getMaxLatency() : 0;
+	}
+
+	/**
+	 * Execute a task in the thread pool
+	 * 
+	 * @param task Dispatch task
+	 */
+	private void execute(DispatchTask task) {
+		try {
+			threadPool.execute(task);
+		} catch(RejectedExecutionException e) {
+			if (logger.isActivated()) {
+				logger.warn("Dispatcher terminated: " + task.request.getMethod() + " request ignored");
+			}
 		}
-		SipRequest request = null; 
-		while((request = (SipRequest)buffer.getObject()) != null) {
-			try {
-				// Dispatch the received SIP request
-				dispatch(request);
-			} catch(Exception e) {
-				if (logger.isActivated()) {
-					logger.error("Unexpected exception", e);
+	}
+
+	/**
+	 * Dispatch a request and then the next pending request of its dialog
+	 * 
+	 * @param task Dispatch task
+	 */
+	private void process(DispatchTask task) {
+		queueDepth.decrementAndGet();
+		updateStatistics(task);
+		try {
+			// Dispatch the received SIP request
+			dispatch(task.request);
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Unexpected exception", e);
+			}
+		} finally {
+			DispatchTask next = null;
+			synchronized(dialogs) {
+				LinkedList<DispatchTask> pending = dialogs.get(task.dialogId);
+				if (pending != null) {
+					next = pending.poll();
+					if (next == null) {
+						dialogs.remove(task.dialogId);
+					}
 				}
 			}
+			if (next != null) {
+				execute(next);
+			}
 		}
-		if (logger.isActivated()) {
-			logger.info("End of background processing");
+	}
+
+	/**
+	 * Update the dispatch latency statistics
+	 * 
+	 * @param task Dispatch task
+	 */
+	private void updateStatistics(DispatchTask task) {
+		String method = task.request.getMethod();
+		DispatchStatistics stats = statistics.get(method);
+		if (stats == null) {
+			DispatchStatistics created = new DispatchStatistics();
+			stats = statistics.putIfAbsent(method, created);
+			if (stats == null) {
+				stats = created;
+			}
+		}
+		stats.add(System.currentTimeMillis() - task.timestamp);
+	}
+
+	/**
+	 * Returns the dispatch priority of a request
+	 * 
+	 * @param method SIP method
+	 * @return Priority
+	 */
+	private static int getPriority(String method) {
+		if (method.equals(Request.INVITE) ||
+				method.equals(Request.BYE) ||
+					method.equals(Request.CANCEL) ||
+						method.equals(Request.ACK)) {
+			return PRIORITY_HIGH;
+		} else
+		if (method.equals(Request.OPTIONS) ||
+				method.equals(Request.NOTIFY) ||
+					method.equals(Request.SUBSCRIBE)) {
+			return PRIORITY_LOW;
+		} else {
+			return PRIORITY_NORMAL;
 		}
 	}
     
@@ -131,7 +331,7 @@ public class ImsServiceDispatcher extends Thread {
      * 
      * @param request SIP request
      */
-    private void dispatch(SipRequest request) {
+    private void dispatch(final SipRequest request) {
 		if (logger.isActivated()) {
 			logger.debug("Receive " + request.getMethod() + " request");
 		}
@@ -231,7 +431,12 @@ public class ImsServiceDispatcher extends Thread {
 	    	// INVITE received
 	    	if (session != null) {
 	    		// Subsequent request received
-	    		session.receiveReInvite(request);
+	    		final ImsServiceSession reInvitedSession = session;
+	    		session.postEvent(new Runnable() {
+	    			public void run() {
+	    				reInvitedSession.receiveReInvite(request);
+	    			}
+	    		});
 	    		return;
 	    	}
 	    	
@@ -469,7 +674,12 @@ public class ImsServiceDispatcher extends Thread {
 			
 			// Route request to session
         	if (session != null) {
-        		session.receiveBye(request);
+        		final ImsServiceSession byeSession = session;
+        		session.postEvent(new Runnable() {
+        			public void run() {
+        				byeSession.receiveBye(request);
+        			}
+        		});
         	}
         	
 			// Send a 200 OK response
@@ -490,7 +700,12 @@ public class ImsServiceDispatcher extends Thread {
 			
 			// Route request to session
 	    	if (session != null) {
-	    		session.receiveCancel(request);
+	    		final ImsServiceSession cancelledSession = session;
+	    		session.postEvent(new Runnable() {
+	    			public void run() {
+	    				cancelledSession.receiveCancel(request);
+	    			}
+	    		});
 	    	}
 	    	
 			// Send a 200 OK
@@ -509,7 +724,12 @@ public class ImsServiceDispatcher extends Thread {
     	if (request.getMethod().equals(Request.UPDATE)) {
 	        // UPDATE received
         	if (session != null) {
-        		session.receiveUpdate(request);
+        		final ImsServiceSession updatedSession = session;
+        		session.postEvent(new Runnable() {
+        			public void run() {
+        				updatedSession.receiveUpdate(request);
+        			}
+        		});
         	}
 		} else {
 			// Unknown request received
@@ -646,4 +866,113 @@ public class ImsServiceDispatcher extends Thread {
     		}
     	}
     }
+
+	/**
+	 * Task dispatching a received request
+	 */
+	private class DispatchTask implements Runnable, Comparable<DispatchTask> {
+		/**
+		 * SIP request
+		 */
+		private SipRequest request;
+
+		/**
+		 * Dialog ID
+		 */
+		private String dialogId;
+
+		/**
+		 * Priority
+		 */
+		private int priority;
+
+		/**
+		 * Sequence number
+		 */
+		private long seq;
+
+		/**
+		 * Reception timestamp
+		 */
+		private long timestamp;
+
+		/**
+		 * Constructor
+		 * 
+		 * @param request SIP request
+		 */
+		public DispatchTask(SipRequest request) {
+			this.request = request;
+			String callId = request.getCallId();
+			this.dialogId = (callId != null) ? callId : "";
+			this.priority = getPriority(request.getMethod());
+			this.seq = sequence.getAndIncrement();
+			this.timestamp = System.currentTimeMillis();
+		}
+
+		/**
+		 * Background processing
+		 */
+		public void run() {
+			process(this);
+		}
+
+		/**
+		 * Compare the priority then the order of arrival of two tasks
+		 * 
+		 * @param another Another task
+		 * @return Comparison result
+		 */
+		public int compareTo(DispatchTask another) {
+			if (priority != another.priority) {
+				return (priority < another.priority) ? -1 : 1;
+			}
+			return (seq < another.seq) ? -1 : ((seq == another.seq) ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Dispatch latency statistics of a SIP method
+	 */
+	private static class DispatchStatistics {
+		/**
+		 * Number of dispatched requests
+		 */
+		private long count = 0;
+
+		/**
+		 * Cumulated latency
+		 */
+		private long totalLatency = 0;
+
+		/**
+		 * Max latency
+		 */
+		private long maxLatency = 0;
+
+		/**
+		 * Add the latency of a dispatched request
+		 * 
+		 * @param latency Latency in milliseconds
+		 */
+		public synchronized void add(long latency) {
+			count++;
+			totalLatency += latency;
+			if (latency > maxLatency) {
+				maxLatency = latency;
+			}
+		}
+
+		public synchronized long getCount() {
+			return count;
+		}
+
+		public synchronized long getAverageLatency() {
+			return (count > 0) ? (totalLatency / count) : 0;
+		}
+
+		public synchronized long getMaxLatency() {
+			return maxLatency;
+		}
+	}
 }
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.service;
 
 import java.util.Vector;
+import java.util.concurrent.ScheduledFuture;
 
 import javax2.sip.header.ContactHeader;
 
@@ -28,14 +29,23 @@ import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipMessage;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
  * IMS service session
+ * <p>
+ * By default the session is processed in its own thread, which blocks while
+ * waiting the SIP responses and the user answer. An event-driven session (see
+ * {@link #isEventDriven()}) has no thread: its start, the SIP responses, the
+ * requests received in its dialog and its timers are events processed one at
+ * a time in the shared pool of the blocking tasks.
  * 
  * @author jexa7410
  */
@@ -125,6 +135,39 @@ public abstract class ImsServiceSession extends Thread {
      */
     private boolean sessionTerminatedByRemote = false;
 
+    /**
+     * Events of the session (event-driven session only)
+     */
+    private SessionEventQueue events = new SessionEventQueue();
+
+    /**
+     * Is the invitation answer waited in background (event-driven session only)
+     */
+    private boolean waitingAnswer = false;
+
+    /**
+     * End of the ringing period (event-driven session only)
+     */
+    private ScheduledFuture<?> ringingTimer = null;
+
+    /**
+     * Processing of the invitation answer (event-driven session only)
+     */
+    private Runnable answerEvent = new Runnable() {
+    	public void run() {
+    		if (!waitingAnswer) {
+    			// Answer already processed
+    			return;
+    		}
+    		waitingAnswer = false;
+    		if (ringingTimer != null) {
+    			ringingTimer.cancel(false);
+    			ringingTimer = null;
+    		}
+    		handleInvitationAnswer(invitationStatus);
+    	}
+    };
+
     /**
      * The logger
      */
@@ -281,7 +324,36 @@ public abstract class ImsServiceSession extends Thread {
 		imsService.addSession(this);
 		
 		// Start the session
-		start();
+		if (isEventDriven()) {
+			postEvent(this);
+		} else {
+			start();
+		}
+	}
+
+	/**
+	 * Is the session event-driven instead of processed in its own thread
+	 * 
+	 * @return Boolean
+	 */
+	public boolean isEventDriven() {
+		return false;
+	}
+
+	/**
+	 * Post an event of the session. The events of an event-driven session are
+	 * processed one at a time, in their order, in the shared pool of the
+	 * blocking tasks. The event of another session is processed immediately.
+	 * 
+	 * @param event Event
+	 */
+	public void postEvent(Runnable event) {
+		if (!isEventDriven()) {
+			event.run();
+			return;
+		}
+
+		events.post(event);
 	}
 	
 	/**
@@ -385,9 +457,7 @@ public abstract class ImsServiceSession extends Thread {
 		invitationStatus = INVITATION_REJECTED;
 
 		// Unblock semaphore
-		synchronized(waitUserAnswer) {
-			waitUserAnswer.notifyAll();
-		}
+		notifyInvitationAnswer();
 
 		// Decline the invitation
 		sendErrorResponse(getDialogPath().getInvite(), getDialogPath().getLocalTag(), code);
@@ -406,9 +476,7 @@ public abstract class ImsServiceSession extends Thread {
 		invitationStatus = INVITATION_ACCEPTED;
 
 		// Unblock semaphore
-		synchronized(waitUserAnswer) {
-			waitUserAnswer.notifyAll();
-		}
+		notifyInvitationAnswer();
 	}
 
 	/**
@@ -436,6 +504,48 @@ public abstract class ImsServiceSession extends Thread {
 		
 		return invitationStatus;
 	}
+
+	/**
+	 * Wait session invitation answer without blocking (event-driven session
+	 * only): the answer, or INVITATION_NOT_ANSWERED at the end of the ringing
+	 * period, is passed to {@link #handleInvitationAnswer(int)} in an event
+	 */
+	protected void waitInvitationAnswerAsync() {
+		if (invitationStatus != INVITATION_NOT_ANSWERED) {
+			handleInvitationAnswer(invitationStatus);
+			return;
+		}
+
+		if (logger.isActivated()) {
+			logger.debug("Wait session invitation answer");
+		}
+		waitingAnswer = true;
+		ringingTimer = CoreExecutor.schedule(new Runnable() {
+			public void run() {
+				postEvent(answerEvent);
+			}
+		}, ringingPeriod * 1000L);
+	}
+
+	/**
+	 * Handle the session invitation answer waited in background
+	 * 
+	 * @param answer Answer
+	 */
+	protected void handleInvitationAnswer(int answer) {
+	}
+
+	/**
+	 * Notify the invitation answer to the session waiting it
+	 */
+	protected void notifyInvitationAnswer() {
+		synchronized(waitUserAnswer) {
+			waitUserAnswer.notifyAll();
+		}
+		if (isEventDriven()) {
+			postEvent(answerEvent);
+		}
+	}
 	
 	/**
 	 * Interrupt session
@@ -447,9 +557,7 @@ public abstract class ImsServiceSession extends Thread {
 		
 		try {
 			// Unblock semaphore
-			synchronized(waitUserAnswer) {
-				waitUserAnswer.notifyAll();
-			}
+			notifyInvitationAnswer();
 			
 			if (!isSessionInterrupted()) {
 				// Interrupt thread
@@ -520,9 +628,7 @@ public abstract class ImsServiceSession extends Thread {
     	}
 
 		// Unblock semaphore (used for terminating side only)
-		synchronized(waitUserAnswer) {
-			waitUserAnswer.notifyAll();
-		}
+		notifyInvitationAnswer();
 
 		try {
 			// Terminate the session
@@ -620,9 +726,7 @@ public abstract class ImsServiceSession extends Thread {
         invitationStatus = ImsServiceSession.INVITATION_CANCELED;
 
         // Unblock semaphore
-        synchronized(waitUserAnswer) {
-            waitUserAnswer.notifyAll();
-        }
+        notifyInvitationAnswer();
 
 		// Notify listeners
     	for(int i=0; i < getListeners().size(); i++) {
@@ -891,10 +995,59 @@ public abstract class ImsServiceSession extends Thread {
      * @throws SipException
      */
     public void sendInvite(SipRequest invite) throws SipException {
+        if (isEventDriven()) {
+            // Send INVITE request, the response is analyzed in an event
+            sendSipMessageAsync(invite, getResponseTimeout(), new SipTransactionListener() {
+                public void transactionCompleted(SipTransactionContext ctx) {
+                    handleInviteResponse(ctx);
+                }
+
+                public void transactionFailed(SipException e) {
+                    handleError(new ImsServiceError(ImsServiceError.UNEXPECTED_EXCEPTION,
+                            e.getMessage()));
+                }
+            });
+            return;
+        }
+
         // Send INVITE request
         SipTransactionContext ctx = getImsService().getImsModule().getSipManager().sendSipMessageAndWait(invite, getResponseTimeout());
 
         // Analyze the received response 
+        handleInviteResponse(ctx);
+    }
+
+    /**
+     * Send a SIP message without blocking (event-driven session only): the
+     * received response or ACK, or the timeout, is passed to the listener in
+     * an event
+     *
+     * @param message SIP request or response
+     * @param timeout Timeout (in seconds)
+     * @param listener Transaction listener
+     * @throws SipException
+     */
+    public void sendSipMessageAsync(SipMessage message, int timeout, SipTransactionListener listener) throws SipException {
+        PendingTransaction pending = new PendingTransaction(events, listener);
+        SipManager sipManager = getImsService().getImsModule().getSipManager();
+        SipTransactionContext ctx;
+        if (message instanceof SipRequest) {
+            ctx = sipManager.sendSipRequestAsync((SipRequest)message, pending);
+        } else {
+            ctx = sipManager.sendSipResponseAsync((SipResponse)message, pending);
+        }
+        if (ctx == null) {
+            throw new SipException("Can't send SIP message");
+        }
+        pending.startTimer(ctx, timeout);
+    }
+
+    /**
+     * Handle the response received for the INVITE
+     *
+     * @param ctx Transaction context
+     */
+    public void handleInviteResponse(SipTransactionContext ctx) {
         if (ctx.isSipResponse()) {
             // A response has been received
             if (ctx.getStatusCode() == 200) {
@@ -1220,5 +1373,4 @@ public abstract class ImsServiceSession extends Thread {
     public String buildReInviteSdpResponse(SipRequest ReInvite, int serviceContext){
     	return null;
     }
-  
 }
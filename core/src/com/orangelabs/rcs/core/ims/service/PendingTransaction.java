@@ -0,0 +1,142 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service;
+
+import java.util.concurrent.ScheduledFuture;
+
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
+import com.orangelabs.rcs.utils.CoreExecutor;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * SIP transaction sent without blocking by an event-driven session: the first
+ * of the response and the timeout is posted as an event of the session
+ */
+class PendingTransaction implements SipTransactionListener, Runnable {
+	/**
+	 * Events of the session
+	 */
+	private SessionEventQueue events;
+
+	/**
+	 * Listener of the session
+	 */
+	private SipTransactionListener listener;
+
+	/**
+	 * Transaction context, passed to the listener on timeout
+	 */
+	private SipTransactionContext ctx = null;
+
+	/**
+	 * Timeout timer
+	 */
+	private ScheduledFuture<?> timer = null;
+
+	/**
+	 * Is the transaction completed
+	 */
+	private boolean completed = false;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param events Events of the session
+	 * @param listener Listener of the session
+	 */
+	PendingTransaction(SessionEventQueue events, SipTransactionListener listener) {
+		this.events = events;
+		this.listener = listener;
+	}
+
+	/**
+	 * Start the timeout timer, unless the transaction is already completed
+	 *
+	 * @param ctx Transaction context
+	 * @param timeout Timeout (in seconds)
+	 */
+	synchronized void startTimer(SipTransactionContext ctx, int timeout) {
+		if (!completed) {
+			this.ctx = ctx;
+			timer = CoreExecutor.schedule(this, timeout * 1000L);
+		}
+	}
+
+	/**
+	 * Complete the transaction
+	 *
+	 * @return Boolean, false if it was already completed
+	 */
+	private synchronized boolean complete() {
+		if (completed) {
+			return false;
+		}
+		completed = true;
+		if (timer != null) {
+			timer.cancel(false);
+		}
+		return true;
+	}
+
+	/**
+	 * Post the completion of the transaction
+	 *
+	 * @param ctx Transaction context
+	 */
+	private void postCompleted(final SipTransactionContext ctx) {
+		events.post(new Runnable() {
+			public void run() {
+				listener.transactionCompleted(ctx);
+			}
+		});
+	}
+
+	public void transactionCompleted(SipTransactionContext ctx) {
+		if (complete()) {
+			postCompleted(ctx);
+		}
+	}
+
+	public void transactionFailed(final SipException e) {
+		if (complete()) {
+			events.post(new Runnable() {
+				public void run() {
+					listener.transactionFailed(e);
+				}
+			});
+		}
+	}
+
+	public void run() {
+		// Timeout: the context has no received message
+		if (complete()) {
+			if (logger.isActivated()) {
+				logger.debug("No response received before the timeout");
+			}
+			postCompleted(ctx);
+		}
+	}
+}
@@ -0,0 +1,146 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service;
+
+import com.orangelabs.rcs.core.ims.ImsModule;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipDialogPath;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Transaction listener sending a request asynchronously and answering a
+ * 407 Proxy Authentication Required challenge by sending the request again
+ * with the right token. Any other response is passed to the subclass.
+ */
+public abstract class SessionAuthenticationListener implements SipTransactionListener {
+	/**
+	 * IMS module
+	 */
+	protected ImsModule imsModule;
+
+	/**
+	 * Dialog path
+	 */
+	protected SipDialogPath dialogPath;
+
+	/**
+	 * Authentication agent
+	 */
+	protected SessionAuthenticationAgent authenticationAgent;
+
+	/**
+	 * Challenge already answered
+	 */
+	private boolean challenged = false;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 * 
+	 * @param imsModule IMS module
+	 * @param dialogPath Dialog path
+	 */
+	public SessionAuthenticationListener(ImsModule imsModule, SipDialogPath dialogPath) {
+		this.imsModule = imsModule;
+		this.dialogPath = dialogPath;
+		this.authenticationAgent = new SessionAuthenticationAgent(imsModule);
+	}
+
+	/**
+	 * Send the first request of the transaction
+	 * 
+	 * @throws SipException
+	 */
+	public void send() throws SipException {
+		imsModule.getSipManager().sendSipRequestAsync(createRequest(), this);
+	}
+
+	/**
+	 * A final response or a timeout has been received for the transaction
+	 * 
+	 * @param ctx Transaction context
+	 */
+	public void transactionCompleted(SipTransactionContext ctx) {
+		if ((ctx.getStatusCode() == 407) && !challenged) {
+			// 407 Proxy Authentication Required: only answered once
+			challenged = true;
+			if (logger.isActivated()) {
+				logger.info("407 response received");
+			}
+			try {
+				// Set the Proxy-Authorization header
+				authenticationAgent.readProxyAuthenticateHeader(ctx.getSipResponse());
+
+				// Increment the Cseq number of the dialog path
+				dialogPath.incrementCseq();
+
+				// Create a second request with the right token
+				SipRequest request = createRequest();
+				authenticationAgent.setProxyAuthorizationHeader(request);
+				imsModule.getSipManager().sendSipRequestAsync(request, this);
+			} catch(Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Can't send the authenticated request", e);
+				}
+				handleFailure(e);
+			}
+		} else {
+			handleResponse(ctx);
+		}
+	}
+
+	/**
+	 * The transaction has failed: no final response (IO exception or
+	 * termination) or the received response could not be processed
+	 * 
+	 * @param e Exception
+	 */
+	public void transactionFailed(SipException e) {
+		handleFailure(e);
+	}
+
+	/**
+	 * Create the request from the current state of the dialog path
+	 * 
+	 * @return SIP request
+	 * @throws SipException
+	 */
+	protected abstract SipRequest createRequest() throws SipException;
+
+	/**
+	 * Handle the final response or the timeout of the transaction
+	 * 
+	 * @param ctx Transaction context
+	 */
+	protected abstract void handleResponse(SipTransactionContext ctx);
+
+	/**
+	 * Handle a failure of the transaction
+	 * 
+	 * @param e Exception
+	 */
+	protected abstract void handleFailure(Exception e);
+}
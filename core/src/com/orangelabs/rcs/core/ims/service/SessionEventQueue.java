@@ -0,0 +1,87 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service;
+
+import java.util.LinkedList;
+
+import com.orangelabs.rcs.utils.CoreExecutor;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Events of an event-driven session, processed one at a time, in their
+ * order, in the shared pool of the blocking tasks
+ */
+class SessionEventQueue {
+	/**
+	 * Events waiting to be processed
+	 */
+	private LinkedList<Runnable> events = new LinkedList<Runnable>();
+
+	/**
+	 * Is an event being processed
+	 */
+	private boolean processingEvent = false;
+
+	/**
+	 * Processing of the waiting events, in their order
+	 */
+	private Runnable eventProcessor = new Runnable() {
+		public void run() {
+			while (true) {
+				Runnable event;
+				synchronized(events) {
+					event = events.poll();
+					if (event == null) {
+						processingEvent = false;
+						return;
+					}
+				}
+				try {
+					event.run();
+				} catch(RuntimeException e) {
+					if (logger.isActivated()) {
+						logger.error("Session event has failed", e);
+					}
+				}
+			}
+		}
+	};
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Post an event, processed after the events already posted
+	 *
+	 * @param event Event
+	 */
+	void post(Runnable event) {
+		synchronized(events) {
+			events.add(event);
+			if (processingEvent) {
+				// Processed after the current event
+				return;
+			}
+			processingEvent = true;
+		}
+		CoreExecutor.executeBlocking(eventProcessor);
+	}
+}
@@ -34,6 +34,7 @@ import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
@@ -121,12 +122,11 @@ public class CapabilityService extends ImsService implements AddressBookEventLis
 		pollingManager.start();
 
 		// Force a first capability check
-		Thread t = new Thread() {
+		CoreExecutor.executeBlocking(new Runnable() {
 			public void run() {
 				handleAddressBookHasChanged();
 			}
-		};
-		t.start();
+		});
 	}
 
     /**
@@ -38,9 +38,10 @@ import com.orangelabs.rcs.utils.logger.Logger;
  */
 public class OptionsManager implements DiscoveryManager {
 	/**
-	 * Max number of threads for background processing
+	 * Max number of threads for background processing: OPTIONS requests are
+	 * sent asynchronously, so the threads only build requests and process responses
 	 */
-	private final static int MAX_PROCESSING_THREADS = 15;
+	private final static int MAX_PROCESSING_THREADS = 2;
 	
     /**
      * IMS module
@@ -104,7 +105,7 @@ public class OptionsManager implements DiscoveryManager {
 		try {
 			boolean richcall = imsModule.getCallManager().isRichcallSupportedWith(contact);
 			boolean ipcall = imsModule.getIPCallService().isCallConnectedWith(contact);
-	    	OptionsRequestTask task = new OptionsRequestTask(imsModule, contact, CapabilityUtils.getSupportedFeatureTags(richcall, ipcall));
+	    	OptionsRequestTask task = new OptionsRequestTask(imsModule, contact, CapabilityUtils.getSupportedFeatureTags(richcall, ipcall), threadPool);
 	    	threadPool.submit(task);
 	    	return true;
 		} catch(Exception e) {
@@ -17,20 +17,26 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.capability;
 
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipDialogPath;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.orangelabs.rcs.core.ims.service.ContactInfo;
-import com.orangelabs.rcs.core.ims.service.SessionAuthenticationAgent;
+import com.orangelabs.rcs.core.ims.service.SessionAuthenticationListener;
 import com.orangelabs.rcs.provider.eab.ContactsManager;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * Options request task
+ * Options request task. The OPTIONS request is sent asynchronously: the task
+ * does not block its thread while waiting the response, which is processed
+ * on the given executor.
  * 
  * @author Jean-Marc AUFFRET
  */
@@ -50,16 +56,16 @@ public class OptionsRequestTask implements Runnable {
      */
     private String[] featureTags;
     
+    /**
+     * Executor processing the response
+     */
+    private Executor executor;
+    
     /**
      * Dialog path
      */
     private SipDialogPath dialogPath = null;
     
-    /**
-	 * Authentication agent
-	 */
-	private SessionAuthenticationAgent authenticationAgent;
-
 	/**
      * The logger
      */
@@ -71,12 +77,13 @@ public class OptionsRequestTask implements Runnable {
      * @param parent IMS module
    	 * @param contact Remote contact
    	 * @param featureTags Feature tags
+   	 * @param executor Executor processing the response
 	 */
-	public OptionsRequestTask(ImsModule parent, String contact, String[] featureTags) {
+	public OptionsRequestTask(ImsModule parent, String contact, String[] featureTags, Executor executor) {
         this.imsModule = parent;
         this.contact = contact;
         this.featureTags = featureTags;
-		this.authenticationAgent = new SessionAuthenticationAgent(imsModule);
+        this.executor = executor;
 	}
 	
 	/**
@@ -113,14 +120,36 @@ public class OptionsRequestTask implements Runnable {
 					contactUri,
 					imsModule.getSipManager().getSipStack().getServiceRoutePath());        	
         	
-            // Create OPTIONS request
+            // Send OPTIONS request, the 407 challenge is answered by the listener
         	if (logger.isActivated()) {
         		logger.debug("Send first OPTIONS");
         	}
-	        SipRequest options = SipMessageFactory.createOptions(dialogPath, featureTags);
-	        
-	        // Send OPTIONS request
-	    	sendOptions(options);
+        	new SessionAuthenticationListener(imsModule, dialogPath) {
+				protected SipRequest createRequest() throws SipException {
+					return SipMessageFactory.createOptions(dialogPath, featureTags);
+				}
+
+				protected void handleResponse(final SipTransactionContext ctx) {
+					try {
+						executor.execute(new Runnable() {
+							public void run() {
+								analyzeResponse(ctx);
+							}
+						});
+					} catch(RejectedExecutionException e) {
+				    	if (logger.isActivated()) {
+				    		logger.debug("Manager stopped, OPTIONS response ignored");
+				    	}
+					}
+				}
+
+				protected void handleFailure(Exception e) {
+		        	if (logger.isActivated()) {
+		        		logger.error("OPTIONS request has failed", e);
+		        	}
+		        	handleError(new CapabilityError(CapabilityError.UNEXPECTED_EXCEPTION, e.getMessage()));
+				}
+			}.send();
         } catch(Exception e) {
         	if (logger.isActivated()) {
         		logger.error("OPTIONS request has failed", e);
@@ -130,30 +159,17 @@ public class OptionsRequestTask implements Runnable {
     }
     
 	/**
-	 * Send OPTIONS message
+	 * Analyze the response of the OPTIONS request
 	 * 
-	 * @param options SIP OPTIONS
-	 * @throws Exception
+	 * @param ctx SIP transaction context
 	 */
-	private void sendOptions(SipRequest options) throws Exception {
-        if (logger.isActivated()) {
-        	logger.info("Send OPTIONS");
-        }
-
-        // Send OPTIONS request
-        SipTransactionContext ctx = imsModule.getSipManager().sendSipMessageAndWait(options);
-
-        // Analyze the received response 
+	private void analyzeResponse(SipTransactionContext ctx) {
         if (ctx.isSipResponse()) {
         	// A response has been received
             if (ctx.getStatusCode() == 200) {
             	// 200 OK
     			handle200OK(ctx);
             } else
-            if (ctx.getStatusCode() == 407) {
-            	// 407 Proxy Authentication Required
-            	handle407Authentication(ctx);
-            } else
             if ((ctx.getStatusCode() == 480) || (ctx.getStatusCode() == 408)) {
             	// User not registered
             	handleUserNotRegistered(ctx);
@@ -251,39 +267,6 @@ public class OptionsRequestTask implements Runnable {
     	imsModule.getCore().getListener().handleCapabilitiesNotification(contact, capabilities);
 	}	
 	
-	/**
-	 * Handle 407 response 
-	 * 
-	 * @param ctx SIP transaction context
-	 * @throws Exception
-	 */
-	private void handle407Authentication(SipTransactionContext ctx) throws Exception {
-        // 407 response received
-    	if (logger.isActivated()) {
-    		logger.info("407 response received");
-    	}
-
-    	SipResponse resp = ctx.getSipResponse();
-
-    	// Set the Proxy-Authorization header
-    	authenticationAgent.readProxyAuthenticateHeader(resp);
-
-        // Increment the Cseq number of the dialog path
-        dialogPath.incrementCseq();
-
-        // Create a second OPTIONS request with the right token
-        if (logger.isActivated()) {
-        	logger.info("Send second OPTIONS");
-        }
-        SipRequest options = SipMessageFactory.createOptions(dialogPath, featureTags);
-        
-        // Set the Authorization header
-        authenticationAgent.setProxyAuthorizationHeader(options);
-        
-        // Send OPTIONS request
-    	sendOptions(options);
-	}		
-	
 	/**
 	 * Handle error response 
 	 * 
@@ -0,0 +1,119 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im;
+
+import java.util.List;
+
+import com.orangelabs.rcs.core.ims.service.ImsServiceSession;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
+import com.orangelabs.rcs.core.ims.service.im.chat.OneOneChatSession;
+import com.orangelabs.rcs.core.ims.service.im.filetransfer.FileSharingSession;
+import com.orangelabs.rcs.utils.PhoneUtils;
+
+/**
+ * Indexes of the sessions of the IM service by type and by remote contact.
+ * The indexes are updated when a session is added or removed and hold
+ * read-only lists which are replaced at each change: a lookup returns the
+ * current list without lock nor copy, whatever the number of sessions.
+ */
+public class ImSessionRegistry {
+	/**
+	 * Chat sessions, the one-to-one ones being indexed by contact number
+	 */
+	private SessionIndex<ChatSession> chatSessions = new SessionIndex<ChatSession>();
+
+	/**
+	 * File transfer sessions
+	 */
+	private SessionIndex<FileSharingSession> ftSessions = new SessionIndex<FileSharingSession>();
+
+	/**
+	 * Add a session to the indexes
+	 *
+	 * @param session Session
+	 */
+	public synchronized void add(ImsServiceSession session) {
+		String number = PhoneUtils.extractNumberFromUri(session.getRemoteContact());
+		if (session instanceof ChatSession) {
+			chatSessions.add(session.getSessionID(), (session instanceof OneOneChatSession) ? number : null,
+					(ChatSession)session);
+		} else
+		if (session instanceof FileSharingSession) {
+			ftSessions.add(session.getSessionID(), number, (FileSharingSession)session);
+		}
+	}
+
+	/**
+	 * Remove a session from the indexes
+	 *
+	 * @param session Session
+	 */
+	public void remove(ImsServiceSession session) {
+		remove(session.getSessionID());
+	}
+
+	/**
+	 * Remove a session from the indexes
+	 *
+	 * @param id Session ID
+	 */
+	public synchronized void remove(String id) {
+		if (!chatSessions.remove(id)) {
+			ftSessions.remove(id);
+		}
+	}
+
+	/**
+	 * Returns the chat sessions
+	 *
+	 * @return Read-only list of sessions
+	 */
+	public List<ChatSession> getChatSessions() {
+		return chatSessions.getSessions();
+	}
+
+	/**
+	 * Returns the one-to-one chat sessions with a contact
+	 *
+	 * @param contact Contact
+	 * @return Read-only list of sessions
+	 */
+	public List<ChatSession> getOneOneChatSessions(String contact) {
+		return chatSessions.getSessions(PhoneUtils.extractNumberFromUri(contact));
+	}
+
+	/**
+	 * Returns the file transfer sessions
+	 *
+	 * @return Read-only list of sessions
+	 */
+	public List<FileSharingSession> getFileTransferSessions() {
+		return ftSessions.getSessions();
+	}
+
+	/**
+	 * Returns the file transfer sessions with a contact
+	 *
+	 * @param contact Contact
+	 * @return Read-only list of sessions
+	 */
+	public List<FileSharingSession> getFileTransferSessions(String contact) {
+		return ftSessions.getSessions(PhoneUtils.extractNumberFromUri(contact));
+	}
+}
@@ -18,8 +18,9 @@
 
 package com.orangelabs.rcs.core.ims.service.im;
 
-import java.util.Enumeration;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import javax2.sip.header.ContactHeader;
@@ -44,7 +45,6 @@ import com.orangelabs.rcs.core.ims.service.im.chat.GroupChatInfo;
 import com.orangelabs.rcs.core.ims.service.im.chat.GroupChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.ListOfParticipant;
-import com.orangelabs.rcs.core.ims.service.im.chat.OneOneChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.OriginatingAdhocGroupChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.OriginatingOne2OneChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.RejoinGroupChatSession;
@@ -115,6 +115,11 @@ public class InstantMessagingService extends ImsService {
 	 */
 	private StoreAndForwardManager storeAndFwdMgr = new StoreAndForwardManager(this);
 
+	/**
+	 * Indexes of the sessions
+	 */
+	private ImSessionRegistry registry = new ImSessionRegistry();
+
 	/**
      * The logger
      */
@@ -191,42 +196,52 @@ public class InstantMessagingService extends ImsService {
 	}
 
     /**
-     * Returns IM sessions
+     * Add a session
      * 
-     * @return List of sessions
+     * @param session Session
      */
-	public Vector<ChatSession> getImSessions() {
-		// Search all IM sessions
-		Vector<ChatSession> result = new Vector<ChatSession>();
-		Enumeration<ImsServiceSession> list = getSessions();
-		while(list.hasMoreElements()) {
-			ImsServiceSession session = list.nextElement();
-			if (session instanceof ChatSession) {
-				result.add((ChatSession)session);
-			}
-		}
+	public void addSession(ImsServiceSession session) {
+		super.addSession(session);
+		registry.add(session);
+	}
 
-		return result;
+    /**
+     * Remove a session
+     * 
+     * @param session Session
+     */
+	public void removeSession(ImsServiceSession session) {
+		super.removeSession(session);
+		registry.remove(session);
+	}
+
+    /**
+     * Remove a session
+     * 
+     * @param id Session ID
+     */
+	public void removeSession(String id) {
+		super.removeSession(id);
+		registry.remove(id);
+	}
+
+    /**
+     * Returns IM sessions
+     * 
+     * @return Read-only list of sessions
+     */
+	public List<ChatSession> getImSessions() {
+		return registry.getChatSessions();
     }
 
 	/**
      * Returns IM sessions with a given contact
      * 
      * @param contact Contact
-     * @return List of sessions
+     * @return Read-only list of sessions
      */
-	public Vector<ChatSession> getImSessionsWith(String contact) {
-		// Search all IM sessions
-		Vector<ChatSession> result = new Vector<ChatSession>();
-		Enumeration<ImsServiceSession> list = getSessions();
-		while(list.hasMoreElements()) {
-			ImsServiceSession session = list.nextElement();
-			if ((session instanceof OneOneChatSession) && PhoneUtils.compareNumbers(session.getRemoteContact(), contact)) {
-				result.add((ChatSession)session);
-			}
-		}
-
-		return result;
+	public List<ChatSession> getImSessionsWith(String contact) {
+		return registry.getOneOneChatSessions(contact);
     }
 	
 	/**
@@ -238,11 +253,9 @@ public class InstantMessagingService extends ImsService {
 	public Vector<ChatSession> getImSessionsWith(List<String> contacts) {
 		// Search all IM sessions
 		Vector<ChatSession> result = new Vector<ChatSession>();
-		Enumeration<ImsServiceSession> list = getSessions();
-		loopThroughSession:while(list.hasMoreElements()) {
-			ImsServiceSession session = list.nextElement();
+		loopThroughSession:for(ChatSession session : registry.getChatSessions()) {
 			if (session instanceof GroupChatSession) {
-				List<String> connectedParticipants = ((GroupChatSession) session).getConnectedParticipants().getList();
+				Set<String> connectedParticipants = new HashSet<String>(((GroupChatSession) session).getConnectedParticipants().getList());
 				
 				if(contacts.size() != connectedParticipants.size())
 				{
@@ -256,7 +269,7 @@ public class InstantMessagingService extends ImsService {
 						continue loopThroughSession;
 					}
 				}
-				result.add((ChatSession)session);
+				result.add(session);
 			}
 		}
 
@@ -267,37 +280,19 @@ public class InstantMessagingService extends ImsService {
      * Returns file transfer sessions with a given contact
      * 
      * @param contact Contact
-     * @return List of sessions
+     * @return Read-only list of sessions
      */
-	public Vector<FileSharingSession> getFileTransferSessionsWith(String contact) {
-		Vector<FileSharingSession> result = new Vector<FileSharingSession>();
-		Enumeration<ImsServiceSession> list = getSessions();
-		while(list.hasMoreElements()) {
-			ImsServiceSession session = list.nextElement();
-			if ((session instanceof FileSharingSession) && PhoneUtils.compareNumbers(session.getRemoteContact(), contact)) {
-				result.add((FileSharingSession)session);
-			}
-		}
-
-		return result;
+	public List<FileSharingSession> getFileTransferSessionsWith(String contact) {
+		return registry.getFileTransferSessions(contact);
     }
 
 	/**
      * Returns active file transfer sessions
      * 
-     * @return List of sessions
+     * @return Read-only list of sessions
      */
-	public Vector<FileSharingSession> getFileTransferSessions() {
-		Vector<FileSharingSession> result = new Vector<FileSharingSession>();
-		Enumeration<ImsServiceSession> list = getSessions();
-		while(list.hasMoreElements()) {
-			ImsServiceSession session = list.nextElement();
-			if (session instanceof FileSharingSession) {
-				result.add((FileSharingSession)session);
-			}
-		}
-
-		return result;
+	public List<FileSharingSession> getFileTransferSessions() {
+		return registry.getFileTransferSessions();
     }
 
 	/**
@@ -804,9 +799,9 @@ public class InstantMessagingService extends ImsService {
      */
     public void receiveConferenceNotification(SipRequest notify) {
     	// Dispatch the notification to the corresponding session
-    	Vector<ChatSession> sessions = getImSessions();
+    	List<ChatSession> sessions = getImSessions();
     	for (int i=0; i < sessions.size(); i++) {
-    		ChatSession session = (ChatSession)sessions.get(i);
+    		ChatSession session = sessions.get(i);
     		if (session instanceof GroupChatSession) {
     			GroupChatSession groupChatSession = (GroupChatSession)session;
 	    		if (groupChatSession.getConferenceEventSubscriber().isNotifyForThisSubscriber(notify)) {
@@ -851,11 +846,11 @@ public class InstantMessagingService extends ImsService {
                 receiveFileDeliveryStatus(ftSessionId, status, contact);
             } else {
     			// Get session associated to the contact
-    			Vector<ChatSession> sessions = Core.getInstance().getImService().getImSessionsWith(contact);
+    			List<ChatSession> sessions = Core.getInstance().getImService().getImSessionsWith(contact);
     			if (sessions.size() > 0) {
     				// Notify the message delivery from the chat session
     				for(int i=0; i < sessions.size(); i++) {
-    					ChatSession session = sessions.elementAt(i);
+    					ChatSession session = sessions.get(i);
     			 	    session.handleMessageDeliveryStatus(msgId, status, contact);
     				}
     			} else {
@@ -0,0 +1,160 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Index of sessions by session ID and by contact number. The lists returned
+ * by the lookups are read-only and replaced at each change, so they are read
+ * without lock nor copy.
+ *
+ * @param <T> Type of session
+ */
+class SessionIndex<T> {
+	/**
+	 * Session and contact number of an indexed session
+	 */
+	private static class Entry<T> {
+		final T session;
+		final String number;
+
+		Entry(T session, String number) {
+			this.session = session;
+			this.number = number;
+		}
+	}
+
+	/**
+	 * Indexed sessions by session ID
+	 */
+	private Map<String, Entry<T>> entries = new HashMap<String, Entry<T>>();
+
+	/**
+	 * Sessions, in their adding order
+	 */
+	private volatile List<T> sessions = Collections.emptyList();
+
+	/**
+	 * Sessions by contact number
+	 */
+	private Map<String, List<T>> sessionsByContact = new ConcurrentHashMap<String, List<T>>();
+
+	/**
+	 * Add a session, replacing the session having the same ID
+	 *
+	 * @param id Session ID
+	 * @param number Contact number or null if the session is not indexed by contact
+	 * @param session Session
+	 */
+	synchronized void add(String id, String number, T session) {
+		remove(id);
+		entries.put(id, new Entry<T>(session, number));
+		sessions = add(sessions, session);
+		if (number != null) {
+			List<T> list = sessionsByContact.get(number);
+			sessionsByContact.put(number, add((list != null) ? list : Collections.<T>emptyList(), session));
+		}
+	}
+
+	/**
+	 * Remove a session
+	 *
+	 * @param id Session ID
+	 * @return Boolean, true if the session was indexed
+	 */
+	synchronized boolean remove(String id) {
+		Entry<T> entry = entries.remove(id);
+		if (entry == null) {
+			return false;
+		}
+		sessions = remove(sessions, entry.session);
+		if (entry.number != null) {
+			List<T> list = sessionsByContact.get(entry.number);
+			if (list != null) {
+				list = remove(list, entry.session);
+				if (list.isEmpty()) {
+					sessionsByContact.remove(entry.number);
+				} else {
+					sessionsByContact.put(entry.number, list);
+				}
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the sessions
+	 *
+	 * @return Read-only list of sessions
+	 */
+	List<T> getSessions() {
+		return sessions;
+	}
+
+	/**
+	 * Returns the sessions of a contact
+	 *
+	 * @param number Contact number
+	 * @return Read-only list of sessions
+	 */
+	List<T> getSessions(String number) {
+		List<T> result = (number != null) ? sessionsByContact.get(number) : null;
+		if (result == null) {
+			return Collections.emptyList();
+		}
+		return result;
+	}
+
+	/**
+	 * Returns a copy of a list with a new session
+	 *
+	 * @param list Read-only list
+	 * @param session Session
+	 * @return Read-only list
+	 */
+	private static <T> List<T> add(List<T> list, T session) {
+		List<T> result = new ArrayList<T>(list.size() + 1);
+		result.addAll(list);
+		result.add(session);
+		return Collections.unmodifiableList(result);
+	}
+
+	/**
+	 * Returns a copy of a list without a session
+	 *
+	 * @param list Read-only list
+	 * @param session Session
+	 * @return Read-only list
+	 */
+	private static <T> List<T> remove(List<T> list, T session) {
+		int index = list.indexOf(session);
+		if (index == -1) {
+			return list;
+		}
+		List<T> result = new ArrayList<T>(list);
+		result.remove(index);
+		return Collections.unmodifiableList(result);
+	}
+}
@@ -0,0 +1,360 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.LinkedList;
+import java.util.List;
+
+import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpConstants;
+import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpManager;
+import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpSession;
+import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.orangelabs.rcs.utils.CoreExecutor;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Outgoing messages of a chat session. The messages are sent in their
+ * queuing order by a single background task: the messages queued meanwhile
+ * are written together, each one in its own MSRP SEND request, and sent
+ * without waiting for the responses. The queue is bounded: when it is full,
+ * the caller waits until messages have been sent.
+ */
+public class ChatMessageSender implements Runnable {
+	/**
+	 * Max number of messages in the queue
+	 */
+	private static final int MAX_QUEUE_SIZE = 32;
+
+	/**
+	 * Max time to wait for a place in the queue (in milliseconds)
+	 */
+	private static final int QUEUE_TIMEOUT = 5000;
+
+	/**
+	 * Max number of bytes sent in one write
+	 */
+	private static final int MAX_WRITE_SIZE = 32 * 1024;
+
+	/**
+	 * Queued message
+	 */
+	private static class Message {
+		String msgId;
+		byte[] data;
+		String mime;
+		TypeMsrpChunk type;
+		String historyId;
+		long queued = System.currentTimeMillis();
+
+		Message(String msgId, byte[] data, String mime, TypeMsrpChunk type, String historyId) {
+			this.msgId = msgId;
+			this.data = data;
+			this.mime = mime;
+			this.type = type;
+			this.historyId = historyId;
+		}
+	}
+
+	/**
+	 * Chat session
+	 */
+	private ChatSession session;
+
+	/**
+	 * Queue of the messages to be sent
+	 */
+	private LinkedList<Message> queue = new LinkedList<Message>();
+
+	/**
+	 * Is the sending task running
+	 */
+	private boolean sending = false;
+
+	/**
+	 * Buffer of the SEND requests, used by the sending task only
+	 */
+	private ByteArrayOutputStream frames = new ByteArrayOutputStream(4096);
+
+	/**
+	 * Number of sent messages
+	 */
+	private long sentCount = 0;
+
+	/**
+	 * Number of failed messages
+	 */
+	private long failedCount = 0;
+
+	/**
+	 * Number of sent bytes
+	 */
+	private long sentBytes = 0;
+
+	/**
+	 * Number of messages taken from the queue
+	 */
+	private long dequeuedCount = 0;
+
+	/**
+	 * Total and max time spent by the messages in the queue (in milliseconds)
+	 */
+	private long totalLatency = 0;
+	private long maxLatency = 0;
+
+	/**
+	 * Time spent sending (in milliseconds)
+	 */
+	private long sendingTime = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param session Chat session
+	 */
+	public ChatMessageSender(ChatSession session) {
+		this.session = session;
+	}
+
+	/**
+	 * Queue a message, waiting while the queue is full
+	 *
+	 * @param msgId Message ID
+	 * @param data Content
+	 * @param mime MIME type
+	 * @param type Type of MSRP chunk
+	 * @param historyId ID of the message in the history, notified as failed
+	 * if the message can't be sent, or null
+	 * @return Boolean result, false if the queue has remained full
+	 */
+	public boolean addMessage(String msgId, byte[] data, String mime, TypeMsrpChunk type, String historyId) {
+		Message msg = new Message(msgId, data, mime, type, historyId);
+		synchronized(this) {
+			long end = msg.queued + QUEUE_TIMEOUT;
+			while (queue.size() >= MAX_QUEUE_SIZE) {
+				long delay = end - System.currentTimeMillis();
+				if (delay <= 0) {
+					failedCount++;
+					if (logger.isActivated()) {
+						logger.warn("Queue of outgoing messages is full: message " + msgId + " is dropped");
+					}
+					return false;
+				}
+				try {
+					wait(delay);
+				} catch(InterruptedException e) {
+					failedCount++;
+					return false;
+				}
+			}
+			queue.add(msg);
+			if (sending) {
+				return true;
+			}
+			sending = true;
+		}
+		CoreExecutor.executeBlocking(this);
+		return true;
+	}
+
+	/**
+	 * Returns the number of queued messages
+	 *
+	 * @return Number of messages
+	 */
+	public synchronized int getQueueSize() {
+		return queue.size();
+	}
+
+	/**
+	 * Returns the statistics of the sender
+	 *
+	 * @return Report with the number of queued, sent and failed messages, the
+	 * time spent by the messages in the queue and the sending rate
+	 */
+	public synchronized String getStatistics() {
+		StringBuilder result = new StringBuilder();
+		result.append("queue=").append(queue.size())
+			.append(", sent=").append(sentCount)
+			.append(", failed=").append(failedCount)
+			.append(", bytes=").append(sentBytes);
+		if (dequeuedCount > 0) {
+			result.append(", latency avg=").append(totalLatency / dequeuedCount)
+				.append("ms max=").append(maxLatency).append("ms");
+		}
+		if (sendingTime > 0) {
+			result.append(", rate=").append(sentCount * 1000 / sendingTime).append(" msg/s");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Background sending of the queued messages
+	 */
+	public void run() {
+		List<Message> batch = new ArrayList<Message>();
+		while(true) {
+			batch.clear();
+			synchronized(this) {
+				int size = 0;
+				while (!queue.isEmpty() && (batch.isEmpty() || (size + queue.getFirst().data.length <= MAX_WRITE_SIZE))) {
+					Message msg = queue.removeFirst();
+					size += msg.data.length;
+					batch.add(msg);
+				}
+				if (batch.isEmpty()) {
+					sending = false;
+					return;
+				}
+
+				// Unblock the callers waiting for a place in the queue
+				notifyAll();
+			}
+
+			long start = System.currentTimeMillis();
+			try {
+				sendMessages(batch);
+			} catch(RuntimeException e) {
+				if (logger.isActivated()) {
+					logger.error("Can't send the outgoing messages", e);
+				}
+			}
+			long end = System.currentTimeMillis();
+			synchronized(this) {
+				sendingTime += end - start;
+				dequeuedCount += batch.size();
+				for (Message msg : batch) {
+					long latency = start - msg.queued;
+					totalLatency += latency;
+					if (latency > maxLatency) {
+						maxLatency = latency;
+					}
+				}
+			}
+		}
+	}
+
+	/**
+	 * Send messages in their order. The small ones are written in one buffer
+	 * when no MSRP report is requested, since a report transaction waits the
+	 * responses of each message.
+	 *
+	 * @param batch Messages
+	 */
+	private void sendMessages(List<Message> batch) {
+		MsrpManager msrpMgr = session.getMsrpMgr();
+		MsrpSession msrpSession = (msrpMgr != null) ? msrpMgr.getMsrpSession() : null;
+		if (msrpSession == null) {
+			// The MSRP session is not established or already closed
+			if (logger.isActivated()) {
+				logger.error("No MSRP session: " + batch.size() + " messages can't be sent");
+			}
+			for (Message msg : batch) {
+				handleResult(msg, false);
+			}
+			return;
+		}
+		boolean pipelining = !msrpSession.isFailureReportRequested() && !msrpSession.isSuccessReportRequested();
+
+		List<Message> written = new ArrayList<Message>();
+		frames.reset();
+		for (Message msg : batch) {
+			if (pipelining && (msg.data.length <= MsrpConstants.CHUNK_MAX_SIZE)) {
+				try {
+					msrpSession.writeMessage(frames, msg.data, msg.msgId, msg.mime, msg.type);
+					written.add(msg);
+				} catch(Exception e) {
+					if (logger.isActivated()) {
+						logger.error("Can't write message " + msg.msgId, e);
+					}
+					handleResult(msg, false);
+				}
+			} else {
+				// Send the previous messages first to keep the order
+				flush(msrpSession, written);
+				try {
+					msrpMgr.sendChunks(new ByteArrayInputStream(msg.data), msg.msgId, msg.mime, msg.data.length, msg.type);
+					handleResult(msg, true);
+				} catch(Exception e) {
+					if (logger.isActivated()) {
+						logger.error("Problem while sending data chunks", e);
+					}
+					handleResult(msg, false);
+				}
+			}
+		}
+		flush(msrpSession, written);
+	}
+
+	/**
+	 * Send the written messages in one write
+	 *
+	 * @param msrpSession MSRP session
+	 * @param written Written messages
+	 */
+	private void flush(MsrpSession msrpSession, List<Message> written) {
+		if (written.isEmpty()) {
+			return;
+		}
+		boolean result = true;
+		try {
+			msrpSession.sendFrames(frames);
+		} catch(Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Problem while sending data chunks", e);
+			}
+			result = false;
+		}
+		for (Message msg : written) {
+			if (result) {
+				session.msrpDataTransfered(msg.msgId);
+			}
+			handleResult(msg, result);
+		}
+		written.clear();
+		frames.reset();
+	}
+
+	/**
+	 * Handle the result of a message
+	 *
+	 * @param msg Message
+	 * @param result Boolean result
+	 */
+	private void handleResult(Message msg, boolean result) {
+		synchronized(this) {
+			if (result) {
+				sentCount++;
+				sentBytes += msg.data.length;
+			} else {
+				failedCount++;
+			}
+		}
+		if (!result && (msg.historyId != null)) {
+			session.handleMessageSendFailure(msg.historyId);
+		}
+	}
+}
@@ -38,6 +38,7 @@ import com.orangelabs.rcs.core.ims.service.im.InstantMessagingService;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimIdentity;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimParser;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimWriter;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnManager;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnUtils;
@@ -82,6 +83,11 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	 */
 	private MsrpManager msrpMgr = null;
 
+	/**
+	 * Queue of the outgoing messages
+	 */
+	private ChatMessageSender messageSender = new ChatMessageSender(this);
+
 	/**
 	 * Is composing manager
 	 */
@@ -284,6 +290,15 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	public ChatActivityManager getActivityManager() {
 		return activityMgr;
 	}
+
+	/**
+	 * Returns the is composing manager
+	 * 
+	 * @return Is composing manager
+	 */
+	public IsComposingManager getIsComposingManager() {
+		return isComposingMgr;
+	}
 	
 	/**
 	 * Return the contribution ID
@@ -384,7 +399,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
     	if (getMsrpMgr() != null) {
     		getMsrpMgr().closeSession();
 			if (logger.isActivated()) {
-				logger.debug("MSRP session has been closed");
+				logger.debug("MSRP session has been closed (outgoing messages: " + messageSender.getStatistics() + ")");
 			}
     	}
 	}
@@ -543,8 +558,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
                     if (isFToHTTP) {
 						// File transfer over HTTP message
 						// Parse HTTP document
-						FileTransferHttpInfoDocument fileInfo = ChatUtils.parseFileTransferHttpDocument(cpimMsg.getMessageContent()
-								.getBytes());
+						FileTransferHttpInfoDocument fileInfo = ChatUtils.parseFileTransferHttpDocument(cpimMsg.getMessageBytes());
 						if (fileInfo != null) {
 							receiveHttpFileTransfer(remoteUri, fileInfo, cpimMsgId);
 						} else {
@@ -553,7 +567,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
                     } else
 	                if (ChatUtils.isTextPlainType(contentType)) {
 				    	// Text message
-		    			receiveText(number, StringUtils.decodeUTF8(cpimMsg.getMessageContent()), cpimMsgId, imdnDisplayedRequested, date, pseudo);
+		    			receiveText(number, cpimMsg.getMessageContent(), cpimMsgId, imdnDisplayedRequested, date, pseudo);
 		    			
 		    			// Mark the message as waiting a displayed report if needed 
 		    			if (imdnDisplayedRequested) {
@@ -564,7 +578,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 			    	} else
 		    		if (ChatUtils.isApplicationIsComposingType(contentType)) {
 					    // Is composing event
-		    			receiveIsComposing(number, cpimMsg.getMessageContent().getBytes());
+		    			receiveIsComposing(number, cpimMsg.getMessageBytes());
 			    	} else
 			    	if (ChatUtils.isMessageImdnType(contentType)) {
 						// Delivery report
@@ -572,7 +586,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 			    	} else	
 			    	if (ChatUtils.isGeolocType(contentType)) {
 						// Geoloc message
-						receiveGeoloc(number, StringUtils.decodeUTF8(cpimMsg.getMessageContent()), cpimMsgId, imdnDisplayedRequested, date,pseudo);
+						receiveGeoloc(number, cpimMsg.getMessageContent(), cpimMsgId, imdnDisplayedRequested, date,pseudo);
 			    	} 
 				}
 	    	} catch(Exception e) {
@@ -702,7 +716,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	 * @param date Date of the message
 	 * @param displayName the display name
 	 */
-	private void receiveText(String contact, String txt, String msgId, boolean imdnDisplayedRequested, Date date, String displayName) {
+	protected void receiveText(String contact, String txt, String msgId, boolean imdnDisplayedRequested, Date date, String displayName) {
 		if (!RichMessagingHistory.getInstance().isNewMessage(getContributionID(), msgId)) {
 			// Message already received
 			return;
@@ -751,7 +765,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	 * @param date Date of the message
 	 * @param pseudo the display name
 	 */
-	private void receiveGeoloc(String contact, String geolocDoc, String msgId, boolean imdnDisplayedRequested, Date date, String pseudo) {
+	protected void receiveGeoloc(String contact, String geolocDoc, String msgId, boolean imdnDisplayedRequested, Date date, String pseudo) {
 		if (!RichMessagingHistory.getInstance().isNewMessage(getContributionID(), msgId)) {
 			// Message already received
 			return;
@@ -841,8 +855,9 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	 */
 	public boolean sendDataChunks(String msgId, String data, String mime, TypeMsrpChunk typeMsrpChunk) {
 		try {
-			ByteArrayInputStream stream = new ByteArrayInputStream(data.getBytes()); 
-			msrpMgr.sendChunks(stream, msgId, mime, data.getBytes().length, typeMsrpChunk);
+			byte[] bytes = data.getBytes();
+			ByteArrayInputStream stream = new ByteArrayInputStream(bytes); 
+			msrpMgr.sendChunks(stream, msgId, mime, bytes.length, typeMsrpChunk);
 			return true;
 		} catch(Exception e) {
 			// Error
@@ -853,6 +868,89 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 		}
 	}
 
+	/**
+	 * Send a CPIM message in data chunks
+	 * 
+	 * @param msgId Message ID
+	 * @param data Writer containing the CPIM message
+	 * @param mime MIME type
+	 * @param typeMsrpChunk Type of MSRP chunk
+	 * @return Boolean result
+	 */
+	public boolean sendDataChunks(String msgId, CpimWriter data, String mime, TypeMsrpChunk typeMsrpChunk) {
+		try {
+			msrpMgr.sendChunks(data.getInputStream(), msgId, mime, data.size(), typeMsrpChunk);
+			return true;
+		} catch(Exception e) {
+			// Error
+	   		if (logger.isActivated()) {
+	   			logger.error("Problem while sending data chunks", e);
+	   		}
+			return false;
+		}
+	}
+
+	/**
+	 * Queue a CPIM message, sent in order with the other queued messages. The
+	 * caller waits while the queue of the session is full.
+	 * 
+	 * @param msgId Message ID
+	 * @param data Writer containing the CPIM message
+	 * @param mime MIME type
+	 * @param typeMsrpChunk Type of MSRP chunk
+	 * @param historyId ID of the message in the history, notified as failed
+	 * if it can't be sent, or null
+	 * @return Boolean result, false if the queue has remained full
+	 */
+	public boolean queueDataChunks(String msgId, CpimWriter data, String mime, TypeMsrpChunk typeMsrpChunk, String historyId) {
+		if ((typeMsrpChunk == TypeMsrpChunk.TextMessage) || (typeMsrpChunk == TypeMsrpChunk.GeoLocation)) {
+			// A message ends the is-composing state at the remote side (RFC3994)
+			isComposingMgr.messageSent();
+		}
+		return messageSender.addMessage(msgId, data.toByteArray(), mime, typeMsrpChunk, historyId);
+	}
+
+	/**
+	 * Queue a content, sent in order with the other queued messages. The
+	 * caller waits while the queue of the session is full.
+	 * 
+	 * @param msgId Message ID
+	 * @param data Data
+	 * @param mime MIME type
+	 * @param typeMsrpChunk Type of MSRP chunk
+	 * @param historyId ID of the message in the history, notified as failed
+	 * if it can't be sent, or null
+	 * @return Boolean result, false if the queue has remained full
+	 */
+	public boolean queueDataChunks(String msgId, String data, String mime, TypeMsrpChunk typeMsrpChunk, String historyId) {
+		return messageSender.addMessage(msgId, data.getBytes(), mime, typeMsrpChunk, historyId);
+	}
+
+	/**
+	 * Returns the statistics of the outgoing messages
+	 * 
+	 * @return Report with the number of queued, sent and failed messages, the
+	 * time spent in the queue and the sending rate
+	 */
+	public String getSendStatistics() {
+		return messageSender.getStatistics();
+	}
+
+	/**
+	 * A message can't be sent
+	 * 
+	 * @param msgId ID of the message in the history
+	 */
+	public void handleMessageSendFailure(String msgId) {
+		// Update rich messaging history
+		RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
+		
+		// Notify listeners
+    	for(int i=0; i < getListeners().size(); i++) {
+    		((ChatSessionListener)getListeners().get(i)).handleMessageDeliveryStatus(msgId, ImdnDocument.DELIVERY_STATUS_FAILED, null);
+		}
+	}
+
 	/**
 	 * Is group chat
 	 * 
@@ -937,6 +1035,22 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 		 * @param status Status
 		 */
 	    public void sendMsrpMessageDeliveryStatus(String contact, String from, String to, String msgId, String status) {
+	        if (sendMsrpDeliveryReport(from, to, msgId, status)) {
+	            // Update rich messaging history
+			RichMessagingHistory.getInstance().updateChatMessageDeliveryStatus(msgId, status, contact);
+	        }
+	    }
+
+		/**
+		 * Send a delivery report via MSRP without updating the history
+		 * 
+		 * @param from Uri from who will send the delivery status
+		 * @param to Uri from who requested the delivery status
+		 * @param msgId Message ID
+		 * @param status Status
+		 * @return Boolean result
+		 */
+	    public boolean sendMsrpDeliveryReport(String from, String to, String msgId, String status) {
 	        // Send status in CPIM + IMDN headers
 	        // Changed by Deutsche Telekom
 
@@ -958,11 +1072,7 @@ public abstract class ChatSession extends ImsServiceSession implements MsrpEvent
 	        }
 	        
 	        // Send data
-	        boolean result = sendDataChunks(IdGenerator.generateMessageID(), content, CpimMessage.MIME_TYPE, typeMsrpChunk);
-	        if (result) {
-	            // Update rich messaging history
-			RichMessagingHistory.getInstance().updateChatMessageDeliveryStatus(msgId, status, contact);
-	        }
+	        return sendDataChunks(IdGenerator.generateMessageID(), content, CpimMessage.MIME_TYPE, typeMsrpChunk);
 		}
 	    
 	/**
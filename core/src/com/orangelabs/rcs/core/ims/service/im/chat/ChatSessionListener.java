@@ -18,7 +18,10 @@
 
 package com.orangelabs.rcs.core.ims.service.im.chat;
 
+import java.util.List;
+
 import com.orangelabs.rcs.core.ims.service.ImsSessionListener;
+import com.orangelabs.rcs.core.ims.service.im.chat.event.User;
 
 /**
  * Chat session listener
@@ -32,6 +35,14 @@ public interface ChatSessionListener extends ImsSessionListener {
 	 * @param message Message
 	 */
     public void handleReceiveMessage(InstantMessage message);
+
+    /**
+     * New messages received together, not yet in the history. They are
+     * text messages or GeolocMessage instances, in their receiving order.
+     * 
+     * @param messages Messages
+     */
+    public void handleReceiveMessages(List<InstantMessage> messages);
     
     /**
      * IM error
@@ -49,13 +60,13 @@ public interface ChatSessionListener extends ImsSessionListener {
     public void handleIsComposingEvent(String contact, boolean status);
 
     /**
-     * New conference event
+     * New conference events, the changes of a notification being notified
+     * together
      * 
-	 * @param contact Contact
-	 * @param contactDisplayname Contact display name
-     * @param state State associated to the contact
+     * @param users Participants whose state has changed, with their contact,
+     * display name and new state
      */
-    public void handleConferenceEvent(String contact, String contactDisplayname, String state);
+    public void handleConferenceEvents(List<User> users);
 
     /**
      * New message delivery status
@@ -37,6 +37,7 @@ import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimParser;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimWriter;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoParser;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
@@ -76,6 +77,20 @@ public class ChatUtils {
 	 */
 	private static final String CRLF = "\r\n";
 
+	/**
+	 * Start and end of a resource-list document
+	 */
+	private static final String RESOURCE_LIST_START = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
+			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\" " +
+			"xmlns:cp=\"urn:ietf:params:xml:ns:copycontrol\">" +
+			"<list>" + CRLF;
+	private static final String RESOURCE_LIST_END = "</list></resource-lists>";
+
+	/**
+	 * Expected size of an entry of a resource-list document
+	 */
+	private static final int RESOURCE_LIST_ENTRY_SIZE = 80;
+
 	 /**
      * The logger
      */
@@ -288,20 +303,12 @@ public class ChatUtils {
      * @return XML document
      */
     public static String generateChatResourceList(List<String> participants) {
-		StringBuffer uriList = new StringBuffer();
-		for(int i=0; i < participants.size(); i++) {
-			String contact = participants.get(i);
-			uriList.append(" <entry uri=\"" +
-					PhoneUtils.formatNumberToSipUri(contact) + "\" cp:copyControl=\"to\"/>" 
-					+ CRLF);
+		StringBuilder xml = startResourceList(participants.size());
+		for(String contact : participants) {
+			xml.append(" <entry uri=\"").append(PhoneUtils.formatNumberToSipUri(contact))
+				.append("\" cp:copyControl=\"to\"/>").append(CRLF);
 		}
-		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
-			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\" " +
-			"xmlns:cp=\"urn:ietf:params:xml:ns:copycontrol\">" +
-			"<list>" + CRLF +
-			uriList.toString() +
-			"</list></resource-lists>";
-		return xml;
+		return xml.append(RESOURCE_LIST_END).toString();
     }    
 
     /**
@@ -313,26 +320,30 @@ public class ChatUtils {
      * @return XML document
      */
     public static String generateExtendedChatResourceList(String existingParticipant, String replaceHeader, List<String> newParticipants) {
-		StringBuffer uriList = new StringBuffer();
-		for(int i=0; i < newParticipants.size(); i++) {
-			String contact = newParticipants.get(i);
+		StringBuilder xml = startResourceList(newParticipants.size());
+		for(String contact : newParticipants) {
+			xml.append(" <entry cp:copyControl=\"to\" uri=\"").append(PhoneUtils.formatNumberToSipUri(contact));
 			if (contact.equals(existingParticipant)) {
-				uriList.append(" <entry cp:copyControl=\"to\" uri=\"" + PhoneUtils.formatNumberToSipUri(existingParticipant) +
-					StringUtils.encodeXML(replaceHeader) + "\"/>" + CRLF);
-			} else {
-				uriList.append(" <entry cp:copyControl=\"to\" uri=\"" + PhoneUtils.formatNumberToSipUri(contact) + "\"/>" + CRLF);
+				xml.append(StringUtils.encodeXML(replaceHeader));
 			}
+			xml.append("\"/>").append(CRLF);
 		}
-		
-		String xml = "<?xml version=\"1.0\" encoding=\"UTF-8\"?>" + CRLF +
-			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\" " + 
-			"xmlns:cp=\"urn:ietf:params:xml:ns:copycontrol\">" +
-			"<list>" + CRLF +
-			uriList.toString() +
-			"</list></resource-lists>";
-		return xml;
+		return xml.append(RESOURCE_LIST_END).toString();
     }    
 
+    /**
+     * Start a resource-list document in a buffer sized for its entries, the
+     * entries being appended directly to it
+     * 
+     * @param size Number of entries
+     * @return Buffer
+     */
+    private static StringBuilder startResourceList(int size) {
+		StringBuilder xml = new StringBuilder(RESOURCE_LIST_START.length() + RESOURCE_LIST_END.length() +
+				size * RESOURCE_LIST_ENTRY_SIZE);
+		return xml.append(RESOURCE_LIST_START);
+    }
+
     /**
      * Is IMDN service
      * 
@@ -458,6 +469,97 @@ public class ChatUtils {
     	}
     }
 	
+	/**
+	 * CPIM writer of each thread, reused from one message to the next
+	 */
+	private static ThreadLocal<CpimWriter> cpimWriters = new ThreadLocal<CpimWriter>() {
+		protected CpimWriter initialValue() {
+			return new CpimWriter();
+		}
+	};
+
+	/**
+	 * Write a CPIM message in the CPIM writer of the current thread
+	 * 
+	 * @param from From URI
+	 * @param to To URI
+	 * @param messageId Message ID or null if there is no IMDN header
+	 * @param dispositionNotification IMDN disposition notification or null
+	 * @param content Content
+	 * @param contentType Content type
+	 * @return Writer containing the message
+	 */
+	private static CpimWriter writeCpimMessage(String from, String to, String messageId,
+			String dispositionNotification, String content, String contentType) {
+		CpimWriter writer = cpimWriters.get();
+		writer.reset();
+		writer.writeHeader(CpimMessage.HEADER_FROM, ChatUtils.formatCpimSipUri(from));
+		writer.writeHeader(CpimMessage.HEADER_TO, ChatUtils.formatCpimSipUri(to));
+		if (messageId != null) {
+			writer.writeHeader(CpimMessage.HEADER_NS, ImdnDocument.IMDN_NAMESPACE);
+			writer.writeHeader(ImdnUtils.HEADER_IMDN_MSG_ID, messageId);
+		}
+		writer.writeHeader(CpimMessage.HEADER_DATETIME, DateUtils.encodeDate(System.currentTimeMillis()));
+		if (dispositionNotification != null) {
+			writer.writeHeader(ImdnUtils.HEADER_IMDN_DISPO_NOTIF, dispositionNotification);
+		}
+		writer.endHeaders();
+		writer.writeHeader(CpimMessage.HEADER_CONTENT_TYPE, contentType + ";charset=utf-8");
+		if (messageId != null) {
+			writer.writeHeader(CpimMessage.HEADER_CONTENT_LENGTH, String.valueOf(CpimWriter.getUtf8Length(content)));
+		}
+		writer.endHeaders();
+		writer.writeContent(content);
+		return writer;
+	}
+
+	/**
+	 * Write a CPIM message. The returned writer belongs to the current thread
+	 * and is reused by the next message written by the thread.
+	 * 
+	 * @param from From
+	 * @param to To
+	 * @param content Content
+	 * @param contentType Content type
+	 * @return Writer containing the message
+	 */
+	public static CpimWriter writeCpimMessage(String from, String to, String content, String contentType) {
+		return writeCpimMessage(from, to, null, null, content, contentType);
+	}
+
+	/**
+	 * Write a CPIM message with full IMDN headers. The returned writer belongs
+	 * to the current thread and is reused by the next message written by the
+	 * thread.
+	 * 
+	 * @param from From URI
+	 * @param to To URI
+	 * @param messageId Message ID
+	 * @param content Content
+	 * @param contentType Content type
+	 * @return Writer containing the message
+	 */
+	public static CpimWriter writeCpimMessageWithImdn(String from, String to, String messageId, String content, String contentType) {
+		return writeCpimMessage(from, to, messageId, ImdnDocument.POSITIVE_DELIVERY + ", " + ImdnDocument.DISPLAY,
+				content, contentType);
+	}
+
+	/**
+	 * Write a CPIM message with IMDN delivered header. The returned writer
+	 * belongs to the current thread and is reused by the next message written
+	 * by the thread.
+	 * 
+	 * @param from From URI
+	 * @param to To URI
+	 * @param messageId Message ID
+	 * @param content Content
+	 * @param contentType Content type
+	 * @return Writer containing the message
+	 */
+	public static CpimWriter writeCpimMessageWithDeliveredImdn(String from, String to, String messageId, String content, String contentType) {
+		return writeCpimMessage(from, to, messageId, ImdnDocument.POSITIVE_DELIVERY, content, contentType);
+	}
+
 	/**
 	 * Build a CPIM message
 	 * 
@@ -468,16 +570,7 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessage(String from, String to, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF + 
-			CRLF + 
-			content;	
-		   
-		return cpim;
+		return writeCpimMessage(from, to, content, contentType).toString();
 	}
 	
 	/**
@@ -491,19 +584,7 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessageWithImdn(String from, String to, String messageId, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_NS + ": " + ImdnDocument.IMDN_NAMESPACE + CRLF +
-			ImdnUtils.HEADER_IMDN_MSG_ID + ": " + messageId + CRLF +
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			ImdnUtils.HEADER_IMDN_DISPO_NOTIF + ": " + ImdnDocument.POSITIVE_DELIVERY + ", " + ImdnDocument.DISPLAY + CRLF +
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF +
-			CpimMessage.HEADER_CONTENT_LENGTH + ": " + content.getBytes().length + CRLF + 
-			CRLF + 
-			content;	
-		return cpim;
+		return writeCpimMessageWithImdn(from, to, messageId, content, contentType).toString();
 	}
 	
 	/**
@@ -517,19 +598,7 @@ public class ChatUtils {
 	 * @return String
 	 */
 	public static String buildCpimMessageWithDeliveredImdn(String from, String to, String messageId, String content, String contentType) {
-		String cpim =
-			CpimMessage.HEADER_FROM + ": " + ChatUtils.formatCpimSipUri(from) + CRLF + 
-			CpimMessage.HEADER_TO + ": " + ChatUtils.formatCpimSipUri(to) + CRLF + 
-			CpimMessage.HEADER_NS + ": " + ImdnDocument.IMDN_NAMESPACE + CRLF +
-			ImdnUtils.HEADER_IMDN_MSG_ID + ": " + messageId + CRLF +
-			CpimMessage.HEADER_DATETIME + ": " + DateUtils.encodeDate(System.currentTimeMillis()) + CRLF + 
-			ImdnUtils.HEADER_IMDN_DISPO_NOTIF + ": " + ImdnDocument.POSITIVE_DELIVERY + CRLF +
-			CRLF +  
-			CpimMessage.HEADER_CONTENT_TYPE + ": " + contentType + ";charset=utf-8" + CRLF +
-			CpimMessage.HEADER_CONTENT_LENGTH + ": " + content.getBytes().length + CRLF + 
-			CRLF + 
-			content;	
-		return cpim;
+		return writeCpimMessageWithDeliveredImdn(from, to, messageId, content, contentType).toString();
 	}
 	
 	/**
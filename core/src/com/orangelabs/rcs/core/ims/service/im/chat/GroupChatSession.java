@@ -34,16 +34,15 @@ import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.core.ims.service.SessionAuthenticationAgent;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimWriter;
 import com.orangelabs.rcs.core.ims.service.im.chat.event.ConferenceEventSubscribeManager;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoDocument;
-import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingInfo;
 import com.orangelabs.rcs.core.ims.service.im.filetransfer.http.FileTransferHttpInfoDocument;
 import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
 import com.orangelabs.rcs.utils.IdGenerator;
 import com.orangelabs.rcs.utils.PhoneUtils;
-import com.orangelabs.rcs.utils.StringUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -200,38 +199,27 @@ public abstract class GroupChatSession extends ChatSession {
        
 		String from = ImsModule.IMS_USER_PROFILE.getPublicAddress();
 		String to = ChatUtils.ANOMYNOUS_URI;
-		String content;
+		CpimWriter content;
 		if (useImdn) {
 			// Send message in CPIM + IMDN delivered
             imdnMsgId = IdGenerator.generateMessageID();
-			content = ChatUtils.buildCpimMessageWithDeliveredImdn(from, to, imdnMsgId, StringUtils.encodeUTF8(txt), InstantMessage.MIME_TYPE);
+			content = ChatUtils.writeCpimMessageWithDeliveredImdn(from, to, imdnMsgId, txt, InstantMessage.MIME_TYPE);
 		} else {
 			// Send message in CPIM
-			content = ChatUtils.buildCpimMessage(from, to, StringUtils.encodeUTF8(txt), InstantMessage.MIME_TYPE);
+			content = ChatUtils.writeCpimMessage(from, to, txt, InstantMessage.MIME_TYPE);
 		}		
 		
-		// Send data
-		boolean result = sendDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.TextMessage);
-
         // Use IMDN MessageID as reference if existing
-        if (useImdn) {
-            msgId = imdnMsgId;
-        }
+        String historyId = useImdn ? imdnMsgId : msgId;
 
 		// Update rich messaging history
-		InstantMessage msg = new InstantMessage(msgId, getRemoteContact(), txt, useImdn, null);
+		InstantMessage msg = new InstantMessage(historyId, getRemoteContact(), txt, useImdn, null);
 		RichMessagingHistory.getInstance().addGroupChatMessage(getContributionID(), msg,
 				ChatLog.Message.Direction.OUTGOING);
 
-		// Check if message has been sent with success or not
-		if (!result) {
-			// Update rich messaging history
-			RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
-			
-			// Notify listeners
-	    	for(int i=0; i < getListeners().size(); i++) {
-	    		((ChatSessionListener)getListeners().get(i)).handleMessageDeliveryStatus(msgId, ImdnDocument.DELIVERY_STATUS_FAILED, null);
-			}
+		// Queue content: a sending failure is notified by handleMessageSendFailure
+		if (!queueDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.TextMessage, historyId)) {
+			handleMessageSendFailure(historyId);
 		}
 	}
 	
@@ -246,38 +234,27 @@ public abstract class GroupChatSession extends ChatSession {
 		String to = ChatUtils.ANOMYNOUS_URI;
 		String geoDoc = ChatUtils.buildGeolocDocument(geoloc, ImsModule.IMS_USER_PROFILE.getPublicUri(), msgId);
 		
-		String content;
+		CpimWriter content;
 		if (useImdn) {
 			// Send message in CPIM + IMDN delivered
             imdnMsgId = IdGenerator.generateMessageID();
-			content = ChatUtils.buildCpimMessageWithDeliveredImdn(from, to, imdnMsgId, geoDoc, GeolocInfoDocument.MIME_TYPE);
+			content = ChatUtils.writeCpimMessageWithDeliveredImdn(from, to, imdnMsgId, geoDoc, GeolocInfoDocument.MIME_TYPE);
 		} else {
 			// Send message in CPIM
-			content = ChatUtils.buildCpimMessage(from, to, geoDoc, GeolocInfoDocument.MIME_TYPE);
+			content = ChatUtils.writeCpimMessage(from, to, geoDoc, GeolocInfoDocument.MIME_TYPE);
 		}
 		
-		// Send data
-		boolean result = sendDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.GeoLocation);
-
         // Use IMDN MessageID as reference if existing
-        if (useImdn) {
-            msgId = imdnMsgId;
-        }
+        String historyId = useImdn ? imdnMsgId : msgId;
 
 		// Update rich messaging history
-		GeolocMessage geolocMsg = new GeolocMessage(msgId, getRemoteContact(), geoloc, useImdn, null);
+		GeolocMessage geolocMsg = new GeolocMessage(historyId, getRemoteContact(), geoloc, useImdn, null);
 		RichMessagingHistory.getInstance().addGroupChatMessage(getContributionID(), geolocMsg,
 				ChatLog.Message.Direction.OUTGOING);
 
-		// Check if message has been sent with success or not
-		if (!result) {
-			// Update rich messaging history
-			RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
-			
-			// Notify listeners
-	    	for(int i=0; i < getListeners().size(); i++) {
-	    		((ChatSessionListener)getListeners().get(i)).handleMessageDeliveryStatus(msgId, ImdnDocument.DELIVERY_STATUS_FAILED, null);
-			}
+		// Queue content: a sending failure is notified by handleMessageSendFailure
+		if (!queueDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.GeoLocation, historyId)) {
+			handleMessageSendFailure(historyId);
 		}
 	}
 	
@@ -286,11 +263,14 @@ public abstract class GroupChatSession extends ChatSession {
 	 */
     @Override
 	public void sendIsComposingStatus(boolean status) {
+		if (!getIsComposingManager().isStateToBeSent(status)) {
+			return;
+		}
 		String from = ImsModule.IMS_USER_PROFILE.getPublicUri();
 		String to = ChatUtils.ANOMYNOUS_URI;
 		String msgId = IdGenerator.generateMessageID();
-		String content = ChatUtils.buildCpimMessage(from, to, IsComposingInfo.buildIsComposingInfo(status), IsComposingInfo.MIME_TYPE);
-		sendDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.IsComposing);	
+		CpimWriter content = ChatUtils.writeCpimMessage(from, to, IsComposingInfo.buildIsComposingInfo(status), IsComposingInfo.MIME_TYPE);
+		queueDataChunks(msgId, content, CpimMessage.MIME_TYPE, TypeMsrpChunk.IsComposing, null);	
 	}
 
     /* (non-Javadoc)
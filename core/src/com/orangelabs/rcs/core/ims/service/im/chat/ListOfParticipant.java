@@ -19,7 +19,10 @@ package com.orangelabs.rcs.core.ims.service.im.chat;
 
 import java.io.ByteArrayInputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 
 import org.xml.sax.InputSource;
@@ -32,15 +35,22 @@ import com.orangelabs.rcs.utils.StringUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * List of participants
+ * List of participants. The participants are kept in a hashed set in their
+ * adding order, so that adding, removing or looking up a participant does not
+ * depend on the size of the group.
  * 
  * @author jexa7410
  */
 public class ListOfParticipant {
 	/**
-	 * Internal list
+	 * Participants in their adding order
 	 */
-	private List<String> list = new ArrayList<String>();
+	private Set<String> participants = new LinkedHashSet<String>();
+
+	/**
+	 * Read-only copy of the participants, built on demand after a change
+	 */
+	private List<String> list = null;
 	
 	/**
      * The logger
@@ -59,7 +69,9 @@ public class ListOfParticipant {
 	 * @param list List
 	 */
 	public ListOfParticipant(List<String> list) {
-		this.list = list;
+		if (list != null) {
+			participants.addAll(list);
+		}
 	}
 	
 	/**
@@ -78,11 +90,11 @@ public class ListOfParticipant {
 					String entry = entries.elementAt(i);
 					String number = PhoneUtils.extractNumberFromUri(entry);
 					if (!PhoneUtils.compareNumbers(number, ImsModule.IMS_USER_PROFILE.getUsername())) {
-						if ((!StringUtils.isEmpty(number)) && (!list.contains(number)) && PhoneUtils.isGlobalPhoneNumber(number)) {
+						if ((!StringUtils.isEmpty(number)) && (!participants.contains(number)) && PhoneUtils.isGlobalPhoneNumber(number)) {
 							if (logger.isActivated()) {
 								logger.debug("Add participant " + number + " to the list");
 							}
-							list.add(number);
+							participants.add(number);
 						}
 					}
 				}
@@ -101,11 +113,12 @@ public class ListOfParticipant {
 	 */
 	public void addParticipant(String participant) {
 		String number = PhoneUtils.extractNumberFromUri(participant);
-		if ((!StringUtils.isEmpty(number)) && (!list.contains(number)) && PhoneUtils.isGlobalPhoneNumber(number)) {
+		if ((!StringUtils.isEmpty(number)) && (!participants.contains(number)) && PhoneUtils.isGlobalPhoneNumber(number)) {
 			if (logger.isActivated()) {
 				logger.debug("Add participant " + number + " to the list");
 			}
-			list.add(number);
+			participants.add(number);
+			list = null;
 		}
 	}
 
@@ -116,11 +129,11 @@ public class ListOfParticipant {
 	 */
 	public void removeParticipant(String participant) {
 		String number = PhoneUtils.extractNumberFromUri(participant);
-		if (list.contains(number)) {
+		if (participants.remove(number)) {
 	    	if (logger.isActivated()) {
 	    		logger.debug("Remove participant " + number + " from the list");
 	    	}	
-	    	list.remove(number);
+	    	list = null;
 		} else {
 	    	if (logger.isActivated()) {
 	    		logger.debug("Participant " + number + " does not exist");
@@ -136,16 +149,31 @@ public class ListOfParticipant {
         if (logger.isActivated()) {
             logger.debug("Remove all participant from the list");
         }   
-        list.clear();
+        participants.clear();
+        list = null;
     }
     
 	/**
 	 * Get list of participants
 	 * 
-	 * @return Array list
+	 * @return Read-only list in the adding order
 	 */
 	public List<String> getList() {
-		return list;
+		List<String> result = list;
+		if (result == null) {
+			result = Collections.unmodifiableList(new ArrayList<String>(participants));
+			list = result;
+		}
+		return result;
+	}
+
+	/**
+	 * Returns the number of participants
+	 * 
+	 * @return Number
+	 */
+	public int size() {
+		return participants.size();
 	}
 	
 	/**
@@ -155,8 +183,8 @@ public class ListOfParticipant {
 	 */
 	public String toString() {
 		StringBuffer result = new StringBuffer();
-		for(String contact : getList()) {
-			result.append(contact + ";");
+		for(String contact : participants) {
+			result.append(contact).append(';');
 		}
 		return result.toString();
 	}
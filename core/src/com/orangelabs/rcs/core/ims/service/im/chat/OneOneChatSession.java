@@ -32,6 +32,7 @@ import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.core.ims.service.im.InstantMessagingService;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimWriter;
 import com.orangelabs.rcs.core.ims.service.im.chat.geoloc.GeolocInfoDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.core.ims.service.im.chat.iscomposing.IsComposingInfo;
@@ -137,37 +138,26 @@ public abstract class OneOneChatSession extends ChatSession {
 		String from = ChatUtils.ANOMYNOUS_URI;
 		String to = ChatUtils.ANOMYNOUS_URI;
 
-		String content;
+		CpimWriter content;
 		if (useImdn) {
             // Send message in CPIM + IMDN
             imdnMsgId = IdGenerator.generateMessageID();
-			content = ChatUtils.buildCpimMessageWithImdn(from, to, imdnMsgId, StringUtils.encodeUTF8(txt), InstantMessage.MIME_TYPE);
+			content = ChatUtils.writeCpimMessageWithImdn(from, to, imdnMsgId, txt, InstantMessage.MIME_TYPE);
 		} else {
 			// Send message in CPIM
-			content = ChatUtils.buildCpimMessage(from, to, StringUtils.encodeUTF8(txt), InstantMessage.MIME_TYPE);
+			content = ChatUtils.writeCpimMessage(from, to, txt, InstantMessage.MIME_TYPE);
 		}
 
-		// Send content
-		boolean result = sendDataChunks(msgId, content, mime, MsrpSession.TypeMsrpChunk.TextMessage);
-
         // Use IMDN MessageID as reference if existing
-        if (useImdn) {
-            msgId = imdnMsgId;
-        }
+        String historyId = useImdn ? imdnMsgId : msgId;
 
 		// Update rich messaging history
-		InstantMessage msg = new InstantMessage(msgId, getRemoteContact(), txt, useImdn, null);
+		InstantMessage msg = new InstantMessage(historyId, getRemoteContact(), txt, useImdn, null);
 		RichMessagingHistory.getInstance().addChatMessage(msg, ChatLog.Message.Direction.OUTGOING);
 
-		// Check if message has been sent with success or not
-		if (!result) {
-			// Update rich messaging history
-			RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
-			
-			// Notify listeners
-	    	for(int i=0; i < getListeners().size(); i++) {
-	    		((ChatSessionListener)getListeners().get(i)).handleMessageDeliveryStatus(msgId, ImdnDocument.DELIVERY_STATUS_FAILED, null);
-			}
+		// Queue content: a sending failure is notified by handleMessageSendFailure
+		if (!queueDataChunks(msgId, content, mime, MsrpSession.TypeMsrpChunk.TextMessage, historyId)) {
+			handleMessageSendFailure(historyId);
 		}
 	}
 
@@ -185,37 +175,26 @@ public abstract class OneOneChatSession extends ChatSession {
 		String to = ChatUtils.ANOMYNOUS_URI;
 		String geoDoc = ChatUtils.buildGeolocDocument(geoloc, ImsModule.IMS_USER_PROFILE.getPublicUri(), msgId);
 
-		String content;
+		CpimWriter content;
 		if (useImdn) {
 			// Send message in CPIM + IMDN
             imdnMsgId = IdGenerator.generateMessageID();
-			content = ChatUtils.buildCpimMessageWithImdn(from, to, imdnMsgId, geoDoc, GeolocInfoDocument.MIME_TYPE);
+			content = ChatUtils.writeCpimMessageWithImdn(from, to, imdnMsgId, geoDoc, GeolocInfoDocument.MIME_TYPE);
 		} else {
 			// Send message in CPIM
-			content = ChatUtils.buildCpimMessage(from, to, geoDoc, GeolocInfoDocument.MIME_TYPE);
+			content = ChatUtils.writeCpimMessage(from, to, geoDoc, GeolocInfoDocument.MIME_TYPE);
 		}
 
-		// Send content
-		boolean result = sendDataChunks(msgId, content, mime, MsrpSession.TypeMsrpChunk.GeoLocation);
-
         // Use IMDN MessageID as reference if existing
-        if (useImdn) {
-            msgId = imdnMsgId;
-        }
+        String historyId = useImdn ? imdnMsgId : msgId;
 
 		// Update rich messaging history
-		GeolocMessage geolocMsg = new GeolocMessage(msgId, getRemoteContact(), geoloc, useImdn, null);
+		GeolocMessage geolocMsg = new GeolocMessage(historyId, getRemoteContact(), geoloc, useImdn, null);
 		RichMessagingHistory.getInstance().addChatMessage(geolocMsg, ChatLog.Message.Direction.OUTGOING);
 
-		// Check if message has been sent with success or not
-		if (!result) {
-			// Update rich messaging history
-			RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
-			
-			// Notify listeners
-	    	for(int i=0; i < getListeners().size(); i++) {
-	    		((ChatSessionListener)getListeners().get(i)).handleMessageDeliveryStatus(msgId, ImdnDocument.DELIVERY_STATUS_FAILED, null);
-			}
+		// Queue content: a sending failure is notified by handleMessageSendFailure
+		if (!queueDataChunks(msgId, content, mime, MsrpSession.TypeMsrpChunk.GeoLocation, historyId)) {
+			handleMessageSendFailure(historyId);
 		}
 	}
 	
@@ -225,9 +204,12 @@ public abstract class OneOneChatSession extends ChatSession {
 	 * @param status Status
 	 */
 	public void sendIsComposingStatus(boolean status) {
+		if (!getIsComposingManager().isStateToBeSent(status)) {
+			return;
+		}
 		String content = IsComposingInfo.buildIsComposingInfo(status);
 		String msgId = IdGenerator.generateMessageID();
-		sendDataChunks(msgId, content, IsComposingInfo.MIME_TYPE, MsrpSession.TypeMsrpChunk.IsComposing);
+		queueDataChunks(msgId, content, IsComposingInfo.MIME_TYPE, MsrpSession.TypeMsrpChunk.IsComposing, null);
 	}
 
 	/**
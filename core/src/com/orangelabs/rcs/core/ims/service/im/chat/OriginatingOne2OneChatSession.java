@@ -64,6 +64,15 @@ public class OriginatingOne2OneChatSession extends OneOneChatSession {
 		setContributionID(id);
 	}
 
+	/**
+	 * The session is processed in events instead of its own thread
+	 * 
+	 * @return Boolean
+	 */
+	public boolean isEventDriven() {
+		return true;
+	}
+
 	/**
 	 * Background processing
 	 */
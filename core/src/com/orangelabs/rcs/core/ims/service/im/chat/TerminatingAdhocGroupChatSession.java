@@ -63,7 +63,7 @@ public class TerminatingAdhocGroupChatSession extends GroupChatSession implement
 		super(parent, ChatUtils.getReferredIdentity(invite), ChatUtils.getListOfParticipants(invite));
 
 		// Detect if it's a rejoin
-		if (getParticipants().getList().size() == 0) {
+		if (getParticipants().size() == 0) {
 			if (logger.isActivated()) {
 	    		logger.info("Invite to join a group chat");
 	    	}
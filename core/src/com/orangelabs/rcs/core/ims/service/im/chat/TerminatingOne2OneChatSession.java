@@ -21,6 +21,7 @@ package com.orangelabs.rcs.core.ims.service.im.chat;
 import java.io.IOException;
 import java.util.Vector;
 
+import com.orangelabs.rcs.core.ims.network.sip.SipManager;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
 import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpEventListener;
@@ -29,14 +30,17 @@ import com.orangelabs.rcs.core.ims.protocol.sdp.MediaAttribute;
 import com.orangelabs.rcs.core.ims.protocol.sdp.MediaDescription;
 import com.orangelabs.rcs.core.ims.protocol.sdp.SdpParser;
 import com.orangelabs.rcs.core.ims.protocol.sdp.SdpUtils;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipResponse;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
 import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.core.ims.service.ImsServiceSession;
 import com.orangelabs.rcs.core.ims.service.SessionTimerManager;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -71,6 +75,15 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
 		setContributionID(id);		
 	}
 	
+	/**
+	 * The session is processed in events instead of its own thread
+	 * 
+	 * @return Boolean
+	 */
+	public boolean isEventDriven() {
+		return true;
+	}
+
 	/**
 	 * Background processing
 	 */
@@ -106,59 +119,88 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
                 // Send a 180 Ringing response
                 send180Ringing(getDialogPath().getInvite(), getDialogPath().getLocalTag());
 
-    			// Wait invitation answer
-    	    	int answer = waitInvitationAnswer();
-    			if (answer == ImsServiceSession.INVITATION_REJECTED) {
-    				if (logger.isActivated()) {
-    					logger.debug("Session has been rejected by user");
-    				}
-    				
-    		    	// Remove the current session
-    		    	getImsService().removeSession(this);
-    
-    		    	// Notify listeners
-    		    	for(int i=0; i < getListeners().size(); i++) {
-    		    		getListeners().get(i).handleSessionAborted(ImsServiceSession.TERMINATION_BY_USER);
-    		        }
-    				return;
-    			} else
-    			if (answer == ImsServiceSession.INVITATION_NOT_ANSWERED) {
-    				if (logger.isActivated()) {
-    					logger.debug("Session has been rejected on timeout");
-    				}
-    
-    				// Ringing period timeout
-    				send486Busy(getDialogPath().getInvite(), getDialogPath().getLocalTag());
-    				
-    		    	// Remove the current session
-    		    	getImsService().removeSession(this);
-    
-    		    	// Notify listeners
-        	    	for(int i=0; i < getListeners().size(); i++) {
-        	    		getListeners().get(i).handleSessionAborted(ImsServiceSession.TERMINATION_BY_TIMEOUT);
-    		        }
-    				return;
-                } else
-                if (answer == ImsServiceSession.INVITATION_CANCELED) {
-                    if (logger.isActivated()) {
-                        logger.debug("Session has been canceled");
-                    }
-                    return;
-                }
+    			// Wait invitation answer in background
+    	    	waitInvitationAnswerAsync();
+    	    	return;
             }
+		} catch(Exception e) {
+        	if (logger.isActivated()) {
+        		logger.error("Session initiation has failed", e);
+        	}
+
+        	// Unexpected error
+			handleError(new ChatError(ChatError.UNEXPECTED_EXCEPTION,
+					e.getMessage()));
+			return;
+		}
+
+		// Accept the invitation
+		acceptInvitation();
+	}
+
+	/**
+	 * Handle the invitation answer of the user
+	 * 
+	 * @param answer Answer
+	 */
+	protected void handleInvitationAnswer(int answer) {
+		if (answer == ImsServiceSession.INVITATION_REJECTED) {
+			if (logger.isActivated()) {
+				logger.debug("Session has been rejected by user");
+			}
+			
+	    	// Remove the current session
+	    	getImsService().removeSession(this);
+
+	    	// Notify listeners
+	    	for(int i=0; i < getListeners().size(); i++) {
+	    		getListeners().get(i).handleSessionAborted(ImsServiceSession.TERMINATION_BY_USER);
+	        }
+		} else
+		if (answer == ImsServiceSession.INVITATION_NOT_ANSWERED) {
+			if (logger.isActivated()) {
+				logger.debug("Session has been rejected on timeout");
+			}
 
+			// Ringing period timeout
+			send486Busy(getDialogPath().getInvite(), getDialogPath().getLocalTag());
+			
+	    	// Remove the current session
+	    	getImsService().removeSession(this);
+
+	    	// Notify listeners
+	    	for(int i=0; i < getListeners().size(); i++) {
+	    		getListeners().get(i).handleSessionAborted(ImsServiceSession.TERMINATION_BY_TIMEOUT);
+	        }
+		} else
+		if (answer == ImsServiceSession.INVITATION_CANCELED) {
+			if (logger.isActivated()) {
+				logger.debug("Session has been canceled");
+			}
+		} else {
+			// Accept the invitation
+			acceptInvitation();
+		}
+	}
+
+	/**
+	 * Accept the invitation: send the 200 OK response, the ACK is processed
+	 * in another event
+	 */
+	private void acceptInvitation() {
+		try {
         	// Parse the remote SDP part
 			String remoteSdp = getDialogPath().getInvite().getSdpContent();
         	SdpParser parser = new SdpParser(remoteSdp.getBytes());
     		Vector<MediaDescription> media = parser.getMediaDescriptions();
 			MediaDescription mediaDesc = media.elementAt(0);
 			MediaAttribute attr1 = mediaDesc.getMediaAttribute("path");
-            String remotePath = attr1.getValue();
-            String remoteHost = SdpUtils.extractRemoteHost(parser.sessionDescription, mediaDesc);
-    		int remotePort = mediaDesc.port;
+            final String remotePath = attr1.getValue();
+            final String remoteHost = SdpUtils.extractRemoteHost(parser.sessionDescription, mediaDesc);
+    		final int remotePort = mediaDesc.port;
 			
     		// Changed by Deutsche Telekom
-    		String fingerprint = SdpUtils.extractFingerprint(parser, mediaDesc);
+    		final String fingerprint = SdpUtils.extractFingerprint(parser, mediaDesc);
 
             // Extract the "setup" parameter
             String remoteSetup = "passive";
@@ -171,7 +213,7 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
 			}
             
     		// Set setup mode
-            String localSetup = createSetupAnswer(remoteSetup);
+            final String localSetup = createSetupAnswer(remoteSetup);
             if (logger.isActivated()){
 				logger.debug("Local setup attribute is " + localSetup);
 			}
@@ -194,7 +236,7 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
 	        getDialogPath().setLocalContent(sdp);
 
 	        // Test if the session should be interrupted
-            if (isInterrupted()) {
+            if (isSessionInterrupted()) {
 				if (logger.isActivated()) {
 					logger.debug("Session has been interrupted: end of processing");
 				}
@@ -209,7 +251,7 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
     			session.setSuccessReportOption(false);
     			
     			// Open the connection
-    			Thread thread = new Thread(){
+    			CoreExecutor.executeBlocking(new Runnable(){
     				public void run(){
     					try {
 							// Open the MSRP session
@@ -224,23 +266,55 @@ public class TerminatingOne2OneChatSession extends OneOneChatSession implements
 				        	}
 						}		
     				}
-    			};
-    			thread.start();
+    			});
             }
             
             // Create a 200 OK response
         	if (logger.isActivated()) {
         		logger.info("Send 200 OK");
         	}
-            SipResponse resp = SipMessageFactory.create200OkInviteResponse(getDialogPath(),
+            final SipResponse resp = SipMessageFactory.create200OkInviteResponse(getDialogPath(),
             		getFeatureTags(), sdp);
 
             // The signalisation is established
             getDialogPath().sigEstablished();
 
-            // Send response
-            SipTransactionContext ctx = getImsService().getImsModule().getSipManager().sendSipMessageAndWait(resp);
+            // Send response, the ACK is analyzed in an event
+            sendSipMessageAsync(resp, SipManager.TIMEOUT, new SipTransactionListener() {
+				public void transactionCompleted(SipTransactionContext ctx) {
+					handleAck(ctx, resp, localSetup, remoteHost, remotePort, remotePath, fingerprint);
+				}
+
+				public void transactionFailed(SipException e) {
+					handleError(new ChatError(ChatError.UNEXPECTED_EXCEPTION,
+							e.getMessage()));
+				}
+			});
+		} catch(Exception e) {
+        	if (logger.isActivated()) {
+        		logger.error("Session initiation has failed", e);
+        	}
+
+        	// Unexpected error
+			handleError(new ChatError(ChatError.UNEXPECTED_EXCEPTION,
+					e.getMessage()));
+		}		
+	}
 
+	/**
+	 * Handle the ACK of the 200 OK response
+	 * 
+	 * @param ctx Transaction context
+	 * @param resp 200 OK response
+	 * @param localSetup Local setup attribute
+	 * @param remoteHost Remote MSRP host
+	 * @param remotePort Remote MSRP port
+	 * @param remotePath Remote MSRP path
+	 * @param fingerprint Remote fingerprint
+	 */
+	private void handleAck(SipTransactionContext ctx, SipResponse resp, String localSetup,
+			String remoteHost, int remotePort, String remotePath, String fingerprint) {
+		try {
 	        // Analyze the received response 
             if (ctx.isSipAck()) {
     	        // ACK received
@@ -17,6 +17,8 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
 
+import java.nio.charset.Charset;
+import java.util.Arrays;
 import java.util.Date;
 import java.util.Hashtable;
 
@@ -85,9 +87,29 @@ public class CpimMessage {
 	public static final String HEADER_CONTENT_DISPOSITION = "Content-Disposition";
 	
 	/**
-	 * Message content
+	 * Default charset of the content
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Message content, decoded on demand when the message has been parsed
 	 */
 	private String msgContent = null;
+
+	/**
+	 * Parsed data containing the content, or null
+	 */
+	private byte[] data = null;
+
+	/**
+	 * Offset of the content in the parsed data
+	 */
+	private int contentOffset = 0;
+
+	/**
+	 * Length of the content in the parsed data
+	 */
+	private int contentLength = 0;
 	
 	/**
 	 * MIME headers
@@ -111,6 +133,24 @@ public class CpimMessage {
 		this.contentHeaders = contentHeaders;
 		this.msgContent = msgContent;
 	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param headers MIME headers
+	 * @param contentHeaders MIME content headers
+	 * @param data Parsed data
+	 * @param contentOffset Offset of the content in the data
+	 * @param contentLength Length of the content
+	 */
+	public CpimMessage(Hashtable<String, String> headers, Hashtable<String, String> contentHeaders,
+			byte[] data, int contentOffset, int contentLength) {
+		this.headers = headers;
+		this.contentHeaders = contentHeaders;
+		this.data = data;
+		this.contentOffset = contentOffset;
+		this.contentLength = contentLength;
+	}
 	
     /**
      * Returns content type
@@ -151,10 +191,51 @@ public class CpimMessage {
      * 
      * @return Content
      */
-    public String getMessageContent() {
+    public synchronized String getMessageContent() {
+    	if ((msgContent == null) && (data != null)) {
+    		msgContent = new String(data, contentOffset, contentLength, getContentCharset());
+    	}
 		return msgContent;
 	}
 
+    /**
+     * Returns the bytes of the message content, without decoding it
+     * 
+     * @return Content
+     */
+    public byte[] getMessageBytes() {
+    	if (data == null) {
+    		return (msgContent != null) ? msgContent.getBytes(getContentCharset()) : null;
+    	}
+    	return Arrays.copyOfRange(data, contentOffset, contentOffset + contentLength);
+    }
+
+    /**
+     * Returns the charset of the content, UTF-8 by default
+     * 
+     * @return Charset
+     */
+    public Charset getContentCharset() {
+    	String type = getContentType();
+    	if (type != null) {
+    		int index = type.toLowerCase().indexOf("charset=");
+    		if (index != -1) {
+    			String name = type.substring(index + 8);
+    			int end = name.indexOf(';');
+    			if (end != -1) {
+    				name = name.substring(0, end);
+    			}
+    			name = name.replace("\"", "").trim();
+    			try {
+    				return Charset.forName(name);
+    			} catch(IllegalArgumentException e) {
+    				// Unknown charset: UTF-8 is used
+    			}
+    		}
+    	}
+    	return UTF8;
+    }
+
     /**
      * Returns message date
      * 
@@ -18,26 +18,21 @@
 
 package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
 
+import java.nio.charset.Charset;
 import java.util.Hashtable;
-import java.util.StringTokenizer;
-
-import com.orangelabs.rcs.utils.StringUtils;
 
 /**
- * CPIM parser (see RFC3862)
+ * CPIM parser (see RFC3862). The headers are parsed in a single pass over
+ * the bytes of the message, the content is kept as a slice of these bytes
+ * and is decoded only when it is read as a string.
  * 
  * @author jexa7410
  */
 public class CpimParser {
 	/**
-	 * CRLF constant
-	 */
-	private static final String CRLF = "\r\n";
-
-	/**
-	 * Double CRLF constant
+	 * UTF-8 charset of the headers
 	 */
-	private static final String DOUBLE_CRLF = CRLF + CRLF;
+	private static final Charset UTF8 = Charset.forName("UTF-8");
 
 	/**
 	 * CPIM message
@@ -51,7 +46,7 @@ public class CpimParser {
 	 * @throws Exception
 	 */
     public CpimParser(byte data[]) throws Exception {
-        parse(new String(data));
+        parse(data);
 	}
 
 	/**
@@ -61,7 +56,7 @@ public class CpimParser {
 	 * @throws Exception
 	 */
     public CpimParser(String data) throws Exception {
-        parse(data);
+        parse(data.getBytes(UTF8));
 	}
 
     /***
@@ -79,7 +74,7 @@ public class CpimParser {
      * @param data Input data
      * @throws Exception
      */
-	private void parse(String data) throws Exception {
+	private void parse(byte[] data) throws Exception {
 		/* CPIM sample:
 	    From: MR SANDERS <im:piglet@100akerwood.com>
 	    To: Depressed Donkey <im:eeyore@100akerwood.com>
@@ -91,39 +86,72 @@ public class CpimParser {
 	    
 	    Here is the text of my message.
 	    */
-		try {
-			// Read message headers
-			int begin = 0;
-			int end = data.indexOf(DOUBLE_CRLF, begin);
-			String block2 = data.substring(begin, end);
-			StringTokenizer lines = new StringTokenizer(block2, CRLF); 
-			Hashtable<String, String> headers = new Hashtable<String, String>();
-			while(lines.hasMoreTokens()) {
-				String token = lines.nextToken();
-				CpimHeader hd = CpimHeader.parseHeader(token);
-				headers.put(hd.getName(), hd.getValue());
-			}
-			
-			// Read the MIME-encapsulated content header
-			begin = end+4;
-			end = data.indexOf(DOUBLE_CRLF, begin);
-			String block3 = data.substring(begin, end);
-			lines = new StringTokenizer(block3, CRLF); 
-			Hashtable<String, String> contentHeaders = new Hashtable<String, String>();
-			while(lines.hasMoreTokens()) {
-				String token = lines.nextToken();
-				CpimHeader hd = CpimHeader.parseHeader(token);
-				contentHeaders.put(hd.getName(), hd.getValue());
+		// Read message headers
+		Hashtable<String, String> headers = new Hashtable<String, String>();
+		int begin = parseHeaders(data, 0, headers);
+		
+		// Read the MIME-encapsulated content header
+		Hashtable<String, String> contentHeaders = new Hashtable<String, String>();
+		begin = parseHeaders(data, begin, contentHeaders);
+
+		// Create the CPIM message, the content is the rest of the data
+		cpim = new CpimMessage(headers, contentHeaders, data, begin, data.length - begin);
+	}
+
+	/**
+	 * Parse a block of headers ended by an empty line
+	 * 
+	 * @param data Input data
+	 * @param begin Start of the block
+	 * @param headers Parsed headers
+	 * @return Start of the next block
+	 * @throws Exception
+	 */
+	private static int parseHeaders(byte[] data, int begin, Hashtable<String, String> headers) throws Exception {
+		int lineStart = begin;
+		int colon = -1;
+		for (int i = begin; i < data.length; i++) {
+			byte b = data[i];
+			if (b == ':') {
+				if (colon == -1) {
+					colon = i;
+				}
+			} else
+			if ((b == '\r') || (b == '\n')) {
+				if (i > lineStart) {
+					// End of a header line
+					if (colon == -1) {
+						throw new Exception("Bad CPIM message format");
+					}
+					headers.put(decode(data, lineStart, colon), decode(data, colon + 1, i));
+				}
+				if ((b == '\r') && (i + 3 < data.length) && (data[i + 1] == '\n') &&
+						(data[i + 2] == '\r') && (data[i + 3] == '\n')) {
+					// Double CRLF: end of the block
+					return i + 4;
+				}
+				lineStart = i + 1;
+				colon = -1;
 			}
+		}
+		throw new Exception("Bad CPIM message format");
+	}
 
-			// Read the message content
-			begin = end+4;
-			String content = data.substring(begin);
-			
-			// Create the CPIM message
-			cpim = new CpimMessage(headers, contentHeaders, StringUtils.decodeUTF8(content));
-		} catch(Exception e) {
-			throw new Exception("Bad CPIM message format");
+	/**
+	 * Decode a trimmed header name or value
+	 * 
+	 * @param data Input data
+	 * @param begin Start index
+	 * @param end End index (excluded)
+	 * @return String
+	 */
+	private static String decode(byte[] data, int begin, int end) {
+		while ((begin < end) && ((data[begin] & 0xff) <= ' ')) {
+			begin++;
+		}
+		while ((end > begin) && ((data[end - 1] & 0xff) <= ' ')) {
+			end--;
 		}
+		return new String(data, begin, end - begin, UTF8);
 	}
 }
@@ -0,0 +1,236 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
+
+import java.io.ByteArrayInputStream;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+/**
+ * CPIM writer (see RFC3862). The message is encoded in UTF-8 directly into
+ * a byte buffer, which is reused from one message to the next.
+ */
+public class CpimWriter {
+	/**
+	 * Initial size of the buffer
+	 */
+	private static final int INITIAL_SIZE = 512;
+
+	/**
+	 * Max size of the buffer kept between two messages
+	 */
+	private static final int MAX_KEPT_SIZE = 16 * 1024;
+
+	/**
+	 * UTF-8 charset
+	 */
+	private static final Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Buffer
+	 */
+	private byte[] buffer = new byte[INITIAL_SIZE];
+
+	/**
+	 * Number of bytes written in the buffer
+	 */
+	private int count = 0;
+
+	/**
+	 * Constructor
+	 */
+	public CpimWriter() {
+	}
+
+	/**
+	 * Start a new message: the buffer is reused
+	 */
+	public void reset() {
+		if (buffer.length > MAX_KEPT_SIZE) {
+			// Do not keep the buffer of a large message
+			buffer = new byte[INITIAL_SIZE];
+		}
+		count = 0;
+	}
+
+	/**
+	 * Write a header
+	 * 
+	 * @param name Header name
+	 * @param value Header value
+	 */
+	public void writeHeader(String name, String value) {
+		writeString(name);
+		writeByte(':');
+		writeByte(' ');
+		writeString(value);
+		writeCrlf();
+	}
+
+	/**
+	 * Write the empty line ending a block of headers
+	 */
+	public void endHeaders() {
+		writeCrlf();
+	}
+
+	/**
+	 * Write the content
+	 * 
+	 * @param content Content
+	 */
+	public void writeContent(String content) {
+		writeString(content);
+	}
+
+	/**
+	 * Write the content
+	 * 
+	 * @param content Content
+	 * @param offset Offset of the content
+	 * @param length Length of the content
+	 */
+	public void writeContent(byte[] content, int offset, int length) {
+		ensureCapacity(length);
+		System.arraycopy(content, offset, buffer, count, length);
+		count += length;
+	}
+
+	/**
+	 * Returns the number of bytes written
+	 * 
+	 * @return Size
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * Returns a stream reading the written bytes, valid until the next reset
+	 * 
+	 * @return Input stream
+	 */
+	public InputStream getInputStream() {
+		return new ByteArrayInputStream(buffer, 0, count);
+	}
+
+	/**
+	 * Returns a copy of the written bytes
+	 * 
+	 * @return Bytes
+	 */
+	public byte[] toByteArray() {
+		byte[] result = new byte[count];
+		System.arraycopy(buffer, 0, result, 0, count);
+		return result;
+	}
+
+	/**
+	 * Returns the written message
+	 * 
+	 * @return String
+	 */
+	public String toString() {
+		return new String(buffer, 0, count, UTF8);
+	}
+
+	/**
+	 * Returns the length of a string encoded in UTF-8
+	 * 
+	 * @param str String
+	 * @return Length in bytes
+	 */
+	public static int getUtf8Length(String str) {
+		int length = 0;
+		int size = str.length();
+		for (int i = 0; i < size; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) {
+				length++;
+			} else
+			if (c < 0x800) {
+				length += 2;
+			} else
+			if (Character.isHighSurrogate(c) && (i + 1 < size) && Character.isLowSurrogate(str.charAt(i + 1))) {
+				length += 4;
+				i++;
+			} else
+			if ((c >= Character.MIN_SURROGATE) && (c <= Character.MAX_SURROGATE)) {
+				// Unpaired surrogate, replaced by '?' by the encoder
+				length++;
+			} else {
+				length += 3;
+			}
+		}
+		return length;
+	}
+
+	/**
+	 * Write a string encoded in UTF-8
+	 * 
+	 * @param str String
+	 */
+	private void writeString(String str) {
+		int size = str.length();
+		ensureCapacity(size);
+		for (int i = 0; i < size; i++) {
+			char c = str.charAt(i);
+			if (c < 0x80) {
+				buffer[count++] = (byte)c;
+			} else {
+				// Not ASCII: encode the rest of the string
+				byte[] rest = str.substring(i).getBytes(UTF8);
+				writeContent(rest, 0, rest.length);
+				return;
+			}
+		}
+	}
+
+	/**
+	 * Write a byte
+	 * 
+	 * @param b Byte
+	 */
+	private void writeByte(int b) {
+		ensureCapacity(1);
+		buffer[count++] = (byte)b;
+	}
+
+	/**
+	 * Write CRLF
+	 */
+	private void writeCrlf() {
+		ensureCapacity(2);
+		buffer[count++] = '\r';
+		buffer[count++] = '\n';
+	}
+
+	/**
+	 * Ensure that the buffer can receive more bytes
+	 * 
+	 * @param length Number of bytes to be written
+	 */
+	private void ensureCapacity(int length) {
+		if (count + length > buffer.length) {
+			byte[] newBuffer = new byte[Math.max(buffer.length * 2, count + length)];
+			System.arraycopy(buffer, 0, newBuffer, 0, count);
+			buffer = newBuffer;
+		}
+	}
+}
@@ -19,6 +19,10 @@
 package com.orangelabs.rcs.core.ims.service.im.chat.event;
 
 import java.io.ByteArrayInputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Vector;
 
 import javax2.sip.header.ExpiresHeader;
@@ -92,6 +96,11 @@ public class ConferenceEventSubscribeManager extends PeriodicRefresher {
 	 * List of connected participants
 	 */
 	private ListOfParticipant connectedParticipants = new ListOfParticipant();	
+
+	/**
+	 * Last known states of the participants, created on the first notification
+	 */
+	private ParticipantStateTable participantStates = null;
 	
 	/**
      * The logger
@@ -161,6 +170,14 @@ public class ConferenceEventSubscribeManager extends PeriodicRefresher {
 		    	InputSource pidfInput = new InputSource(new ByteArrayInputStream(content));
 		    	ConferenceInfoParser confParser = new ConferenceInfoParser(pidfInput);
 		    	ConferenceInfoDocument conference = confParser.getConferenceInfo();
+		    	if (participantStates == null) {
+		    		participantStates = new ParticipantStateTable(session.getContributionID());
+		    	}
+		    	if ((conference != null) && !participantStates.acceptVersion(conference)) {
+			    	if (logger.isActivated()) {
+			    		logger.debug("Conference info version " + conference.getVersion() + " is out of date");
+			    	}
+		    	} else
 		    	if (conference != null) {
 		    		int maxParticipants = conference.getMaxUserCount(); 
                     if (maxParticipants > 0) {
@@ -175,6 +192,8 @@ public class ConferenceEventSubscribeManager extends PeriodicRefresher {
 						connectedParticipants.removeAllParticipant();
 					}
                     ListOfParticipant disconnectedParticipants = new ListOfParticipant();
+                    List<User> changedUsers = new ArrayList<User>();
+                    Map<String, Integer> systemStatus = new LinkedHashMap<String, Integer>();
 			    	Vector<User> users = conference.getUsers();
 			    	for(int i=0; i < users.size(); i++) {
 			    		User user = (User)users.elementAt(i);
@@ -235,8 +254,7 @@ public class ConferenceEventSubscribeManager extends PeriodicRefresher {
 						// changed since last notification. It is important to bypass them, else they will produce noise in the
 						// notification behavior (for example we will see "participant has departed" once again, even if he departed
 						// during the last session and was not reinvited this time).
-						if (!RichMessagingHistory.getInstance().hasLastKnownStateForParticipantChanged(session.getContributionID(),
-								entity, state)) {
+						if (!participantStates.update(entity, state)) {
 							if (logger.isActivated()) {
 								logger.debug("State for " + entity + " was already " + state + ", do not notify listeners");
 							}
@@ -247,11 +265,25 @@ public class ConferenceEventSubscribeManager extends PeriodicRefresher {
 							}
 						}
 						
+			    		// Keep the change to be stored and notified
+			    		User changedUser = new User(entity, false);
+			    		changedUser.setState(state);
+			    		changedUser.setDisplayName(user.getDisplayName());
+			    		changedUsers.add(changedUser);
+			    		int status = ParticipantStateTable.getSystemStatus(state);
+			    		if (status != -1) {
+			    			systemStatus.put(entity, status);
+			    		}
+			    	}
+
+			    	if (!changedUsers.isEmpty()) {
+			    		// Update rich messaging history in one request
+			    		RichMessagingHistory.getInstance().addGroupChatSystemMessages(session.getContributionID(), systemStatus);
+
 			    		// Notify session listeners
-		    	    	for(int j=0; j < session.getListeners().size(); j++) {
-		    	    		((ChatSessionListener)session.getListeners().get(j)).handleConferenceEvent(entity,
-		    	    				user.getDisplayName(), state);
-				        }
+			    		for(int j=0; j < session.getListeners().size(); j++) {
+			    			((ChatSessionListener)session.getListeners().get(j)).handleConferenceEvents(changedUsers);
+			    		}
 			    	}
 			    	if (session instanceof GroupChatSession) {
 			    		// Update the list of participants of the terminating group chat session
@@ -42,6 +42,11 @@ public class ConferenceInfoDocument {
      */
     private String state;
 
+    /**
+     * Version attribute, -1 if absent
+     */
+    private long version = -1;
+
     /**
      * List of users
      */
@@ -86,6 +91,24 @@ public class ConferenceInfoDocument {
         return state;
     }
 
+    /**
+     * Return the version attribute
+     *
+     * @return Version or -1 if absent
+     */
+    public long getVersion() {
+        return version;
+    }
+
+    /**
+     * Set the version attribute
+     *
+     * @param version Version
+     */
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
     /**
      * Add a user
      *
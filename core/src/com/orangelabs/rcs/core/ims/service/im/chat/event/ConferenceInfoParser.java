@@ -17,13 +17,11 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.event;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.XmlParser;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -120,9 +118,7 @@ public class ConferenceInfoParser extends DefaultHandler {
      * @throws Exception
      */
     public ConferenceInfoParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+        XmlParser.parse(inputSource, this);
 	}
 
 	public ConferenceInfoDocument getConferenceInfo() {
@@ -147,6 +143,12 @@ public class ConferenceInfoParser extends DefaultHandler {
 			String entity = attr.getValue("entity").trim();
 			String state = attr.getValue("state").trim();
 			conference = new ConferenceInfoDocument(entity, state);
+			String version = attr.getValue("version");
+			if (version != null) {
+				try {
+					conference.setVersion(Long.parseLong(version.trim()));
+				} catch(NumberFormatException e) {}
+			}
 		} else
 		if (localName.equals("user")) {
 			String entity = attr.getValue("entity").trim();
@@ -0,0 +1,189 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat.event;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.gsma.services.rcs.chat.ChatLog;
+import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
+
+/**
+ * Last known states of the participants of a group chat. The table is loaded
+ * from the history with one query when it is first used, then the
+ * conference-info notifications are applied to it in memory: only the
+ * participants whose state has changed are notified and stored.
+ */
+public class ParticipantStateTable {
+	/**
+	 * Participant state
+	 */
+	public enum State {
+		UNKNOWN(User.STATE_UNKNOWN),
+		CONNECTED(User.STATE_CONNECTED),
+		DISCONNECTED(User.STATE_DISCONNECTED),
+		DEPARTED(User.STATE_DEPARTED),
+		BOOTED(User.STATE_BOOTED),
+		FAILED(User.STATE_FAILED),
+		BUSY(User.STATE_BUSY),
+		DECLINED(User.STATE_DECLINED),
+		PENDING(User.STATE_PENDING);
+
+		private String name;
+
+		private State(String name) {
+			this.name = name;
+		}
+
+		/**
+		 * Returns the name used in the conference-info documents
+		 *
+		 * @return Name
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * Returns the state of a name
+		 *
+		 * @param name Name
+		 * @return State, UNKNOWN if the name is not known
+		 */
+		public static State fromName(String name) {
+			for (State state : values()) {
+				if (state.name.equalsIgnoreCase(name)) {
+					return state;
+				}
+			}
+			return UNKNOWN;
+		}
+	}
+
+	/**
+	 * Chat ID
+	 */
+	private String chatId;
+
+	/**
+	 * States by participant, null until loaded
+	 */
+	private Map<String, State> states = null;
+
+	/**
+	 * Version of the last applied notification, -1 if none
+	 */
+	private long version = -1;
+
+	/**
+	 * Constructor
+	 *
+	 * @param chatId Chat ID
+	 */
+	public ParticipantStateTable(String chatId) {
+		this.chatId = chatId;
+	}
+
+	/**
+	 * Check the version of a notification: a partial notification which is not
+	 * newer than the last applied one is out of date (see RFC4575)
+	 *
+	 * @param conference Conference-info document
+	 * @return Boolean, true if the notification has to be applied
+	 */
+	public synchronized boolean acceptVersion(ConferenceInfoDocument conference) {
+		long newVersion = conference.getVersion();
+		if (newVersion < 0) {
+			return true;
+		}
+		if (!ConferenceInfoDocument.STATE_FULL.equalsIgnoreCase(conference.getState()) &&
+				(version >= 0) && (newVersion <= version)) {
+			return false;
+		}
+		version = newVersion;
+		return true;
+	}
+
+	/**
+	 * Update the state of a participant
+	 *
+	 * @param participant Participant
+	 * @param state New state
+	 * @return Boolean, true if the state has changed
+	 */
+	public synchronized boolean update(String participant, String state) {
+		if (states == null) {
+			load();
+		}
+		State newState = State.fromName(state);
+		return (states.put(participant, newState) != newState);
+	}
+
+	/**
+	 * Returns the status of the system message stored for a state
+	 *
+	 * @param state State
+	 * @return Status or -1 if the state is not stored
+	 */
+	public static int getSystemStatus(String state) {
+		switch(State.fromName(state)) {
+			case CONNECTED:
+				return ChatLog.Message.Status.System.JOINED;
+			case DISCONNECTED:
+				return ChatLog.Message.Status.System.DISCONNECTED;
+			case DEPARTED:
+				return ChatLog.Message.Status.System.GONE;
+			default:
+				return -1;
+		}
+	}
+
+	/**
+	 * Load the last stored states
+	 */
+	private void load() {
+		states = new HashMap<String, State>();
+		Map<String, Integer> stored = RichMessagingHistory.getInstance().getGroupChatSystemStatus(chatId);
+		for (Map.Entry<String, Integer> entry : stored.entrySet()) {
+			switch(entry.getValue()) {
+				case ChatLog.Message.Status.System.JOINED:
+					states.put(entry.getKey(), State.CONNECTED);
+					break;
+				case ChatLog.Message.Status.System.DISCONNECTED:
+					states.put(entry.getKey(), State.DISCONNECTED);
+					break;
+				case ChatLog.Message.Status.System.GONE:
+					states.put(entry.getKey(), State.DEPARTED);
+					break;
+				case ChatLog.Message.Status.System.DECLINED:
+					states.put(entry.getKey(), State.DECLINED);
+					break;
+				case ChatLog.Message.Status.System.FAILED:
+					states.put(entry.getKey(), State.FAILED);
+					break;
+				case ChatLog.Message.Status.System.BUSY:
+					states.put(entry.getKey(), State.BUSY);
+					break;
+				case ChatLog.Message.Status.System.PENDING:
+					states.put(entry.getKey(), State.PENDING);
+					break;
+			}
+		}
+	}
+}
@@ -17,27 +17,61 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.imdn;
 
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 import com.orangelabs.rcs.core.ims.ImsModule;
 import com.orangelabs.rcs.core.ims.network.sip.FeatureTags;
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
+import com.orangelabs.rcs.core.ims.network.sip.SipUtils;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipDialogPath;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipRequest;
 import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
 import com.orangelabs.rcs.core.ims.service.ImsService;
 import com.orangelabs.rcs.core.ims.service.SessionAuthenticationAgent;
+import com.orangelabs.rcs.core.ims.service.im.InstantMessagingService;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
 import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
 import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
 import com.orangelabs.rcs.provider.settings.RcsSettings;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.FifoBuffer;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * IMDN manager (see RFC5438)
+ * IMDN manager (see RFC5438). The delivery notifications queued during a
+ * short period are sent together: over the chat session with the contact
+ * when one is established, else in one SIP MESSAGE with a multipart body
+ * per contact, and the history is updated once per status.
  * 
  * @author jexa7410
  */
 public class ImdnManager extends Thread {
+	/**
+	 * Period during which the notifications are aggregated (in milliseconds)
+	 */
+	private final static int AGGREGATION_PERIOD = 500;
+
+	/**
+	 * Max number of notifications processed at a time
+	 */
+	private final static int MAX_BATCH_SIZE = 100;
+
+	/**
+	 * Max number of notifications per SIP MESSAGE, which is kept small
+	 */
+	private final static int MAX_NOTIFICATIONS_PER_MESSAGE = 10;
+
+	/**
+	 * Boundary of the multipart content
+	 */
+	private final static String BOUNDARY_TAG = "imdn";
+
     /**
      * IMS service
      */
@@ -53,6 +87,11 @@ public class ImdnManager extends Thread {
 	 */
 	private boolean activated;
 
+	/**
+	 * Termination flag
+	 */
+	private volatile boolean terminated = false;
+
     /**
      * The logger
      */
@@ -75,6 +114,7 @@ public class ImdnManager extends Thread {
     	if (logger.isActivated()) {
     		logger.info("Terminate the IMDN manager");
     	}
+        terminated = true;
         buffer.close();
     }
     
@@ -95,13 +135,23 @@ public class ImdnManager extends Thread {
 			logger.info("Start background processing");
 		}
 		DeliveryStatus delivery = null; 
-		while((delivery = (DeliveryStatus)buffer.getObject()) != null) {
-			try {
-				// Send SIP MESSAGE
-				sendSipMessageDeliveryStatus(delivery, null); // TODO: add sip.instance
+		while(!terminated && (delivery = (DeliveryStatus)buffer.getObject()) != null) {
+			// Aggregate the notifications queued meanwhile
+			List<DeliveryStatus> batch = new ArrayList<DeliveryStatus>();
+			batch.add(delivery);
+			long end = System.currentTimeMillis() + AGGREGATION_PERIOD;
+			long delay;
+			while(!terminated && (batch.size() < MAX_BATCH_SIZE) &&
+					((delay = end - System.currentTimeMillis()) > 0)) {
+				delivery = (DeliveryStatus)buffer.getObject((int)delay);
+				if (delivery == null) {
+					break;
+				}
+				batch.add(delivery);
+			}
 
-				// Update rich messaging history
-				RichMessagingHistory.getInstance().updateChatMessageDeliveryStatus(delivery.getMsgId(), delivery.getStatus(),delivery.getContact());
+			try {
+				sendDeliveryStatus(batch);
 			} catch(Exception e) {
 				if (logger.isActivated()) {
 					logger.error("Unexpected exception", e);
@@ -136,36 +186,123 @@ public class ImdnManager extends Thread {
     public void sendMessageDeliveryStatusImmediately(String contact, String msgId, String status, final String remoteInstanceId) {
         // Execute request in background
         final DeliveryStatus delivery = new DeliveryStatus(contact, msgId, status);
-        Thread thread = new Thread(){
+        CoreExecutor.executeBlocking(new Runnable() {
             public void run() {
                 // Send SIP MESSAGE
-                sendSipMessageDeliveryStatus(delivery, remoteInstanceId);
+                List<DeliveryStatus> list = new ArrayList<DeliveryStatus>(1);
+                list.add(delivery);
+                sendSipMessageDeliveryStatus(delivery.getContact(), list, remoteInstanceId);
             }
-        };
-        thread.start();
+        });
     }
 
 	/**
-	 * Send message delivery status via SIP MESSAGE
+	 * Send a batch of delivery status and update the history
 	 *
-	 * @param deliveryStatus Delivery status
+	 * @param batch Delivery status in their queuing order
+	 */
+	private void sendDeliveryStatus(List<DeliveryStatus> batch) {
+		boolean displayedActivated = RcsSettings.getInstance().isImDisplayedNotificationActivated();
+
+		// Group the notifications by contact and the message IDs by status
+		Map<String, List<DeliveryStatus>> contacts = new LinkedHashMap<String, List<DeliveryStatus>>();
+		Map<String, List<String>> statuses = new LinkedHashMap<String, List<String>>();
+		for (DeliveryStatus delivery : batch) {
+			List<String> msgIds = statuses.get(delivery.getStatus());
+			if (msgIds == null) {
+				msgIds = new ArrayList<String>();
+				statuses.put(delivery.getStatus(), msgIds);
+			}
+			msgIds.add(delivery.getMsgId());
+
+			if (!displayedActivated && ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(delivery.getStatus())) {
+				continue;
+			}
+			List<DeliveryStatus> list = contacts.get(delivery.getContact());
+			if (list == null) {
+				list = new ArrayList<DeliveryStatus>();
+				contacts.put(delivery.getContact(), list);
+			}
+			list.add(delivery);
+		}
+		if (logger.isActivated()) {
+			logger.debug("Send " + batch.size() + " delivery status to " + contacts.size() + " contacts");
+		}
+
+		for (Map.Entry<String, List<DeliveryStatus>> entry : contacts.entrySet()) {
+			String contact = entry.getKey();
+			List<DeliveryStatus> list = entry.getValue();
+
+			// Send via the established chat session if any
+			ChatSession session = getEstablishedSession(contact);
+			if (session != null) {
+				for (Iterator<DeliveryStatus> it = list.iterator(); it.hasNext();) {
+					DeliveryStatus delivery = it.next();
+					if (session.sendMsrpDeliveryReport(ChatUtils.ANOMYNOUS_URI, ChatUtils.ANOMYNOUS_URI,
+							delivery.getMsgId(), delivery.getStatus())) {
+						it.remove();
+					}
+				}
+			}
+
+			// Send the others via SIP MESSAGE
+			for (int i = 0; i < list.size(); i += MAX_NOTIFICATIONS_PER_MESSAGE) {
+				int j = Math.min(list.size(), i + MAX_NOTIFICATIONS_PER_MESSAGE);
+				sendSipMessageDeliveryStatus(contact, list.subList(i, j), null); // TODO: add sip.instance
+			}
+		}
+
+		// Update rich messaging history
+		for (Map.Entry<String, List<String>> entry : statuses.entrySet()) {
+			RichMessagingHistory.getInstance().updateChatMessagesDeliveryStatus(entry.getValue(), entry.getKey());
+		}
+	}
+
+	/**
+	 * Returns the established chat session with a contact
+	 *
+	 * @param contact Contact
+	 * @return Session or null
+	 */
+	private ChatSession getEstablishedSession(String contact) {
+		if (!(imsService instanceof InstantMessagingService)) {
+			return null;
+		}
+		List<ChatSession> sessions = ((InstantMessagingService)imsService).getImSessionsWith(contact);
+		for (ChatSession session : sessions) {
+			if (!session.isSessionInterrupted() && (session.getDialogPath() != null)
+					&& session.getDialogPath().isSessionEstablished()) {
+				return session;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Send message delivery status via SIP MESSAGE: a single status is sent
+	 * in a CPIM document, several ones in a multipart content
+	 *
+	 * @param contact Contact
+	 * @param list Delivery status
 	 * @param remoteInstanceId Remote SIP instance
 	 */
-	private void sendSipMessageDeliveryStatus(DeliveryStatus deliveryStatus, String remoteInstanceId) {
+	private void sendSipMessageDeliveryStatus(String contact, List<DeliveryStatus> list, String remoteInstanceId) {
 		try {
-            if (!RcsSettings.getInstance().isImDisplayedNotificationActivated() && ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(deliveryStatus.getStatus())) {
-                return;
-            }
-
+			if (list.size() == 1) {
+				DeliveryStatus deliveryStatus = list.get(0);
+	            if (!RcsSettings.getInstance().isImDisplayedNotificationActivated() && ImdnDocument.DELIVERY_STATUS_DISPLAYED.equals(deliveryStatus.getStatus())) {
+	                return;
+	            }
+				if (logger.isActivated()) {
+	       			logger.debug("Send delivery status " + deliveryStatus.getStatus() + " for message " + deliveryStatus.getMsgId());
+	       		}
+			} else
 			if (logger.isActivated()) {
-       			logger.debug("Send delivery status " + deliveryStatus.getStatus() + " for message " + deliveryStatus.getMsgId());
-       		}
+				logger.debug("Send " + list.size() + " delivery status in one MESSAGE");
+			}
 
-	   		// Create CPIM/IDMN document
-			String from = ChatUtils.ANOMYNOUS_URI;
-			String to = ChatUtils.ANOMYNOUS_URI;
-			String imdn = ChatUtils.buildDeliveryReport(deliveryStatus.getMsgId(), deliveryStatus.getStatus());
-			String cpim = ChatUtils.buildCpimDeliveryReport(from, to, imdn);
+	   		// Create CPIM/IDMN documents
+			byte[] content = buildContent(list);
 			
 		    // Create authentication agent 
        		SessionAuthenticationAgent authenticationAgent = new SessionAuthenticationAgent(imsService.getImsModule());
@@ -175,9 +312,9 @@ public class ImdnManager extends Thread {
         			imsService.getImsModule().getSipManager().getSipStack(),
         			imsService.getImsModule().getSipManager().getSipStack().generateCallId(),
     				1,
-    				deliveryStatus.getContact(),
+    				contact,
     				ImsModule.IMS_USER_PROFILE.getPublicUri(),
-    				deliveryStatus.getContact(),
+    				contact,
     				imsService.getImsModule().getSipManager().getSipStack().getServiceRoutePath());        	
             dialogPath.setRemoteSipInstance(remoteInstanceId);
 
@@ -185,8 +322,7 @@ public class ImdnManager extends Thread {
         	if (logger.isActivated()) {
         		logger.info("Send first MESSAGE");
         	}
-	        SipRequest msg = SipMessageFactory.createMessage(dialogPath,
-	        		FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes());
+	        SipRequest msg = createMessage(dialogPath, content, list.size() > 1);
 	        
 	        // Send MESSAGE request
 	        SipTransactionContext ctx = imsService.getImsModule().getSipManager().sendSipMessageAndWait(msg);
@@ -208,8 +344,7 @@ public class ImdnManager extends Thread {
                 if (logger.isActivated()) {
                 	logger.info("Send second MESSAGE");
                 }
-    	        msg = SipMessageFactory.createMessage(dialogPath,
-    	        		FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, cpim.getBytes());
+    	        msg = createMessage(dialogPath, content, list.size() > 1);
     	        
     	        // Set the Authorization header
     	        authenticationAgent.setProxyAuthorizationHeader(msg);
@@ -250,6 +385,55 @@ public class ImdnManager extends Thread {
         }
 	}
 	
+	/**
+	 * Build the content of a MESSAGE
+	 *
+	 * @param list Delivery status
+	 * @return CPIM document or multipart content of CPIM documents
+	 * @throws Exception
+	 */
+	private byte[] buildContent(List<DeliveryStatus> list) throws Exception {
+		if (list.size() == 1) {
+			DeliveryStatus deliveryStatus = list.get(0);
+			String imdn = ChatUtils.buildDeliveryReport(deliveryStatus.getMsgId(), deliveryStatus.getStatus());
+			return ChatUtils.buildCpimDeliveryReport(ChatUtils.ANOMYNOUS_URI, ChatUtils.ANOMYNOUS_URI, imdn).getBytes();
+		}
+
+		ByteArrayOutputStream content = new ByteArrayOutputStream();
+		for (DeliveryStatus deliveryStatus : list) {
+			String imdn = ChatUtils.buildDeliveryReport(deliveryStatus.getMsgId(), deliveryStatus.getStatus());
+			byte[] cpim = ChatUtils.buildCpimDeliveryReport(ChatUtils.ANOMYNOUS_URI, ChatUtils.ANOMYNOUS_URI, imdn).getBytes();
+			String part = "--" + BOUNDARY_TAG + SipUtils.CRLF +
+					"Content-Type: " + CpimMessage.MIME_TYPE + SipUtils.CRLF +
+					"Content-Length: " + cpim.length + SipUtils.CRLF +
+					SipUtils.CRLF;
+			content.write(part.getBytes());
+			content.write(cpim);
+			content.write(SipUtils.CRLF.getBytes());
+		}
+		content.write(("--" + BOUNDARY_TAG + "--").getBytes());
+		return content.toByteArray();
+	}
+
+	/**
+	 * Create a MESSAGE request
+	 *
+	 * @param dialogPath Dialog path
+	 * @param content Content
+	 * @param multipart Is the content a multipart
+	 * @return SIP request
+	 * @throws Exception
+	 */
+	private SipRequest createMessage(SipDialogPath dialogPath, byte[] content, boolean multipart) throws Exception {
+		if (multipart) {
+			return SipMessageFactory.createMultipartMessage(dialogPath,
+					FeatureTags.FEATURE_OMA_IM, content, BOUNDARY_TAG);
+		} else {
+			return SipMessageFactory.createMessage(dialogPath,
+					FeatureTags.FEATURE_OMA_IM, CpimMessage.MIME_TYPE, content);
+		}
+	}
+
 	/**
 	 * Delivery status
 	 */
@@ -17,15 +17,13 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.chat.imdn;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.XmlParser;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -60,9 +58,7 @@ public class ImdnParser extends DefaultHandler {
      * @throws Exception
      */
     public ImdnParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+        XmlParser.parse(inputSource, this);
 	}
 
 	public void startDocument() {
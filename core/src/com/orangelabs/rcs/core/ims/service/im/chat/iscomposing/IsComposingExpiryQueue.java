@@ -0,0 +1,188 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat.iscomposing;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.concurrent.ScheduledFuture;
+
+import com.orangelabs.rcs.utils.CoreExecutor;
+
+/**
+ * Expiration of the is-composing states of all the sessions. The states are
+ * kept in one queue ordered by deadline, checked by one scheduled task. A
+ * refresh only postpones the deadline of its entry: the entry is moved in the
+ * queue when its previous deadline is reached, so the frequent refreshes of
+ * a typing contact cost nothing.
+ */
+public class IsComposingExpiryQueue implements Runnable {
+	/**
+	 * Is-composing state of a contact in a session
+	 */
+	static class Entry implements Comparable<Entry> {
+		final IsComposingManager manager;
+		final String contact;
+
+		/**
+		 * Expiration time, 0 if the state is no more active
+		 */
+		volatile long deadline = 0;
+
+		/**
+		 * Deadline of the entry in the queue, used by the queue only
+		 */
+		long queuedDeadline = 0;
+		boolean queued = false;
+
+		Entry(IsComposingManager manager, String contact) {
+			this.manager = manager;
+			this.contact = contact;
+		}
+
+		public int compareTo(Entry other) {
+			return (queuedDeadline < other.queuedDeadline) ? -1 : ((queuedDeadline == other.queuedDeadline) ? 0 : 1);
+		}
+	}
+
+	/**
+	 * Shared instance
+	 */
+	private static IsComposingExpiryQueue instance = new IsComposingExpiryQueue();
+
+	/**
+	 * Entries ordered by queued deadline
+	 */
+	private PriorityQueue<Entry> queue = new PriorityQueue<Entry>();
+
+	/**
+	 * Next check of the queue, null if none is planned
+	 */
+	private ScheduledFuture<?> timer = null;
+
+	/**
+	 * Time of the next check
+	 */
+	private long timerDeadline = 0;
+
+	/**
+	 * Checking task, started from the scheduler in the pool of short tasks
+	 */
+	private Runnable timerTask = new Runnable() {
+		public void run() {
+			CoreExecutor.execute(IsComposingExpiryQueue.this);
+		}
+	};
+
+	/**
+	 * Returns the shared instance
+	 *
+	 * @return Instance
+	 */
+	public static IsComposingExpiryQueue getInstance() {
+		return instance;
+	}
+
+	/**
+	 * Constructor
+	 */
+	private IsComposingExpiryQueue() {
+	}
+
+	/**
+	 * Returns the number of queued entries
+	 *
+	 * @return Number of entries
+	 */
+	public synchronized int size() {
+		return queue.size();
+	}
+
+	/**
+	 * Queue an entry after its deadline has been set. Nothing is done if the
+	 * entry is already queued with an earlier deadline.
+	 *
+	 * @param entry Entry
+	 */
+	synchronized void schedule(Entry entry) {
+		long deadline = entry.deadline;
+		if (entry.queued) {
+			if (entry.queuedDeadline <= deadline) {
+				return;
+			}
+			queue.remove(entry);
+		}
+		entry.queuedDeadline = deadline;
+		entry.queued = true;
+		queue.add(entry);
+		startTimer();
+	}
+
+	/**
+	 * Check the queue: the postponed entries are queued again and the
+	 * expired ones are notified to their manager
+	 */
+	public void run() {
+		List<Entry> expired = new ArrayList<Entry>();
+		synchronized(this) {
+			timer = null;
+			long now = System.currentTimeMillis();
+			while (!queue.isEmpty() && (queue.peek().queuedDeadline <= now)) {
+				Entry entry = queue.poll();
+				entry.queued = false;
+				long deadline = entry.deadline;
+				if (deadline == 0) {
+					// State no more active
+					continue;
+				}
+				if (deadline > now) {
+					// State refreshed meanwhile
+					entry.queuedDeadline = deadline;
+					entry.queued = true;
+					queue.add(entry);
+					continue;
+				}
+				expired.add(entry);
+			}
+			startTimer();
+		}
+
+		for (Entry entry : expired) {
+			entry.manager.expire(entry);
+		}
+	}
+
+	/**
+	 * Plan the next check of the queue if needed
+	 */
+	private void startTimer() {
+		Entry first = queue.peek();
+		if (first == null) {
+			return;
+		}
+		if (timer != null) {
+			if (timerDeadline <= first.queuedDeadline) {
+				return;
+			}
+			timer.cancel(false);
+		}
+		timerDeadline = first.queuedDeadline;
+		timer = CoreExecutor.schedule(timerTask, Math.max(0, timerDeadline - System.currentTimeMillis()));
+	}
+}
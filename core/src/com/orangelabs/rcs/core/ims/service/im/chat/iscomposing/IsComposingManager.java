@@ -1,32 +1,29 @@
-/*******************************************************************************
- * Software Name : RCS IMS Stack
- *
- * Copyright (C) 2010 France Telecom S.A.
- *
- * Licensed under the Apache License, Version 2.0 (the "License");
- * you may not use this file except in compliance with the License.
- * You may obtain a copy of the License at
- *
- *      http://www.apache.org/licenses/LICENSE-2.0
- *
- * Unless required by applicable law or agreed to in writing, software
- * distributed under the License is distributed on an "AS IS" BASIS,
- * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
- * See the License for the specific language governing permissions and
- * limitations under the License.
- ******************************************************************************/
-
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
 package com.orangelabs.rcs.core.ims.service.im.chat.iscomposing;
 
-import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
-import com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener;
-import com.orangelabs.rcs.utils.logger.Logger;
-
-import org.xml.sax.InputSource;
-
-import java.io.ByteArrayInputStream;
-import java.util.Timer;
-import java.util.TimerTask;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Is Composing manager which manages "is composing" events as per RFC3994. It handles the
@@ -34,19 +31,35 @@ import java.util.TimerTask;
  */
 public class IsComposingManager {
     /**
-     * Timer for expiration timeout
+     * Min period between two "active" states sent (in milliseconds), the
+     * sent documents announcing a refresh time of 60 seconds
      */
-    private Timer timer = new Timer();
-    
+    private final static int ACTIVE_REFRESH_PERIOD = 50000;
+
     /**
-     * Expiration timer task
+     * Expiration queue shared by all the sessions
      */
-    private ExpirationTimer timerTask = null;
+    private IsComposingExpiryQueue expiryQueue = IsComposingExpiryQueue.getInstance();
+
+    /**
+     * Expiration timers by contact
+     */
+    private Map<String, IsComposingExpiryQueue.Entry> timers = new HashMap<String, IsComposingExpiryQueue.Entry>();
 
     /**
      * Is-composing timeout (in seconds)
      */
     private int timeout = 120;
+
+    /**
+     * Last state sent
+     */
+    private boolean sentState = false;
+
+    /**
+     * Time of the last "active" state sent
+     */
+    private long sentActiveTime = 0;
     
     /**
      * IM session
@@ -69,20 +82,18 @@ public class IsComposingManager {
     
     /**
      * Receive is-composing event
-     * 
+     * 
      * @param contact Contact
      * @param event Event 
      */
     public void receiveIsComposingEvent(String contact, byte[] event) {
     	try {
         	// Parse received event
-			InputSource input = new InputSource(new ByteArrayInputStream(event));
-			IsComposingParser parser = new IsComposingParser(input);
-			IsComposingInfo isComposingInfo = parser.getIsComposingInfo();
+			IsComposingInfo isComposingInfo = IsComposingParser.parse(event);
 			if ((isComposingInfo != null) && isComposingInfo.isStateActive()) {
-				// Send status message to "active"
-    	    	for(int j=0; j < session.getListeners().size(); j++) {
-    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, true);
+				// Send status message to "active"
+    	    	for(int j=0; j < session.getListeners().size(); j++) {
+    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, true);
 				}
 				
 				// Start the expiration timer
@@ -93,8 +104,8 @@ public class IsComposingManager {
 				}
 			} else {
 				// Send status message to "idle"
-    	    	for(int j=0; j < session.getListeners().size(); j++) {
-    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, false);
+    	    	for(int j=0; j < session.getListeners().size(); j++) {
+    	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, false);
 				}
 
 				// Stop the expiration timer
@@ -115,9 +126,9 @@ public class IsComposingManager {
 	 */
 	public void receiveIsComposingEvent(String contact, boolean state) {
     	// We just received an instant message, so if composing info was active, it must
-		// be changed to idle. If it was already idle, no need to notify listener again
-    	for(int j=0; j < session.getListeners().size(); j++) {
-    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, state);
+		// be changed to idle. If it was already idle, no need to notify listener again
+    	for(int j=0; j < session.getListeners().size(); j++) {
+    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, state);
 		}
 				
 		// Stop the expiration timer
@@ -131,19 +142,16 @@ public class IsComposingManager {
      * @param contact Contact
      */
     public synchronized void startExpirationTimer(long duration, String contact) {
-    	// Remove old timer
-		if (timerTask != null) {
-			timerTask.cancel();
-			timerTask = null;
-		}
-
-    	// Start timer
     	if (logger.isActivated()) {
     		logger.debug("Start is-composing timer for " + duration +  "s");
     	}
-    	timerTask = new ExpirationTimer(contact);
-    	timer = new Timer();
-    	timer.schedule(timerTask, duration*1000);
+    	IsComposingExpiryQueue.Entry entry = timers.get(contact);
+    	if (entry == null) {
+    		entry = new IsComposingExpiryQueue.Entry(this, contact);
+    		timers.put(contact, entry);
+    	}
+    	entry.deadline = System.currentTimeMillis() + duration*1000;
+    	expiryQueue.schedule(entry);
     }
 
     /**
@@ -152,38 +160,65 @@ public class IsComposingManager {
      * @param contact Contact
      */
     public synchronized void stopExpirationTimer(String contact) {
-    	// Stop timer
-    	if (logger.isActivated()) {
-    		logger.debug("Stop is-composing timer");
+    	IsComposingExpiryQueue.Entry entry = timers.get(contact);
+    	if ((entry != null) && (entry.deadline != 0)) {
+        	if (logger.isActivated()) {
+        		logger.debug("Stop is-composing timer");
+        	}
+    		// The entry leaves the queue at its deadline
+    		entry.deadline = 0;
     	}
-    	
-        // TODO : stop timer for a given contact
-		if (timerTask != null) {
-			timerTask.cancel();
-			timerTask = null;
-		}
     }
-    
+
     /**
-     * Internal expiration timer
+     * Check if an is-composing state has to be sent: a state is sent when it
+     * changes, and the "active" state is repeated only before it expires at
+     * the remote side
+     * 
+     * @param state State
+     * @return Boolean
      */
-    private class ExpirationTimer extends TimerTask {
-    	
-    	private String contact;
-    	
-    	public ExpirationTimer(String contact){
-    		this.contact = contact;
+    public synchronized boolean isStateToBeSent(boolean state) {
+    	long now = System.currentTimeMillis();
+    	if ((state == sentState) && (!state || (now - sentActiveTime < ACTIVE_REFRESH_PERIOD))) {
+    		return false;
     	}
-    	
-        public void run() {
-        	if (logger.isActivated()){
-        		logger.debug("Is-composing timer has expired: " + contact + " is now considered idle");
-        	}
-        	
-			// Send status message to "idle"
-	    	for(int j=0; j < session.getListeners().size(); j++) {
-	    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(contact, false);
-			}
-        }
-    }    
+    	sentState = state;
+    	if (state) {
+    		sentActiveTime = now;
+    	}
+    	return true;
+    }
+
+    /**
+     * A message has been sent: the state is idle at the remote side
+     */
+    public synchronized void messageSent() {
+    	sentState = false;
+    }
+
+    /**
+     * The expiration timer of a contact has expired
+     * 
+     * @param entry State of the contact
+     */
+    void expire(IsComposingExpiryQueue.Entry entry) {
+    	synchronized(this) {
+    		long deadline = entry.deadline;
+    		if ((deadline == 0) || (deadline > System.currentTimeMillis())) {
+    			// Stopped or refreshed meanwhile
+    			return;
+    		}
+    		entry.deadline = 0;
+    	}
+
+    	if (logger.isActivated()){
+    		logger.debug("Is-composing timer has expired: " + entry.contact + " is now considered idle");
+    	}
+
+		// Send status message to "idle"
+    	for(int j=0; j < session.getListeners().size(); j++) {
+    		((ChatSessionListener)session.getListeners().get(j)).handleIsComposingEvent(entry.contact, false);
+		}
+    }
 }
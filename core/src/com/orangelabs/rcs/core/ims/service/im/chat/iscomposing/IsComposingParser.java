@@ -18,15 +18,13 @@
 
 package com.orangelabs.rcs.core.ims.service.im.chat.iscomposing;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.SAXParseException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.XmlParser;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -59,9 +57,28 @@ public class IsComposingParser extends DefaultHandler {
      * @throws Exception
      */
     public IsComposingParser(InputSource inputSource) throws Exception {
-    	SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+        XmlParser.parse(inputSource, this);
+	}
+
+	/**
+	 * Constructor
+	 * 
+	 * @param data Document
+	 * @throws Exception
+	 */
+	public IsComposingParser(byte[] data) throws Exception {
+		XmlParser.parse(data, this);
+	}
+
+	/**
+	 * Parse an is-composing document
+	 * 
+	 * @param data Document
+	 * @return Is-composing info or null if the root element is not isComposing
+	 * @throws Exception
+	 */
+	public static IsComposingInfo parse(byte[] data) throws Exception {
+		return new IsComposingParser(data).getIsComposingInfo();
 	}
 
 	public void startDocument() {
@@ -0,0 +1,284 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.core.ims.service.im.chat.standfw;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ScheduledFuture;
+
+import com.orangelabs.rcs.core.ims.protocol.msrp.MsrpSession.TypeMsrpChunk;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSession;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener;
+import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
+import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
+import com.orangelabs.rcs.core.ims.service.im.chat.cpim.CpimMessage;
+import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
+import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
+import com.orangelabs.rcs.utils.CoreExecutor;
+import com.orangelabs.rcs.utils.IdGenerator;
+import com.orangelabs.rcs.utils.PhoneUtils;
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Messages received in a store & forward session. The stored messages are
+ * delivered in a burst when the device comes back online: instead of being
+ * checked, stored and notified one by one, they are processed by batches.
+ * The messages of a batch are checked against the history with one query,
+ * stored in one transaction and notified together, and their delivery
+ * reports are queued together to be sent in one write.
+ */
+public class StoredMessageBatch implements Runnable {
+	/**
+	 * Max number of messages in a batch
+	 */
+	private static final int MAX_BATCH_SIZE = 100;
+
+	/**
+	 * Max time a message waits for the next ones (in milliseconds)
+	 */
+	private static final int AGGREGATION_PERIOD = 500;
+
+	/**
+	 * Store & forward session
+	 */
+	private ChatSession session;
+
+	/**
+	 * Received messages not yet processed
+	 */
+	private List<InstantMessage> messages = new ArrayList<InstantMessage>();
+
+	/**
+	 * IDs of the messages waiting a delivery report
+	 */
+	private List<String> reports = new ArrayList<String>();
+
+	/**
+	 * Next processing of the pending messages, null if none is planned
+	 */
+	private ScheduledFuture<?> timer = null;
+
+	/**
+	 * Processing task, started from the scheduler in the pool of blocking tasks
+	 */
+	private Runnable timerTask = new Runnable() {
+		public void run() {
+			CoreExecutor.executeBlocking(StoredMessageBatch.this);
+		}
+	};
+
+	/**
+	 * Lock keeping the batches in their receiving order
+	 */
+	private Object processLock = new Object();
+
+	/**
+	 * Number of received messages, of duplicated messages and of batches
+	 */
+	private int receivedCount = 0;
+	private int duplicateCount = 0;
+	private int batchCount = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param session Store & forward session
+	 */
+	public StoredMessageBatch(ChatSession session) {
+		this.session = session;
+	}
+
+	/**
+	 * Add a received message, the batch being processed when it is full
+	 *
+	 * @param msg Text or geoloc message
+	 */
+	public void addMessage(InstantMessage msg) {
+		boolean full;
+		synchronized(this) {
+			messages.add(msg);
+			receivedCount++;
+			full = pending();
+		}
+		if (full) {
+			process();
+		}
+	}
+
+	/**
+	 * Add a message waiting a "delivered" report
+	 *
+	 * @param msgId Message ID
+	 */
+	public void addDeliveryReport(String msgId) {
+		boolean full;
+		synchronized(this) {
+			reports.add(msgId);
+			full = pending();
+		}
+		if (full) {
+			process();
+		}
+	}
+
+	/**
+	 * Process the pending messages now, at the end of the session
+	 */
+	public void flush() {
+		process();
+		if (logger.isActivated()) {
+			synchronized(this) {
+				logger.debug("Stored messages: received=" + receivedCount + ", duplicates=" + duplicateCount +
+						", batches=" + batchCount);
+			}
+		}
+	}
+
+	/**
+	 * Background processing of the pending messages
+	 */
+	public void run() {
+		process();
+	}
+
+	/**
+	 * Plan the processing of the pending messages
+	 *
+	 * @return Boolean, true if the batch is full and must be processed now
+	 */
+	private boolean pending() {
+		if ((messages.size() >= MAX_BATCH_SIZE) || (reports.size() >= MAX_BATCH_SIZE)) {
+			return true;
+		}
+		if (timer == null) {
+			timer = CoreExecutor.schedule(timerTask, AGGREGATION_PERIOD);
+		}
+		return false;
+	}
+
+	/**
+	 * Process the pending messages: the delivery reports are sent first, then
+	 * the new messages are notified
+	 */
+	private void process() {
+		synchronized(processLock) {
+			List<InstantMessage> batch;
+			List<String> delivered;
+			synchronized(this) {
+				if (timer != null) {
+					timer.cancel(false);
+					timer = null;
+				}
+				if (messages.isEmpty() && reports.isEmpty()) {
+					return;
+				}
+				batch = messages;
+				messages = new ArrayList<InstantMessage>();
+				delivered = reports;
+				reports = new ArrayList<String>();
+				batchCount++;
+			}
+
+			try {
+				sendDeliveryReports(delivered);
+				List<InstantMessage> received = getNewMessages(batch);
+				if (!received.isEmpty()) {
+					notifyMessages(received);
+				}
+			} catch(RuntimeException e) {
+				if (logger.isActivated()) {
+					logger.error("Can't process the stored messages", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Queue the "delivered" reports in the session
+	 *
+	 * @param msgIds Message IDs
+	 */
+	void sendDeliveryReports(List<String> msgIds) {
+		for (String msgId : msgIds) {
+			String imdn = ChatUtils.buildDeliveryReport(msgId, ImdnDocument.DELIVERY_STATUS_DELIVERED);
+			String content = ChatUtils.buildCpimDeliveryReport(ChatUtils.ANOMYNOUS_URI, ChatUtils.ANOMYNOUS_URI, imdn);
+			session.queueDataChunks(IdGenerator.generateMessageID(), content, CpimMessage.MIME_TYPE,
+					TypeMsrpChunk.MessageDeliveredReport, null);
+		}
+	}
+
+	/**
+	 * Notify the new messages to the listeners of the session
+	 *
+	 * @param received New messages in their receiving order
+	 */
+	void notifyMessages(List<InstantMessage> received) {
+		for (int i = 0; i < session.getListeners().size(); i++) {
+			((ChatSessionListener)session.getListeners().get(i)).handleReceiveMessages(received);
+		}
+	}
+
+	/**
+	 * Returns the messages of a session which are already in the history
+	 *
+	 * @param msgIds Message IDs
+	 * @return IDs of the messages already received
+	 */
+	Set<String> getExistingMessageIds(List<String> msgIds) {
+		// The chat ID of a one-to-one chat message is the remote contact
+		String chatId = PhoneUtils.extractNumberFromUri(session.getRemoteContact());
+		return RichMessagingHistory.getInstance().getExistingMessageIds(chatId, msgIds);
+	}
+
+	/**
+	 * Returns the messages of a batch which are not yet in the history nor
+	 * repeated in the batch
+	 *
+	 * @param batch Messages
+	 * @return New messages in their receiving order
+	 */
+	private List<InstantMessage> getNewMessages(List<InstantMessage> batch) {
+		List<String> msgIds = new ArrayList<String>(batch.size());
+		for (InstantMessage msg : batch) {
+			if (msg.getMessageId() != null) {
+				msgIds.add(msg.getMessageId());
+			}
+		}
+		Set<String> known = getExistingMessageIds(msgIds);
+
+		List<InstantMessage> result = new ArrayList<InstantMessage>(batch.size());
+		for (InstantMessage msg : batch) {
+			if ((msg.getMessageId() != null) && !known.add(msg.getMessageId())) {
+				// Message already received
+				synchronized(this) {
+					duplicateCount++;
+				}
+				continue;
+			}
+			result.add(msg);
+		}
+		return result;
+	}
+}
@@ -19,6 +19,7 @@
 package com.orangelabs.rcs.core.ims.service.im.chat.standfw;
 
 import java.io.IOException;
+import java.util.Date;
 import java.util.Vector;
 
 import com.orangelabs.rcs.core.ims.network.sip.SipMessageFactory;
@@ -37,6 +38,8 @@ import com.orangelabs.rcs.core.ims.service.ImsServiceSession;
 import com.orangelabs.rcs.core.ims.service.SessionTimerManager;
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatError;
 import com.orangelabs.rcs.core.ims.service.im.chat.ChatUtils;
+import com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage;
+import com.orangelabs.rcs.core.ims.service.im.chat.GeolocPush;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.OneOneChatSession;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
@@ -50,6 +53,11 @@ import com.orangelabs.rcs.utils.logger.Logger;
  */
 public class TerminatingStoreAndForwardMsgSession extends OneOneChatSession implements MsrpEventListener {
 	/**
+	 * Received messages, processed by batches
+	 */
+	private StoredMessageBatch storedMessages = new StoredMessageBatch(this);
+
+	/**
      * The logger
      */
     private Logger logger = Logger.getLogger(this.getClass().getName());
@@ -305,4 +313,69 @@ public class TerminatingStoreAndForwardMsgSession extends OneOneChatSession impl
     public String getDirection() {
         return SdpUtils.DIRECTION_RECVONLY;
     }
+
+	/**
+	 * Close media session: the pending stored messages are processed first
+	 */
+	@Override
+	public void closeMediaSession() {
+		storedMessages.flush();
+		super.closeMediaSession();
+	}
+
+	/**
+	 * Receive text message: the message is added to the current batch
+	 * 
+	 * @param contact Contact
+	 * @param txt Text message
+	 * @param msgId Message Id
+	 * @param imdnDisplayedRequested indicating that an IMDN "displayed" is requested for this message
+	 * @param date Date of the message
+	 * @param displayName the display name
+	 */
+	@Override
+	protected void receiveText(String contact, String txt, String msgId, boolean imdnDisplayedRequested, Date date, String displayName) {
+		storedMessages.addMessage(new InstantMessage(msgId, contact, txt, imdnDisplayedRequested, date, displayName));
+	}
+
+	/**
+	 * Receive geoloc event: the message is added to the current batch
+	 * 
+	 * @param contact Contact
+	 * @param geolocDoc Geoloc document
+	 * @param msgId Message Id
+	 * @param imdnDisplayedRequested Flag indicating that an IMDN "displayed" is requested for this message
+	 * @param date Date of the message
+	 * @param pseudo the display name
+	 */
+	@Override
+	protected void receiveGeoloc(String contact, String geolocDoc, String msgId, boolean imdnDisplayedRequested, Date date, String pseudo) {
+		try {
+			GeolocPush geoloc = ChatUtils.parseGeolocDocument(geolocDoc);
+			if (geoloc != null) {
+				storedMessages.addMessage(new GeolocMessage(msgId, contact, geoloc, imdnDisplayedRequested, date, pseudo));
+			}
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Problem while receiving geolocation", e);
+			}
+		}
+	}
+
+	/**
+	 * Send message delivery status via MSRP: the "delivered" reports are
+	 * sent with the current batch
+	 * 
+	 * @param contact Contact that requested the delivery status
+	 * @param msgId Message ID
+	 * @param status Status
+	 */
+	@Override
+	public void sendMsrpMessageDeliveryStatus(String contact, String msgId, String status) {
+		if (ImdnDocument.DELIVERY_STATUS_DELIVERED.equals(status)) {
+			storedMessages.addDeliveryReport(msgId);
+		} else {
+			super.sendMsrpMessageDeliveryStatus(contact, msgId, status);
+		}
+	}
 }
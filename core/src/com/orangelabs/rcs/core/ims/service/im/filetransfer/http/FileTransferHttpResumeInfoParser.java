@@ -3,14 +3,13 @@ package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 import java.io.IOException;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
 
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.SAXException;
 import org.xml.sax.helpers.DefaultHandler;
 
+import com.orangelabs.rcs.utils.XmlParser;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 public class FileTransferHttpResumeInfoParser extends DefaultHandler {
@@ -33,9 +32,7 @@ public class FileTransferHttpResumeInfoParser extends DefaultHandler {
     private Logger logger = Logger.getLogger(this.getClass().getName());
 	
 	public FileTransferHttpResumeInfoParser(InputSource ftHttpInput) throws ParserConfigurationException, SAXException, IOException {
-	    	SAXParserFactory factory = SAXParserFactory.newInstance();
-	        SAXParser parser = factory.newSAXParser();
-	        parser.parse(ftHttpInput, this);
+		XmlParser.parse(ftHttpInput, this);
 	}
 
 	public FileTransferHttpResumeInfo getResumeInfo() {
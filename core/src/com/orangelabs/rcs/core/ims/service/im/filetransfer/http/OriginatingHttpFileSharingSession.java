@@ -17,8 +17,7 @@
  ******************************************************************************/
 package com.orangelabs.rcs.core.ims.service.im.filetransfer.http;
 
-import java.util.NoSuchElementException;
-import java.util.Vector;
+import java.util.List;
 import java.util.concurrent.atomic.AtomicBoolean;
 
 import com.orangelabs.rcs.core.Core;
@@ -114,14 +113,12 @@ public class OriginatingHttpFileSharingSession extends HttpFileTransferSession i
 			// Send the file transfer info via a chat message
             ChatSession chatSession = (ChatSession) Core.getInstance().getImService().getSession(getChatSessionID());
             if (chatSession == null) {
-            	 Vector<ChatSession> chatSessions = Core.getInstance().getImService().getImSessionsWith(getRemoteContact());
-            	 try {
-            		 chatSession = chatSessions.lastElement();
+            	 List<ChatSession> chatSessions = Core.getInstance().getImService().getImSessionsWith(getRemoteContact());
+            	 if (!chatSessions.isEmpty()) {
+            		 chatSession = chatSessions.get(chatSessions.size() - 1);
             		 setChatSessionID(chatSession.getSessionID());
             		 setContributionID(chatSession.getContributionID());
-            	 } catch(NoSuchElementException nsee) {
-                     chatSession = null;
-                 }
+            	 }
             }
             if (chatSession != null) {
 				// A chat session exists
@@ -18,15 +18,13 @@
 
 package com.orangelabs.rcs.core.ims.service.terms;
 
-import javax.xml.parsers.SAXParser;
-import javax.xml.parsers.SAXParserFactory;
-
 import org.xml.sax.Attributes;
 import org.xml.sax.InputSource;
 import org.xml.sax.helpers.DefaultHandler;
 
 import java.util.HashMap;
 
+import com.orangelabs.rcs.utils.XmlParser;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
@@ -106,9 +104,7 @@ public class EndUserNotificationParser extends DefaultHandler {
      */
     public EndUserNotificationParser(InputSource inputSource, String requestedLanguage) throws Exception {
         this.requestedLanguage = requestedLanguage;
-        SAXParserFactory factory = SAXParserFactory.newInstance();
-        SAXParser parser = factory.newSAXParser();
-        parser.parse(inputSource, this);
+        XmlParser.parse(inputSource, this);
     }
 
     public String getId() {
@@ -246,6 +246,34 @@ public class ChatProvider extends ContentProvider {
         return uri;
     }
 
+    @Override
+    public int bulkInsert(Uri uri, ContentValues[] values) {
+        switch(uriMatcher.match(uri)) {
+	        case MESSAGES:
+	        case MESSAGE_ID:
+	        	break;
+	        default:
+	        	return super.bulkInsert(uri, values);
+        }
+
+        // Insert the messages in one transaction with one change notification
+        SQLiteDatabase db = openHelper.getWritableDatabase();
+        int count = 0;
+        db.beginTransaction();
+        try {
+        	for (ContentValues value : values) {
+        		if (db.insert(TABLE_MESSAGE, null, value) != -1) {
+        			count++;
+        		}
+        	}
+        	db.setTransactionSuccessful();
+        } finally {
+        	db.endTransaction();
+        }
+		getContext().getContentResolver().notifyChange(uri, null);
+        return count;
+    }
+
     @Override
     public int delete(Uri uri, String where, String[] whereArgs) {
         SQLiteDatabase db = openHelper.getWritableDatabase();
@@ -0,0 +1,312 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.provider.messaging;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import android.content.ContentResolver;
+import android.database.Cursor;
+import android.net.Uri;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Index of the message IDs of the history, used to detect the duplicated
+ * messages without a query per received message. The IDs of a chat are kept
+ * in a Bloom filter, loaded from the history the first time the chat is
+ * checked and then updated by each stored message: a message which is not in
+ * the filter is new. The IDs found in the history and the last stored ones
+ * are also kept in a small LRU cache, so only the other hits of the filter
+ * have to be checked in the history.
+ */
+class MessageIdIndex {
+	/**
+	 * Result of a check: the message is not in the history
+	 */
+	static final int ABSENT = 0;
+
+	/**
+	 * Result of a check: the message is in the history
+	 */
+	static final int PRESENT = 1;
+
+	/**
+	 * Result of a check: the message has to be checked in the history
+	 */
+	static final int UNKNOWN = 2;
+
+	/**
+	 * Max number of chats having a filter
+	 */
+	private static final int MAX_CHATS = 16;
+
+	/**
+	 * Max number of IDs in the LRU cache
+	 */
+	private static final int MAX_CACHED_IDS = 256;
+
+	/**
+	 * Min number of IDs of a filter
+	 */
+	private static final int MIN_CAPACITY = 256;
+
+	/**
+	 * Number of bits per ID and number of hashes of a filter (about 1% of
+	 * false positives when the filter is full)
+	 */
+	private static final int BITS_PER_ID = 10;
+	private static final int HASH_COUNT = 7;
+
+	/**
+	 * Bloom filter of the message IDs of a chat
+	 */
+	private static class Filter {
+		final long[] bits;
+		final int size;
+		final int capacity;
+		int count = 0;
+
+		Filter(int capacity) {
+			this.capacity = capacity;
+			this.size = capacity * BITS_PER_ID;
+			this.bits = new long[(size + 63) >>> 6];
+		}
+
+		void add(String msgId) {
+			int h1 = msgId.hashCode();
+			int h2 = secondHash(msgId);
+			for (int i = 0; i < HASH_COUNT; i++) {
+				int bit = ((h1 + i * h2) & 0x7FFFFFFF) % size;
+				bits[bit >>> 6] |= 1L << bit;
+			}
+			count++;
+		}
+
+		boolean mightContain(String msgId) {
+			int h1 = msgId.hashCode();
+			int h2 = secondHash(msgId);
+			for (int i = 0; i < HASH_COUNT; i++) {
+				int bit = ((h1 + i * h2) & 0x7FFFFFFF) % size;
+				if ((bits[bit >>> 6] & (1L << bit)) == 0) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/**
+		 * FNV-1a hash of the ID, independent from String.hashCode()
+		 */
+		private static int secondHash(String msgId) {
+			int h = 0x811C9DC5;
+			for (int i = 0; i < msgId.length(); i++) {
+				h = (h ^ msgId.charAt(i)) * 0x01000193;
+			}
+			return h | 1;
+		}
+	}
+
+	/**
+	 * Content resolver
+	 */
+	private ContentResolver cr;
+
+	/**
+	 * Message database URI
+	 */
+	private Uri msgDatabaseUri;
+
+	/**
+	 * Filters by chat ID, the least recently used being removed first
+	 */
+	private LinkedHashMap<String, Filter> filters = new LinkedHashMap<String, Filter>(MAX_CHATS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Filter> eldest) {
+			return size() > MAX_CHATS;
+		}
+	};
+
+	/**
+	 * IDs known to be in the history, keyed by chat ID and message ID
+	 */
+	private LinkedHashMap<String, Boolean> cachedIds = new LinkedHashMap<String, Boolean>(MAX_CACHED_IDS, 0.75f, true) {
+		private static final long serialVersionUID = 1L;
+
+		protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+			return size() > MAX_CACHED_IDS;
+		}
+	};
+
+	/**
+	 * Number of checks, of checks answered by the filter, by the cache and by
+	 * the history, and number of false positives of the filter
+	 */
+	private long checkCount = 0;
+	private long absentCount = 0;
+	private long cacheHitCount = 0;
+	private long queryCount = 0;
+	private long falsePositiveCount = 0;
+
+	/**
+	 * The logger
+	 */
+	private Logger logger = Logger.getLogger(this.getClass().getName());
+
+	/**
+	 * Constructor
+	 *
+	 * @param cr Content resolver
+	 * @param msgDatabaseUri Message database URI
+	 */
+	MessageIdIndex(ContentResolver cr, Uri msgDatabaseUri) {
+		this.cr = cr;
+		this.msgDatabaseUri = msgDatabaseUri;
+	}
+
+	/**
+	 * Check if a message is in the history. The filter of the chat is loaded
+	 * if needed.
+	 *
+	 * @param chatId Chat ID
+	 * @param msgId Message ID
+	 * @return ABSENT, PRESENT or UNKNOWN if the history has to be queried
+	 */
+	synchronized int check(String chatId, String msgId) {
+		checkCount++;
+		if ((chatId == null) || (msgId == null)) {
+			queryCount++;
+			return UNKNOWN;
+		}
+		if (cachedIds.get(getKey(chatId, msgId)) != null) {
+			cacheHitCount++;
+			return PRESENT;
+		}
+		Filter filter = filters.get(chatId);
+		if (filter == null) {
+			filter = load(chatId);
+			if (filter == null) {
+				queryCount++;
+				return UNKNOWN;
+			}
+		}
+		if (!filter.mightContain(msgId)) {
+			absentCount++;
+			return ABSENT;
+		}
+		queryCount++;
+		return UNKNOWN;
+	}
+
+	/**
+	 * Record the result of a query of the history
+	 *
+	 * @param chatId Chat ID
+	 * @param msgId Message ID
+	 * @param present Boolean, true if the message is in the history
+	 */
+	synchronized void setQueryResult(String chatId, String msgId, boolean present) {
+		if (present) {
+			cachedIds.put(getKey(chatId, msgId), Boolean.TRUE);
+		} else
+		if (filters.containsKey(chatId)) {
+			falsePositiveCount++;
+		}
+	}
+
+	/**
+	 * Add a message stored in the history
+	 *
+	 * @param chatId Chat ID
+	 * @param msgId Message ID
+	 */
+	synchronized void add(String chatId, String msgId) {
+		if ((chatId == null) || (msgId == null)) {
+			return;
+		}
+		cachedIds.put(getKey(chatId, msgId), Boolean.TRUE);
+		Filter filter = filters.get(chatId);
+		if (filter == null) {
+			// The message will be read with the other ones when the chat is checked
+			return;
+		}
+		if (filter.count >= filter.capacity) {
+			// The filter is full: it is loaded again with a bigger capacity when needed
+			filters.remove(chatId);
+		} else {
+			filter.add(msgId);
+		}
+	}
+
+	/**
+	 * Returns the statistics of the index
+	 *
+	 * @return Report with the number of checks and how they were answered
+	 */
+	synchronized String getStatistics() {
+		return "checks=" + checkCount + ", absent=" + absentCount + ", cached=" + cacheHitCount +
+				", queries=" + queryCount + ", false positives=" + falsePositiveCount +
+				", chats=" + filters.size();
+	}
+
+	/**
+	 * Load the message IDs of a chat from the history. The index is locked
+	 * meanwhile, so that no stored message is missed.
+	 *
+	 * @param chatId Chat ID
+	 * @return Filter or null if the history can't be read
+	 */
+	private Filter load(String chatId) {
+		Cursor cursor = null;
+		try {
+			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_MSG_ID },
+					MessageData.KEY_CHAT_ID + " = ? AND " + MessageData.KEY_MSG_ID + " IS NOT NULL",
+					new String[] { chatId }, null);
+			Filter filter = new Filter(Math.max(MIN_CAPACITY, 2 * cursor.getCount()));
+			while (cursor.moveToNext()) {
+				filter.add(cursor.getString(0));
+			}
+			filters.put(chatId, filter);
+			if (logger.isActivated()) {
+				logger.debug("Message IDs of chat " + chatId + " loaded: " + filter.count + " IDs");
+			}
+			return filter;
+		} catch (Exception e) {
+			if (logger.isActivated()) {
+				logger.error("Can't read the message IDs of chat " + chatId, e);
+			}
+			return null;
+		} finally {
+			if (cursor != null)
+				cursor.close();
+		}
+	}
+
+	/**
+	 * Returns the key of a message in the cache
+	 *
+	 * @param chatId Chat ID
+	 * @param msgId Message ID
+	 * @return Key
+	 */
+	private static String getKey(String chatId, String msgId) {
+		return chatId + '\n' + msgId;
+	}
+}
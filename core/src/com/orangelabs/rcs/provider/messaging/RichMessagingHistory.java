@@ -22,7 +22,12 @@ import java.io.ByteArrayOutputStream;
 import java.io.ObjectOutputStream;
 import java.util.ArrayList;
 import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import android.content.ContentResolver;
 import android.content.ContentValues;
@@ -33,7 +38,6 @@ import android.net.Uri;
 import com.gsma.services.rcs.chat.ChatLog;
 import com.gsma.services.rcs.chat.Geoloc;
 import com.gsma.services.rcs.chat.GroupChat;
-import com.gsma.services.rcs.chat.ParticipantInfo;
 import com.gsma.services.rcs.ft.FileTransfer;
 import com.orangelabs.rcs.core.content.MmContent;
 import com.orangelabs.rcs.core.ims.service.im.chat.FileTransferMessage;
@@ -41,7 +45,6 @@ import com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.GeolocPush;
 import com.orangelabs.rcs.core.ims.service.im.chat.GroupChatInfo;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
-import com.orangelabs.rcs.core.ims.service.im.chat.event.User;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.utils.PhoneUtils;
 import com.orangelabs.rcs.utils.logger.Logger;
@@ -52,6 +55,11 @@ import com.orangelabs.rcs.utils.logger.Logger;
  * @author Jean-Marc AUFFRET
  */
 public class RichMessagingHistory {
+	/**
+	 * Max number of arguments of a query (SQLite accepts 999)
+	 */
+	private static final int MAX_SELECTION_ARGS = 500;
+
 	/**
 	 * Current instance
 	 */
@@ -76,6 +84,11 @@ public class RichMessagingHistory {
 	 * File transfer database URI
 	 */
 	private Uri ftDatabaseUri = FileTransferData.CONTENT_URI;
+
+	/**
+	 * Index of the message IDs
+	 */
+	private MessageIdIndex msgIdIndex;
 	
 	/**
 	 * The logger
@@ -111,6 +124,7 @@ public class RichMessagingHistory {
 		super();
 		
         this.cr = ctx.getContentResolver();
+        this.msgIdIndex = new MessageIdIndex(cr, msgDatabaseUri);
 	}
 
 	/*--------------------- Group chat methods -----------------------*/
@@ -146,10 +160,10 @@ public class RichMessagingHistory {
 	 * @return String (contacts are comma separated)
 	 */
 	private static String getParticipants(List<String> participants) {
-		StringBuffer result = new StringBuffer();
+		StringBuilder result = new StringBuilder(participants.size() * 16);
 		for(String contact : participants){
 			if (contact != null) {
-				result.append(PhoneUtils.extractNumberFromUri(contact)+";");
+				result.append(PhoneUtils.extractNumberFromUri(contact)).append(';');
 			}
 		}
 		return result.toString();
@@ -251,13 +265,13 @@ public class RichMessagingHistory {
 	 * Get the group chat participants who have been connected to the chat
 	 * 
 	 * @param chatId Chat ID
-	 * @result List of contacts
+	 * @result List of contacts, the last connected first
 	 */
 	public List<String> getGroupChatConnectedParticipants(String chatId) {
 		if (logger.isActivated()) {
 			logger.debug("Get connected participants for " + chatId);
 		}
-		List<String> result = new ArrayList<String>();
+		Set<String> result = new LinkedHashSet<String>();
      	Cursor cursor = cr.query(msgDatabaseUri, 
     			new String[] {
     				MessageData.KEY_CONTACT
@@ -268,12 +282,12 @@ public class RichMessagingHistory {
     			MessageData.KEY_TIMESTAMP + " DESC");
     	while(cursor.moveToNext()) {
     		String participant = cursor.getString(0);
-    		if ((participant != null) && (!result.contains(participant))) {
+    		if (participant != null) {
     			result.add(participant);
     		}
     	}
     	cursor.close();
-    	return result;
+    	return new ArrayList<String>(result);
 	}
 
 	/*--------------------- Chat messages methods -----------------------*/
@@ -308,10 +322,48 @@ public class RichMessagingHistory {
 	 * @param direction Direction
 	 */
 	private void addChatMessage(InstantMessage msg, int type, int direction) {
-		String contact = PhoneUtils.extractNumberFromUri(msg.getRemote());
 		if (logger.isActivated()) {
-			logger.debug("Add chat message: contact=" + contact + ", msg=" + msg.getMessageId() + ", dir=" + direction);
+			logger.debug("Add chat message: contact=" + PhoneUtils.extractNumberFromUri(msg.getRemote()) + ", msg=" + msg.getMessageId() + ", dir=" + direction);
 		}
+		cr.insert(msgDatabaseUri, getChatMessageValues(msg, type, direction));
+		msgIdIndex.add(PhoneUtils.extractNumberFromUri(msg.getRemote()), msg.getMessageId());
+	}
+
+	/**
+	 * Add several chat messages in one request
+	 * 
+	 * @param msgs Chat messages
+	 * @param direction Direction
+	 */
+	public void addChatMessages(List<InstantMessage> msgs, int direction) {
+		if (msgs.isEmpty()) {
+			return;
+		}
+		if (logger.isActivated()) {
+			logger.debug("Add " + msgs.size() + " chat messages: dir=" + direction);
+		}
+		ContentValues[] values = new ContentValues[msgs.size()];
+		for (int i = 0; i < values.length; i++) {
+			InstantMessage msg = msgs.get(i);
+			int type = (msg instanceof FileTransferMessage) ? ChatLog.Message.Type.FILE_TRANSFER : ChatLog.Message.Type.CONTENT;
+			values[i] = getChatMessageValues(msg, type, direction);
+		}
+		cr.bulkInsert(msgDatabaseUri, values);
+		for (InstantMessage msg : msgs) {
+			msgIdIndex.add(PhoneUtils.extractNumberFromUri(msg.getRemote()), msg.getMessageId());
+		}
+	}
+
+	/**
+	 * Returns the values to insert for a chat message
+	 * 
+	 * @param msg Chat message
+	 * @param type Message type
+	 * @param direction Direction
+	 * @return Values
+	 */
+	private ContentValues getChatMessageValues(InstantMessage msg, int type, int direction) {
+		String contact = PhoneUtils.extractNumberFromUri(msg.getRemote());
 		ContentValues values = new ContentValues();
 		values.put(MessageData.KEY_CHAT_ID, contact);
 		values.put(MessageData.KEY_MSG_ID, msg.getMessageId());
@@ -357,7 +409,7 @@ public class RichMessagingHistory {
 			values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, 0);		
 			values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
 		}
-		cr.insert(msgDatabaseUri, values);
+		return values;
 	}
 	
 	/**
@@ -421,6 +473,7 @@ public class RichMessagingHistory {
 			values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
 		}
 		cr.insert(msgDatabaseUri, values);
+		msgIdIndex.add(chatId, msg.getMessageId());
 	}
 	
 	/**
@@ -457,6 +510,7 @@ public class RichMessagingHistory {
 		values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, 0);
 		values.put(MessageData.KEY_STATUS, ChatLog.Message.Status.Content.SENT);
 		cr.insert(msgDatabaseUri, values);
+		msgIdIndex.add(chatId, msg.getMessageId());
 	}
 	
 	/**
@@ -490,6 +544,43 @@ public class RichMessagingHistory {
 		if (logger.isActivated()) {
 			logger.debug("Update chat message: msgID=" + msgId + ", status=" + status);
 		}
+		cr.update(msgDatabaseUri, 
+				getStatusValues(status), 
+				MessageData.KEY_MSG_ID + " = '" + msgId + "'", 
+				null);
+	}
+
+	/**
+	 * Update the status of several chat messages in one request
+	 * 
+	 * @param msgIds List of message IDs
+	 * @param status Message status
+	 */
+	public void updateChatMessagesStatus(List<String> msgIds, int status) {
+		if (msgIds.isEmpty()) {
+			return;
+		}
+		if (logger.isActivated()) {
+			logger.debug("Update " + msgIds.size() + " chat messages: status=" + status);
+		}
+		StringBuilder where = new StringBuilder(MessageData.KEY_MSG_ID).append(" IN (");
+		for (int i = 0; i < msgIds.size(); i++) {
+			where.append((i == 0) ? "?" : ",?");
+		}
+		where.append(')');
+		cr.update(msgDatabaseUri, 
+				getStatusValues(status), 
+				where.toString(), 
+				msgIds.toArray(new String[msgIds.size()]));
+	}
+
+	/**
+	 * Returns the values to update for a new message status
+	 * 
+	 * @param status Message status
+	 * @return Values
+	 */
+	private ContentValues getStatusValues(int status) {
 		ContentValues values = new ContentValues();
 		values.put(MessageData.KEY_STATUS, status);
 		if (status == ChatLog.Message.Status.Content.UNREAD) {
@@ -500,10 +591,7 @@ public class RichMessagingHistory {
 			// Displayed
 			values.put(MessageData.KEY_TIMESTAMP_DISPLAYED, Calendar.getInstance().getTimeInMillis());
 		}
-		cr.update(msgDatabaseUri, 
-				values, 
-				MessageData.KEY_MSG_ID + " = '" + msgId + "'", 
-				null);
+		return values;
 	}
 	
 	/**
@@ -528,20 +616,48 @@ public class RichMessagingHistory {
     		RichMessagingHistory.getInstance().updateChatMessageStatus(msgId, ChatLog.Message.Status.Content.FAILED);
     	}
 	}
+
+	/**
+	 * Update the delivery status of several chat messages in one request
+	 * 
+	 * @param msgIds List of message IDs
+	 * @param status Delivery status
+	 */
+	public void updateChatMessagesDeliveryStatus(List<String> msgIds, String status) {
+    	if (status.equals(ImdnDocument.DELIVERY_STATUS_DELIVERED)) {
+    		updateChatMessagesStatus(msgIds, ChatLog.Message.Status.Content.UNREAD);
+    	} else
+    	if (status.equals(ImdnDocument.DELIVERY_STATUS_DISPLAYED)) {
+    		updateChatMessagesStatus(msgIds, ChatLog.Message.Status.Content.READ);
+    	} else 
+    	if (status.equals(ImdnDocument.DELIVERY_STATUS_ERROR)) {
+    		updateChatMessagesStatus(msgIds, ChatLog.Message.Status.Content.FAILED);
+    	}
+	}
     
     /**
-     * Check if it's a new message
+     * Check if it's a new message. The message IDs index is checked first,
+     * the history being queried only when the index can't answer.
      * 
      * @param chatId chat ID
      * @param msgId message ID
      * @return true if new message
      */
 	public boolean isNewMessage(String chatId, String msgId) {
+		switch(msgIdIndex.check(chatId, msgId)) {
+			case MessageIdIndex.ABSENT:
+				return true;
+			case MessageIdIndex.PRESENT:
+				return false;
+		}
+
 		Cursor cursor = null;
 		try {
 			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_MSG_ID }, "(" + MessageData.KEY_CHAT_ID + " = '"
 					+ chatId + "') AND (" + MessageData.KEY_MSG_ID + " = '" + msgId + "')", null, null);
-			return cursor.getCount() == 0;
+			boolean result = (cursor.getCount() == 0);
+			msgIdIndex.setQueryResult(chatId, msgId, !result);
+			return result;
 		} catch (Exception e) {
 			return false;
 		} finally {
@@ -549,6 +665,62 @@ public class RichMessagingHistory {
 				cursor.close();
 		}
 	}
+
+	/**
+	 * Returns the messages of a chat which are already in the history. The
+	 * messages are checked in the message IDs index first, then the remaining
+	 * ones by groups of MAX_SELECTION_ARGS IDs, one query per group.
+	 * 
+	 * @param chatId Chat ID
+	 * @param msgIds Message IDs
+	 * @return IDs of the messages already received
+	 */
+	public Set<String> getExistingMessageIds(String chatId, List<String> msgIds) {
+		Set<String> result = new HashSet<String>();
+		List<String> unknown = new ArrayList<String>();
+		for (String msgId : msgIds) {
+			switch(msgIdIndex.check(chatId, msgId)) {
+				case MessageIdIndex.PRESENT:
+					result.add(msgId);
+					break;
+				case MessageIdIndex.UNKNOWN:
+					unknown.add(msgId);
+					break;
+			}
+		}
+
+		for (int i = 0; i < unknown.size(); i += MAX_SELECTION_ARGS) {
+			List<String> group = unknown.subList(i, Math.min(unknown.size(), i + MAX_SELECTION_ARGS));
+			StringBuilder selection = new StringBuilder(MessageData.KEY_CHAT_ID).append(" = ? AND ")
+				.append(MessageData.KEY_MSG_ID).append(" IN (");
+			String[] selectionArgs = new String[group.size() + 1];
+			selectionArgs[0] = chatId;
+			for (int j = 0; j < group.size(); j++) {
+				selection.append((j == 0) ? "?" : ",?");
+				selectionArgs[j + 1] = group.get(j);
+			}
+			selection.append(')');
+			Cursor cursor = null;
+			try {
+				cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_MSG_ID },
+						selection.toString(), selectionArgs, null);
+				while (cursor.moveToNext()) {
+					result.add(cursor.getString(0));
+				}
+			} catch (Exception e) {
+				if (logger.isActivated()) {
+					logger.error("Can't read the messages of chat " + chatId, e);
+				}
+			} finally {
+				if (cursor != null)
+					cursor.close();
+			}
+		}
+		for (String msgId : unknown) {
+			msgIdIndex.setQueryResult(chatId, msgId, result.contains(msgId));
+		}
+		return result;
+	}
 	
 
 	/**
@@ -844,72 +1016,63 @@ public class RichMessagingHistory {
 	}
 	
 	/**
-	 * Get state event log value from conference state name
-	 * 
-	 * @param state
-	 *            Conference state
-	 * @return event log value
+	 * Add the system messages of several participants of a group chat in one
+	 * request
 	 * 
+	 * @param chatId Chat ID
+	 * @param status Status of the system message by contact
 	 */
-	private int getEventLogValue(String state) {
-		int event = ParticipantInfo.Status.UNKNOWN;
-		if (state.equals(User.STATE_BOOTED)) {
-			// Contact has lost the session and may rejoin the session after
-			event = ParticipantInfo.Status.BOOTED;
-		} else if (state.equals(User.STATE_DEPARTED)) {
-			// Contact has left voluntary the session
-			event = ParticipantInfo.Status.DEPARTED;
-		} else if (state.equals(User.STATE_DISCONNECTED)) {
-			// Contact has left voluntary the session
-			event = ParticipantInfo.Status.DISCONNECTED;
-		} else if (state.equals(User.STATE_CONNECTED)) {
-			// Contact has joined the session
-			event = ParticipantInfo.Status.CONNECTED;
-		} else if (state.equals(User.STATE_BUSY)) {
-			// Contact is busy
-			event = ParticipantInfo.Status.BUSY;
-		} else if (state.equals(User.STATE_PENDING)) {
-			// Contact is busy
-			event = ParticipantInfo.Status.PENDING;
-		} else if (state.equals(User.STATE_DECLINED)) {
-			// Contact has declined the invitation
-			event = ParticipantInfo.Status.DECLINED;
-		} else if (state.equals(User.STATE_FAILED)) {
-			// Any SIP error related to the contact invitation
-			event = ParticipantInfo.Status.FAILED;
-		}
-		return event;
+	public void addGroupChatSystemMessages(String chatId, Map<String, Integer> status) {
+		if (status.isEmpty()) {
+			return;
+		}
+		if (logger.isActivated()) {
+			logger.debug("Add " + status.size() + " group chat system messages: chatID=" + chatId);
+		}
+		long timestamp = Calendar.getInstance().getTimeInMillis();
+		ContentValues[] values = new ContentValues[status.size()];
+		int i = 0;
+		for (Map.Entry<String, Integer> entry : status.entrySet()) {
+			ContentValues value = new ContentValues();
+			value.put(MessageData.KEY_CHAT_ID, chatId);
+			value.put(MessageData.KEY_CONTACT, entry.getKey());
+			value.put(MessageData.KEY_TYPE, ChatLog.Message.Type.SYSTEM);
+			value.put(MessageData.KEY_STATUS, entry.getValue());
+			value.put(MessageData.KEY_DIRECTION, ChatLog.Message.Direction.IRRELEVANT);
+			value.put(ChatData.KEY_TIMESTAMP, timestamp);
+			values[i++] = value;
+		}
+		cr.bulkInsert(msgDatabaseUri, values);
 	}
-	
+
 	/**
-	 * Has the last known state changed for a participant
+	 * Returns the status of the last system message of each participant of a
+	 * group chat
 	 * 
-	 * @param chatId
-	 * @param participant
-	 * @param lastState
-	 * @return true if the state has changed for the participant since the last time
-	 */
-	public boolean hasLastKnownStateForParticipantChanged(String chatId, String participant, String lastState) {
-		int lastKnownState = -1;
-		String selection = MessageData.KEY_CHAT_ID + " = ? AND " //
-				+ MessageData.KEY_TYPE + " = ? AND "//
-				+ MessageData.KEY_CONTACT + " = ? ";
-		String[] selectionArgs = { chatId, "" + ChatLog.Message.Type.SYSTEM, participant };
+	 * @param chatId Chat ID
+	 * @return Status by contact
+	 */
+	public Map<String, Integer> getGroupChatSystemStatus(String chatId) {
+		Map<String, Integer> result = new HashMap<String, Integer>();
+		String selection = MessageData.KEY_CHAT_ID + " = ? AND " + MessageData.KEY_TYPE + " = ?";
+		String[] selectionArgs = { chatId, "" + ChatLog.Message.Type.SYSTEM };
 		Cursor cursor = null;
 		try {
-			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_STATUS }, selection, selectionArgs,
-					MessageData.KEY_TIMESTAMP + " DESC");
-			if (cursor.moveToNext()) {
-				lastKnownState = cursor.getInt(0);
+			cursor = cr.query(msgDatabaseUri, new String[] { MessageData.KEY_CONTACT, MessageData.KEY_STATUS },
+					selection, selectionArgs, MessageData.KEY_TIMESTAMP + " ASC");
+			while (cursor.moveToNext()) {
+				// The last message of a contact overrides the previous ones
+				result.put(cursor.getString(0), cursor.getInt(1));
 			}
 		} catch (Exception e) {
-			return true;
+			if (logger.isActivated()) {
+				logger.error("Can't read the participant states of chat " + chatId, e);
+			}
 		} finally {
 			if (cursor != null)
 				cursor.close();
 		}
-		return (lastKnownState == -1 // There was no known state yet
-		|| getEventLogValue(lastState) != lastKnownState); // Or the state has changed
+		return result;
 	}
 
 }
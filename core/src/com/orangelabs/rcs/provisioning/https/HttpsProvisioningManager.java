@@ -73,6 +73,7 @@ import com.orangelabs.rcs.provisioning.ProvisioningInfo.Version;
 import com.orangelabs.rcs.provisioning.ProvisioningParser;
 import com.orangelabs.rcs.provisioning.TermsAndConditionsRequest;
 import com.orangelabs.rcs.service.LauncherUtils;
+import com.orangelabs.rcs.utils.CoreExecutor;
 import com.orangelabs.rcs.utils.HttpUtils;
 import com.orangelabs.rcs.utils.NetworkUtils;
 import com.orangelabs.rcs.utils.StringUtils;
@@ -184,12 +185,11 @@ public class HttpsProvisioningManager {
     				if (logger.isActivated()) {
     					logger.debug("Connected to data network");
     				}
-    	            Thread t = new Thread() {
+    	            CoreExecutor.executeBlocking(new Runnable() {
     	                public void run() {
     	                    updateConfig();
     	                }
-    	            };
-    	            t.start();
+    	            });
 
                     // Unregister network state listener
     	            networkConnection.unregisterNetworkStateListener();
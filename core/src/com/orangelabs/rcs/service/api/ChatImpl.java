@@ -1,5 +1,7 @@
 package com.orangelabs.rcs.service.api;
 
+import java.util.List;
+
 import android.content.Intent;
 import android.os.RemoteCallbackList;
 
@@ -17,6 +19,7 @@ import com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.GeolocPush;
 import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
 import com.orangelabs.rcs.core.ims.service.im.chat.OneOneChatSession;
+import com.orangelabs.rcs.core.ims.service.im.chat.event.User;
 import com.orangelabs.rcs.core.ims.service.im.chat.imdn.ImdnDocument;
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.provider.messaging.RichMessagingHistory;
@@ -207,17 +210,13 @@ public class ChatImpl extends IChat.Stub implements ChatSessionListener {
 				// Generate a message Id
 				final String msgId = IdGenerator.generateMessageID();
 		
-				// Send message
-		        Thread t = new Thread() {
-		    		public void run() {
-						if (msg instanceof GeolocMessage) {
-							session.sendGeolocMessage(msgId, ((GeolocMessage)msg).getGeoloc());
-						} else {
-							session.sendTextMessage(msgId, msg.getTextMessage());					
-						}
-		    		}
-		    	};
-		    	t.start();
+				// Send message: the message is queued by the session, the caller
+				// waits only if the queue is full
+				if (msg instanceof GeolocMessage) {
+					session.sendGeolocMessage(msgId, ((GeolocMessage)msg).getGeoloc());
+				} else {
+					session.sendTextMessage(msgId, msg.getTextMessage());
+				}
 				return msgId;
 	    	}
 		}    	
@@ -234,22 +233,11 @@ public class ChatImpl extends IChat.Stub implements ChatSessionListener {
 				logger.debug("Set displayed delivery report for " + msgId);
 			}
 
-			// Send delivery status
-			if ((session != null) &&
-					(session.getDialogPath() != null) &&
-						(session.getDialogPath().isSessionEstablished())) { 
-				// Send via MSRP
-		        Thread t = new Thread() {
-		    		public void run() {
-						session.sendMsrpMessageDeliveryStatus(session.getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DISPLAYED);
-		    		}
-		    	};
-		    	t.start();
-			} else {
-				// Send via SIP MESSAGE
-				Core.getInstance().getImService().getImdnManager().sendMessageDeliveryStatus(
-						session.getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DISPLAYED);
-			}
+			// Send delivery status, aggregated with the other pending ones: the
+			// IMDN manager sends it via MSRP if the session is established, else
+			// via SIP MESSAGE
+			Core.getInstance().getImService().getImdnManager().sendMessageDeliveryStatus(
+					session.getRemoteContact(), msgId, ImdnDocument.DELIVERY_STATUS_DISPLAYED);
 		} catch(Exception e) {
 			if (logger.isActivated()) {
 				logger.error("Could not send MSRP delivery status",e);
@@ -265,12 +253,7 @@ public class ChatImpl extends IChat.Stub implements ChatSessionListener {
      */
     public void sendIsComposingEvent(final boolean status) {
     	if (session != null) {
-	        Thread t = new Thread() {
-	    		public void run() {
-	        		session.sendIsComposingStatus(status);
-	    		}
-	    	};
-	    	t.start();
+    		session.sendIsComposingStatus(status);
     	}
     }
 	
@@ -395,6 +378,85 @@ public class ChatImpl extends IChat.Stub implements ChatSessionListener {
 	    }
     }
     
+    /* (non-Javadoc)
+     * @see com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener#handleReceiveMessages(java.util.List)
+     */
+    public void handleReceiveMessages(List<InstantMessage> messages) {
+    	if (messages.isEmpty()) {
+    		return;
+    	}
+    	synchronized(lock) {
+			if (logger.isActivated()) {
+				logger.info(messages.size() + " new IM received");
+			}
+			
+			// Update rich messaging history in one transaction
+			RichMessagingHistory.getInstance().addChatMessages(messages, ChatLog.Message.Direction.INCOMING);
+			
+			// Broadcast intent related to the last received message, the
+			// previous ones are read from the history
+			InstantMessage last = messages.get(messages.size() - 1);
+	    	Intent intent = new Intent(ChatIntent.ACTION_NEW_CHAT);
+	    	intent.addFlags(Intent.FLAG_EXCLUDE_STOPPED_PACKAGES);
+	    	intent.putExtra(ChatIntent.EXTRA_CONTACT, PhoneUtils.extractNumberFromUri(last.getRemote()));
+	    	intent.putExtra(ChatIntent.EXTRA_DISPLAY_NAME, session.getRemoteDisplayName());
+	    	if (last instanceof GeolocMessage) {
+	    		intent.putExtra(ChatIntent.EXTRA_MESSAGE, createGeolocApi((GeolocMessage)last));
+	    	} else {
+	    		intent.putExtra(ChatIntent.EXTRA_MESSAGE, createMessageApi(last));
+	    	}
+	    	AndroidFactory.getApplicationContext().sendBroadcast(intent);
+
+	    	// Notify event listeners of all the messages in one broadcast
+			final int N = listeners.beginBroadcast();
+	        for (int i=0; i < N; i++) {
+	            try {
+	            	IChatListener listener = listeners.getBroadcastItem(i);
+	            	for (InstantMessage message : messages) {
+	            		if (message instanceof GeolocMessage) {
+	            			listener.onNewGeoloc(createGeolocApi((GeolocMessage)message));
+	            		} else {
+	            			listener.onNewMessage(createMessageApi(message));
+	            		}
+	            	}
+	            } catch(Exception e) {
+	            	if (logger.isActivated()) {
+	            		logger.error("Can't notify listener", e);
+	            	}
+	            }
+	        }
+	        listeners.finishBroadcast();		
+	    }
+    }
+    
+    /**
+     * Create the API object of a chat message
+     * 
+     * @param message Message
+     * @return Chat message
+     */
+    private ChatMessage createMessageApi(InstantMessage message) {
+    	return new ChatMessage(message.getMessageId(),
+    			PhoneUtils.extractNumberFromUri(message.getRemote()),
+    			message.getTextMessage(),
+    			message.getServerDate(), message.isImdnDisplayedRequested());
+    }
+    
+    /**
+     * Create the API object of a geoloc message
+     * 
+     * @param geoloc Geoloc message
+     * @return Geoloc message
+     */
+    private com.gsma.services.rcs.chat.GeolocMessage createGeolocApi(GeolocMessage geoloc) {
+    	Geoloc geolocApi = new Geoloc(geoloc.getGeoloc().getLabel(),
+    			geoloc.getGeoloc().getLatitude(), geoloc.getGeoloc().getLongitude(),
+    			geoloc.getGeoloc().getExpiration());
+    	return new com.gsma.services.rcs.chat.GeolocMessage(geoloc.getMessageId(),
+    			PhoneUtils.extractNumberFromUri(geoloc.getRemote()),
+    			geolocApi, geoloc.getDate(), geoloc.isImdnDisplayedRequested());
+    }
+    
     /* (non-Javadoc)
      * @see com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener#handleReceiveGeoloc(com.orangelabs.rcs.core.ims.service.im.chat.GeolocMessage)
      */
@@ -533,13 +595,11 @@ public class ChatImpl extends IChat.Stub implements ChatSessionListener {
     }
     
     /**
-     * Conference event
+     * Conference events
      * 
-	 * @param contact Contact
-	 * @param contactDisplayname Contact display name
-     * @param state State associated to the contact
+     * @param users Participants whose state has changed
      */
-    public void handleConferenceEvent(String contact, String contactDisplayname, String state) {
+    public void handleConferenceEvents(List<User> users) {
     	// Not used here
     }
     
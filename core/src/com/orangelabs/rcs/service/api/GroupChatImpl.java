@@ -254,7 +254,7 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 		}
 
 		int max = session.getMaxParticipants()-1;
-		int connected = session.getConnectedParticipants().getList().size(); 
+		int connected = session.getConnectedParticipants().size(); 
         if (connected < max) {
             // Add a list of participants to the session
 	        Thread t = new Thread() {
@@ -279,13 +279,9 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 		// Generate a message Id
 		final String msgId = IdGenerator.generateMessageID();
 
-		// Send text message
-        Thread t = new Thread() {
-    		public void run() {
-    			session.sendTextMessage(msgId, text);
-    		}
-    	};
-    	t.start();
+		// Send text message: the message is queued by the session, the caller
+		// waits only if the queue is full
+		session.sendTextMessage(msgId, text);
 
 		return msgId;
 	}
@@ -304,12 +300,7 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 		final GeolocPush geolocPush = new GeolocPush(geoloc.getLabel(),
 				geoloc.getLatitude(), geoloc.getLongitude(),
 				geoloc.getExpiration(), geoloc.getAccuracy());
-        Thread t = new Thread() {
-    		public void run() {
-    			session.sendGeolocMessage(msgId, geolocPush);
-    		}
-    	};
-    	t.start();
+		session.sendGeolocMessage(msgId, geolocPush);
 		return msgId;
     }	
 
@@ -371,12 +362,7 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 	 * @param status Is-composing status
 	 */
 	public void sendIsComposingEvent(final boolean status) {
-        Thread t = new Thread() {
-    		public void run() {
-    			session.sendIsComposingStatus(status);
-    		}
-    	};
-    	t.start();
+		session.sendIsComposingStatus(status);
 	}
 	
     /**
@@ -649,46 +635,36 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 	}
 	
     /* (non-Javadoc)
-     * @see com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener#handleConferenceEvent(java.lang.String, java.lang.String, java.lang.String)
+     * @see com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener#handleConferenceEvents(java.util.List)
      */
-    public void handleConferenceEvent(String contact, String contactDisplayname, String state) {
+    public void handleConferenceEvents(List<User> users) {
     	synchronized(lock) {
-        	contact = PhoneUtils.extractNumberFromUri(contact);
-
         	if (logger.isActivated()) {
-				logger.info("New conference event " + state + " for " + contact);
+				logger.info("New conference events for " + users.size() + " participants");
 			}
 			
-	  		// Update history and notify event listeners
+	  		// Notify event listeners, the history being updated by the session
 			final int N = listeners.beginBroadcast();
 	        for (int i=0; i < N; i++) {
-	            try {
-	            	if (state.equals(User.STATE_CONNECTED)) {
-	        			// Update rich messaging history
-	        			RichMessagingHistory.getInstance().addGroupChatSystemMessage(session.getContributionID(), contact, ChatLog.Message.Status.System.JOINED);
-
-	        	  		// Notify event listener
-	        			listeners.getBroadcastItem(i).onParticipantJoined(contact, contactDisplayname);
-	            	} else
-	            	if (state.equals(User.STATE_DISCONNECTED)) {
-	        			// Update rich messaging history
-	        			RichMessagingHistory.getInstance().addGroupChatSystemMessage(session.getContributionID(), contact, ChatLog.Message.Status.System.DISCONNECTED);
-
-	        	  		// Notify event listener
-	        			listeners.getBroadcastItem(i).onParticipantDisconnected(contact);
-	            	} else
-	            	if (state.equals(User.STATE_DEPARTED)) {
-	        			// Update rich messaging history
-	        			RichMessagingHistory.getInstance().addGroupChatSystemMessage(session.getContributionID(), contact, ChatLog.Message.Status.System.GONE);
-
-	        	  		// Notify event listener
-	        			listeners.getBroadcastItem(i).onParticipantLeft(contact);
-	            	}
-	            } catch(Exception e) {
-	            	if (logger.isActivated()) {
-	            		logger.error("Can't notify listener", e);
-	            	}
-	            }
+	        	for (User user : users) {
+		            try {
+		            	String contact = user.getEntity();
+		            	String state = user.getState();
+		            	if (state.equals(User.STATE_CONNECTED)) {
+		        			listeners.getBroadcastItem(i).onParticipantJoined(contact, user.getDisplayName());
+		            	} else
+		            	if (state.equals(User.STATE_DISCONNECTED)) {
+		        			listeners.getBroadcastItem(i).onParticipantDisconnected(contact);
+		            	} else
+		            	if (state.equals(User.STATE_DEPARTED)) {
+		        			listeners.getBroadcastItem(i).onParticipantLeft(contact);
+		            	}
+		            } catch(Exception e) {
+		            	if (logger.isActivated()) {
+		            		logger.error("Can't notify listener", e);
+		            	}
+		            }
+	        	}
 	        }
 	        listeners.finishBroadcast();
 	    }
@@ -757,6 +733,20 @@ public class GroupChatImpl extends IGroupChat.Stub implements ChatSessionListene
 	    }  
     }
 
+    /* (non-Javadoc)
+     * @see com.orangelabs.rcs.core.ims.service.im.chat.ChatSessionListener#handleReceiveMessages(java.util.List)
+     */
+    public void handleReceiveMessages(List<InstantMessage> messages) {
+    	// Not received together in group chat
+    	for (InstantMessage message : messages) {
+    		if (message instanceof GeolocMessage) {
+    			handleReceiveGeoloc((GeolocMessage)message);
+    		} else {
+    			handleReceiveMessage(message);
+    		}
+    	}
+    }
+
     /**
      * New geoloc message received
      * 
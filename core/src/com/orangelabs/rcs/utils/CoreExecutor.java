@@ -0,0 +1,286 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+import com.orangelabs.rcs.utils.logger.Logger;
+
+/**
+ * Executors shared by the core instead of creating a thread per task:
+ * <ul>
+ * <li>a pool for the short background tasks,</li>
+ * <li>a larger pool for the tasks which block on the network (SIP
+ * transactions, HTTP requests),</li>
+ * <li>a scheduler for the delayed and periodic tasks, which must not block.</li>
+ * </ul>
+ * The pools are bounded: when a pool and its queue are full, the task is run
+ * in a new thread, as before. The thread counts, queue lengths and task
+ * latencies of all the pools are reported by {@link #getStatistics()}.
+ */
+public class CoreExecutor {
+	/**
+	 * Max number of threads for the short tasks
+	 */
+	private final static int MAX_TASK_THREADS = 4;
+
+	/**
+	 * Max number of threads for the blocking tasks
+	 */
+	private final static int MAX_NETWORK_THREADS = 16;
+
+	/**
+	 * Number of threads of the scheduler
+	 */
+	private final static int SCHEDULER_THREADS = 2;
+
+	/**
+	 * Max number of tasks waiting in a pool
+	 */
+	private final static int MAX_QUEUE_SIZE = 256;
+
+	/**
+	 * Idle time after which a thread ends (in seconds)
+	 */
+	private final static int KEEP_ALIVE_TIME = 30;
+
+	/**
+	 * Pool of the short tasks
+	 */
+	private static Pool tasks = new Pool("CoreTask", MAX_TASK_THREADS);
+
+	/**
+	 * Pool of the blocking tasks
+	 */
+	private static Pool network = new Pool("CoreNetwork", MAX_NETWORK_THREADS);
+
+	/**
+	 * Scheduler
+	 */
+	private static Scheduler scheduler = new Scheduler("CoreTimer", SCHEDULER_THREADS);
+
+	/**
+	 * The logger
+	 */
+	private static Logger logger = Logger.getLogger(CoreExecutor.class.getName());
+
+	/**
+	 * Execute a short task in background
+	 *
+	 * @param task Task
+	 */
+	public static void execute(Runnable task) {
+		tasks.execute(new TrackedTask(task, tasks.statistics, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Execute in background a task which blocks on the network
+	 *
+	 * @param task Task
+	 */
+	public static void executeBlocking(Runnable task) {
+		network.execute(new TrackedTask(task, network.statistics, System.currentTimeMillis()));
+	}
+
+	/**
+	 * Execute a task after a delay
+	 *
+	 * @param task Task
+	 * @param delay Delay in milliseconds
+	 * @return Future used to cancel the task
+	 */
+	public static ScheduledFuture<?> schedule(Runnable task, long delay) {
+		return scheduler.schedule(new TrackedTask(task, scheduler.statistics, System.currentTimeMillis() + delay),
+				delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Execute a task periodically, with a fixed delay between the end of an
+	 * execution and the start of the next one
+	 *
+	 * @param task Task
+	 * @param initialDelay Delay before the first execution in milliseconds
+	 * @param delay Delay between two executions in milliseconds
+	 * @return Future used to cancel the task
+	 */
+	public static ScheduledFuture<?> scheduleWithFixedDelay(Runnable task, long initialDelay, long delay) {
+		TrackedTask tracked = new TrackedTask(task, scheduler.statistics, System.currentTimeMillis() + initialDelay);
+		tracked.delay = delay;
+		return scheduler.scheduleWithFixedDelay(tracked, initialDelay, delay, TimeUnit.MILLISECONDS);
+	}
+
+	/**
+	 * Returns the statistics of the executors
+	 *
+	 * @return Report with, for each pool, the number of threads, the number
+	 * of waiting tasks and the latency between the expected and the effective
+	 * start of the tasks
+	 */
+	public static String getStatistics() {
+		StringBuilder result = new StringBuilder();
+		tasks.report(result);
+		network.report(result);
+		scheduler.report(result);
+		return result.toString();
+	}
+
+	/**
+	 * Thread factory creating named daemon threads
+	 */
+	private static class NamedThreadFactory implements ThreadFactory {
+		private String name;
+		private int count = 0;
+
+		NamedThreadFactory(String name) {
+			this.name = name;
+		}
+
+		public synchronized Thread newThread(Runnable r) {
+			Thread t = new Thread(r, name + "-" + (++count));
+			t.setDaemon(true);
+			return t;
+		}
+	}
+
+	/**
+	 * Bounded pool of threads
+	 */
+	private static class Pool extends ThreadPoolExecutor {
+		private String name;
+		private Statistics statistics = new Statistics();
+
+		Pool(final String name, int threads) {
+			super(threads, threads, KEEP_ALIVE_TIME, TimeUnit.SECONDS,
+					new LinkedBlockingQueue<Runnable>(MAX_QUEUE_SIZE),
+					new NamedThreadFactory(name),
+					new RejectedExecutionHandler() {
+						public void rejectedExecution(Runnable r, ThreadPoolExecutor executor) {
+							// The pool is saturated: use a dedicated thread
+							if (logger.isActivated()) {
+								logger.warn("Pool " + name + " is full: task run in a new thread");
+							}
+							new Thread(r, name + "-overflow").start();
+						}
+					});
+			this.name = name;
+			allowCoreThreadTimeOut(true);
+		}
+
+		void report(StringBuilder result) {
+			result.append(name)
+				.append(": threads=").append(getPoolSize())
+				.append(", active=").append(getActiveCount())
+				.append(", queue=").append(getQueue().size());
+			statistics.report(result);
+			result.append('\n');
+		}
+	}
+
+	/**
+	 * Scheduler of the delayed and periodic tasks
+	 */
+	private static class Scheduler extends ScheduledThreadPoolExecutor {
+		private String name;
+		private Statistics statistics = new Statistics();
+
+		Scheduler(String name, int threads) {
+			super(threads, new NamedThreadFactory(name));
+			this.name = name;
+		}
+
+		void report(StringBuilder result) {
+			result.append(name)
+				.append(": threads=").append(getPoolSize())
+				.append(", active=").append(getActiveCount())
+				.append(", scheduled=").append(getQueue().size());
+			statistics.report(result);
+			result.append('\n');
+		}
+	}
+
+	/**
+	 * Task measuring its latency
+	 */
+	private static class TrackedTask implements Runnable {
+		private Runnable task;
+		private Statistics statistics;
+		private long expected;
+		private long delay = -1;
+
+		TrackedTask(Runnable task, Statistics statistics, long expected) {
+			this.task = task;
+			this.statistics = statistics;
+			this.expected = expected;
+		}
+
+		public void run() {
+			long start = System.currentTimeMillis();
+			try {
+				task.run();
+			} catch(RuntimeException e) {
+				if (logger.isActivated()) {
+					logger.error("Background task has failed", e);
+				}
+				if (delay < 0) {
+					throw e;
+				}
+			} finally {
+				long end = System.currentTimeMillis();
+				statistics.add(Math.max(0, start - expected), end - start);
+				if (delay >= 0) {
+					expected = end + delay;
+				}
+			}
+		}
+	}
+
+	/**
+	 * Latency statistics of a pool
+	 */
+	private static class Statistics {
+		private long count = 0;
+		private long totalLatency = 0;
+		private long maxLatency = 0;
+		private long totalDuration = 0;
+
+		synchronized void add(long latency, long duration) {
+			count++;
+			totalLatency += latency;
+			if (latency > maxLatency) {
+				maxLatency = latency;
+			}
+			totalDuration += duration;
+		}
+
+		synchronized void report(StringBuilder result) {
+			result.append(", tasks=").append(count);
+			if (count > 0) {
+				result.append(", latency avg=").append(totalLatency / count)
+					.append("ms max=").append(maxLatency)
+					.append("ms, duration avg=").append(totalDuration / count).append("ms");
+			}
+		}
+	}
+}
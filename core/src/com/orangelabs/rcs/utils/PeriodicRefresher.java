@@ -25,16 +25,31 @@ import android.content.Context;
 import android.content.Intent;
 import android.content.IntentFilter;
 
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.Vector;
+
 import com.orangelabs.rcs.platform.AndroidFactory;
 import com.orangelabs.rcs.utils.logger.Logger;
 
 /**
- * Periodic refresher
+ * Periodic refresher. A timer may be started with a window, during which its
+ * expiration can be anticipated to share the wake-up of another timer.
  *
  * @author JM. Auffret
  */
 public abstract class PeriodicRefresher {
 	/**
+	 * Started timers, used to align the wake-ups
+	 */
+	private static Vector<PeriodicRefresher> timers = new Vector<PeriodicRefresher>();
+
+	/**
+	 * Times of the wake-ups during the last hour
+	 */
+	private static LinkedList<Long> wakeUps = new LinkedList<Long>();
+
+	/**
      * Keep alive manager
      */
     private KeepAlive alarmReceiver = new KeepAlive(); 
@@ -58,6 +73,11 @@ public abstract class PeriodicRefresher {
      * Polling period
      */
     private int pollingPeriod;
+
+    /**
+     * Time of the alarm
+     */
+    private long alarmTime = 0;
     
     /**
      * The logger
@@ -97,7 +117,19 @@ public abstract class PeriodicRefresher {
      * @param expirePeriod Expiration period in seconds
      * @param delta Delta to apply on the expire period in percentage
      */
-    public synchronized void startTimer(int expirePeriod, double delta) {
+    public void startTimer(int expirePeriod, double delta) {
+    	startTimer(expirePeriod, delta, 0);
+    }
+
+    /**
+     * Start the timer
+     * 
+     * @param expirePeriod Expiration period in seconds
+     * @param delta Delta to apply on the expire period in percentage
+     * @param window Period in seconds by which the expiration may be anticipated
+     * to share the wake-up of another timer
+     */
+    public synchronized void startTimer(int expirePeriod, double delta, int window) {
     	// Check expire period
     	if (expirePeriod <= 0) {
     		// Expire period is null
@@ -116,9 +148,19 @@ public abstract class PeriodicRefresher {
         // Register the alarm receiver
     	AndroidFactory.getApplicationContext().registerReceiver(alarmReceiver, new IntentFilter(action));		
     	
-    	// Start alarm from now to the expire value
+    	// Start alarm from now to the expire value, or to the alarm of another timer
+        long time = System.currentTimeMillis() + pollingPeriod*1000L;
+        synchronized(timers) {
+        	if (window > 0) {
+        		time = alignAlarm(time, window*1000L);
+        	}
+        	alarmTime = time;
+        	if (!timers.contains(this)) {
+        		timers.add(this);
+        	}
+        }
         AlarmManager am = (AlarmManager)AndroidFactory.getApplicationContext().getSystemService(Context.ALARM_SERVICE);
-        am.set(AlarmManager.RTC_WAKEUP, System.currentTimeMillis()+pollingPeriod*1000, alarmIntent);
+        am.set(AlarmManager.RTC_WAKEUP, time, alarmIntent);
 
         // The timer is started
     	timerStarted = true;
@@ -139,6 +181,7 @@ public abstract class PeriodicRefresher {
 
     	// The timer is stopped
 		timerStarted = false;
+		timers.remove(this);
 		
 		// Cancel alarm
 		AlarmManager am = (AlarmManager)AndroidFactory.getApplicationContext().getSystemService(Context.ALARM_SERVICE);
@@ -152,18 +195,83 @@ public abstract class PeriodicRefresher {
 	    }
     }
 
+    /**
+     * Returns the alarm time of another timer which expires in a window before
+     * a given time, so that both timers share the same wake-up
+     * 
+     * @param time Alarm time
+     * @param window Window in milliseconds
+     * @return Aligned alarm time or the given time if there is no timer to align with
+     */
+    private long alignAlarm(long time, long window) {
+    	long now = System.currentTimeMillis();
+    	long result = 0;
+    	for (PeriodicRefresher timer : timers) {
+    		long other = timer.alarmTime;
+    		if ((timer != this) && (other > now) && (other >= time - window) && (other <= time) && (other > result)) {
+    			result = other;
+    		}
+    	}
+    	if (result == 0) {
+    		return time;
+    	}
+    	if (logger.isActivated()) {
+    		logger.debug("Timer aligned with another timer, " + (time - result) + "ms earlier");
+    	}
+    	return result;
+    }
+
+    /**
+     * Record a wake-up, the alarms which expire at the same time counting as one wake-up
+     */
+    private static void recordWakeUp() {
+    	long now = System.currentTimeMillis();
+    	synchronized(wakeUps) {
+    		if (wakeUps.isEmpty() || (now - wakeUps.getLast().longValue() > 1000)) {
+    			wakeUps.add(Long.valueOf(now));
+    		}
+    		removeOldWakeUps(now);
+    	}
+    }
+
+    /**
+     * Returns the number of wake-ups done by the timers during the last hour
+     * 
+     * @return Number of wake-ups
+     */
+    public static int getWakeUpsPerHour() {
+    	synchronized(wakeUps) {
+    		removeOldWakeUps(System.currentTimeMillis());
+    		return wakeUps.size();
+    	}
+    }
+
+    /**
+     * Remove the wake-ups older than one hour
+     * 
+     * @param now Current time
+     */
+    private static void removeOldWakeUps(long now) {
+    	long limit = now - 3600000L;
+    	Iterator<Long> it = wakeUps.iterator();
+    	while (it.hasNext() && (it.next().longValue() < limit)) {
+    		it.remove();
+    	}
+    }
+
     /**
      * Keep alive manager
      */
     private class KeepAlive extends BroadcastReceiver {
-    	public void onReceive(Context context, Intent intent) {
-    		Thread t = new Thread() {
+    	public void onReceive(Context context, Intent intent) {
+    		recordWakeUp();
+
+    		CoreExecutor.executeBlocking(new Runnable() {
     			public void run() {
     				// Processing
     				periodicProcessing();
     			}
-    		};
-    		t.start();
+    		});
     	}
     }    
 }
@@ -0,0 +1,1149 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package com.orangelabs.rcs.utils;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+
+import javax.xml.parsers.ParserConfigurationException;
+import javax.xml.parsers.SAXParser;
+import javax.xml.parsers.SAXParserFactory;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.SAXParseException;
+import org.xml.sax.helpers.DefaultHandler;
+
+/**
+ * Pull parser for the small XML documents of the RCS services (IMDN,
+ * is-composing, conference-info, PIDF...). The documents are read directly
+ * from their UTF-8 bytes, the namespaces are resolved and the names are
+ * interned in a table of the parser, so that a document costs little more
+ * than its text and attribute values.
+ * <p>
+ * The parsers of the documents are SAX handlers: {@link #parse(InputSource, DefaultHandler)}
+ * delivers the events of the pull parser to a handler, using one parser per
+ * thread. The documents which are not handled (DTD, encoding other than
+ * UTF-8) are passed to the platform SAX parser, also kept per thread.
+ */
+public class XmlParser {
+	/**
+	 * Event types
+	 */
+	public final static int START_DOCUMENT = 0;
+	public final static int END_DOCUMENT = 1;
+	public final static int START_TAG = 2;
+	public final static int END_TAG = 3;
+	public final static int TEXT = 4;
+
+	/**
+	 * Namespace of the "xml" prefix
+	 */
+	private final static String XML_NAMESPACE = "http://www.w3.org/XML/1998/namespace";
+
+	/**
+	 * Size of the table of interned names
+	 */
+	private final static int NAME_TABLE_SIZE = 256;
+
+	/**
+	 * Max size of the text buffer kept between two documents
+	 */
+	private final static int MAX_KEPT_BUFFER = 16 * 1024;
+
+	/**
+	 * UTF-8 charset
+	 */
+	private final static Charset UTF8 = Charset.forName("UTF-8");
+
+	/**
+	 * Parsers of the threads, removed while they are in use
+	 */
+	private static ThreadLocal<XmlParser> parsers = new ThreadLocal<XmlParser>();
+
+	/**
+	 * SAX parsers of the threads, removed while they are in use
+	 */
+	private static ThreadLocal<SAXParser> saxParsers = new ThreadLocal<SAXParser>();
+
+	/**
+	 * SAX parser factory, namespace aware as the pull parser
+	 */
+	private static SAXParserFactory saxFactory = SAXParserFactory.newInstance();
+	static {
+		saxFactory.setNamespaceAware(true);
+	}
+
+	/**
+	 * Document
+	 */
+	private byte[] buf;
+	private int pos;
+	private int end;
+
+	/**
+	 * Current event
+	 */
+	private int eventType = START_DOCUMENT;
+
+	/**
+	 * Has the root element been read
+	 */
+	private boolean rootRead = false;
+
+	/**
+	 * Is the current start tag an empty element
+	 */
+	private boolean emptyElement = false;
+
+	/**
+	 * Stack of the open elements
+	 */
+	private int depth = 0;
+	private String[] elementNamespaces = new String[16];
+	private String[] elementNames = new String[16];
+	private String[] elementQNames = new String[16];
+	private int[] namespaceMarks = new int[16];
+
+	/**
+	 * Declared namespaces, the innermost ones last
+	 */
+	private int namespaceCount = 0;
+	private String[] namespacePrefixes = new String[16];
+	private String[] namespaceUris = new String[16];
+
+	/**
+	 * Attributes of the current start tag
+	 */
+	private int attributeCount = 0;
+	private String[] attributePrefixes = new String[8];
+	private String[] attributeNamespaces = new String[8];
+	private String[] attributeNames = new String[8];
+	private String[] attributeQNames = new String[8];
+	private String[] attributeValues = new String[8];
+
+	/**
+	 * Text of the current event
+	 */
+	private char[] text = new char[256];
+	private int textLength = 0;
+
+	/**
+	 * Interned names
+	 */
+	private byte[][] nameBytes = new byte[NAME_TABLE_SIZE][];
+	private String[] nameStrings = new String[NAME_TABLE_SIZE];
+
+	/**
+	 * Prefix of the last read name, null if none
+	 */
+	private String namePrefix;
+
+	/**
+	 * Local part of the last read name
+	 */
+	private String nameLocal;
+
+	/**
+	 * SAX view of the attributes
+	 */
+	private Attributes attributes = new AttributeList();
+
+	/**
+	 * Parse a document with a SAX handler
+	 *
+	 * @param input Input source
+	 * @param handler Handler
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static void parse(InputSource input, DefaultHandler handler)
+			throws ParserConfigurationException, SAXException, IOException {
+		InputStream stream = input.getByteStream();
+		String encoding = input.getEncoding();
+		if ((stream == null) || ((encoding != null) && !isUtf8(encoding))) {
+			parseWithSax(input, handler);
+			return;
+		}
+		parse(readBytes(stream), handler);
+	}
+
+	/**
+	 * Parse a document with a SAX handler
+	 *
+	 * @param data Document
+	 * @param handler Handler
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	public static void parse(byte[] data, DefaultHandler handler)
+			throws ParserConfigurationException, SAXException, IOException {
+		XmlParser parser = parsers.get();
+		if (parser == null) {
+			parser = new XmlParser();
+		} else {
+			parsers.set(null);
+		}
+		try {
+			if (parser.setInput(data)) {
+				parser.dispatch(handler);
+				return;
+			}
+		} finally {
+			parser.release();
+			parsers.set(parser);
+		}
+		parseWithSax(new InputSource(new ByteArrayInputStream(data)), handler);
+	}
+
+	/**
+	 * Parse a document with the platform SAX parser
+	 *
+	 * @param input Input source
+	 * @param handler Handler
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws IOException
+	 */
+	private static void parseWithSax(InputSource input, DefaultHandler handler)
+			throws ParserConfigurationException, SAXException, IOException {
+		SAXParser parser = saxParsers.get();
+		if (parser == null) {
+			synchronized(saxFactory) {
+				parser = saxFactory.newSAXParser();
+			}
+		} else {
+			saxParsers.set(null);
+			parser.reset();
+		}
+		try {
+			parser.parse(input, handler);
+		} finally {
+			saxParsers.set(parser);
+		}
+	}
+
+	/**
+	 * Read all the bytes of a stream
+	 *
+	 * @param stream Stream
+	 * @return Bytes
+	 * @throws IOException
+	 */
+	private static byte[] readBytes(InputStream stream) throws IOException {
+		ByteArrayOutputStream result = new ByteArrayOutputStream(Math.max(stream.available(), 256));
+		byte[] data = new byte[1024];
+		int n;
+		while ((n = stream.read(data)) != -1) {
+			result.write(data, 0, n);
+		}
+		return result.toByteArray();
+	}
+
+	/**
+	 * Is an encoding handled by the parser
+	 *
+	 * @param encoding Encoding name
+	 * @return Boolean
+	 */
+	private static boolean isUtf8(String encoding) {
+		return encoding.equalsIgnoreCase("UTF-8") || encoding.equalsIgnoreCase("UTF8") ||
+				encoding.equalsIgnoreCase("US-ASCII") || encoding.equalsIgnoreCase("ASCII");
+	}
+
+	/**
+	 * Set the document to be parsed
+	 *
+	 * @param data Document
+	 * @return Boolean, false if the document is not handled by the parser
+	 */
+	public boolean setInput(byte[] data) {
+		buf = data;
+		pos = 0;
+		end = data.length;
+		eventType = START_DOCUMENT;
+		emptyElement = false;
+		rootRead = false;
+		depth = 0;
+		namespaceCount = 0;
+		attributeCount = 0;
+		textLength = 0;
+
+		// Skip the UTF-8 byte order mark
+		if ((end >= 3) && ((buf[0] & 0xFF) == 0xEF) && ((buf[1] & 0xFF) == 0xBB) && ((buf[2] & 0xFF) == 0xBF)) {
+			pos = 3;
+		}
+		return checkProlog();
+	}
+
+	/**
+	 * Release the document
+	 */
+	private void release() {
+		buf = null;
+		if (text.length > MAX_KEPT_BUFFER) {
+			text = new char[256];
+		}
+	}
+
+	/**
+	 * Check the prolog of the document: the encoding has to be UTF-8 and
+	 * there must be no DTD
+	 *
+	 * @return Boolean
+	 */
+	private boolean checkProlog() {
+		int i = pos;
+		while (i < end) {
+			byte b = buf[i];
+			if (isWhitespace(b)) {
+				i++;
+			} else
+			if (b != '<') {
+				// Not an XML document in UTF-8
+				return false;
+			} else
+			if (startsWith(i, "<?")) {
+				int close = indexOf(i, "?>");
+				if (close < 0) {
+					return true;
+				}
+				if (startsWith(i, "<?xml")) {
+					String decl = new String(buf, i, close - i, UTF8);
+					int index = decl.indexOf("encoding");
+					if (index != -1) {
+						int quote = index + 8;
+						while ((quote < decl.length()) && (decl.charAt(quote) != '"') && (decl.charAt(quote) != '\'')) {
+							quote++;
+						}
+						int closeQuote = (quote < decl.length()) ? decl.indexOf(decl.charAt(quote), quote + 1) : -1;
+						if ((closeQuote == -1) || !isUtf8(decl.substring(quote + 1, closeQuote))) {
+							return false;
+						}
+					}
+				}
+				i = close + 2;
+			} else
+			if (startsWith(i, "<!--")) {
+				int close = indexOf(i, "-->");
+				if (close < 0) {
+					return true;
+				}
+				i = close + 3;
+			} else {
+				// DTD or root element
+				return !startsWith(i, "<!DOCTYPE");
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the next event of the document
+	 *
+	 * @return Event type
+	 * @throws SAXParseException
+	 */
+	public int next() throws SAXParseException {
+		if (eventType == END_TAG) {
+			// Close the element
+			depth--;
+			namespaceCount = namespaceMarks[depth];
+		}
+		attributeCount = 0;
+		textLength = 0;
+
+		if (emptyElement) {
+			emptyElement = false;
+			return eventType = END_TAG;
+		}
+
+		while (true) {
+			if (pos >= end) {
+				if ((depth > 0) || !rootRead) {
+					throw error("Unexpected end of document");
+				}
+				return eventType = END_DOCUMENT;
+			}
+			if (buf[pos] != '<') {
+				int start = pos;
+				while ((pos < end) && (buf[pos] != '<')) {
+					pos++;
+				}
+				if (depth == 0) {
+					// Whitespace outside the root element
+					continue;
+				}
+				decode(start, pos, false);
+				return eventType = TEXT;
+			}
+			if (startsWith(pos, "<?")) {
+				pos = skipPast(pos, "?>");
+			} else
+			if (startsWith(pos, "<!--")) {
+				pos = skipPast(pos, "-->");
+			} else
+			if (startsWith(pos, "<![CDATA[")) {
+				int close = indexOf(pos, "]]>");
+				if (close < 0) {
+					throw error("Unterminated CDATA section");
+				}
+				decodeRaw(pos + 9, close);
+				pos = close + 3;
+				return eventType = TEXT;
+			} else
+			if (startsWith(pos, "<!")) {
+				throw error("Unexpected declaration");
+			} else
+			if (startsWith(pos, "</")) {
+				parseEndTag();
+				return eventType = END_TAG;
+			} else {
+				parseStartTag();
+				return eventType = START_TAG;
+			}
+		}
+	}
+
+	/**
+	 * Returns the current event
+	 *
+	 * @return Event type
+	 */
+	public int getEventType() {
+		return eventType;
+	}
+
+	/**
+	 * Returns the depth of the current element, 0 outside the root element
+	 *
+	 * @return Depth
+	 */
+	public int getDepth() {
+		return depth;
+	}
+
+	/**
+	 * Returns the local name of the current element
+	 *
+	 * @return Name
+	 */
+	public String getName() {
+		return (depth > 0) ? elementNames[depth - 1] : null;
+	}
+
+	/**
+	 * Returns the namespace of the current element
+	 *
+	 * @return Namespace URI, empty if none
+	 */
+	public String getNamespace() {
+		return (depth > 0) ? elementNamespaces[depth - 1] : null;
+	}
+
+	/**
+	 * Returns the qualified name of the current element
+	 *
+	 * @return Name with its prefix
+	 */
+	public String getQName() {
+		return (depth > 0) ? elementQNames[depth - 1] : null;
+	}
+
+	/**
+	 * Returns the number of attributes of the current start tag
+	 *
+	 * @return Number of attributes
+	 */
+	public int getAttributeCount() {
+		return attributeCount;
+	}
+
+	/**
+	 * Returns the local name of an attribute
+	 *
+	 * @param index Attribute index
+	 * @return Name
+	 */
+	public String getAttributeName(int index) {
+		return attributeNames[index];
+	}
+
+	/**
+	 * Returns the namespace of an attribute
+	 *
+	 * @param index Attribute index
+	 * @return Namespace URI, empty if none
+	 */
+	public String getAttributeNamespace(int index) {
+		return attributeNamespaces[index];
+	}
+
+	/**
+	 * Returns the value of an attribute
+	 *
+	 * @param index Attribute index
+	 * @return Value
+	 */
+	public String getAttributeValue(int index) {
+		return attributeValues[index];
+	}
+
+	/**
+	 * Returns the value of an attribute
+	 *
+	 * @param namespace Namespace URI, null to ignore the namespace
+	 * @param name Local name
+	 * @return Value or null
+	 */
+	public String getAttributeValue(String namespace, String name) {
+		for (int i = 0; i < attributeCount; i++) {
+			if (attributeNames[i].equals(name) &&
+					((namespace == null) || attributeNamespaces[i].equals(namespace))) {
+				return attributeValues[i];
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Returns the text of the current event
+	 *
+	 * @return Text
+	 */
+	public String getText() {
+		return new String(text, 0, textLength);
+	}
+
+	/**
+	 * Deliver the events of the document to a SAX handler
+	 *
+	 * @param handler Handler
+	 * @throws SAXException
+	 */
+	private void dispatch(DefaultHandler handler) throws SAXException {
+		try {
+			handler.startDocument();
+			int event;
+			while ((event = next()) != END_DOCUMENT) {
+				if (event == START_TAG) {
+					handler.startElement(getNamespace(), getName(), getQName(), attributes);
+				} else
+				if (event == END_TAG) {
+					handler.endElement(getNamespace(), getName(), getQName());
+				} else {
+					handler.characters(text, 0, textLength);
+				}
+			}
+			handler.endDocument();
+		} catch(SAXParseException e) {
+			handler.fatalError(e);
+			throw e;
+		}
+	}
+
+	/**
+	 * Parse a start tag
+	 *
+	 * @throws SAXParseException
+	 */
+	private void parseStartTag() throws SAXParseException {
+		pos++;
+		String qname = readName();
+		String prefix = namePrefix;
+		String name = nameLocal;
+		int mark = namespaceCount;
+
+		while (true) {
+			skipWhitespace();
+			if (pos >= end) {
+				throw error("Unterminated start tag");
+			}
+			byte b = buf[pos];
+			if (b == '>') {
+				pos++;
+				break;
+			}
+			if (b == '/') {
+				if ((pos + 1 >= end) || (buf[pos + 1] != '>')) {
+					throw error("Unterminated start tag");
+				}
+				pos += 2;
+				emptyElement = true;
+				break;
+			}
+
+			// Attribute
+			String attrQName = readName();
+			String attrPrefix = namePrefix;
+			String attrName = nameLocal;
+			skipWhitespace();
+			if ((pos >= end) || (buf[pos] != '=')) {
+				throw error("Missing value of attribute " + attrQName);
+			}
+			pos++;
+			skipWhitespace();
+			if ((pos >= end) || ((buf[pos] != '"') && (buf[pos] != '\''))) {
+				throw error("Missing value of attribute " + attrQName);
+			}
+			byte quote = buf[pos];
+			int start = pos + 1;
+			int close = start;
+			while ((close < end) && (buf[close] != quote)) {
+				close++;
+			}
+			if (close >= end) {
+				throw error("Unterminated value of attribute " + attrQName);
+			}
+			decode(start, close, true);
+			String value = new String(text, 0, textLength);
+			pos = close + 1;
+
+			if ((attrPrefix == null) && attrName.equals("xmlns")) {
+				declareNamespace("", value);
+			} else
+			if ("xmlns".equals(attrPrefix)) {
+				declareNamespace(attrName, value);
+			} else {
+				addAttribute(attrPrefix, attrName, attrQName, value);
+			}
+		}
+		textLength = 0;
+
+		// Open the element
+		if (depth == elementNames.length) {
+			elementNamespaces = grow(elementNamespaces);
+			elementNames = grow(elementNames);
+			elementQNames = grow(elementQNames);
+			int[] marks = new int[depth * 2];
+			System.arraycopy(namespaceMarks, 0, marks, 0, depth);
+			namespaceMarks = marks;
+		}
+		elementNamespaces[depth] = getNamespaceUri((prefix != null) ? prefix : "");
+		elementNames[depth] = name;
+		elementQNames[depth] = qname;
+		namespaceMarks[depth] = mark;
+		depth++;
+		rootRead = true;
+
+		// Resolve the namespaces of the attributes
+		for (int i = 0; i < attributeCount; i++) {
+			attributeNamespaces[i] = (attributePrefixes[i] != null) ? getNamespaceUri(attributePrefixes[i]) : "";
+		}
+	}
+
+	/**
+	 * Parse an end tag
+	 *
+	 * @throws SAXParseException
+	 */
+	private void parseEndTag() throws SAXParseException {
+		pos += 2;
+		String qname = readName();
+		skipWhitespace();
+		if ((pos >= end) || (buf[pos] != '>')) {
+			throw error("Unterminated end tag " + qname);
+		}
+		pos++;
+		if ((depth == 0) || !elementQNames[depth - 1].equals(qname)) {
+			throw error("Unexpected end tag " + qname);
+		}
+	}
+
+	/**
+	 * Read a name, its prefix and local part being set in namePrefix and
+	 * nameLocal
+	 *
+	 * @return Qualified name
+	 * @throws SAXParseException
+	 */
+	private String readName() throws SAXParseException {
+		int start = pos;
+		int colon = -1;
+		while (pos < end) {
+			byte b = buf[pos];
+			if (isWhitespace(b) || (b == '>') || (b == '/') || (b == '=')) {
+				break;
+			}
+			if ((b == ':') && (colon == -1)) {
+				colon = pos;
+			}
+			pos++;
+		}
+		if (pos == start) {
+			throw error("Missing name");
+		}
+		String qname = intern(start, pos);
+		if (colon == -1) {
+			namePrefix = null;
+			nameLocal = qname;
+		} else {
+			namePrefix = intern(start, colon);
+			nameLocal = intern(colon + 1, pos);
+		}
+		return qname;
+	}
+
+	/**
+	 * Returns the interned string of a name
+	 *
+	 * @param start Start of the name
+	 * @param stop End of the name
+	 * @return Name
+	 */
+	private String intern(int start, int stop) {
+		int length = stop - start;
+		int hash = length;
+		for (int i = start; i < stop; i++) {
+			hash = 31 * hash + buf[i];
+		}
+		int index = hash & (NAME_TABLE_SIZE - 1);
+		for (int n = 0; n < 8; n++) {
+			int slot = (index + n) & (NAME_TABLE_SIZE - 1);
+			byte[] bytes = nameBytes[slot];
+			if (bytes == null) {
+				index = slot;
+				break;
+			}
+			if (equals(bytes, start, length)) {
+				return nameStrings[slot];
+			}
+		}
+
+		// New name: it replaces the name of its slot if the table is full
+		byte[] bytes = new byte[length];
+		System.arraycopy(buf, start, bytes, 0, length);
+		String name = new String(bytes, UTF8).intern();
+		nameBytes[index] = bytes;
+		nameStrings[index] = name;
+		return name;
+	}
+
+	/**
+	 * Compare bytes with a part of the document
+	 *
+	 * @param bytes Bytes
+	 * @param start Start in the document
+	 * @param length Length
+	 * @return Boolean
+	 */
+	private boolean equals(byte[] bytes, int start, int length) {
+		if (bytes.length != length) {
+			return false;
+		}
+		for (int i = 0; i < length; i++) {
+			if (bytes[i] != buf[start + i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Declare a namespace in the current start tag
+	 *
+	 * @param prefix Prefix, empty for the default namespace
+	 * @param uri Namespace URI
+	 */
+	private void declareNamespace(String prefix, String uri) {
+		if (namespaceCount == namespacePrefixes.length) {
+			namespacePrefixes = grow(namespacePrefixes);
+			namespaceUris = grow(namespaceUris);
+		}
+		namespacePrefixes[namespaceCount] = prefix;
+		namespaceUris[namespaceCount] = uri;
+		namespaceCount++;
+	}
+
+	/**
+	 * Returns the namespace of a prefix
+	 *
+	 * @param prefix Prefix, empty for the default namespace
+	 * @return Namespace URI, empty if the prefix is not declared
+	 */
+	private String getNamespaceUri(String prefix) {
+		for (int i = namespaceCount - 1; i >= 0; i--) {
+			if (namespacePrefixes[i].equals(prefix)) {
+				return namespaceUris[i];
+			}
+		}
+		return prefix.equals("xml") ? XML_NAMESPACE : "";
+	}
+
+	/**
+	 * Add an attribute to the current start tag
+	 *
+	 * @param prefix Prefix or null
+	 * @param name Local name
+	 * @param qname Qualified name
+	 * @param value Value
+	 */
+	private void addAttribute(String prefix, String name, String qname, String value) {
+		if (attributeCount == attributeNames.length) {
+			attributePrefixes = grow(attributePrefixes);
+			attributeNamespaces = grow(attributeNamespaces);
+			attributeNames = grow(attributeNames);
+			attributeQNames = grow(attributeQNames);
+			attributeValues = grow(attributeValues);
+		}
+		attributePrefixes[attributeCount] = prefix;
+		attributeNames[attributeCount] = name;
+		attributeQNames[attributeCount] = qname;
+		attributeValues[attributeCount] = value;
+		attributeCount++;
+	}
+
+	/**
+	 * Decode a part of the document in the text buffer: the UTF-8 sequences,
+	 * the entities and the line ends are decoded
+	 *
+	 * @param start Start
+	 * @param stop End
+	 * @param attribute Is it an attribute value, whose whitespaces are
+	 * replaced by spaces
+	 * @throws SAXParseException
+	 */
+	private void decode(int start, int stop, boolean attribute) throws SAXParseException {
+		ensureText(stop - start);
+		int length = 0;
+		int i = start;
+		while (i < stop) {
+			int b = buf[i] & 0xFF;
+			if (b == '&') {
+				int close = i + 1;
+				while ((close < stop) && (buf[close] != ';') && (close - i < 12)) {
+					close++;
+				}
+				if ((close >= stop) || (buf[close] != ';')) {
+					throw error("Unterminated entity");
+				}
+				length = decodeEntity(i + 1, close, length);
+				i = close + 1;
+			} else
+			if (b == '\r') {
+				text[length++] = attribute ? ' ' : '\n';
+				i++;
+				if ((i < stop) && (buf[i] == '\n')) {
+					i++;
+				}
+			} else
+			if (b < 0x80) {
+				text[length++] = (attribute && ((b == '\n') || (b == '\t'))) ? ' ' : (char)b;
+				i++;
+			} else {
+				i = decodeUtf8(i, stop, length);
+				length = textLength;
+			}
+		}
+		textLength = length;
+	}
+
+	/**
+	 * Decode a part of the document without entities (CDATA section)
+	 *
+	 * @param start Start
+	 * @param stop End
+	 * @throws SAXParseException
+	 */
+	private void decodeRaw(int start, int stop) throws SAXParseException {
+		ensureText(stop - start);
+		int length = 0;
+		int i = start;
+		while (i < stop) {
+			int b = buf[i] & 0xFF;
+			if (b < 0x80) {
+				text[length++] = (char)b;
+				i++;
+			} else {
+				i = decodeUtf8(i, stop, length);
+				length = textLength;
+			}
+		}
+		textLength = length;
+	}
+
+	/**
+	 * Decode a UTF-8 sequence in the text buffer
+	 *
+	 * @param i Start of the sequence
+	 * @param stop End of the decoded part
+	 * @param length Current length of the text, the new length being set in
+	 * textLength
+	 * @return End of the sequence
+	 * @throws SAXParseException
+	 */
+	private int decodeUtf8(int i, int stop, int length) throws SAXParseException {
+		int b = buf[i] & 0xFF;
+		int n;
+		int c;
+		if ((b >> 5) == 0x06) {
+			n = 1;
+			c = b & 0x1F;
+		} else
+		if ((b >> 4) == 0x0E) {
+			n = 2;
+			c = b & 0x0F;
+		} else
+		if ((b >> 3) == 0x1E) {
+			n = 3;
+			c = b & 0x07;
+		} else {
+			throw error("Invalid UTF-8 sequence");
+		}
+		if (i + n >= stop) {
+			throw error("Invalid UTF-8 sequence");
+		}
+		for (int k = 1; k <= n; k++) {
+			int next = buf[i + k] & 0xFF;
+			if ((next & 0xC0) != 0x80) {
+				throw error("Invalid UTF-8 sequence");
+			}
+			c = (c << 6) | (next & 0x3F);
+		}
+		if (c > Character.MAX_CODE_POINT) {
+			throw error("Invalid UTF-8 sequence");
+		}
+		textLength = length + Character.toChars(c, text, length);
+		return i + n + 1;
+	}
+
+	/**
+	 * Decode an entity in the text buffer
+	 *
+	 * @param start Start of the entity name
+	 * @param stop End of the entity name
+	 * @param length Current length of the text
+	 * @return New length of the text
+	 * @throws SAXParseException
+	 */
+	private int decodeEntity(int start, int stop, int length) throws SAXParseException {
+		String name = new String(buf, start, stop - start, UTF8);
+		char c;
+		if (name.equals("lt")) {
+			c = '<';
+		} else
+		if (name.equals("gt")) {
+			c = '>';
+		} else
+		if (name.equals("amp")) {
+			c = '&';
+		} else
+		if (name.equals("quot")) {
+			c = '"';
+		} else
+		if (name.equals("apos")) {
+			c = '\'';
+		} else
+		if (name.startsWith("#")) {
+			try {
+				int code = name.startsWith("#x") ? Integer.parseInt(name.substring(2), 16) :
+					Integer.parseInt(name.substring(1));
+				return length + Character.toChars(code, text, length);
+			} catch(IllegalArgumentException e) {
+				throw error("Invalid character reference &" + name + ";");
+			}
+		} else {
+			throw error("Unknown entity &" + name + ";");
+		}
+		text[length] = c;
+		return length + 1;
+	}
+
+	/**
+	 * Ensure the capacity of the text buffer
+	 *
+	 * @param size Min size
+	 */
+	private void ensureText(int size) {
+		if (text.length < size) {
+			text = new char[Math.max(size, text.length * 2)];
+		}
+	}
+
+	/**
+	 * Skip the whitespaces
+	 */
+	private void skipWhitespace() {
+		while ((pos < end) && isWhitespace(buf[pos])) {
+			pos++;
+		}
+	}
+
+	/**
+	 * Returns the position after a delimiter
+	 *
+	 * @param from Start of the search
+	 * @param delimiter Delimiter
+	 * @return Position
+	 * @throws SAXParseException
+	 */
+	private int skipPast(int from, String delimiter) throws SAXParseException {
+		int index = indexOf(from, delimiter);
+		if (index < 0) {
+			throw error("Missing " + delimiter);
+		}
+		return index + delimiter.length();
+	}
+
+	/**
+	 * Check if the document contains an ASCII string at a position
+	 *
+	 * @param from Position
+	 * @param str String
+	 * @return Boolean
+	 */
+	private boolean startsWith(int from, String str) {
+		if (from + str.length() > end) {
+			return false;
+		}
+		for (int i = 0; i < str.length(); i++) {
+			if (buf[from + i] != str.charAt(i)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the position of an ASCII string in the document
+	 *
+	 * @param from Start of the search
+	 * @param str String
+	 * @return Position or -1
+	 */
+	private int indexOf(int from, String str) {
+		for (int i = from; i + str.length() <= end; i++) {
+			if (startsWith(i, str)) {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Create a parsing error
+	 *
+	 * @param message Message
+	 * @return Exception
+	 */
+	private SAXParseException error(String message) {
+		int line = 1;
+		int column = 1;
+		for (int i = 0; (i < pos) && (i < end); i++) {
+			if (buf[i] == '\n') {
+				line++;
+				column = 1;
+			} else {
+				column++;
+			}
+		}
+		return new SAXParseException(message, null, null, line, column);
+	}
+
+	/**
+	 * Is a byte an XML whitespace
+	 *
+	 * @param b Byte
+	 * @return Boolean
+	 */
+	private static boolean isWhitespace(byte b) {
+		return (b == ' ') || (b == '\n') || (b == '\r') || (b == '\t');
+	}
+
+	/**
+	 * Double the size of an array
+	 *
+	 * @param array Array
+	 * @return New array
+	 */
+	private static String[] grow(String[] array) {
+		String[] result = new String[array.length * 2];
+		System.arraycopy(array, 0, result, 0, array.length);
+		return result;
+	}
+
+	/**
+	 * SAX view of the attributes of the current start tag
+	 */
+	private class AttributeList implements Attributes {
+		public int getLength() {
+			return attributeCount;
+		}
+
+		public String getURI(int index) {
+			return (index >= 0) && (index < attributeCount) ? attributeNamespaces[index] : null;
+		}
+
+		public String getLocalName(int index) {
+			return (index >= 0) && (index < attributeCount) ? attributeNames[index] : null;
+		}
+
+		public String getQName(int index) {
+			return (index >= 0) && (index < attributeCount) ? attributeQNames[index] : null;
+		}
+
+		public String getType(int index) {
+			return (index >= 0) && (index < attributeCount) ? "CDATA" : null;
+		}
+
+		public String getValue(int index) {
+			return (index >= 0) && (index < attributeCount) ? attributeValues[index] : null;
+		}
+
+		public int getIndex(String uri, String localName) {
+			for (int i = 0; i < attributeCount; i++) {
+				if (attributeNames[i].equals(localName) && attributeNamespaces[i].equals(uri)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public int getIndex(String qName) {
+			for (int i = 0; i < attributeCount; i++) {
+				if (attributeQNames[i].equals(qName)) {
+					return i;
+				}
+			}
+			return -1;
+		}
+
+		public String getType(String uri, String localName) {
+			return getType(getIndex(uri, localName));
+		}
+
+		public String getType(String qName) {
+			return getType(getIndex(qName));
+		}
+
+		public String getValue(String uri, String localName) {
+			return getValue(getIndex(uri, localName));
+		}
+
+		public String getValue(String qName) {
+			return getValue(getIndex(qName));
+		}
+	}
+}
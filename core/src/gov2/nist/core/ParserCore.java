@@ -98,7 +98,7 @@ public abstract class ParserCore {
     }
 
     protected  void dbg_enter(String rule) {
-        StringBuffer stringBuffer = new StringBuffer();
+        StringBuilder stringBuffer = new StringBuilder();
         for (int i = 0; i < nesting_level ; i++)
             stringBuffer.append(">");
 
@@ -112,7 +112,7 @@ public abstract class ParserCore {
     }
 
     protected void dbg_leave(String rule) {
-        StringBuffer stringBuffer = new StringBuffer();
+        StringBuilder stringBuffer = new StringBuilder();
         for (int i = 0; i < nesting_level ; i++)
             stringBuffer.append("<");
 
@@ -37,5 +37,15 @@ public interface ListeningPointExt extends ListeningPoint {
      */
     public ViaHeader createViaHeader();
 
+    /**
+     * Get the time at which the last CR-LF keep-alive was received from the
+     * specified Ip address and port, i.e. the response to a heartbeat.
+     *
+     * @return the time in milliseconds, or 0 if none was received
+     *
+     * @since 2.0
+     */
+    public long getLastHeartbeatResponse(String ipAddress, int port);
+
 
 }
@@ -89,7 +89,7 @@ public class ListeningPointImpl implements javax2.sip.ListeningPoint, gov2.nist.
      * @return a string that is used as a key
      */
     public static String makeKey(String host, int port, String transport) {
-        return new StringBuffer(host)
+        return new StringBuilder(host)
             .append(":")
             .append(port)
             .append("/")
@@ -255,6 +255,10 @@ public class ListeningPointImpl implements javax2.sip.ListeningPoint, gov2.nist.
 
     }
 
+    public long getLastHeartbeatResponse(String ipAddress, int port) {
+        return sipStack.getLastHeartbeat(ipAddress, port);
+    }
+
     
     public ViaHeader createViaHeader() {
            return this.getViaHeader();
@@ -39,6 +39,7 @@ import gov2.nist.javax2.sip.stack.DefaultMessageLogFactory;
 import gov2.nist.javax2.sip.stack.DefaultRouter;
 import gov2.nist.javax2.sip.stack.MessageProcessor;
 import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
 import java.io.BufferedReader;
 import java.io.IOException;
@@ -396,6 +397,16 @@ import javax2.sip.message.Request;
  * client transction in the ResponseEventExt and deliver that to the application.
  * The event handler can get the original transaction from this event. </li>
  * 
+ * <li><b>gov2.nist.javax2.sip.TIMER_CLASS_NAME = classpath </b> Default is
+ * <it>gov2.nist.javax2.sip.stack.timers.DefaultSipTimer</it>, which runs all
+ * the stack timers on a single java.util.Timer. Set it to
+ * <it>gov2.nist.javax2.sip.stack.timers.HashedWheelSipTimer</it> to use a
+ * hierarchical timing wheel instead, with O(1) scheduling and cancellation.
+ * The wheel is tuned with <b>gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS</b>
+ * (default 10) and <b>gov2.nist.javax2.sip.TIMER_WHEEL_SIZE</b> (slots per
+ * level, default 256). Pending and fired timer counts are available from the
+ * stack timer. </li>
+ * 
  *  * <li><b>gov2.nist.javax2.sip.TLS_CLIENT_PROTOCOLS = String </b>
  *  Comma-separated list of protocols to use when creating outgoing TLS connections.
  *  The default is "SSLv3, SSLv2Hello, TLSv1".
@@ -1051,6 +1062,21 @@ public class SipStackImpl extends SIPTransactionStack implements
 		super.maxForkTime = Integer.parseInt(
 		        configurationProperties.getProperty("gov2.nist.javax2.sip.MAX_FORK_TIME_SECONDS","0"));
 		
+		String timerClassName = configurationProperties
+				.getProperty("gov2.nist.javax2.sip.TIMER_CLASS_NAME");
+		if (timerClassName != null) {
+			try {
+				Class<? extends SipTimer> timerClass = Class.forName(
+						timerClassName).asSubclass(SipTimer.class);
+				super.setTimerClass(timerClass, configurationProperties);
+			} catch (Exception ex) {
+				if (isLoggingEnabled())
+					getStackLogger()
+						.logError(
+								"Bad configuration value for TIMER_CLASS_NAME -- using default timer");
+			}
+		}
+
 	}
 
 	/*
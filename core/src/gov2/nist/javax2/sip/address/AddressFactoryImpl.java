@@ -115,7 +115,7 @@ public class AddressFactoryImpl implements javax2.sip.address.AddressFactory {
         if (host == null)
             throw new NullPointerException("null host");
 
-        StringBuffer uriString = new StringBuffer("sip:");
+        StringBuilder uriString = new StringBuilder("sip:");
         if (user != null) {
             uriString.append(user);
             uriString.append("@");
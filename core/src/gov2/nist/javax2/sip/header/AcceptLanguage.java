@@ -74,7 +74,7 @@ public final class AcceptLanguage
      *@return  encoded header as a string.
      */
     protected String encodeBody() {
-        StringBuffer encoding = new StringBuffer();
+        StringBuilder encoding = new StringBuilder();
         if (languageRange != null) {
             encoding.append(languageRange);
         }
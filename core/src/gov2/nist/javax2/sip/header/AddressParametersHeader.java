@@ -50,6 +50,7 @@ public abstract class AddressParametersHeader extends ParametersHeader implement
      * @see gov2.nist.javax2.sip.header.AddressParameters#getAddress()
      */
     public Address getAddress() {
+        exposeEncodedBody();
         return address;
     }
 
@@ -57,6 +58,7 @@ public abstract class AddressParametersHeader extends ParametersHeader implement
      * @see gov2.nist.javax2.sip.header.AddressParameters#setAddress(javax2.sip.address.Address)
      */
     public void setAddress(Address address) {
+        invalidateEncodedBody();
         this.address = (AddressImpl) address;
     }
 
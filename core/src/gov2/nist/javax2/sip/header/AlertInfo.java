@@ -69,7 +69,7 @@ public final class AlertInfo
      * @return The value of the header in canonical encoding.
      */
     protected String encodeBody() {
-        StringBuffer encoding = new StringBuffer();
+        StringBuilder encoding = new StringBuilder();
         if (uri != null) {
             encoding.append(LESS_THAN).append(uri.encode()).append(GREATER_THAN);
         } else if (string != null) {
@@ -80,10 +80,10 @@ public class CallID
      *@return String encoded body part of the header.
      */
     public String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (callIdentifier != null)
             callIdentifier.encode(buffer);
 
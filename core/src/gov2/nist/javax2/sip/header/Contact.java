@@ -82,6 +82,7 @@ public final  class Contact
     /** Set a parameter.
     */
     public void setParameter(String name, String value) throws ParseException {
+        invalidateEncodedBody();
         NameValue nv = parameters.getNameValue(name);
         if (nv != null) {
             nv.setValueAsObject(value);
@@ -93,15 +94,22 @@ public final  class Contact
         }
     }
 
+    /**
+     * The encoded body is cached until the header changes.
+     */
+    protected boolean isEncodedBodyCacheable() {
+        return true;
+    }
+
     /**
      * Encode body of the header into a cannonical String.
      * @return string encoding of the header value.
      */
     protected String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (wildCardFlag) {
             buffer.append('*');
         }
@@ -142,6 +150,7 @@ public final  class Contact
      * @return Address
      */
     public javax2.sip.address.Address getAddress() {
+        exposeEncodedBody();
         // JAIN-SIP stores the wild card as an address!
         return address;
     }
@@ -150,6 +159,7 @@ public final  class Contact
      * @return NameValueList
      */
     public NameValueList getContactParms() {
+        exposeEncodedBody();
         return parameters;
     }
 
@@ -165,6 +175,7 @@ public final  class Contact
     */
 
     public void setExpires(int expiryDeltaSeconds) {
+        invalidateEncodedBody();
         Integer deltaSeconds = Integer.valueOf(expiryDeltaSeconds);
         this.parameters.set(EXPIRES, deltaSeconds);
     }
@@ -180,6 +191,7 @@ public final  class Contact
      * @param cl ContactList to set
      */
     public void setContactList(ContactList cl) {
+        invalidateEncodedBody();
         contactList = cl;
     }
 
@@ -188,6 +200,7 @@ public final  class Contact
      * @param w boolean to set
      */
     public void setWildCardFlag(boolean w) {
+        invalidateEncodedBody();
         this.wildCardFlag = true;
         this.address = new AddressImpl();
         this.address.setWildCardFlag();
@@ -199,6 +212,7 @@ public final  class Contact
      * @param address Address to set
      */
     public void setAddress(javax2.sip.address.Address address) {
+        invalidateEncodedBody();
         // Canonical form must have <> around the address.
         if (address == null)
             throw new NullPointerException("null address");
@@ -211,6 +225,7 @@ public final  class Contact
      * @param qValue float to set
      */
     public void setQValue(float qValue) throws InvalidArgumentException {
+        invalidateEncodedBody();
         if (qValue != -1 && (qValue < 0 || qValue > 1))
             throw new InvalidArgumentException(
                 "JAIN-SIP Exception, Contact, setQValue(), "
@@ -246,6 +261,7 @@ public final  class Contact
     }
 
     public void removeSipInstanceParam() {
+        invalidateEncodedBody();
         if (parameters != null)
             parameters.delete(ParameterNames.SIP_INSTANCE);
     }
@@ -255,6 +271,7 @@ public final  class Contact
     }
 
     public void setSipInstanceParam(String value) {
+        invalidateEncodedBody();
         this.parameters.set(ParameterNames.SIP_INSTANCE, value);
     }
 
@@ -262,6 +279,7 @@ public final  class Contact
      *remove the pub-gruu value from the parameter list if it exists.
      */
     public void removePubGruuParam() {
+        invalidateEncodedBody();
         if (parameters != null)
             parameters.delete(ParameterNames.PUB_GRUU);
     }
@@ -272,6 +290,7 @@ public final  class Contact
 
     public void setPubGruuParam(String value)
     {
+        invalidateEncodedBody();
         this.parameters.set(ParameterNames.PUB_GRUU, value);
     }
 
@@ -279,6 +298,7 @@ public final  class Contact
      *remove the pub-gruu value from the parameter list if it exists.
      */
     public void removeTempGruuParam() {
+        invalidateEncodedBody();
         if (parameters != null)
             parameters.delete(ParameterNames.TEMP_GRUU);
     }
@@ -289,6 +309,7 @@ public final  class Contact
 
     public void setTempGruuParam(String value)
     {
+        invalidateEncodedBody();
         this.parameters.set(ParameterNames.TEMP_GRUU, value);
     }
 }
@@ -109,10 +109,10 @@ public class Event extends ParametersHeader implements EventHeader {
      * @return String
      */
     public String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (eventType != null)
             buffer.append(eventType);
 
@@ -92,7 +92,13 @@ public abstract class ParametersHeader
      * @return the object associated with the name.
      */
     public Object getParameterValue(String name) {
-        return this.parameters.getValue(name);
+        Object value = this.parameters.getValue(name);
+        if (value != null && !(value instanceof String)
+                && !(value instanceof Number) && !(value instanceof Boolean)) {
+            // Parameter values such as hosts or URIs are mutable
+            exposeEncodedBody();
+        }
+        return value;
     }
 
     /**
@@ -124,6 +130,7 @@ public abstract class ParametersHeader
     */
 
     public void removeParameter(String name) {
+        invalidateEncodedBody();
         this.parameters.delete(name);
     }
 
@@ -146,6 +153,7 @@ public abstract class ParametersHeader
      *
      */
     public void setParameter(String name, String value) throws ParseException {
+        invalidateEncodedBody();
         NameValue nv = parameters.getNameValue(name);
         if (nv != null) {
             nv.setValueAsObject(value);
@@ -175,6 +183,7 @@ public abstract class ParametersHeader
      */
     public void setQuotedParameter(String name, String value)
         throws ParseException {
+        invalidateEncodedBody();
         NameValue nv = parameters.getNameValue(name);
         if (nv != null) {
             nv.setValueAsObject(value);
@@ -202,6 +211,7 @@ public abstract class ParametersHeader
      *
      */
     protected void setParameter(String name, int value) {
+        invalidateEncodedBody();
         Integer val = Integer.valueOf(value);
         this.parameters.set(name,val);
 
@@ -223,6 +233,7 @@ public abstract class ParametersHeader
      *
      */
     protected void setParameter(String name, boolean value) {
+        invalidateEncodedBody();
         Boolean val = Boolean.valueOf(value);
         this.parameters.set(name,val);
     }
@@ -242,6 +253,7 @@ public abstract class ParametersHeader
      *
      */
     protected void setParameter(String name, float value) {
+        invalidateEncodedBody();
         Float val = Float.valueOf(value);
         NameValue nv = parameters.getNameValue(name);
         if (nv != null) {
@@ -271,6 +283,7 @@ public abstract class ParametersHeader
      *
      */
     protected void setParameter(String name, Object value) {
+        invalidateEncodedBody();
         this.parameters.set(name,value);
     }
 
@@ -289,6 +302,7 @@ public abstract class ParametersHeader
      *Remove all parameters.
      */
     public void removeParameters() {
+        invalidateEncodedBody();
         this.parameters = new NameValueList();
     }
 
@@ -297,6 +311,7 @@ public abstract class ParametersHeader
      * @return parameter list
      */
     public NameValueList getParameters() {
+        exposeEncodedBody();
         return parameters;
     }
 
@@ -305,6 +320,7 @@ public abstract class ParametersHeader
      * @param nameValue - the name value of the parameter to set.
      */
     public void setParameter(NameValue nameValue) {
+        invalidateEncodedBody();
         this.parameters.set(nameValue);
     }
 
@@ -314,6 +330,7 @@ public abstract class ParametersHeader
      * @param parameters The name value list to set as the parameter list.
      */
     public void setParameters(NameValueList parameters) {
+        invalidateEncodedBody();
         this.parameters = parameters;
     }
 
@@ -456,6 +473,7 @@ public abstract class ParametersHeader
      * @return the name value pair for the given parameter name.
      */
     public NameValue getNameValue(String parameterName) {
+        exposeEncodedBody();
         return parameters.getNameValue(parameterName);
     }
 
@@ -464,6 +482,7 @@ public abstract class ParametersHeader
         ParametersHeader retval = (ParametersHeader) super.clone();
         if (this.parameters != null)
             retval.parameters = (NameValueList) this.parameters.clone();
+        retval.resetEncodedBody();
         return retval;
     }
 
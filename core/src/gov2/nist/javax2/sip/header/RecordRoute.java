@@ -67,14 +67,21 @@ public class RecordRoute
 
     }
 
+    /**
+     * The encoded body is cached until the header changes.
+     */
+    protected boolean isEncodedBodyCacheable() {
+        return true;
+    }
+
     /** Encode into canonical form.
      *@return String containing the canonicaly encoded header.
      */
     public String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (address.getAddressType() == AddressImpl.ADDRESS_SPEC) {
             buffer.append(LESS_THAN);
         }
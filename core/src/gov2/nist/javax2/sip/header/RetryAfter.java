@@ -73,7 +73,7 @@ public class RetryAfter extends ParametersHeader implements RetryAfterHeader {
      * @return encoded body
      */
     public String encodeBody() {
-        StringBuffer s = new StringBuffer();
+        StringBuilder s = new StringBuilder();
         
         if (retryAfter != null)
             s.append(retryAfter);
@@ -76,6 +76,13 @@ public class Route
         return this.address.getHostPort().encode().toLowerCase().hashCode();
     }
 
+    /**
+     * The encoded body is cached until the header changes.
+     */
+    protected boolean isEncodedBodyCacheable() {
+        return true;
+    }
+
     /**
      * Encode into canonical form.
      * Acknowledgement: contains a bug fix for a bug reported by
@@ -84,10 +91,10 @@ public class Route
      *@return a canonical encoding of the header.
      */
     public String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         boolean addrFlag = address.getAddressType() == AddressImpl.NAME_ADDR;
         if (!addrFlag) {
             buffer.append('<');
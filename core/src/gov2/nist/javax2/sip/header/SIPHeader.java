@@ -47,6 +47,26 @@ public abstract class SIPHeader
     /** Value of the header.
     */
 
+    /** Encoded body of the header, for the headers that cache it.
+     */
+    private transient String encodedBody;
+
+    /** Set once a mutable part of the header has been handed out, since
+     * it may then be changed without the header knowing.
+     */
+    private transient boolean encodedBodyExposed;
+
+    /** Set once the header is referenced by more than one message (see
+     * SIPMessage.clone()). A message copies a shared header before it
+     * changes it.
+     */
+    private transient volatile boolean shared;
+
+    /** Set once a message has handed the header out, since it may then be
+     * changed from outside. Such a header is copied rather than shared.
+     */
+    private transient volatile boolean exposed;
+
     /** Constructor
      * @param hname String to set
      */
@@ -95,7 +115,7 @@ public abstract class SIPHeader
         } catch (Exception ex) {
             return null;
         }
-        StringBuffer buffer = new StringBuffer(encodedHdr);
+        StringBuilder buffer = new StringBuilder(encodedHdr);
         while (buffer.length() > 0 && buffer.charAt(0) != ':') {
             buffer.deleteCharAt(0);
         }
@@ -115,16 +135,96 @@ public abstract class SIPHeader
     /** Encode this header into canonical form.
     */
     public String encode() {
-        return encode(new StringBuffer()).toString();
+        return encode(new StringBuilder()).toString();
     }
 
-    public StringBuffer encode(StringBuffer buffer) {
+    public StringBuilder encode(StringBuilder buffer) {
         buffer.append(this.headerName).append(COLON).append(SP);
-        this.encodeBody(buffer);
+        this.encodeBodyCached(buffer);
         buffer.append(NEWLINE);
         return buffer;
     }
 
+    /** Encode the body of this header in the given buffer, reusing the
+     * previous encoding if the header caches it and has not been changed.
+     */
+    protected StringBuilder encodeBodyCached(StringBuilder buffer) {
+        if (!isEncodedBodyCacheable() || encodedBodyExposed) {
+            return this.encodeBody(buffer);
+        }
+        String body = this.encodedBody;
+        if (body == null) {
+            int start = buffer.length();
+            this.encodeBody(buffer);
+            this.encodedBody = buffer.substring(start);
+            return buffer;
+        }
+        return buffer.append(body);
+    }
+
+    /** Return true if the encoded body of this header is cached. Headers
+     * that return true must call invalidateEncodedBody() whenever they are
+     * changed, and exposeEncodedBody() when they hand out a mutable part.
+     */
+    protected boolean isEncodedBodyCacheable() {
+        return false;
+    }
+
+    /** Drop the cached encoding after a change of the header.
+     */
+    protected void invalidateEncodedBody() {
+        this.encodedBody = null;
+    }
+
+    /** Stop caching the encoding since a mutable part of the header is
+     * referenced from outside. A clone caches again.
+     */
+    protected void exposeEncodedBody() {
+        this.encodedBodyExposed = true;
+        this.encodedBody = null;
+    }
+
+    /** Reset the encoding cache of a clone, which owns its own parts.
+     */
+    protected void resetEncodedBody() {
+        this.encodedBodyExposed = false;
+        this.encodedBody = null;
+    }
+
+    /** Return true if the header is referenced by more than one message.
+     */
+    public boolean isShared() {
+        return shared;
+    }
+
+    /** Mark the header as referenced by more than one message.
+     */
+    public void setShared() {
+        this.shared = true;
+    }
+
+    /** Return true if a message has handed the header out.
+     */
+    public boolean isExposed() {
+        return exposed;
+    }
+
+    /** Mark the header as handed out by a message.
+     */
+    public void setExposed() {
+        this.exposed = true;
+    }
+
+    /** Clone the header. The copy belongs to nobody yet, so it is neither
+     * shared nor exposed.
+     */
+    public Object clone() {
+        SIPHeader retval = (SIPHeader) super.clone();
+        retval.shared = false;
+        retval.exposed = false;
+        return retval;
+    }
+
     /** Encode the body of this header (the stuff that follows headerName).
     * A.K.A headerValue.
     */
@@ -133,7 +233,7 @@ public abstract class SIPHeader
     /** Encode the body of this header in the given buffer.
      * Default implementation calls encodeBody();
      */
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         return buffer.append(encodeBody());
     }
 
@@ -61,7 +61,7 @@ public class Server extends SIPHeader implements ServerHeader {
      * @return String
      */
     private String encodeProduct() {
-        StringBuffer tokens = new StringBuffer();
+        StringBuilder tokens = new StringBuilder();
         ListIterator it = productTokens.listIterator();
 
         while (it.hasNext()) {
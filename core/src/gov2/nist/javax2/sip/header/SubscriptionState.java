@@ -165,10 +165,10 @@ public class SubscriptionState
      * @return the string encoded header body.
      */
     public String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (state != null)
             buffer.append(state);
         if (reasonCode != null)
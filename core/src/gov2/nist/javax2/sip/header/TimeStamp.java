@@ -96,7 +96,7 @@ public class TimeStamp extends SIPHeader implements TimeStampHeader {
      * @return String
      */
     public String encodeBody() {
-        StringBuffer retval = new StringBuffer();
+        StringBuilder retval = new StringBuilder();
         String s1 = getTimeStampAsString();
         String s2 = getDelayAsString();
         if (s1.equals("") && s2.equals(""))
@@ -88,10 +88,10 @@ public final class To extends AddressParametersHeader implements
      * @return String
      */
     protected String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         if (address != null) {
             if (address.getAddressType() == AddressImpl.ADDRESS_SPEC) {
                 buffer.append(LESS_THAN);
@@ -137,7 +137,7 @@ public class Via
      * @return Protocol field
      */
     public Protocol getSentProtocol() {
-
+        exposeEncodedBody();
         return sentProtocol;
     }
 
@@ -146,6 +146,7 @@ public class Via
      *@return SentBy field
      */
     public HostPort getSentBy() {
+        exposeEncodedBody();
         return sentBy;
     }
 
@@ -165,6 +166,7 @@ public class Via
      * @return parameters field
      */
     public NameValueList getViaParms() {
+        exposeEncodedBody();
         return parameters;
     }
 
@@ -183,7 +185,7 @@ public class Via
      * @return true if Port exists.
      */
     public boolean hasPort() {
-        return (getSentBy()).hasPort();
+        return sentBy.hasPort();
     }
 
     /** comment of the Via Header.
@@ -197,12 +199,14 @@ public class Via
     /** remove the port.
      */
     public void removePort() {
+        invalidateEncodedBody();
         sentBy.removePort();
     }
 
     /** remove the comment field.
      */
     public void removeComment() {
+        invalidateEncodedBody();
         comment = null;
     }
 
@@ -210,6 +214,7 @@ public class Via
      * @param protocolVersion String to set
      */
     public void setProtocolVersion(String protocolVersion) {
+        invalidateEncodedBody();
         if (sentProtocol == null)
             sentProtocol = new Protocol();
         sentProtocol.setProtocolVersion(protocolVersion);
@@ -219,6 +224,7 @@ public class Via
          * @param host String to set
          */
     public void setHost(Host host) {
+        invalidateEncodedBody();
         if (sentBy == null) {
             sentBy = new HostPort();
         }
@@ -230,6 +236,7 @@ public class Via
      * @param s Protocol to set.
      */
     public void setSentProtocol(Protocol s) {
+        invalidateEncodedBody();
         sentProtocol = s;
     }
 
@@ -238,6 +245,7 @@ public class Via
      * @param s HostPort to set.
      */
     public void setSentBy(HostPort s) {
+        invalidateEncodedBody();
         sentBy = s;
     }
 
@@ -247,17 +255,33 @@ public class Via
      * @deprecated This is an RFC 2543 feature.
      */
     public void setComment(String c) {
+        invalidateEncodedBody();
         comment = c;
     }
 
+    /**
+     * The encoded body is cached until the header changes.
+     */
+    protected boolean isEncodedBodyCacheable() {
+        return true;
+    }
+
+    /**
+     * Return true if the sent-by field of the given Via is the same as this one.
+     */
+    public boolean hasSameSentBy(Via other) {
+        return this.sentBy == null ? other.sentBy == null
+                : this.sentBy.equals(other.sentBy);
+    }
+
     /** Encode the body of this header (the stuff that follows headerName).
      * A.K.A headerValue.
      */
     protected String encodeBody() {
-        return encodeBody(new StringBuffer()).toString();
+        return encodeBody(new StringBuilder()).toString();
     }
 
-    protected StringBuffer encodeBody(StringBuffer buffer) {
+    protected StringBuilder encodeBody(StringBuilder buffer) {
         sentProtocol.encode(buffer);
         buffer.append(SP);
         sentBy.encode(buffer);
@@ -280,6 +304,7 @@ public class Via
      * unexpectedly while parsing the host value.
      */
     public void setHost(String host) throws ParseException {
+        invalidateEncodedBody();
         if (sentBy == null)
             sentBy = new HostPort();
         try {
@@ -314,6 +339,7 @@ public class Via
      * @param port - the Integer.valueOf value of the port of this ViaHeader
      */
     public void setPort(int port) throws InvalidArgumentException {
+        invalidateEncodedBody();
 
         if ( port!=-1 && (port<1 || port>65535)) {
             throw new InvalidArgumentException( "Port value out of range -1, [1..65535]" );
@@ -328,6 +354,7 @@ public class Via
      * Set the RPort flag parameter
      */
     public void setRPort(){
+        invalidateEncodedBody();
         rPortFlag = true;
     }
 
@@ -379,6 +406,7 @@ public class Via
      * unexpectedly while parsing the transport value.
      */
     public void setTransport(String transport) throws ParseException {
+        invalidateEncodedBody();
         if (transport == null)
             throw new NullPointerException(
                 "JAIN-SIP Exception, "
@@ -408,6 +436,7 @@ public class Via
      * unexpectedly while parsing the protocol value.
      */
     public void setProtocol(String protocol) throws ParseException {
+        invalidateEncodedBody();
         if (protocol == null)
             throw new NullPointerException(
                 "JAIN-SIP Exception, "
@@ -53,7 +53,7 @@ public class PProfileKey extends AddressParametersHeader implements PProfileKeyH
     @Override
     protected String encodeBody() {
 
-        StringBuffer retval = new StringBuffer();
+        StringBuilder retval = new StringBuilder();
 
         if (address.getAddressType() == AddressImpl.ADDRESS_SPEC) {
             retval.append(LESS_THAN);
@@ -127,7 +127,7 @@ public class PServedUser extends AddressParametersHeader implements PServedUserH
     @Override
     protected String encodeBody() {
 
-        StringBuffer retval = new StringBuffer();
+        StringBuilder retval = new StringBuilder();
 
         retval.append(address.encode());
 
@@ -66,7 +66,7 @@ public class PUserDatabase extends gov2.nist.javax2.sip.header.ParametersHeader
             throw new NullPointerException("Database name is null");
         else
             if(!databaseName.contains("aaa://"))
-        this.databaseName = new StringBuffer().append("aaa://").append(databaseName).toString();
+        this.databaseName = new StringBuilder().append("aaa://").append(databaseName).toString();
             else
                 this.databaseName = databaseName;
 
@@ -74,7 +74,7 @@ public class PUserDatabase extends gov2.nist.javax2.sip.header.ParametersHeader
 
     protected String encodeBody() {
 
-        StringBuffer retval = new StringBuffer();
+        StringBuilder retval = new StringBuilder();
         retval.append("<");
         if(getDatabaseName()!=null)
         retval.append(getDatabaseName());
@@ -75,6 +75,7 @@ import gov2.nist.javax2.sip.parser.StringMsgParser;
 
 import java.io.UnsupportedEncodingException;
 import java.lang.reflect.Field;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.Collection;
 import java.util.Hashtable;
@@ -128,6 +129,34 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
 	// JvB: use static here?
     private String contentEncodingCharset = MessageFactoryImpl.getDefaultContentEncodingCharset();
+
+    /*
+     * Initial size of the encoding buffers.
+     */
+    private static final int ENCODING_BUFFER_SIZE = 4096;
+
+    /*
+     * Encoding buffers that grew larger than this are not kept for reuse.
+     */
+    private static final int MAX_ENCODING_BUFFER_SIZE = 65536;
+
+    /*
+     * Per thread buffer the headers are encoded into before being written as bytes.
+     */
+    private static final ThreadLocal<StringBuilder> headerEncodingBuffer = new ThreadLocal<StringBuilder>() {
+        protected StringBuilder initialValue() {
+            return new StringBuilder(ENCODING_BUFFER_SIZE);
+        }
+    };
+
+    /*
+     * Per thread byte buffer used by encodeAsBytes(String).
+     */
+    private static final ThreadLocal<ByteBuffer> byteEncodingBuffer = new ThreadLocal<ByteBuffer>() {
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(ENCODING_BUFFER_SIZE);
+        }
+    };
     
     /*
      * True if this is a null request.
@@ -235,7 +264,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return a string with all the headers encoded.
      */
     protected String encodeSIPHeaders() {
-        StringBuffer encoding = new StringBuffer();
+        StringBuilder encoding = new StringBuilder();
         Iterator<SIPHeader> it = this.headers.iterator();
 
         while (it.hasNext()) {
@@ -274,7 +303,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (!other.getClass().equals(this.getClass()))
             return false;
         SIPMessage matchObj = (SIPMessage) other;
-        Iterator<SIPHeader> li = matchObj.getHeaders();
+        Iterator<SIPHeader> li = matchObj.headers.iterator();
         while (li.hasNext()) {
             SIPHeader hisHeaders = (SIPHeader) li.next();
             List<SIPHeader> myHeaders = this.getHeaderList(hisHeaders.getHeaderName());
@@ -358,13 +387,13 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         representation of the SDP payload if it exists).
      */
     public String encode() {
-        StringBuffer encoding = new StringBuffer();
+        StringBuilder encoding = new StringBuilder();
         Iterator<SIPHeader> it = this.headers.iterator();
 
         while (it.hasNext()) {
             SIPHeader siphdr = (SIPHeader) it.next();
             if (!(siphdr instanceof ContentLength))
-                encoding.append(siphdr.encode());
+                siphdr.encode(encoding);
         }
         // Append the unrecognized headers. Headers that are not
         // recognized are passed through unchanged.
@@ -372,7 +401,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             encoding.append(unrecognized).append(NEWLINE);
         }
 
-        encoding.append(contentLengthHeader.encode()).append(NEWLINE);
+        contentLengthHeader.encode(encoding).append(NEWLINE);
 
         if (this.messageContentObject != null) {
             String mbody = this.getContent().toString();
@@ -406,19 +435,50 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         byte array).
      */
     public byte[] encodeAsBytes(String transport) {
-        if (this instanceof SIPRequest && ((SIPRequest) this).isNullRequest()) {
-            return "\r\n\r\n".getBytes();
+        ByteBuffer buffer = encodeAsBytes(transport, byteEncodingBuffer.get());
+        byte[] retval = new byte[buffer.remaining()];
+        buffer.get(retval);
+        if (buffer.capacity() <= MAX_ENCODING_BUFFER_SIZE) {
+            byteEncodingBuffer.set(buffer);
+        }
+        return retval;
+    }
+
+    /**
+     * Encode the message into a byte buffer. The first line and the headers are written
+     * straight into the buffer, with a fast path for ASCII characters, followed by the
+     * payload.
+     * 
+     * @param transport the transport to set in the topmost Via header.
+     * @param buffer the buffer to encode into, cleared first. A larger buffer is allocated if
+     *        it is too small or null.
+     * @return the buffer holding the encoded message, flipped and ready to be read. This is
+     *         the given buffer unless it was too small.
+     */
+    public ByteBuffer encodeAsBytes(String transport, ByteBuffer buffer) {
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(ENCODING_BUFFER_SIZE);
+        } else {
+            buffer.clear();
         }
         // JvB: added to fix case where application provides the wrong transport
         // in the topmost Via header
-        ViaHeader topVia = (ViaHeader) this.getHeader(ViaHeader.NAME);
+        ViaHeader topVia = (ViaHeader) this.getHeaderLowerCase(VIA_LOWERCASE);
         try {
-            topVia.setTransport(transport);
+            if (!transport.equalsIgnoreCase(topVia.getTransport())) {
+                ViaList viaList = (ViaList) ownHeader(nameTable.get(VIA_LOWERCASE));
+                ((Via) viaList.getFirst()).setTransport(transport);
+            }
         } catch (ParseException e) {
             InternalErrorHandler.handleException(e);
         }
 
-        StringBuffer encoding = new StringBuffer();
+        StringBuilder encoding = headerEncodingBuffer.get();
+        encoding.setLength(0);
+        encodeFirstLine(encoding);
+        buffer = putChars(encoding, buffer, "UTF-8");
+
+        encoding.setLength(0);
         synchronized (this.headers) {
             Iterator<SIPHeader> it = this.headers.iterator();
 
@@ -431,37 +491,101 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         }
         contentLengthHeader.encode(encoding);
         encoding.append(NEWLINE);
+        buffer = putChars(encoding, buffer, getCharset());
+        if (encoding.capacity() > MAX_ENCODING_BUFFER_SIZE) {
+            headerEncodingBuffer.remove();
+        }
 
-        byte[] retval = null;
         byte[] content = this.getRawContent();
         if (content != null) {
             // Append the content
+            buffer = ensureRemaining(buffer, content.length);
+            buffer.put(content);
+        }
+        buffer.flip();
+        return buffer;
+    }
 
-            byte[] msgarray = null;
-            try {
-                msgarray = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
+    /**
+     * Encode the first line of the message (request or status line) in the given buffer.
+     */
+    protected void encodeFirstLine(StringBuilder buffer) {
+        String firstLine = getFirstLine();
+        if (firstLine != null) {
+            buffer.append(firstLine);
+        }
+    }
+
+    /**
+     * Write characters into a byte buffer. ASCII characters are copied as is, the
+     * remaining characters are encoded with the given charset from the first non ASCII
+     * character.
+     * 
+     * @return the buffer, or a larger copy of it if it was too small.
+     */
+    protected static ByteBuffer putChars(CharSequence chars, ByteBuffer buffer, String charset) {
+        int length = chars.length();
+        buffer = ensureRemaining(buffer, length);
+        if (!buffer.hasArray()) {
+            for (int i = 0; i < length; i++) {
+                char c = chars.charAt(i);
+                if (c >= 0x80) {
+                    return putEncodedChars(chars, i, buffer, charset);
+                }
+                buffer.put((byte) c);
             }
+            return buffer;
+        }
+        byte[] array = buffer.array();
+        int offset = buffer.arrayOffset() + buffer.position();
+        for (int i = 0; i < length; i++) {
+            char c = chars.charAt(i);
+            if (c >= 0x80) {
+                buffer.position(buffer.position() + i);
+                return putEncodedChars(chars, i, buffer, charset);
+            }
+            array[offset + i] = (byte) c;
+        }
+        buffer.position(buffer.position() + length);
+        return buffer;
+    }
 
-            retval = new byte[msgarray.length + content.length];
-            System.arraycopy(msgarray, 0, retval, 0, msgarray.length);
-            System.arraycopy(content, 0, retval, msgarray.length, content.length);
-        } else {
-            // Message content does not exist.
+    /**
+     * Slow path of putChars: encode the characters from the given index with the charset.
+     */
+    private static ByteBuffer putEncodedChars(CharSequence chars, int start, ByteBuffer buffer,
+            String charset) {
+        byte[] bytes = null;
+        try {
+            bytes = chars.subSequence(start, chars.length()).toString().getBytes(charset);
+        } catch (UnsupportedEncodingException ex) {
+            InternalErrorHandler.handleException(ex);
+        }
+        buffer = ensureRemaining(buffer, bytes.length);
+        buffer.put(bytes);
+        return buffer;
+    }
 
-            try {
-                retval = encoding.toString().getBytes( getCharset() );
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
+    /**
+     * Return a buffer with at least the given number of bytes remaining: the given buffer,
+     * or a larger copy of its content.
+     */
+    private static ByteBuffer ensureRemaining(ByteBuffer buffer, int length) {
+        if (buffer.remaining() >= length) {
+            return buffer;
         }
-        return retval;
+        int capacity = Math.max(buffer.capacity() * 2, buffer.position() + length);
+        ByteBuffer larger = ByteBuffer.allocate(capacity);
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
     }
 
     /**
-     * clone this message (create a new deep physical copy). All headers in the message are
-     * cloned. You can modify the cloned copy without affecting the original. The content is
+     * clone this message. You can modify the cloned copy without affecting the original. Headers
+     * are shared between the original and the clone until one of the two hands them out (through
+     * getHeader, getHeaders, getFrom and the like) or changes them, at which point that message
+     * gets a private copy. Headers that were already handed out are cloned right away. The content is
      * handled as follows: If the content is a String, or a byte array, a new copy of the content
      * is allocated and copied over. If the content is an Object that supports the clone method,
      * then the clone method is invoked and the cloned content is the new content. Otherwise, the
@@ -482,7 +606,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             retval.headers = new ConcurrentLinkedQueue<SIPHeader>();
             for (Iterator<SIPHeader> iter = headers.iterator(); iter.hasNext();) {
                 SIPHeader hdr = (SIPHeader) iter.next();
-                retval.attachHeader((SIPHeader) hdr.clone());
+                retval.attachHeader(shareHeader(hdr));
             }
 
         }
@@ -494,6 +618,94 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         return retval;
     }
 
+    /**
+     * Get a header of this message (or of another message) to place unchanged in a new message.
+     * The header is shared between the two messages unless it was handed out, in which case a
+     * copy is returned.
+     * 
+     * @param header is the header to share.
+     * @return the header or a copy of it.
+     */
+    protected static SIPHeader shareHeader(SIPHeader header) {
+        if (header.isExposed())
+            return (SIPHeader) header.clone();
+        header.setShared();
+        return header;
+    }
+
+    /**
+     * Set a header of another message in this message, sharing it when possible.
+     * 
+     * @param header is the header to share.
+     */
+    protected void setSharedHeader(SIPHeader header) {
+        if (header == null)
+            return;
+        try {
+            this.removeHeader(header.getHeaderName());
+            attachHeader(shareHeader(header), true, false);
+        } catch (SIPDuplicateHeaderException ex) {
+            InternalErrorHandler.handleException(ex);
+        }
+    }
+
+    /**
+     * Get a header of this message that may be changed in place. A header still shared with
+     * another message is first replaced by a private copy.
+     * 
+     * @param header is a header of this message.
+     * @return the header to change.
+     */
+    protected SIPHeader ownHeader(SIPHeader header) {
+        if (header == null || !header.isShared())
+            return header;
+        synchronized (this) {
+            String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(header.getName());
+            SIPHeader current = nameTable.get(headerNameLowerCase);
+            if (current != null && current != header) {
+                // Already replaced by another thread.
+                header = current;
+                if (!header.isShared())
+                    return header;
+            }
+            SIPHeader copy = (SIPHeader) header.clone();
+            if (current != null)
+                nameTable.put(headerNameLowerCase, copy);
+            ConcurrentLinkedQueue<SIPHeader> copyHeaders = new ConcurrentLinkedQueue<SIPHeader>();
+            for (Iterator<SIPHeader> iter = headers.iterator(); iter.hasNext();) {
+                SIPHeader hdr = iter.next();
+                copyHeaders.add(hdr == header ? copy : hdr);
+            }
+            this.headers = copyHeaders;
+            setAccessorField(copy);
+            return copy;
+        }
+    }
+
+    /**
+     * Get a header of this message that is about to be handed out. It is made private to this
+     * message and later clones copy it instead of sharing it.
+     * 
+     * @param header is a header of this message.
+     * @return the header to hand out.
+     */
+    protected SIPHeader exposeHeader(SIPHeader header) {
+        header = ownHeader(header);
+        if (header != null && !header.isExposed())
+            header.setExposed();
+        return header;
+    }
+
+    /**
+     * Get the header or header list of the given name without handing it out.
+     * 
+     * @param headerName is the name of the header.
+     * @return the header or header list, null if there is none.
+     */
+    protected SIPHeader peekHeader(String headerName) {
+        return nameTable.get(SIPHeaderNamesCache.toLowerCase(headerName));
+    }
+
     /**
      * Get the string representation of this header (for pretty printing the generated structure).
      * 
@@ -588,11 +800,20 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             }
             this.removeHeader(header.getHeaderName());
             attachHeader(header, true, false);
+            exposeHeader(header.getHeaderName());
         } catch (SIPDuplicateHeaderException ex) {
             InternalErrorHandler.handleException(ex);
         }
     }
 
+    /**
+     * Mark the header of the given name as handed out, once the application attached a header
+     * object it still holds a reference to.
+     */
+    private void exposeHeader(String headerName) {
+        exposeHeader(nameTable.get(SIPHeaderNamesCache.toLowerCase(headerName)));
+    }
+
     /**
      * Set a header from a linked list of headers.
      * 
@@ -659,7 +880,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             if (h instanceof ContentLength) {
                 try {
                     ContentLength cl = (ContentLength) h;
-                    contentLengthHeader.setContentLength(cl.getContentLength());
+                    ((ContentLength) ownHeader(contentLengthHeader)).setContentLength(cl
+                            .getContentLength());
                 } catch (InvalidArgumentException e) {
                 }
             }
@@ -667,7 +889,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             return;
         }
 
-        SIPHeader originalHeader = (SIPHeader) getHeader(header.getName());
+        SIPHeader originalHeader = (SIPHeader) getHeaderLowerCase(headerNameLowerCase);
 
         // Delete the original header from our list structure.
         if (originalHeader != null) {
@@ -685,8 +907,10 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             headers.add(h);
         } else {
             if (h instanceof SIPHeaderList) {
-                SIPHeaderList< ? > hdrlist = (SIPHeaderList< ? >) nameTable
-                        .get(headerNameLowerCase);
+                SIPHeaderList< ? > hdrlist = (SIPHeaderList< ? >) ownHeader(nameTable
+                        .get(headerNameLowerCase));
+                if (h.isShared())
+                    h = (SIPHeader) h.clone();
                 if (hdrlist != null)
                     hdrlist.concatenate((SIPHeaderList) h, top);
                 else
@@ -696,7 +920,13 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             }
         }
 
-        // Direct accessor fields for frequently accessed headers.
+        setAccessorField(h);
+    }
+
+    /**
+     * Set the direct accessor field for a frequently accessed header.
+     */
+    private void setAccessorField(SIPHeader h) {
         if (h instanceof From) {
             this.fromHeader = (From) h;
         } else if (h instanceof ContentLength) {
@@ -723,7 +953,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public void removeHeader(String headerName, boolean top) {
 
         String headerNameLowerCase = SIPHeaderNamesCache.toLowerCase(headerName);
-        SIPHeader toRemove = (SIPHeader) nameTable.get(headerNameLowerCase);
+        SIPHeader toRemove = ownHeader(nameTable.get(headerNameLowerCase));
         // nothing to do then we are done.
         if (toRemove == null)
             return;
@@ -827,10 +1057,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      *         response have the same computed transaction identifier).
      */
     public String getTransactionId() {
-        Via topVia = null;
-        if (!this.getViaHeaders().isEmpty()) {
-            topVia = (Via) this.getViaHeaders().getFirst();
-        }
+        Via topVia = (Via) getHeaderLowerCase(VIA_LOWERCASE);
         // Have specified a branch Identifier so we can use it to identify
         // the transaction. BranchId is not case sensitive.
         // Branch Id prefix is not case sensitive.
@@ -841,16 +1068,16 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             // Bis 09 compatible branch assignment algorithm.
             // implies that the branch id can be used as a transaction
             // identifier.
-            if (this.getCSeq().getMethod().equals(Request.CANCEL))
-                return (topVia.getBranch() + ":" + this.getCSeq().getMethod()).toLowerCase();
+            if (this.cSeqHeader.getMethod().equals(Request.CANCEL))
+                return (topVia.getBranch() + ":" + this.cSeqHeader.getMethod()).toLowerCase();
             else
                 return topVia.getBranch().toLowerCase();
         } else {
             // Old style client so construct the transaction identifier
             // from various fields of the request.
-            StringBuffer retval = new StringBuffer();
-            From from = (From) this.getFrom();
-            To to = (To) this.getTo();
+            StringBuilder retval = new StringBuilder();
+            From from = this.fromHeader;
+            To to = this.toHeader;
             // String hpFrom = from.getUserAtHostPort();
             // retval.append(hpFrom).append(":");
             if (from.hasTag())
@@ -862,12 +1089,12 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             retval.append(this.cSeqHeader.getSequenceNumber()).append("-").append(
                     this.cSeqHeader.getMethod());
             if (topVia != null) {
-                retval.append("-").append(topVia.getSentBy().encode());
-                if (!topVia.getSentBy().hasPort()) {
+                retval.append("-").append(topVia.getSentByField());
+                if (!topVia.hasPort()) {
                     retval.append("-").append(5060);
                 }
             }
-            if (this.getCSeq().getMethod().equals(Request.CANCEL)) {
+            if (this.cSeqHeader.getMethod().equals(Request.CANCEL)) {
                 retval.append(Request.CANCEL);
             }
             return retval.toString().toLowerCase().replace(":", "-").replace("@", "-")
@@ -901,6 +1128,10 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return an Iterator for the headers of this message.
      */
     public Iterator<SIPHeader> getHeaders() {
+        SIPHeader[] all = headers.toArray(new SIPHeader[0]);
+        for (int i = 0; i < all.length; i++) {
+            exposeHeader(all[i]);
+        }
         return headers.iterator();
     }
 
@@ -910,12 +1141,20 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return header -- the first header of the given name.
      */
     public Header getHeader(String headerName) {
-        return getHeaderLowerCase(SIPHeaderNamesCache.toLowerCase(headerName));
+        return getExposedHeaderLowerCase(SIPHeaderNamesCache.toLowerCase(headerName));
     }
 
-    private Header getHeaderLowerCase(String lowerCaseHeaderName) {
+    private Header getExposedHeaderLowerCase(String lowerCaseHeaderName) {
         if (lowerCaseHeaderName == null)
             throw new NullPointerException("bad name");
+        SIPHeader sipHeader = exposeHeader(nameTable.get(lowerCaseHeaderName));
+        if (sipHeader instanceof SIPHeaderList)
+            return (Header) ((SIPHeaderList) sipHeader).getFirst();
+        else
+            return (Header) sipHeader;
+    }
+
+    private Header getHeaderLowerCase(String lowerCaseHeaderName) {
         SIPHeader sipHeader = (SIPHeader) nameTable.get(lowerCaseHeaderName);
         if (sipHeader instanceof SIPHeaderList)
             return (Header) ((SIPHeaderList) sipHeader).getFirst();
@@ -930,7 +1169,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     
     public ContentType getContentTypeHeader() {
-        return (ContentType) getHeaderLowerCase(CONTENT_TYPE_LOWERCASE);
+        return (ContentType) getExposedHeaderLowerCase(CONTENT_TYPE_LOWERCASE);
     }
     
     private static final String CONTENT_TYPE_LOWERCASE = SIPHeaderNamesCache
@@ -951,7 +1190,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return -- the from header.
      */
     public FromHeader getFrom() {
-        return (FromHeader) fromHeader;
+        return (FromHeader) exposeHeader(fromHeader);
     }
 
     /**
@@ -1045,7 +1284,27 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return CSeq header
      */
     public CSeqHeader getCSeq() {
-        return (CSeqHeader) cSeqHeader;
+        return (CSeqHeader) exposeHeader(cSeqHeader);
+    }
+
+    /**
+     * Get the topmost via header without handing it out: the header may be shared with other
+     * messages and must not be changed.
+     * 
+     * @return the top most via header if one exists or null if none exists.
+     */
+    public Via peekTopmostVia() {
+        return (Via) getHeaderLowerCase(VIA_LOWERCASE);
+    }
+
+    /**
+     * Get the CSeq header without handing it out: the header may be shared with other messages
+     * and must not be changed.
+     * 
+     * @return CSeq header
+     */
+    public CSeq peekCSeq() {
+        return cSeqHeader;
     }
 
     /**
@@ -1054,7 +1313,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return Authorization header.
      */
     public Authorization getAuthorization() {
-        return (Authorization) getHeaderLowerCase(AUTHORIZATION_LOWERCASE);
+        return (Authorization) getExposedHeaderLowerCase(AUTHORIZATION_LOWERCASE);
     }
 
     private static final String AUTHORIZATION_LOWERCASE = SIPHeaderNamesCache
@@ -1067,7 +1326,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
 
     public MaxForwardsHeader getMaxForwards() {
-        return maxForwardsHeader;
+        return (MaxForwardsHeader) exposeHeader(maxForwardsHeader);
     }
 
     /**
@@ -1097,7 +1356,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return Call-ID header .
      */
     public CallIdHeader getCallId() {
-        return callIdHeader;
+        return (CallIdHeader) exposeHeader(callIdHeader);
     }
 
     /**
@@ -1118,7 +1377,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         if (callIdHeader == null) {
             this.setHeader(new CallID());
         }
-        callIdHeader.setCallId(callId);
+        ((CallID) ownHeader(callIdHeader)).setCallId(callId);
     }
 
     /**
@@ -1139,7 +1398,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return To header
      */
     public ToHeader getTo() {
-        return (ToHeader) toHeader;
+        return (ToHeader) exposeHeader(toHeader);
     }
 
     public void setTo(ToHeader to) {
@@ -1157,7 +1416,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return content-length header.
      */
     public ContentLengthHeader getContentLength() {
-        return this.contentLengthHeader;
+        return (ContentLengthHeader) exposeHeader(this.contentLengthHeader);
     }
 
     /**
@@ -1357,7 +1616,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         }
 
         try {
-            contentLengthHeader.setContentLength(length);
+            ((ContentLength) ownHeader(contentLengthHeader)).setContentLength(length);
         } catch (InvalidArgumentException e) {
             // Cannot happen.
         }
@@ -1371,7 +1630,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
         messageContentBytes = null;
         messageContentObject = null;
         try {
-            this.contentLengthHeader.setContentLength(0);
+            ((ContentLength) ownHeader(contentLengthHeader)).setContentLength(0);
         } catch (InvalidArgumentException ex) {
         }
     }
@@ -1386,8 +1645,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     public ListIterator<SIPHeader> getHeaders(String headerName) {
         if (headerName == null)
             throw new NullPointerException("null headerName");
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        SIPHeader sipHeader = exposeHeader(nameTable.get(SIPHeaderNamesCache
+                .toLowerCase(headerName)));
         // empty iterator
         if (sipHeader == null)
             return new LinkedList<SIPHeader>().listIterator();
@@ -1415,7 +1674,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     }
 
     private SIPHeader getSIPHeaderListLowerCase(String lowerCaseHeaderName) {
-        return nameTable.get(lowerCaseHeaderName);
+        return exposeHeader(nameTable.get(lowerCaseHeaderName));
     }
 
     /**
@@ -1426,8 +1685,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     @SuppressWarnings("unchecked")
     private List<SIPHeader> getHeaderList(String headerName) {
-        SIPHeader sipHeader = (SIPHeader) nameTable.get(SIPHeaderNamesCache
-                .toLowerCase(headerName));
+        SIPHeader sipHeader = ownHeader(nameTable.get(SIPHeaderNamesCache
+                .toLowerCase(headerName)));
         if (sipHeader == null)
             return null;
         else if (sipHeader instanceof SIPHeaderList)
@@ -1484,7 +1743,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     public void setFromTag(String tag) {
         try {
-            fromHeader.setTag(tag);
+            ((From) ownHeader(fromHeader)).setTag(tag);
         } catch (ParseException e) {
         }
     }
@@ -1496,7 +1755,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     public void setToTag(String tag) {
         try {
-            toHeader.setTag(tag);
+            ((To) ownHeader(toHeader)).setTag(tag);
         } catch (ParseException e) {
         }
     }
@@ -1527,11 +1786,13 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
             } else {
                 attachHeader(sh, false, false);
             }
+            exposeHeader(sh.getHeaderName());
         } catch (SIPDuplicateHeaderException ex) {
             try {
                 if (sipHeader instanceof ContentLength) {
                     ContentLength cl = (ContentLength) sipHeader;
-                    contentLengthHeader.setContentLength(cl.getContentLength());
+                    ((ContentLength) ownHeader(contentLengthHeader)).setContentLength(cl
+                            .getContentLength());
                 }
             } catch (InvalidArgumentException e) {
             }
@@ -1625,7 +1886,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return the contentDisposition header
      */
     public javax2.sip.header.ContentDispositionHeader getContentDisposition() {
-        return (ContentDispositionHeader) getHeaderLowerCase(CONTENT_DISPOSITION_LOWERCASE);
+        return (ContentDispositionHeader) getExposedHeaderLowerCase(CONTENT_DISPOSITION_LOWERCASE);
     }
 
     private static final String CONTENT_DISPOSITION_LOWERCASE = SIPHeaderNamesCache
@@ -1637,7 +1898,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return the contentEncoding header.
      */
     public javax2.sip.header.ContentEncodingHeader getContentEncoding() {
-        return (ContentEncodingHeader) getHeaderLowerCase(CONTENT_ENCODING_LOWERCASE);
+        return (ContentEncodingHeader) getExposedHeaderLowerCase(CONTENT_ENCODING_LOWERCASE);
     }
 
     private static final String CONTENT_ENCODING_LOWERCASE = SIPHeaderNamesCache
@@ -1649,7 +1910,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return the content language header.
      */
     public javax2.sip.header.ContentLanguageHeader getContentLanguage() {
-        return (ContentLanguageHeader) getHeaderLowerCase(CONTENT_LANGUAGE_LOWERCASE);
+        return (ContentLanguageHeader) getExposedHeaderLowerCase(CONTENT_LANGUAGE_LOWERCASE);
     }
 
     private static final String CONTENT_LANGUAGE_LOWERCASE = SIPHeaderNamesCache
@@ -1661,7 +1922,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      * @return the expires header or null if one does not exist.
      */
     public javax2.sip.header.ExpiresHeader getExpires() {
-        return (ExpiresHeader) getHeaderLowerCase(EXPIRES_LOWERCASE);
+        return (ExpiresHeader) getExposedHeaderLowerCase(EXPIRES_LOWERCASE);
     }
 
     private static final String EXPIRES_LOWERCASE = SIPHeaderNamesCache
@@ -1704,7 +1965,8 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
      */
     public void setContentLength(ContentLengthHeader contentLength) {
         try {
-            this.contentLengthHeader.setContentLength(contentLength.getContentLength());
+            ((ContentLength) ownHeader(contentLengthHeader)).setContentLength(contentLength
+                    .getContentLength());
         } catch (InvalidArgumentException ex) {
         }
 
@@ -1734,6 +1996,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
         try {
             this.attachHeader((SIPHeader) header, false, false);
+            exposeHeader(header.getName());
         } catch (SIPDuplicateHeaderException ex) {
             throw new SipException("Cannot add header - header already exists");
         }
@@ -1752,6 +2015,7 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
 
         try {
             this.attachHeader((SIPHeader) header, false, true);
+            exposeHeader(header.getName());
         } catch (SIPDuplicateHeaderException ex) {
             throw new SipException("Cannot add header - header already exists");
         }
@@ -1835,17 +2099,17 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     }
     
     public CallIdHeader getCallIdHeader() {
-        return this.callIdHeader;
+        return this.getCallId();
     }
 
    
     public FromHeader getFromHeader() {
-        return this.fromHeader;
+        return this.getFrom();
     }
 
    
     public ToHeader getToHeader() {
-        return this.toHeader;
+        return this.getTo();
     }
 
   
@@ -1854,14 +2118,14 @@ public abstract class SIPMessage extends MessageObject implements javax2.sip.mes
     }
     
     public CSeqHeader getCSeqHeader() {
-        return this.cSeqHeader;
+        return this.getCSeq();
     }
  
     /**
      * Returns the charset to use for encoding/decoding the body of this message
      */
     protected final String getCharset() {
-    	ContentType ct = getContentTypeHeader();
+    	ContentType ct = (ContentType) getHeaderLowerCase(CONTENT_TYPE_LOWERCASE);
     	if (ct!=null) {
     		String c = ct.getCharset();
     		return c!=null ? c : contentEncodingCharset;
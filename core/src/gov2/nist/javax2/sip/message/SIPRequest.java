@@ -33,7 +33,7 @@ import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.LinkedList;
 import java.util.Set;
-import java.io.UnsupportedEncodingException;
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 
 import java.text.ParseException;
@@ -406,7 +406,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
 
         if (this.cSeqHeader != null) {
             try {
-                this.cSeqHeader.setMethod(meth);
+                ((CSeq) ownHeader(this.cSeqHeader)).setMethod(meth);
             } catch (ParseException e) {
             }
         }
@@ -546,7 +546,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
      */
     public String getDialogId(boolean isServer) {
         CallID cid = (CallID) this.getCallId();
-        StringBuffer retval = new StringBuffer(cid.getCallId());
+        StringBuilder retval = new StringBuilder(cid.getCallId());
         From from = (From) this.getFrom();
         To to = (To) this.getTo();
         if (!isServer) {
@@ -582,7 +582,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
     public String getDialogId(boolean isServer, String toTag) {
         From from = (From) this.getFrom();
         CallID cid = (CallID) this.getCallId();
-        StringBuffer retval = new StringBuffer(cid.getCallId());
+        StringBuilder retval = new StringBuilder(cid.getCallId());
         if (!isServer) {
             // retval.append(COLON).append(from.getUserAtHostPort());
             if (from.getTag() != null) {
@@ -610,33 +610,32 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
     }
 
     /**
-     * Encode this into a byte array. This is used when the body has been set as a binary array
-     * and you want to encode the body as a byte array for transmission.
+     * Encode this into a byte buffer. A null request is encoded as CRLFCRLF for keepalive.
      * 
-     * @return a byte array containing the SIPRequest encoded as a byte array.
+     * @return the buffer containing the SIPRequest encoded as bytes.
      */
-
-    public byte[] encodeAsBytes(String transport) {
-        if (this.isNullRequest()) {
-            // Encoding a null message for keepalive.
-            return "\r\n\r\n".getBytes();
-        } else if ( this.requestLine == null ) {
-            return new byte[0];
-        }
-
-        byte[] rlbytes = null;
-        if (requestLine != null) {
-            try {
-                rlbytes = requestLine.encode().getBytes("UTF-8");
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
+    public ByteBuffer encodeAsBytes(String transport, ByteBuffer buffer) {
+        if (this.isNullRequest() || this.requestLine == null) {
+            if (buffer == null) {
+                buffer = ByteBuffer.allocate(4);
+            } else {
+                buffer.clear();
             }
+            if (this.isNullRequest()) {
+                // Encoding a null message for keepalive.
+                buffer = putChars("\r\n\r\n", buffer, "UTF-8");
+            }
+            buffer.flip();
+            return buffer;
         }
-        byte[] superbytes = super.encodeAsBytes(transport);
-        byte[] retval = new byte[rlbytes.length + superbytes.length];
-        System.arraycopy(rlbytes, 0, retval, 0, rlbytes.length);
-        System.arraycopy(superbytes, 0, retval, rlbytes.length, superbytes.length);
-        return retval;
+        return super.encodeAsBytes(transport, buffer);
+    }
+
+    /**
+     * Encode the request line.
+     */
+    protected void encodeFirstLine(StringBuilder buffer) {
+        requestLine.encode(buffer);
     }
 
     /**
@@ -693,7 +692,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
             newResponse.setReasonPhrase(reasonPhrase);
         else
             newResponse.setReasonPhrase(SIPResponse.getReasonPhrase(statusCode));
-        headerIterator = getHeaders();
+        headerIterator = headers.iterator();
         while (headerIterator.hasNext()) {
             nextHeader = (SIPHeader) headerIterator.next();
             if (nextHeader instanceof From
@@ -707,7 +706,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
 
                 try {
 
-                    newResponse.attachHeader((SIPHeader) nextHeader.clone(), false);
+                    newResponse.attachHeader(shareHeader(nextHeader), false);
                 } catch (SIPDuplicateHeaderException e) {
                     e.printStackTrace();
                 }
@@ -771,26 +770,24 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
         SIPRequest cancel = new SIPRequest();
         cancel.setRequestLine((RequestLine) this.requestLine.clone());
         cancel.setMethod(Request.CANCEL);
-        cancel.setHeader((Header) this.callIdHeader.clone());
-        cancel.setHeader((Header) this.toHeader.clone());
+        cancel.setSharedHeader(this.callIdHeader);
+        cancel.setSharedHeader(this.toHeader);
         cancel.setHeader((Header) cSeqHeader.clone());
         try {
             cancel.getCSeq().setMethod(Request.CANCEL);
         } catch (ParseException e) {
             e.printStackTrace(); // should not happen
         }
-        cancel.setHeader((Header) this.fromHeader.clone());
+        cancel.setSharedHeader(this.fromHeader);
 
         cancel.addFirst((Header) this.getTopmostVia().clone());
-        cancel.setHeader((Header) this.maxForwardsHeader.clone());
+        cancel.setSharedHeader(this.maxForwardsHeader);
 
         /*
          * If the request being cancelled contains a Route header field, the CANCEL request MUST
          * include that Route header field's values.
          */
-        if (this.getRouteHeaders() != null) {
-            cancel.setHeader((SIPHeaderList< ? >) this.getRouteHeaders().clone());
-        }
+        cancel.setSharedHeader(this.peekHeader(RouteHeader.NAME));
         if (MessageFactoryImpl.getDefaultUserAgentHeader() != null) {
             cancel.setHeader(MessageFactoryImpl.getDefaultUserAgentHeader());
 
@@ -816,7 +813,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
         newRequest = new SIPRequest();
         newRequest.setRequestLine((RequestLine) this.requestLine.clone());
         newRequest.setMethod(Request.ACK);
-        headerIterator = getHeaders();
+        headerIterator = headers.iterator();
         while (headerIterator.hasNext()) {
             nextHeader = (SIPHeader) headerIterator.next();
             if (nextHeader instanceof RouteList) {
@@ -855,7 +852,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
                 if (responseToHeader != null) {
                     nextHeader = responseToHeader;
                 } else {
-                    nextHeader = (SIPHeader) nextHeader.clone();
+                    nextHeader = shareHeader(nextHeader);
                 }
             } else if (nextHeader instanceof ContactList || nextHeader instanceof Expires) {
                 // CONTACT header does not apply for ACK requests.
@@ -869,7 +866,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
 
                 nextHeader = (SIPHeader) ((ViaList) nextHeader).getFirst().clone();
             } else {
-                nextHeader = (SIPHeader) nextHeader.clone();
+                nextHeader = shareHeader(nextHeader);
             }
 
             try {
@@ -913,11 +910,11 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
         SIPRequest newRequest = new SIPRequest();
         newRequest.setRequestLine((RequestLine) this.requestLine.clone());
         newRequest.setMethod(Request.ACK);
-        newRequest.setHeader((Header) this.callIdHeader.clone());
-        newRequest.setHeader((Header) this.maxForwardsHeader.clone()); // ISSUE
+        newRequest.setSharedHeader(this.callIdHeader);
+        newRequest.setSharedHeader(this.maxForwardsHeader); // ISSUE
         // 130
         // fix
-        newRequest.setHeader((Header) this.fromHeader.clone());
+        newRequest.setSharedHeader(this.fromHeader);
         newRequest.setHeader((Header) responseToHeader.clone());
         newRequest.addFirst((Header) this.getTopmostVia().clone());
         newRequest.setHeader((Header) cSeqHeader.clone());
@@ -928,9 +925,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
          * those header fields MUST appear in the ACK. This is to ensure that the ACK can be
          * routed properly through any downstream stateless proxies.
          */
-        if (this.getRouteHeaders() != null) {
-            newRequest.setHeader((SIPHeaderList) this.getRouteHeaders().clone());
-        }
+        newRequest.setSharedHeader(this.peekHeader(RouteHeader.NAME));
         if (MessageFactoryImpl.getDefaultUserAgentHeader() != null) {
             newRequest.setHeader(MessageFactoryImpl.getDefaultUserAgentHeader());
 
@@ -973,7 +968,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
     public SIPRequest createSIPRequest(RequestLine requestLine, boolean switchHeaders) {
         SIPRequest newRequest = new SIPRequest();
         newRequest.requestLine = requestLine;
-        Iterator<SIPHeader> headerIterator = this.getHeaders();
+        Iterator<SIPHeader> headerIterator = this.headers.iterator();
         while (headerIterator.hasNext()) {
             SIPHeader nextHeader = (SIPHeader) headerIterator.next();
             // For BYE and cancel set the CSeq header to the
@@ -1022,6 +1017,8 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
                 // Any extension headers must be added
                 // by the caller.
                 continue;
+            } else {
+                nextHeader = shareHeader(nextHeader);
             }
             try {
                 newRequest.attachHeader(nextHeader, false);
@@ -1180,7 +1177,7 @@ public final class SIPRequest extends SIPMessage implements javax2.sip.message.R
         String requestUri = this.getRequestURI().toString();
 
         if (fromTag != null) {
-            return new StringBuffer().append(requestUri).append(":").append(fromTag).append(":").append(cseq).append(":")
+            return new StringBuilder().append(requestUri).append(":").append(fromTag).append(":").append(cseq).append(":")
                     .append(callId).toString();
         } else
             return null;
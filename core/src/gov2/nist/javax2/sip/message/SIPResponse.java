@@ -28,7 +28,6 @@
  *******************************************************************************/
 package gov2.nist.javax2.sip.message;
 
-import gov2.nist.core.InternalErrorHandler;
 import gov2.nist.javax2.sip.Utils;
 import gov2.nist.javax2.sip.address.SipUri;
 import gov2.nist.javax2.sip.header.CSeq;
@@ -48,7 +47,6 @@ import gov2.nist.javax2.sip.header.Via;
 import gov2.nist.javax2.sip.header.ViaList;
 import gov2.nist.javax2.sip.header.extensions.SessionExpires;
 
-import java.io.UnsupportedEncodingException;
 import java.text.ParseException;
 import java.util.Iterator;
 import java.util.LinkedList;
@@ -522,29 +520,12 @@ public final class SIPResponse
 
     }
 
-    /** Encode this into a byte array.
-     * This is used when the body has been set as a binary array
-     * and you want to encode the body as a byte array for transmission.
-     *
-     *@return a byte array containing the SIPRequest encoded as a byte
-     *  array.
+    /** Encode the status line.
      */
-
-    public byte[] encodeAsBytes( String transport ) {
-        byte[] slbytes = null;
+    protected void encodeFirstLine(StringBuilder buffer) {
         if (statusLine != null) {
-            try {
-                slbytes = statusLine.encode().getBytes("UTF-8");
-            } catch (UnsupportedEncodingException ex) {
-                InternalErrorHandler.handleException(ex);
-            }
+            statusLine.encode(buffer);
         }
-        byte[] superbytes = super.encodeAsBytes( transport );
-        byte[] retval = new byte[slbytes.length + superbytes.length];
-        System.arraycopy(slbytes, 0, retval, 0, slbytes.length);
-        System.arraycopy(superbytes, 0, retval, slbytes.length,
-                superbytes.length);
-        return retval;
     }
 
 
@@ -559,7 +540,7 @@ public final class SIPResponse
         CallID cid = (CallID) this.getCallId();
         From from = (From) this.getFrom();
         To to = (To) this.getTo();
-        StringBuffer retval = new StringBuffer(cid.getCallId());
+        StringBuilder retval = new StringBuilder(cid.getCallId());
         if (!isServer) {
             //retval.append(COLON).append(from.getUserAtHostPort());
             if (from.getTag() != null) {
@@ -589,7 +570,7 @@ public final class SIPResponse
     public String getDialogId(boolean isServer, String toTag) {
         CallID cid = (CallID) this.getCallId();
         From from = (From) this.getFrom();
-        StringBuffer retval = new StringBuffer(cid.getCallId());
+        StringBuilder retval = new StringBuilder(cid.getCallId());
         if (!isServer) {
             //retval.append(COLON).append(from.getUserAtHostPort());
             if (from.getTag() != null) {
@@ -688,7 +669,7 @@ public final class SIPResponse
         this.setBranch( via, method );
         newRequest.setHeader(via);
         newRequest.setHeader(cseq);
-        Iterator headerIterator = getHeaders();
+        Iterator headerIterator = headers.iterator();
         while (headerIterator.hasNext()) {
             SIPHeader nextHeader = (SIPHeader) headerIterator.next();
             // Some headers do not belong in a Request ....
@@ -711,6 +692,8 @@ public final class SIPResponse
                 nextHeader = (SIPHeader) to;
             else if (nextHeader instanceof From)
                 nextHeader = (SIPHeader) from;
+            else
+                nextHeader = shareHeader(nextHeader);
             try {
                 newRequest.attachHeader(nextHeader, false);
             } catch (SIPDuplicateHeaderException e) {
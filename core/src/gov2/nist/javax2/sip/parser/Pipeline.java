@@ -27,6 +27,7 @@ package gov2.nist.javax2.sip.parser;
 
 import gov2.nist.core.InternalErrorHandler;
 import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
 import java.io.*;
 import java.util.*;
@@ -47,13 +48,13 @@ public class Pipeline extends InputStream {
 
     private boolean isClosed;
 
-    private Timer timer;
+    private SipTimer timer;
 
     private InputStream pipe;
 
     private int readTimeout;
 
-    private TimerTask myTimerTask;
+    private SIPStackTimerTask myTimerTask;
 
     class MyTimer extends SIPStackTimerTask {
         Pipeline pipeline;
@@ -119,7 +120,7 @@ public class Pipeline extends InputStream {
             this.myTimerTask.cancel();
     }
 
-    public Pipeline(InputStream pipe, int readTimeout, Timer timer) {
+    public Pipeline(InputStream pipe, int readTimeout, SipTimer timer) {
         // pipe is the Socket stream
         // this is recorded here to implement a timeout.
         this.timer = timer;
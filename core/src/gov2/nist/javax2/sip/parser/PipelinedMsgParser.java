@@ -180,7 +180,7 @@ public final class PipelinedMsgParser implements Runnable {
      * switch encodings mid-stream!
      */
     private String readLine(InputStream inputStream) throws IOException {
-        StringBuffer retval = new StringBuffer("");
+        StringBuilder retval = new StringBuilder("");
         while (true) {
             char ch;
             int i = inputStream.read();
@@ -219,7 +219,7 @@ public final class PipelinedMsgParser implements Runnable {
             while (true) {
                 this.sizeCounter = this.maxMessageSize;
                 // this.messageSize = 0;
-                StringBuffer inputBuffer = new StringBuffer();
+                StringBuilder inputBuffer = new StringBuilder();
 
                 if (Debug.parserDebug)
                     Debug.println("Starting parse!");
@@ -125,7 +125,7 @@ public class PVisitedNetworkIDParser extends ParametersParser implements TokenTy
 
         try {
 
-            StringBuffer retval = new StringBuffer();
+            StringBuilder retval = new StringBuilder();
 
             if (this.lexer.lookAhead(0) != '\"')
                 throw createParseException("unexpected char");
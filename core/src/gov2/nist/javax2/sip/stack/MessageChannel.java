@@ -44,6 +44,7 @@ import gov2.nist.javax2.sip.message.SIPResponse;
 
 import java.io.IOException;
 import java.net.InetAddress;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 
 import javax2.sip.address.Hop;
@@ -73,6 +74,20 @@ public abstract class MessageChannel {
     // to the message channel and decremented when
     // a transaction gets freed from the message channel.
 	protected int useCount;
+
+    /*
+     * Per thread buffer outgoing messages are encoded into. Buffers that had to grow past
+     * MAX_SEND_BUFFER_SIZE are dropped rather than kept around.
+     */
+    private static final int SEND_BUFFER_SIZE = 4096;
+
+    private static final int MAX_SEND_BUFFER_SIZE = 65536;
+
+    private static final ThreadLocal<ByteBuffer> sendBuffer = new ThreadLocal<ByteBuffer>() {
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocate(SEND_BUFFER_SIZE);
+        }
+    };
 	
 	/**
 	 * Hook method, overridden by subclasses
@@ -168,6 +183,38 @@ public abstract class MessageChannel {
     protected abstract void sendMessage(byte[] message, InetAddress receiverAddress,
             int receiverPort, boolean reconnectFlag) throws IOException;
 
+    /**
+     * Send the encoded bytes between the position and the limit of a buffer. The default
+     * implementation copies them out and delegates to the byte array variant, channels that can
+     * write straight from the buffer override this.
+     * 
+     * @param buffer Encoded message to send.
+     * @param receiverAddress Address of the receiver.
+     * @param receiverPort Port of the receiver.
+     */
+    protected void sendMessage(ByteBuffer buffer, InetAddress receiverAddress,
+            int receiverPort, boolean reconnectFlag) throws IOException {
+        byte[] message = new byte[buffer.remaining()];
+        buffer.get(message);
+        sendMessage(message, receiverAddress, receiverPort, reconnectFlag);
+    }
+
+    /**
+     * Encode a message into the per thread send buffer.
+     * 
+     * @param sipMessage Message to encode.
+     * @return the buffer, ready to be read.
+     */
+    protected ByteBuffer encodeMessage(SIPMessage sipMessage) {
+        ByteBuffer buffer = sipMessage.encodeAsBytes(this.getTransport(), sendBuffer.get());
+        if (buffer.capacity() <= MAX_SEND_BUFFER_SIZE) {
+            sendBuffer.set(buffer);
+        } else {
+            sendBuffer.remove();
+        }
+        return buffer;
+    }
+
     /**
      * Get the host of this message channel.
      * 
@@ -217,7 +264,7 @@ public abstract class MessageChannel {
 
                 }
             }
-            byte[] msg = sipMessage.encodeAsBytes(this.getTransport());
+            ByteBuffer msg = encodeMessage(sipMessage);
 
             this.sendMessage(msg, hopAddr, hop.getPort(), sipMessage instanceof SIPRequest);
 
@@ -246,7 +293,7 @@ public abstract class MessageChannel {
     public void sendMessage(SIPMessage sipMessage, InetAddress receiverAddress, int receiverPort)
             throws IOException {
         long time = System.currentTimeMillis();
-        byte[] bytes = sipMessage.encodeAsBytes(this.getTransport());
+        ByteBuffer bytes = encodeMessage(sipMessage);
         sendMessage(bytes, receiverAddress, receiverPort, sipMessage instanceof SIPRequest);
         logMessage(sipMessage, receiverAddress, receiverPort, time);
     }
@@ -380,7 +427,7 @@ public abstract class MessageChannel {
      */
     protected final String createBadReqRes(String badReq, ParseException pe) {
 
-        StringBuffer buf = new StringBuffer(512);
+        StringBuilder buf = new StringBuilder(512);
         buf.append("SIP/2.0 400 Bad Request (" + pe.getLocalizedMessage() + ')');
 
         // We need the following headers: all Vias, CSeq, Call-ID, From, To
@@ -439,7 +486,7 @@ public abstract class MessageChannel {
      * Note: some limitations here: does not work for short forms of headers, or continuations;
      * problems when header names appear in other parts of the request
      */
-    private static final boolean copyHeader(String name, String fromReq, StringBuffer buf) {
+    private static final boolean copyHeader(String name, String fromReq, StringBuilder buf) {
         int start = fromReq.indexOf(name);
         if (start != -1) {
             int end = fromReq.indexOf("\r\n", start);
@@ -462,7 +509,7 @@ public abstract class MessageChannel {
      * 
      * Note: some limitations here: does not work for short forms of headers, or continuations
      */
-    private static final boolean copyViaHeaders(String fromReq, StringBuffer buf) {
+    private static final boolean copyViaHeaders(String fromReq, StringBuilder buf) {
         int start = fromReq.indexOf(ViaHeader.NAME);
         boolean found = false;
         while (start != -1) {
@@ -41,7 +41,6 @@ import gov2.nist.javax2.sip.message.SIPResponse;
 
 import java.io.IOException;
 import java.text.ParseException;
-import java.util.TimerTask;
 import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
 
@@ -379,7 +378,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                 // the client side of the tx to use the same connection to
                 // send an ACK and prevents a race condition for creation
                 // of new server tx
-                TimerTask myTimer = new LingerTimer();
+                SIPStackTimerTask myTimer = new LingerTimer();
 
                 sipStack.getTimer().schedule(myTimer,
                         SIPTransactionStack.CONNECTION_LINGER_TIME * 1000);
@@ -576,8 +575,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
 
                     // If the branch parameter exists but
                     // does not start with the magic cookie,
-                    if (!messageBranch.toLowerCase().startsWith(
-                            SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE)) {
+                    if (!TransactionKey.isRFC3261Branch(messageBranch)) {
 
                         // Flags this as old
                         // (RFC2543-compatible) client
@@ -596,17 +594,15 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
                         // that it is trying to cancel.
                         transactionMatches = this.getMethod().equals(Request.CANCEL)
                                 && getBranch().equalsIgnoreCase(messageBranch)
-                                && topViaHeader.getSentBy().equals(
-                                        ((Via) getOriginalRequest().getViaHeaders().getFirst())
-                                                .getSentBy());
+                                && topViaHeader.hasSameSentBy(
+                                        (Via) getOriginalRequest().getViaHeaders().getFirst());
 
                     } else {
                         // Matching server side transaction with only the
                         // branch parameter.
                         transactionMatches = getBranch().equalsIgnoreCase(messageBranch)
-                                && topViaHeader.getSentBy().equals(
-                                        ((Via) getOriginalRequest().getViaHeaders().getFirst())
-                                                .getSentBy());
+                                && topViaHeader.hasSameSentBy(
+                                        (Via) getOriginalRequest().getViaHeaders().getFirst());
 
                     }
 
@@ -1466,7 +1462,7 @@ public class SIPServerTransaction extends SIPTransaction implements ServerReques
         	if (sipStack.getTimer() != null) {
                 // The timer is set to null when the Stack is
                 // shutting down.
-                TimerTask myTimer = new TransactionTimer();
+                SIPStackTimerTask myTimer = new TransactionTimer();
                 sipStack.getTimer().schedule(myTimer, BASE_TIMER_INTERVAL, BASE_TIMER_INTERVAL);
             }
         }        
@@ -8,17 +8,26 @@
 
 package gov2.nist.javax2.sip.stack;
 
-import java.util.TimerTask;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
 /**
- * A subclass of TimerTask which runs TimerTask code within a try/catch block to
- * avoid killing the SIPTransactionStack timer thread. Note: subclasses MUST not
- * override run(); instead they should override runTask().
+ * A timer task run by the stack {@link SipTimer}. The task code is run within
+ * a try/catch block to avoid killing the timer thread. Note: subclasses MUST
+ * not override run(); instead they should override runTask().
  *
  * @author Brett Buckingham
  *
  */
-public abstract class SIPStackTimerTask extends TimerTask {
+public abstract class SIPStackTimerTask {
+    // / The timer this task has been scheduled on.
+    private volatile SipTimer sipTimer;
+
+    // / Timer implementation specific handle of this task.
+    private volatile Object sipTimerTask;
+
+    // / Set once the task has been cancelled.
+    private volatile boolean cancelled;
+
     // / Implements code to be run when the SIPStackTimerTask is executed.
     protected abstract void runTask();
 
@@ -32,4 +41,42 @@ public abstract class SIPStackTimerTask extends TimerTask {
             e.printStackTrace();
         }
     }
+
+    /**
+     * Cancel this task. A one-shot task will not run if it has not run yet, a
+     * periodic task will not run again.
+     *
+     * @return true if the task was still pending on its timer
+     */
+    public boolean cancel() {
+        this.cancelled = true;
+        SipTimer timer = this.sipTimer;
+        return timer != null && timer.cancel(this);
+    }
+
+    /**
+     * @return true if the task has been cancelled
+     */
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * Called by a {@link SipTimer} when the task is scheduled on it.
+     *
+     * @param sipTimer the timer
+     * @param sipTimerTask the timer specific handle of this task
+     */
+    public void setSipTimerTask(SipTimer sipTimer, Object sipTimerTask) {
+        this.sipTimer = sipTimer;
+        this.sipTimerTask = sipTimerTask;
+    }
+
+    /**
+     * @return the timer specific handle of this task, or null if the task has
+     *         never been scheduled
+     */
+    public Object getSipTimerTask() {
+        return sipTimerTask;
+    }
 }
@@ -137,6 +137,8 @@ public abstract class SIPTransaction extends MessageChannel implements
 
     protected String transactionId; // Transaction Id.
 
+    protected TransactionKey transactionKey; // Key in the transaction tables.
+
     // Audit tag used by the SIP Stack audit
     public long auditTag = 0;
 
@@ -376,9 +378,9 @@ public abstract class SIPTransaction extends MessageChannel implements
         // Branch value of topmost Via header
         String newBranch;
 
-        if (this.originalRequest != null
-                && (!this.originalRequest.getTransactionId().equals(
-                        newOriginalRequest.getTransactionId()))) {
+        TransactionKey newTransactionKey = isServerTransaction() ? TransactionKey
+                .forServer(newOriginalRequest) : TransactionKey.forClient(newOriginalRequest);
+        if (this.originalRequest != null && !newTransactionKey.equals(this.transactionKey)) {
             sipStack.removeTransactionHash(this);
         }
         // This will be cleared later.
@@ -397,6 +399,7 @@ public abstract class SIPTransaction extends MessageChannel implements
         this.cSeq = newOriginalRequest.getCSeq().getSeqNumber();
         this.event = (Event) newOriginalRequest.getHeader("Event");
         this.transactionId = newOriginalRequest.getTransactionId();
+        this.transactionKey = newTransactionKey;
 
         originalRequest.setTransaction(this);
 
@@ -898,6 +901,13 @@ public abstract class SIPTransaction extends MessageChannel implements
         return this.transactionId;
     }
 
+    /**
+     * Get the key of the transaction in the transaction tables of the stack.
+     */
+    public TransactionKey getTransactionKey() {
+        return this.transactionKey;
+    }
+
     /**
      * Hashcode method for fast hashtable lookup.
      */
@@ -952,7 +962,7 @@ public abstract class SIPTransaction extends MessageChannel implements
 
                 // If the branch parameter exists but
                 // does not start with the magic cookie,
-                if (!messageBranch.toLowerCase().startsWith(SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE)) {
+                if (!TransactionKey.isRFC3261Branch(messageBranch)) {
 
                     // Flags this as old
                     // (RFC2543-compatible) client
@@ -969,9 +979,9 @@ public abstract class SIPTransaction extends MessageChannel implements
                 // If the branch equals the branch in
                 // this message,
                 if (getBranch().equalsIgnoreCase(messageBranch)
-                        && topViaHeader.getSentBy().equals(
-                                ((Via) getOriginalRequest().getViaHeaders()
-                                        .getFirst()).getSentBy())) {
+                        && topViaHeader.hasSameSentBy(
+                                (Via) getOriginalRequest().getViaHeaders()
+                                        .getFirst())) {
                     transactionMatches = true;
                     if (sipStack.isLoggingEnabled())
                         sipStack.getStackLogger().logDebug("returning  true");
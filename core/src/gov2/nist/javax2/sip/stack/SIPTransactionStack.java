@@ -47,6 +47,8 @@ import gov2.nist.javax2.sip.header.extensions.ReplacesHeader;
 import gov2.nist.javax2.sip.message.SIPMessage;
 import gov2.nist.javax2.sip.message.SIPRequest;
 import gov2.nist.javax2.sip.message.SIPResponse;
+import gov2.nist.javax2.sip.stack.timers.DefaultSipTimer;
+import gov2.nist.javax2.sip.stack.timers.SipTimer;
 
 import java.io.IOException;
 import java.net.InetAddress;
@@ -58,8 +60,8 @@ import java.util.Collection;
 import java.util.HashSet;
 import java.util.Iterator;
 import java.util.LinkedList;
+import java.util.Properties;
 import java.util.Set;
-import java.util.Timer;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -126,13 +128,19 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
     // Global timer. Use this for all timer tasks.
 
-    private Timer timer;
+    private SipTimer timer;
+
+    // Timer implementation and its configuration, kept to restart the timer
+    // when the stack is re-initialized.
+    private Class<? extends SipTimer> timerClass = DefaultSipTimer.class;
+
+    private Properties timerProperties;
 
     // List of pending server transactions
     private ConcurrentHashMap<String, SIPServerTransaction> pendingTransactions;
 
     // hashtable for fast lookup
-    private ConcurrentHashMap<String, SIPClientTransaction> clientTransactionTable;
+    private ConcurrentHashMap<TransactionKey, SIPClientTransaction> clientTransactionTable;
 
     // Set to false if you want hiwat and lowat to be consulted.
     protected boolean unlimitedServerTransactionTableSize = true;
@@ -159,7 +167,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     private AtomicInteger activeClientTransactionCount = new AtomicInteger(0);
 
     // Hashtable for server transactions.
-    private ConcurrentHashMap<String, SIPServerTransaction> serverTransactionTable;
+    private ConcurrentHashMap<TransactionKey, SIPServerTransaction> serverTransactionTable;
 
     // A table of ongoing transactions indexed by mergeId ( for detecting merged
     // requests.
@@ -169,6 +177,10 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     
     private ConcurrentHashMap<String,SIPClientTransaction> forkedClientTransactionTable;
 
+    // Time of the last CRLF keep-alive received from each peer, indexed by
+    // "address:port" (RFC 5626 pong).
+    private ConcurrentHashMap<String,Long> heartbeatResponses = new ConcurrentHashMap<String,Long>();
+
     /*
      * A wrapper around differnt logging implementations (log4j, commons logging, slf4j, ...) to help log debug.
      */
@@ -468,15 +480,15 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         this.dialogTable = new ConcurrentHashMap<String, SIPDialog>();
         this.earlyDialogTable = new ConcurrentHashMap<String, SIPDialog>();
 
-        clientTransactionTable = new ConcurrentHashMap<String, SIPClientTransaction>();
-        serverTransactionTable = new ConcurrentHashMap<String, SIPServerTransaction>();
+        clientTransactionTable = new ConcurrentHashMap<TransactionKey, SIPClientTransaction>();
+        serverTransactionTable = new ConcurrentHashMap<TransactionKey, SIPServerTransaction>();
         this.terminatedServerTransactionsPendingAck = new ConcurrentHashMap<String, SIPServerTransaction>();
         mergeTable = new ConcurrentHashMap<String, SIPServerTransaction>();
         retransmissionAlertTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
 
         // Start the timer event thread.
 
-        this.timer = new Timer();
+        this.timer = createTimer();
         this.pendingTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
         
         
@@ -502,8 +514,8 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         // clientTransactions = new ConcurrentLinkedQueue();
         // serverTransactions = new ConcurrentLinkedQueue();
         pendingTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
-        clientTransactionTable = new ConcurrentHashMap<String, SIPClientTransaction>();
-        serverTransactionTable = new ConcurrentHashMap<String, SIPServerTransaction>();
+        clientTransactionTable = new ConcurrentHashMap<TransactionKey, SIPClientTransaction>();
+        serverTransactionTable = new ConcurrentHashMap<TransactionKey, SIPServerTransaction>();
         retransmissionAlertTransactions = new ConcurrentHashMap<String, SIPServerTransaction>();
         mergeTable = new ConcurrentHashMap<String, SIPServerTransaction>();
         // Dialog dable.
@@ -512,7 +524,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         this.terminatedServerTransactionsPendingAck = new ConcurrentHashMap<String,SIPServerTransaction>();
         this.forkedClientTransactionTable = new ConcurrentHashMap<String,SIPClientTransaction>();
 
-        this.timer = new Timer();
+        this.timer = createTimer();
 
         this.activeClientTransactionCount = new AtomicInteger(0);
 
@@ -922,7 +934,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             if (isServer) {
                 Via via = sipMessage.getTopmostVia();
                 if (via.getBranch() != null) {
-                    String key = sipMessage.getTransactionId();
+                    TransactionKey key = TransactionKey.forServer(sipMessage);
 
                     retval = (SIPTransaction) serverTransactionTable.get(key);
                     // Changed by Deutsche Telekom
@@ -930,7 +942,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
                         getStackLogger().logDebug(
                                 "serverTx: looking for key " + key + " existing="
                                 + serverTransactionTable);
-                    if (key.startsWith(SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE)) {
+                    if (key.isRFC3261()) {
                         return retval;
                     }
 
@@ -949,12 +961,12 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             } else {
                 Via via = sipMessage.getTopmostVia();
                 if (via.getBranch() != null) {
-                    String key = sipMessage.getTransactionId();
+                    TransactionKey key = TransactionKey.forClient(sipMessage);
                     // Changed by Deutsche Telekom
                     if (isLoggingEnabled())
                         getStackLogger().logDebug("clientTx: looking for key " + key);
                     retval = (SIPTransaction) clientTransactionTable.get(key);
-                    if (key.startsWith(SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE)) {
+                    if (key.isRFC3261()) {
                         return retval;
                     }
 
@@ -1164,7 +1176,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         // Transaction to handle this request
         SIPServerTransaction currentTransaction;
 
-        String key = requestReceived.getTransactionId();
+        TransactionKey key = TransactionKey.forServer(requestReceived);
 
         requestReceived.setMessageChannel(requestMessageChannel);
 
@@ -1177,7 +1189,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             // Loop through all server transactions
             transactionIterator = serverTransactionTable.values().iterator();
             currentTransaction = null;
-            if (!key.toLowerCase().startsWith(SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE)) {
+            if (!key.isRFC3261()) {
                 while (transactionIterator.hasNext() && currentTransaction == null) {
 
                     nextTransaction = (SIPServerTransaction) transactionIterator.next();
@@ -1270,7 +1282,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         // Transaction to handle this request
         SIPClientTransaction currentTransaction;
 
-        String key = responseReceived.getTransactionId();
+        TransactionKey key = TransactionKey.forClient(responseReceived);
 
         // Note that for RFC 3261 compliant operation, this lookup will
         // return a tx if one exists and hence no need to search through
@@ -1279,7 +1291,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
 
         if (currentTransaction == null
                 || (!currentTransaction.isMessagePartOfTransaction(responseReceived) && !key
-                        .startsWith(SIPConstants.BRANCH_MAGIC_COOKIE_LOWER_CASE))) {
+                        .isRFC3261())) {
             // Loop through all client transactions
 
             transactionIterator = clientTransactionTable.values().iterator();
@@ -1469,8 +1481,8 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         if (sipTransaction instanceof SIPServerTransaction) {
             if (isLoggingEnabled())
                 stackLogger.logStackTrace();
-            String key = sipTransaction.getTransactionId();
-            Object removed = serverTransactionTable.remove(key);
+            TransactionKey key = sipTransaction.getTransactionKey();
+            Object removed = key == null ? null : serverTransactionTable.remove(key);
             String method = sipTransaction.getMethod();
             this.removePendingTransaction((SIPServerTransaction) sipTransaction);
             this.removeTransactionPendingAck((SIPServerTransaction) sipTransaction);
@@ -1488,8 +1500,8 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             }
         } else {
 
-            String key = sipTransaction.getTransactionId();
-            Object removed = clientTransactionTable.remove(key);
+            TransactionKey key = sipTransaction.getTransactionKey();
+            Object removed = key == null ? null : clientTransactionTable.remove(key);
 
             if (isLoggingEnabled()) {
                 stackLogger.logDebug("REMOVED client tx " + removed + " KEY = " + key);
@@ -1533,7 +1545,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
      * Hash table for quick lookup of transactions. Here we wait for room if needed.
      */
     private void addTransactionHash(SIPTransaction sipTransaction) {
-        SIPRequest sipRequest = sipTransaction.getOriginalRequest();
+        TransactionKey key = sipTransaction.getTransactionKey();
         if (sipTransaction instanceof SIPClientTransaction) {
             if (!this.unlimitedClientTransactionTableSize) {
                 if (this.activeClientTransactionCount.get() > clientTransactionTableHiwaterMark) {
@@ -1553,15 +1565,12 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             } else {
                 this.activeClientTransactionCount.incrementAndGet();
             }
-            String key = sipRequest.getTransactionId();
             clientTransactionTable.put(key, (SIPClientTransaction) sipTransaction);
             
             if (isLoggingEnabled()) {
                 stackLogger.logDebug(" putTransactionHash : " + " key = " + key);
             }
         } else {
-            String key = sipRequest.getTransactionId();
-
             if (isLoggingEnabled()) {
                 stackLogger.logDebug(" putTransactionHash : " + " key = " + key);
             }
@@ -1594,8 +1603,10 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         SIPRequest sipRequest = sipTransaction.getOriginalRequest();
         if (sipRequest == null)
             return;
+        TransactionKey key = sipTransaction.getTransactionKey();
+        if (key == null)
+            return;
         if (sipTransaction instanceof SIPClientTransaction) {
-            String key = sipTransaction.getTransactionId();
             if (isLoggingEnabled()) {
                 stackLogger.logStackTrace();
                 stackLogger.logDebug("removing client Tx : " + key);
@@ -1603,7 +1614,6 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
             clientTransactionTable.remove(key);
 
         } else if (sipTransaction instanceof SIPServerTransaction) {
-            String key = sipTransaction.getTransactionId();
             serverTransactionTable.remove(key);
             if (isLoggingEnabled()) {
                 stackLogger.logDebug("removing server Tx : " + key);
@@ -1654,7 +1664,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     public void stopStack() {
         // Prevent NPE on two concurrent stops
         if (this.timer != null)
-            this.timer.cancel();
+            this.timer.stop();
 
         // JvB: set it to null, SIPDialog tries to schedule things after stop
         timer = null;
@@ -2384,7 +2394,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         String fromTag = replacesHeader.getFromTag();
         String toTag = replacesHeader.getToTag();
 
-        StringBuffer dialogId = new StringBuffer(cid);
+        StringBuilder dialogId = new StringBuilder(cid);
 
         // retval.append(COLON).append(to.getUserAtHostPort());
         if (toTag != null) {
@@ -2428,7 +2438,7 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
         String fromTag = joinHeader.getFromTag();
         String toTag = joinHeader.getToTag();
 
-        StringBuffer retval = new StringBuffer(cid);
+        StringBuilder retval = new StringBuilder(cid);
 
         // retval.append(COLON).append(to.getUserAtHostPort());
         if (toTag != null) {
@@ -2446,17 +2456,81 @@ public abstract class SIPTransactionStack implements SIPTransactionEventListener
     /**
      * @param timer the timer to set
      */
-    public void setTimer(Timer timer) {
+    public void setTimer(SipTimer timer) {
         this.timer = timer;
     }
 
     /**
      * @return the timer
      */
-    public Timer getTimer() {
+    public SipTimer getTimer() {
         return timer;
     }
 
+    /**
+     * Record a CRLF keep-alive received from a peer.
+     *
+     * @param ipAddress the address of the peer
+     * @param port the port of the peer
+     */
+    public void heartbeatReceived(String ipAddress, int port) {
+        heartbeatResponses.put(ipAddress + ":" + port, Long.valueOf(System.currentTimeMillis()));
+    }
+
+    /**
+     * Get the time at which the last CRLF keep-alive was received from a peer.
+     *
+     * @param ipAddress the address of the peer
+     * @param port the port of the peer
+     * @return the time in milliseconds, or 0 if none was received
+     */
+    public long getLastHeartbeat(String ipAddress, int port) {
+        Long time = heartbeatResponses.get(ipAddress + ":" + port);
+        return (time != null) ? time.longValue() : 0;
+    }
+
+    /**
+     * Replace the stack timer by a new instance of the given implementation.
+     * Tasks pending on the previous timer are dropped, so this is meant to be
+     * called while the stack is being configured.
+     *
+     * @param timerClass the timer implementation
+     * @param configurationProperties the stack configuration
+     */
+    protected void setTimerClass(Class<? extends SipTimer> timerClass,
+            Properties configurationProperties) {
+        this.timerClass = timerClass;
+        this.timerProperties = configurationProperties;
+        SipTimer previous = this.timer;
+        this.timer = createTimer();
+        if (previous != null) {
+            previous.stop();
+        }
+        if (getThreadAuditor().isEnabled()) {
+            // Start monitoring the new timer thread
+            timer.schedule(new PingTimer(null), 0);
+        }
+    }
+
+    /**
+     * Create and start a timer of the configured implementation.
+     *
+     * @return the timer
+     */
+    private SipTimer createTimer() {
+        SipTimer sipTimer;
+        try {
+            sipTimer = timerClass.newInstance();
+        } catch (Exception ex) {
+            if (isLoggingEnabled())
+                stackLogger.logError("Could not instantiate timer "
+                        + timerClass.getName() + " -- using default timer", ex);
+            sipTimer = new DefaultSipTimer();
+        }
+        sipTimer.start(this, timerProperties);
+        return sipTimer;
+    }
+
     
     /**
      * Size of the receive UDP buffer. This property affects performance under load. Bigger buffer
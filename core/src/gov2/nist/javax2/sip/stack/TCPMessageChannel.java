@@ -36,7 +36,6 @@ import gov2.nist.javax2.sip.parser.*;
 import java.net.*;
 import java.io.*;
 import java.text.ParseException;
-import java.util.TimerTask;
 
 import javax2.sip.address.Hop;
 
@@ -315,7 +314,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
                 /*
                  * Delay the close of the socket for some time in case it is being used.
                  */
-                sipStack.getTimer().schedule(new TimerTask() {
+                sipStack.getTimer().schedule(new SIPStackTimerTask() {
                     @Override
                     public boolean cancel() {
                         try {
@@ -328,7 +327,7 @@ public class TCPMessageChannel extends MessageChannel implements SIPMessageListe
                     }
 
                     @Override
-                    public void run() {
+                    protected void runTask() {
                         try {
                             mySock.close();
                         } catch (IOException ex) {
@@ -0,0 +1,183 @@
+/*
+ * Conditions Of Use
+ *
+ * This software was developed by employees of the National Institute of
+ * Standards and Technology (NIST), an agency of the Federal Government.
+ * Pursuant to title 15 Untied States Code Section 105, works of NIST
+ * employees are not subject to copyright protection in the United States
+ * and are considered to be in the public domain.  As a result, a formal
+ * license is not needed to use the software.
+ *
+ * This software is provided by NIST as a service and is expressly
+ * provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ * OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ * AND DATA ACCURACY.  NIST does not warrant or make any representations
+ * regarding the use of the software or the results thereof, including but
+ * not limited to the correctness, accuracy, reliability or usefulness of
+ * the software.
+ *
+ * Permission to use this software is contingent upon your acceptance
+ * of the terms of this agreement
+ *
+ * .
+ *
+ */
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.javax2.sip.SIPConstants;
+import gov2.nist.javax2.sip.header.CSeq;
+import gov2.nist.javax2.sip.header.Via;
+import gov2.nist.javax2.sip.message.SIPMessage;
+
+import javax2.sip.message.Request;
+
+/**
+ * Key of the client and server transaction tables. For RFC 3261 messages the
+ * key is made of the branch of the topmost Via, whether the message is a
+ * CANCEL and, for server transactions, the sent-by of the topmost Via (RFC
+ * 3261 sections 17.1.3 and 17.2.3). It only refers to the strings already held
+ * by the Via header and compares them ignoring case, so no string is built
+ * to look up a transaction. Keys of RFC 2543 messages fall back to the
+ * transaction identifier computed by SIPMessage.getTransactionId().
+ *
+ */
+public final class TransactionKey {
+
+    private final String branch;
+
+    private final boolean cancel;
+
+    private final String sentByHost;
+
+    private final int sentByPort;
+
+    private final String transactionId;
+
+    private final int hashCode;
+
+    private TransactionKey(String branch, boolean cancel, String sentByHost, int sentByPort) {
+        this.branch = branch;
+        this.cancel = cancel;
+        this.sentByHost = sentByHost;
+        this.sentByPort = sentByPort;
+        this.transactionId = null;
+        int hash = hashIgnoreCase(branch);
+        if (sentByHost != null) {
+            hash = 31 * hash + hashIgnoreCase(sentByHost);
+            hash = 31 * hash + sentByPort;
+        }
+        this.hashCode = cancel ? ~hash : hash;
+    }
+
+    private TransactionKey(String transactionId) {
+        this.branch = null;
+        this.cancel = false;
+        this.sentByHost = null;
+        this.sentByPort = -1;
+        this.transactionId = transactionId;
+        this.hashCode = transactionId.hashCode();
+    }
+
+    /**
+     * Get the key of the client transaction a message belongs to.
+     *
+     * @param sipMessage a request sent or a response received by a client transaction
+     * @return the transaction key
+     */
+    public static TransactionKey forClient(SIPMessage sipMessage) {
+        return forMessage(sipMessage, false);
+    }
+
+    /**
+     * Get the key of the server transaction a message belongs to.
+     *
+     * @param sipMessage a request received or a response sent by a server transaction
+     * @return the transaction key
+     */
+    public static TransactionKey forServer(SIPMessage sipMessage) {
+        return forMessage(sipMessage, true);
+    }
+
+    private static TransactionKey forMessage(SIPMessage sipMessage, boolean isServer) {
+        Via topVia = sipMessage.peekTopmostVia();
+        String branch = topVia == null ? null : topVia.getBranch();
+        if (!isRFC3261Branch(branch)) {
+            return new TransactionKey(sipMessage.getTransactionId());
+        }
+        CSeq cseq = sipMessage.peekCSeq();
+        boolean cancel = cseq != null && Request.CANCEL.equals(cseq.getMethod());
+        if (isServer) {
+            return new TransactionKey(branch, cancel, topVia.getHost(), topVia.getPort());
+        } else {
+            return new TransactionKey(branch, cancel, null, -1);
+        }
+    }
+
+    /**
+     * Return true if a branch starts with the RFC 3261 magic cookie, ignoring
+     * case.
+     *
+     * @param branch the branch parameter of a Via header, may be null
+     */
+    public static boolean isRFC3261Branch(String branch) {
+        return branch != null
+                && branch.regionMatches(true, 0, SIPConstants.BRANCH_MAGIC_COOKIE, 0,
+                        SIPConstants.BRANCH_MAGIC_COOKIE.length());
+    }
+
+    /**
+     * Return true if this key was built from an RFC 3261 branch. Other keys
+     * may require a scan of the transaction table to find a transaction.
+     */
+    public boolean isRFC3261() {
+        return branch != null;
+    }
+
+    private static int hashIgnoreCase(String s) {
+        if (s == null)
+            return 0;
+        int hash = 0;
+        for (int i = 0; i < s.length(); i++) {
+            hash = 31 * hash + Character.toLowerCase(s.charAt(i));
+        }
+        return hash;
+    }
+
+    private static boolean equalsIgnoreCase(String s1, String s2) {
+        return s1 == null ? s2 == null : s1.equalsIgnoreCase(s2);
+    }
+
+    public int hashCode() {
+        return hashCode;
+    }
+
+    public boolean equals(Object other) {
+        if (this == other)
+            return true;
+        if (!(other instanceof TransactionKey))
+            return false;
+        TransactionKey that = (TransactionKey) other;
+        if (this.hashCode != that.hashCode)
+            return false;
+        if (this.branch == null)
+            return that.branch == null && this.transactionId.equals(that.transactionId);
+        return this.cancel == that.cancel && this.sentByPort == that.sentByPort
+                && this.branch.equalsIgnoreCase(that.branch)
+                && equalsIgnoreCase(this.sentByHost, that.sentByHost);
+    }
+
+    public String toString() {
+        if (branch == null)
+            return transactionId;
+        StringBuilder retval = new StringBuilder(branch.toLowerCase());
+        if (cancel)
+            retval.append(':').append("cancel");
+        if (sentByHost != null) {
+            retval.append('/').append(sentByHost.toLowerCase());
+            if (sentByPort != -1)
+                retval.append(':').append(sentByPort);
+        }
+        return retval.toString();
+    }
+}
@@ -54,10 +54,10 @@ import java.net.DatagramPacket;
 import java.net.DatagramSocket;
 import java.net.InetAddress;
 import java.net.Socket;
+import java.nio.ByteBuffer;
 import java.text.ParseException;
 import java.util.HashSet;
 import java.util.Hashtable;
-import java.util.TimerTask;
 
 import javax2.sip.address.Hop;
 
@@ -140,7 +140,7 @@ public class UDPMessageChannel extends MessageChannel implements
      */
     private Hashtable<String,PingBackTimerTask> pingBackRecord = new Hashtable<String,PingBackTimerTask>();
     
-    class PingBackTimerTask extends TimerTask {
+    class PingBackTimerTask extends SIPStackTimerTask {
         String ipAddress;
         int port;
         
@@ -150,7 +150,7 @@ public class UDPMessageChannel extends MessageChannel implements
             pingBackRecord.put(ipAddress + ":" + port, this);
         }
         @Override
-        public void run() {
+        protected void runTask() {
            pingBackRecord.remove(ipAddress + ":" + port);
         }
         @Override
@@ -387,6 +387,7 @@ public class UDPMessageChannel extends MessageChannel implements
             if (sipStack.isLoggingEnabled()) {
                 this.sipStack.getStackLogger().logDebug("Rejecting message !  + Null message parsed.");
             }
+            sipStack.heartbeatReceived(packet.getAddress().getHostAddress(), packet.getPort());
             if (pingBackRecord.get(packet.getAddress().getHostAddress() + ":" + packet.getPort()) == null ) {
                 byte[] retval = "\r\n\r\n".getBytes();
                 DatagramPacket keepalive = new DatagramPacket(retval,0,retval.length,packet.getAddress(),packet.getPort());
@@ -650,10 +651,10 @@ public class UDPMessageChannel extends MessageChannel implements
                 }
             }
 
-            byte[] msg = sipMessage.encodeAsBytes( this.getTransport() );
+            ByteBuffer msg = encodeMessage(sipMessage);
 
-            sendMessage(msg, peerAddress, peerPort, peerProtocol,
-                    sipMessage instanceof SIPRequest);
+            sendMessage(msg.array(), msg.arrayOffset() + msg.position(), msg.remaining(),
+                    peerAddress, peerPort, peerProtocol, sipMessage instanceof SIPRequest);
 
         } catch (IOException ex) {
             throw ex;
@@ -684,6 +685,29 @@ public class UDPMessageChannel extends MessageChannel implements
      */
     protected void sendMessage(byte[] msg, InetAddress peerAddress,
             int peerPort, boolean reConnect) throws IOException {
+        sendMessage(msg, 0, msg.length, peerAddress, peerPort);
+    }
+
+    /**
+     * Send the encoded message straight from the buffer without copying it.
+     *
+     * @param buffer
+     *            encoded message to send.
+     * @param peerAddress
+     *            Address of the place to send it to.
+     * @param peerPort
+     *            the port to send it to.
+     * @throws IOException
+     *             If there is trouble sending this message.
+     */
+    protected void sendMessage(ByteBuffer buffer, InetAddress peerAddress,
+            int peerPort, boolean reConnect) throws IOException {
+        sendMessage(buffer.array(), buffer.arrayOffset() + buffer.position(),
+                buffer.remaining(), peerAddress, peerPort);
+    }
+
+    private void sendMessage(byte[] msg, int offset, int length,
+            InetAddress peerAddress, int peerPort) throws IOException {
         // Via is not included in the request so silently drop the reply.
         if (sipStack.isLoggingEnabled() && this.sipStack.isLogStackTraceOnMessageSend() ) {
             this.sipStack.getStackLogger().logStackTrace(StackLogger.TRACE_INFO);
@@ -697,12 +721,12 @@ public class UDPMessageChannel extends MessageChannel implements
         } else {
             if (sipStack.isLoggingEnabled()) {
                 this.sipStack.getStackLogger().logDebug("sendMessage " + peerAddress.getHostAddress() + "/"
-                        + peerPort + "\n" + "messageSize =  "  + msg.length + " message = " + new String(msg)) ;
+                        + peerPort + "\n" + "messageSize =  "  + length + " message = " + new String(msg, offset, length)) ;
                 this.sipStack.getStackLogger().logDebug("*******************\n");
             }
 
         }
-        DatagramPacket reply = new DatagramPacket(msg, msg.length, peerAddress,
+        DatagramPacket reply = new DatagramPacket(msg, offset, length, peerAddress,
                 peerPort);
         try {
             DatagramSocket sock;
@@ -751,6 +775,12 @@ public class UDPMessageChannel extends MessageChannel implements
     protected void sendMessage(byte[] msg, InetAddress peerAddress,
             int peerPort, String peerProtocol, boolean retry)
             throws IOException {
+        sendMessage(msg, 0, msg.length, peerAddress, peerPort, peerProtocol, retry);
+    }
+
+    private void sendMessage(byte[] msg, int offset, int length,
+            InetAddress peerAddress, int peerPort, String peerProtocol,
+            boolean retry) throws IOException {
         // Via is not included in the request so silently drop the reply.
         if (peerPort == -1) {
             if (sipStack.isLoggingEnabled()) {
@@ -761,11 +791,11 @@ public class UDPMessageChannel extends MessageChannel implements
         } else {
             if (sipStack.isLoggingEnabled()) {
                 this.sipStack.getStackLogger().logDebug( ":sendMessage " + peerAddress.getHostAddress() + "/"
-                        + peerPort + "\n" + " messageSize = " + msg.length);
+                        + peerPort + "\n" + " messageSize = " + length);
             }
         }
         if (peerProtocol.compareToIgnoreCase("UDP") == 0) {
-            DatagramPacket reply = new DatagramPacket(msg, msg.length,
+            DatagramPacket reply = new DatagramPacket(msg, offset, length,
                     peerAddress, peerPort);
 
             try {
@@ -780,7 +810,7 @@ public class UDPMessageChannel extends MessageChannel implements
                 if (sipStack.isLoggingEnabled()) {
                     this.sipStack.getStackLogger().logDebug("sendMessage "
                             + peerAddress.getHostAddress() + "/" + peerPort
-                            + "\n" + new String(msg));
+                            + "\n" + new String(msg, offset, length));
                 }
                 sock.send(reply);
                 if (!sipStack.udpFlag)
@@ -792,6 +822,11 @@ public class UDPMessageChannel extends MessageChannel implements
             }
 
         } else {
+            if (offset != 0 || length != msg.length) {
+                byte[] bytes = new byte[length];
+                System.arraycopy(msg, offset, bytes, 0, length);
+                msg = bytes;
+            }
             // Use TCP to talk back to the sender.
             Socket outputSocket = sipStack.ioHandler.sendBytes(
                     this.messageProcessor.getIpAddress(), peerAddress,
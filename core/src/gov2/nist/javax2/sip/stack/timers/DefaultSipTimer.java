@@ -0,0 +1,164 @@
+/*
+ * Conditions Of Use
+ *
+ * This software was developed by employees of the National Institute of
+ * Standards and Technology (NIST), an agency of the Federal Government.
+ * Pursuant to title 15 Untied States Code Section 105, works of NIST
+ * employees are not subject to copyright protection in the United States
+ * and are considered to be in the public domain.  As a result, a formal
+ * license is not needed to use the software.
+ *
+ * This software is provided by NIST as a service and is expressly
+ * provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ * OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ * AND DATA ACCURACY.  NIST does not warrant or make any representations
+ * regarding the use of the software or the results thereof, including but
+ * not limited to the correctness, accuracy, reliability or usefulness of
+ * the software.
+ *
+ * Permission to use this software is contingent upon your acceptance
+ * of the terms of this agreement
+ *
+ * .
+ *
+ */
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.Properties;
+import java.util.Timer;
+import java.util.TimerTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Default stack timer, backed by a single java.util.Timer thread.
+ * <p>
+ * Cancelled tasks stay in the java.util.Timer queue until their expiry date,
+ * so the queue is purged once enough tasks have been cancelled.
+ *
+ */
+public class DefaultSipTimer implements SipTimer {
+
+    // Number of cancelled tasks after which the timer queue is purged
+    private static final int PURGE_THRESHOLD = 256;
+
+    private Timer timer;
+
+    private volatile boolean started;
+
+    private final AtomicLong pendingTimers = new AtomicLong();
+
+    private final AtomicLong firedTimers = new AtomicLong();
+
+    private final AtomicLong cancelledTimers = new AtomicLong();
+
+    private final AtomicInteger cancelledSincePurge = new AtomicInteger();
+
+    /**
+     * java.util.Timer task running a stack timer task.
+     */
+    private class DefaultTimerTask extends TimerTask {
+        private final SIPStackTimerTask task;
+
+        private final boolean periodic;
+
+        public DefaultTimerTask(SIPStackTimerTask task, boolean periodic) {
+            this.task = task;
+            this.periodic = periodic;
+        }
+
+        public void run() {
+            if (!periodic) {
+                pendingTimers.decrementAndGet();
+            }
+            firedTimers.incrementAndGet();
+            task.run();
+        }
+    }
+
+    public void start(SIPTransactionStack sipStack,
+            Properties configurationProperties) {
+        this.timer = new Timer();
+        this.started = true;
+    }
+
+    public void stop() {
+        this.started = false;
+        if (this.timer != null) {
+            this.timer.cancel();
+        }
+        this.pendingTimers.set(0);
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay) {
+        if (!started || task.isCancelled()) {
+            return false;
+        }
+        DefaultTimerTask timerTask = new DefaultTimerTask(task, false);
+        task.setSipTimerTask(this, timerTask);
+        pendingTimers.incrementAndGet();
+        try {
+            timer.schedule(timerTask, delay);
+        } catch (IllegalStateException e) {
+            // Timer already cancelled
+            pendingTimers.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay, long period) {
+        if (!started || task.isCancelled()) {
+            return false;
+        }
+        DefaultTimerTask timerTask = new DefaultTimerTask(task, true);
+        task.setSipTimerTask(this, timerTask);
+        pendingTimers.incrementAndGet();
+        try {
+            timer.schedule(timerTask, delay, period);
+        } catch (IllegalStateException e) {
+            // Timer already cancelled
+            pendingTimers.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    public boolean cancel(SIPStackTimerTask task) {
+        Object timerTask = task.getSipTimerTask();
+        if (!(timerTask instanceof DefaultTimerTask)
+                || !((DefaultTimerTask) timerTask).cancel()) {
+            return false;
+        }
+        pendingTimers.decrementAndGet();
+        cancelledTimers.incrementAndGet();
+        if (cancelledSincePurge.incrementAndGet() >= PURGE_THRESHOLD) {
+            cancelledSincePurge.set(0);
+            Timer t = this.timer;
+            if (t != null) {
+                t.purge();
+            }
+        }
+        return true;
+    }
+
+    public long getPendingTimerCount() {
+        return pendingTimers.get();
+    }
+
+    public long getFiredTimerCount() {
+        return firedTimers.get();
+    }
+
+    public long getCancelledTimerCount() {
+        return cancelledTimers.get();
+    }
+}
@@ -0,0 +1,488 @@
+/*
+ * Conditions Of Use
+ *
+ * This software was developed by employees of the National Institute of
+ * Standards and Technology (NIST), an agency of the Federal Government.
+ * Pursuant to title 15 Untied States Code Section 105, works of NIST
+ * employees are not subject to copyright protection in the United States
+ * and are considered to be in the public domain.  As a result, a formal
+ * license is not needed to use the software.
+ *
+ * This software is provided by NIST as a service and is expressly
+ * provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ * OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ * AND DATA ACCURACY.  NIST does not warrant or make any representations
+ * regarding the use of the software or the results thereof, including but
+ * not limited to the correctness, accuracy, reliability or usefulness of
+ * the software.
+ *
+ * Permission to use this software is contingent upon your acceptance
+ * of the terms of this agreement
+ *
+ * .
+ *
+ */
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.core.StackLogger;
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.ArrayList;
+import java.util.Properties;
+
+/**
+ * Stack timer backed by a hashed hierarchical timing wheel.
+ * <p>
+ * The wheel is made of {@link #LEVELS} levels of 2^n slots each. A slot of
+ * level k covers 2^(n*k) ticks. A task is hashed into the slot of the lowest
+ * level that can hold its deadline, and is moved down a level (cascaded) when
+ * the slot of the upper level comes up. Scheduling and cancelling are O(1),
+ * cancelled tasks are unlinked right away, and all tasks expiring on the same
+ * tick are run as a single batch by the timer thread.
+ * <p>
+ * The timer thread does not wake up on every tick: it sleeps until the next
+ * occupied slot of the lowest level, or the next cascade, and waits without
+ * timeout while no task is pending. Scheduling a task with an earlier deadline
+ * wakes it up.
+ * <p>
+ * Configuration properties:
+ * <ul>
+ * <li>gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS: duration of a tick,
+ * 10 ms by default</li>
+ * <li>gov2.nist.javax2.sip.TIMER_WHEEL_SIZE: number of slots per level,
+ * rounded up to a power of two, 256 by default</li>
+ * </ul>
+ *
+ */
+public class HashedWheelSipTimer implements SipTimer, Runnable {
+
+    // Number of levels of the wheel
+    private static final int LEVELS = 4;
+
+    private static final long DEFAULT_TICK_MILLISECS = 10;
+
+    private static final int DEFAULT_WHEEL_SIZE = 256;
+
+    /**
+     * A scheduled task, linked in the slot it is hashed into.
+     */
+    private static final class Entry {
+        final SIPStackTimerTask task;
+
+        // Expiry date in ticks since the timer start
+        long deadline;
+
+        // Period in ticks, 0 for a one-shot task
+        final long period;
+
+        Slot slot;
+
+        Entry prev;
+
+        Entry next;
+
+        Entry(SIPStackTimerTask task, long deadline, long period) {
+            this.task = task;
+            this.deadline = deadline;
+            this.period = period;
+        }
+    }
+
+    /**
+     * A slot of the wheel: a doubly linked list of entries.
+     */
+    private static final class Slot {
+        Entry head;
+
+        Entry tail;
+
+        void add(Entry entry) {
+            entry.slot = this;
+            entry.next = null;
+            entry.prev = tail;
+            if (tail == null) {
+                head = entry;
+            } else {
+                tail.next = entry;
+            }
+            tail = entry;
+        }
+
+        void remove(Entry entry) {
+            if (entry.prev == null) {
+                head = entry.next;
+            } else {
+                entry.prev.next = entry.next;
+            }
+            if (entry.next == null) {
+                tail = entry.prev;
+            } else {
+                entry.next.prev = entry.prev;
+            }
+            entry.slot = null;
+            entry.prev = null;
+            entry.next = null;
+        }
+
+        Entry clear() {
+            Entry first = head;
+            head = null;
+            tail = null;
+            return first;
+        }
+    }
+
+    private final Object lock = new Object();
+
+    private Slot[][] wheel;
+
+    // Number of bits used to index a slot of one level
+    private int wheelBits;
+
+    private int wheelMask;
+
+    // Deadlines further than this number of ticks are parked in the top level
+    private long maxTicks;
+
+    private long tickNanos;
+
+    private long startTime;
+
+    // Last tick processed by the timer thread
+    private long currentTick;
+
+    // Tick the timer thread is sleeping until, Long.MAX_VALUE when idle
+    private long wakeTick;
+
+    private Thread timerThread;
+
+    private volatile boolean started;
+
+    private StackLogger logger;
+
+    // Entries expired on the current tick, reused by the timer thread
+    private final ArrayList<Entry> expired = new ArrayList<Entry>();
+
+    // Following counters are updated under lock
+    private long pendingTimers;
+
+    private long firedTimers;
+
+    private long cancelledTimers;
+
+    public void start(SIPTransactionStack sipStack,
+            Properties configurationProperties) {
+        long tickMillis = DEFAULT_TICK_MILLISECS;
+        int wheelSize = DEFAULT_WHEEL_SIZE;
+        if (sipStack != null) {
+            this.logger = sipStack.getStackLogger();
+        }
+        if (configurationProperties != null) {
+            try {
+                tickMillis = Long.parseLong(configurationProperties.getProperty(
+                        "gov2.nist.javax2.sip.TIMER_WHEEL_TICK_MILLISECS",
+                        String.valueOf(DEFAULT_TICK_MILLISECS)));
+                wheelSize = Integer.parseInt(configurationProperties.getProperty(
+                        "gov2.nist.javax2.sip.TIMER_WHEEL_SIZE",
+                        String.valueOf(DEFAULT_WHEEL_SIZE)));
+            } catch (NumberFormatException ex) {
+                if (logger != null && logger.isLoggingEnabled())
+                    logger.logError("Bad timer wheel configuration -- using defaults "
+                            + ex.getMessage());
+                tickMillis = DEFAULT_TICK_MILLISECS;
+                wheelSize = DEFAULT_WHEEL_SIZE;
+            }
+        }
+        if (tickMillis <= 0) {
+            tickMillis = DEFAULT_TICK_MILLISECS;
+        }
+        if (wheelSize < 2 || wheelSize > (1 << 16)) {
+            wheelSize = DEFAULT_WHEEL_SIZE;
+        }
+
+        this.wheelBits = 32 - Integer.numberOfLeadingZeros(wheelSize - 1);
+        this.wheelMask = (1 << wheelBits) - 1;
+        this.maxTicks = wheelBits * LEVELS >= 63 ? Long.MAX_VALUE
+                : 1L << (wheelBits * LEVELS);
+        this.tickNanos = tickMillis * 1000000L;
+        this.wheel = new Slot[LEVELS][wheelMask + 1];
+        for (int level = 0; level < LEVELS; level++) {
+            for (int i = 0; i <= wheelMask; i++) {
+                wheel[level][i] = new Slot();
+            }
+        }
+
+        synchronized (lock) {
+            this.currentTick = 0;
+            this.pendingTimers = 0;
+            this.wakeTick = Long.MAX_VALUE;
+            this.startTime = System.nanoTime();
+        }
+        this.started = true;
+        this.timerThread = new Thread(this, "SipTimerWheel");
+        this.timerThread.start();
+    }
+
+    public void stop() {
+        this.started = false;
+        synchronized (lock) {
+            if (wheel != null) {
+                for (int level = 0; level < LEVELS; level++) {
+                    for (int i = 0; i <= wheelMask; i++) {
+                        wheel[level][i].clear();
+                    }
+                }
+            }
+            pendingTimers = 0;
+            lock.notifyAll();
+        }
+    }
+
+    public boolean isStarted() {
+        return started;
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay) {
+        return schedule(task, delay, 0);
+    }
+
+    public boolean schedule(SIPStackTimerTask task, long delay, long period) {
+        if (delay < 0) {
+            throw new IllegalArgumentException("Negative delay.");
+        }
+        if (period < 0) {
+            throw new IllegalArgumentException("Negative period.");
+        }
+        if (!started || task.isCancelled()) {
+            return false;
+        }
+        synchronized (lock) {
+            Object previous = task.getSipTimerTask();
+            if (previous instanceof Entry && ((Entry) previous).slot != null) {
+                throw new IllegalStateException("Task already scheduled.");
+            }
+            if (pendingTimers == 0) {
+                // The wheel is empty: skip the ticks elapsed while idle
+                currentTick = Math.max(currentTick, elapsedTicks());
+            }
+            long periodTicks = period == 0 ? 0 : Math.max(1, toTicks(period));
+            Entry entry = new Entry(task, deadlineTicks(delay), periodTicks);
+            task.setSipTimerTask(this, entry);
+            insert(entry, currentTick);
+            pendingTimers++;
+            if (entry.deadline < wakeTick) {
+                lock.notifyAll();
+            }
+        }
+        return true;
+    }
+
+    public boolean cancel(SIPStackTimerTask task) {
+        synchronized (lock) {
+            Object timerTask = task.getSipTimerTask();
+            if (!(timerTask instanceof Entry)) {
+                return false;
+            }
+            Entry entry = (Entry) timerTask;
+            if (entry.slot == null) {
+                // Already expired, or being run: a periodic task is not
+                // rescheduled since it is flagged as cancelled
+                return false;
+            }
+            entry.slot.remove(entry);
+            pendingTimers--;
+            cancelledTimers++;
+            return true;
+        }
+    }
+
+    public long getPendingTimerCount() {
+        synchronized (lock) {
+            return pendingTimers;
+        }
+    }
+
+    public long getFiredTimerCount() {
+        synchronized (lock) {
+            return firedTimers;
+        }
+    }
+
+    public long getCancelledTimerCount() {
+        synchronized (lock) {
+            return cancelledTimers;
+        }
+    }
+
+    /**
+     * Timer thread: wait for the next tick having something to do, then run
+     * all the expired tasks.
+     */
+    public void run() {
+        while (started) {
+            synchronized (lock) {
+                long now = System.nanoTime();
+                long targetTick = (now - startTime) / tickNanos;
+                if (pendingTimers == 0) {
+                    // Nothing scheduled: wait for a task
+                    currentTick = Math.max(currentTick, targetTick);
+                    wakeTick = Long.MAX_VALUE;
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        // Check if stopped
+                    }
+                    continue;
+                }
+                long nextTick = nextTick();
+                if (targetTick < nextTick) {
+                    wakeTick = nextTick;
+                    long waitNanos = startTime + nextTick * tickNanos - now;
+                    try {
+                        lock.wait(Math.max(1, (waitNanos + 999999L) / 1000000L));
+                    } catch (InterruptedException e) {
+                        // Check if stopped
+                    }
+                    continue;
+                }
+                // Catch up with all ticks elapsed since the last run
+                while (currentTick < targetTick) {
+                    long tick = currentTick + 1;
+                    cascade(tick);
+                    collect(tick);
+                    currentTick = tick;
+                }
+                firedTimers += expired.size();
+            }
+
+            for (int i = 0; i < expired.size(); i++) {
+                Entry entry = expired.get(i);
+                if (started && !entry.task.isCancelled()) {
+                    entry.task.run();
+                    if (entry.period > 0) {
+                        reschedule(entry);
+                    }
+                }
+            }
+            expired.clear();
+        }
+    }
+
+    /**
+     * Put a periodic task back in the wheel after it has been run.
+     */
+    private void reschedule(Entry entry) {
+        synchronized (lock) {
+            // The task may have been cancelled or stopped while running
+            if (!started || entry.task.isCancelled()
+                    || entry.task.getSipTimerTask() != entry) {
+                return;
+            }
+            entry.deadline = currentTick + entry.period;
+            insert(entry, currentTick);
+            pendingTimers++;
+        }
+    }
+
+    /**
+     * Hash an entry into the slot of the lowest level covering its deadline,
+     * relative to the given base tick. Must be called with the lock held.
+     */
+    private void insert(Entry entry, long base) {
+        if (entry.deadline <= currentTick) {
+            // Already expired: run on next tick
+            entry.deadline = currentTick + 1;
+        }
+        long delta = entry.deadline - base;
+        long deadline = entry.deadline;
+        if (delta >= maxTicks) {
+            // Park in the top level, it is re-hashed when cascaded
+            delta = maxTicks - 1;
+            deadline = base + delta;
+        }
+        int level = 0;
+        while (level < LEVELS - 1
+                && delta >= (1L << (wheelBits * (level + 1)))) {
+            level++;
+        }
+        int index = (int) ((deadline >>> (wheelBits * level)) & wheelMask);
+        wheel[level][index].add(entry);
+    }
+
+    /**
+     * Move down the entries of the upper level slots starting with this tick.
+     * Must be called with the lock held.
+     */
+    private void cascade(long tick) {
+        int level = 1;
+        while (level < LEVELS
+                && ((tick >>> (wheelBits * (level - 1))) & wheelMask) == 0) {
+            level++;
+        }
+        // Cascade from the highest level so that entries can fall through
+        // several levels on the same tick
+        for (int l = level - 1; l >= 1; l--) {
+            int index = (int) ((tick >>> (wheelBits * l)) & wheelMask);
+            Entry entry = wheel[l][index].clear();
+            while (entry != null) {
+                Entry next = entry.next;
+                entry.slot = null;
+                entry.prev = null;
+                entry.next = null;
+                insert(entry, tick);
+                entry = next;
+            }
+        }
+    }
+
+    /**
+     * @return the first tick after the current one whose level 0 slot is
+     * occupied, or the next cascade tick. Must be called with the lock held.
+     */
+    private long nextTick() {
+        long tick = currentTick + 1;
+        while ((tick & wheelMask) != 0 && wheel[0][(int) (tick & wheelMask)].head == null) {
+            tick++;
+        }
+        return tick;
+    }
+
+    /**
+     * Unlink the entries of the level 0 slot of this tick into the expired
+     * batch. Must be called with the lock held.
+     */
+    private void collect(long tick) {
+        Entry entry = wheel[0][(int) (tick & wheelMask)].clear();
+        while (entry != null) {
+            Entry next = entry.next;
+            entry.slot = null;
+            entry.prev = null;
+            entry.next = null;
+            pendingTimers--;
+            expired.add(entry);
+            entry = next;
+        }
+    }
+
+    /**
+     * @return the number of ticks elapsed since the timer start
+     */
+    private long elapsedTicks() {
+        return (System.nanoTime() - startTime) / tickNanos;
+    }
+
+    /**
+     * @return the first tick starting after the given delay from now
+     */
+    private long deadlineTicks(long delay) {
+        long nanos = System.nanoTime() - startTime + delay * 1000000L;
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+
+    private long toTicks(long millis) {
+        long nanos = millis * 1000000L;
+        return (nanos + tickNanos - 1) / tickNanos;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Conditions Of Use
+ *
+ * This software was developed by employees of the National Institute of
+ * Standards and Technology (NIST), an agency of the Federal Government.
+ * Pursuant to title 15 Untied States Code Section 105, works of NIST
+ * employees are not subject to copyright protection in the United States
+ * and are considered to be in the public domain.  As a result, a formal
+ * license is not needed to use the software.
+ *
+ * This software is provided by NIST as a service and is expressly
+ * provided "AS IS."  NIST MAKES NO WARRANTY OF ANY KIND, EXPRESS, IMPLIED
+ * OR STATUTORY, INCLUDING, WITHOUT LIMITATION, THE IMPLIED WARRANTY OF
+ * MERCHANTABILITY, FITNESS FOR A PARTICULAR PURPOSE, NON-INFRINGEMENT
+ * AND DATA ACCURACY.  NIST does not warrant or make any representations
+ * regarding the use of the software or the results thereof, including but
+ * not limited to the correctness, accuracy, reliability or usefulness of
+ * the software.
+ *
+ * Permission to use this software is contingent upon your acceptance
+ * of the terms of this agreement
+ *
+ * .
+ *
+ */
+package gov2.nist.javax2.sip.stack.timers;
+
+import gov2.nist.javax2.sip.stack.SIPStackTimerTask;
+import gov2.nist.javax2.sip.stack.SIPTransactionStack;
+
+import java.util.Properties;
+
+/**
+ * Timer service used by the stack for all its timer tasks (transaction and
+ * dialog timers, linger timers, connection and credentials clean up, ...).
+ * The implementation is selected with the
+ * gov2.nist.javax2.sip.TIMER_CLASS_NAME stack property, the default one
+ * being {@link DefaultSipTimer}. Implementations must have a public no-arg
+ * constructor.
+ *
+ */
+public interface SipTimer {
+
+    /**
+     * Start the timer.
+     *
+     * @param sipStack the stack the timer belongs to
+     * @param configurationProperties the stack configuration, may be null
+     */
+    void start(SIPTransactionStack sipStack, Properties configurationProperties);
+
+    /**
+     * Stop the timer. Pending tasks are dropped.
+     */
+    void stop();
+
+    /**
+     * @return true if the timer has been started and not stopped
+     */
+    boolean isStarted();
+
+    /**
+     * Schedule a one-shot task.
+     *
+     * @param task the task
+     * @param delay delay in milliseconds before the task is run
+     * @return true if the task has been scheduled
+     */
+    boolean schedule(SIPStackTimerTask task, long delay);
+
+    /**
+     * Schedule a task for repeated fixed-delay execution.
+     *
+     * @param task the task
+     * @param delay delay in milliseconds before the first run
+     * @param period time in milliseconds between successive runs
+     * @return true if the task has been scheduled
+     */
+    boolean schedule(SIPStackTimerTask task, long delay, long period);
+
+    /**
+     * Cancel a task. This is called by {@link SIPStackTimerTask#cancel()}.
+     *
+     * @param task the task
+     * @return true if the task was pending on this timer
+     */
+    boolean cancel(SIPStackTimerTask task);
+
+    /**
+     * @return the number of tasks currently scheduled on the timer
+     */
+    long getPendingTimerCount();
+
+    /**
+     * @return the number of task executions since the timer was started
+     */
+    long getFiredTimerCount();
+
+    /**
+     * @return the number of tasks cancelled before they were run
+     */
+    long getCancelledTimerCount();
+}
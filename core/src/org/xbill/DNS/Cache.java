@@ -19,7 +19,7 @@ import java.util.*;
 
 public class Cache {
 
-private interface Element {
+interface Element {
 	public boolean expired();
 	public int compareCredibility(int cred);
 	public int getType();
@@ -35,7 +35,7 @@ limitExpire(long ttl, long maxttl) {
 	return (int)expire;
 }
 
-private static class CacheRRset extends RRset implements Element {
+static class CacheRRset extends RRset implements Element {
 	private static final long serialVersionUID = 5971755205903597024L;
 	
 	int credibility;
@@ -77,7 +77,7 @@ private static class CacheRRset extends RRset implements Element {
 	}
 }
 
-private static class NegativeElement implements Element {
+static class NegativeElement implements Element {
 	int type;
 	Name name;
 	int credibility;
@@ -193,17 +193,17 @@ Cache(String file) throws IOException {
 		addRecord(record, Credibility.HINT, m);
 }
 
-private synchronized Object
+synchronized Object
 exactName(Name name) {
 	return data.get(name);
 }
 
-private synchronized void
+synchronized void
 removeName(Name name) {
 	data.remove(name);
 }
 
-private synchronized Element []
+Element []
 allElements(Object types) {
 	if (types instanceof List) {
 		List typelist = (List) types;
@@ -215,7 +215,7 @@ allElements(Object types) {
 	}
 }
 
-private synchronized Element
+Element
 oneElement(Name name, Object types, int type, int minCred) {
 	Element found = null;
 
@@ -238,7 +238,7 @@ oneElement(Name name, Object types, int type, int minCred) {
 	if (found == null)
 		return null;
 	if (found.expired()) {
-		removeElement(name, type);
+		removeExpired(name, found);
 		return null;
 	}
 	if (found.compareCredibility(minCred) < 0)
@@ -246,7 +246,7 @@ oneElement(Name name, Object types, int type, int minCred) {
 	return found;
 }
 
-private synchronized Element
+Element
 findElement(Name name, int type, int minCred) {
 	Object types = exactName(name);
 	if (types == null)
@@ -254,7 +254,7 @@ findElement(Name name, int type, int minCred) {
 	return oneElement(name, types, type, minCred);
 }
 
-private synchronized void
+synchronized void
 addElement(Name name, Element element) {
 	Object types = data.get(name);
 	if (types == null) {
@@ -285,7 +285,7 @@ addElement(Name name, Element element) {
 	}
 }
 
-private synchronized void
+synchronized void
 removeElement(Name name, int type) {
 	Object types = data.get(name);
 	if (types == null) {
@@ -310,6 +310,16 @@ removeElement(Name name, int type) {
 	}
 }
 
+/**
+ * Removes an element found to be expired.  Subclasses which do not lock the
+ * whole cache on lookups use this to avoid removing a fresh element that
+ * replaced the expired one in the meantime.
+ */
+void
+removeExpired(Name name, Element element) {
+	removeElement(name, element.getType());
+}
+
 /** Empties the Cache. */
 public synchronized void
 clearCache() {
@@ -325,6 +335,11 @@ clearCache() {
  */
 public synchronized void
 addRecord(Record r, int cred, Object o) {
+	doAddRecord(r, cred);
+}
+
+final void
+doAddRecord(Record r, int cred) {
 	Name name = r.getName();
 	int type = r.getRRsetType();
 	if (!Type.isRR(type))
@@ -349,6 +364,11 @@ addRecord(Record r, int cred, Object o) {
  */
 public synchronized void
 addRRset(RRset rrset, int cred) {
+	doAddRRset(rrset, cred);
+}
+
+final void
+doAddRRset(RRset rrset, int cred) {
 	long ttl = rrset.getTTL();
 	Name name = rrset.getName();
 	int type = rrset.getType();
@@ -380,6 +400,11 @@ addRRset(RRset rrset, int cred) {
  */
 public synchronized void
 addNegative(Name name, int type, SOARecord soa, int cred) {
+	doAddNegative(name, type, soa, cred);
+}
+
+final void
+doAddNegative(Name name, int type, SOARecord soa, int cred) {
 	long ttl = 0;
 	if (soa != null)
 		ttl = soa.getTTL();
@@ -402,6 +427,11 @@ addNegative(Name name, int type, SOARecord soa, int cred) {
  */
 protected synchronized SetResponse
 lookup(Name name, int type, int minCred) {
+	return doLookup(name, type, minCred);
+}
+
+final SetResponse
+doLookup(Name name, int type, int minCred) {
 	int labels;
 	int tlabels;
 	Element element;
@@ -422,7 +452,7 @@ lookup(Name name, int type, int minCred) {
 		else
 			tname = new Name(name, labels - tlabels);
 
-		types = data.get(tname);
+		types = exactName(tname);
 		if (types == null)
 			continue;
 
@@ -438,7 +468,7 @@ lookup(Name name, int type, int minCred) {
 			for (int i = 0; i < elements.length; i++) {
 				element = elements[i];
 				if (element.expired()) {
-					removeElement(tname, element.getType());
+					removeExpired(tname, element);
 					continue;
 				}
 				if (!(element instanceof CacheRRset))
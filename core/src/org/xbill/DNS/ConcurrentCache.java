@@ -0,0 +1,347 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package org.xbill.DNS;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * A cache of DNS records which can be shared by many threads.  It has the
+ * same TTL and credibility semantics as {@link Cache}, but lookups do not
+ * take any lock: each name maps to an immutable set of elements which is
+ * replaced, never modified, when records are added or removed.  Updates are
+ * serialized per name through a small set of striped locks.
+ * <p>
+ * The entry limit is enforced with an approximate LRU: when the cache is
+ * full, a clock hand sweeps a few entries and evicts the least recently used
+ * one among them.
+ * <p>
+ * A ConcurrentCache can be used for a single Lookup with
+ * {@link Lookup#setCache}, or for all Lookups of a class with
+ * {@link Lookup#setDefaultCache}.
+ * @see Cache
+ */
+
+public class ConcurrentCache extends Cache {
+
+private static class Entry {
+	final Object types;
+	volatile long used;
+
+	Entry(Object types) {
+		this.types = types;
+		this.used = System.currentTimeMillis();
+	}
+}
+
+private static final int defaultMaxEntries = 50000;
+private static final int lockCount = 16;
+private static final int evictionSample = 8;
+
+private final ConcurrentHashMap data;
+private final Object [] locks;
+private volatile int maxsize;
+private Iterator hand;
+
+/**
+ * Creates an empty ConcurrentCache
+ *
+ * @param dclass The DNS class of this cache
+ * @see DClass
+ */
+public
+ConcurrentCache(int dclass) {
+	super(dclass);
+	data = new ConcurrentHashMap();
+	locks = new Object[lockCount];
+	for (int i = 0; i < lockCount; i++)
+		locks[i] = new Object();
+	maxsize = defaultMaxEntries;
+}
+
+/**
+ * Creates an empty ConcurrentCache for class IN.
+ * @see DClass
+ */
+public
+ConcurrentCache() {
+	this(DClass.IN);
+}
+
+private Object
+lockFor(Name name) {
+	return locks[(name.hashCode() & 0x7FFFFFFF) % lockCount];
+}
+
+private static Object
+withElement(Object types, Element element) {
+	int type = element.getType();
+	if (types instanceof List) {
+		List list = (List) types;
+		int size = list.size();
+		Element [] elements;
+		for (int i = 0; i < size; i++) {
+			Element elt = (Element) list.get(i);
+			if (elt.getType() == type) {
+				elements = (Element []) list.toArray(
+							new Element[size]);
+				elements[i] = element;
+				return Arrays.asList(elements);
+			}
+		}
+		elements = (Element []) list.toArray(new Element[size + 1]);
+		elements[size] = element;
+		return Arrays.asList(elements);
+	} else {
+		Element elt = (Element) types;
+		if (elt.getType() == type)
+			return element;
+		return Arrays.asList(new Element[] {elt, element});
+	}
+}
+
+private static Object
+withoutElement(Object types, int type, Element only) {
+	if (types instanceof List) {
+		List list = (List) types;
+		int size = list.size();
+		for (int i = 0; i < size; i++) {
+			Element elt = (Element) list.get(i);
+			if (elt.getType() != type)
+				continue;
+			if (only != null && elt != only)
+				return types;
+			if (size == 2)
+				return list.get(1 - i);
+			Element [] elements = new Element[size - 1];
+			for (int j = 0, k = 0; j < size; j++)
+				if (j != i)
+					elements[k++] = (Element) list.get(j);
+			return Arrays.asList(elements);
+		}
+		return types;
+	} else {
+		Element elt = (Element) types;
+		if (elt.getType() != type || (only != null && elt != only))
+			return types;
+		return null;
+	}
+}
+
+Object
+exactName(Name name) {
+	Entry entry = (Entry) data.get(name);
+	if (entry == null)
+		return null;
+	entry.used = System.currentTimeMillis();
+	return entry.types;
+}
+
+void
+removeName(Name name) {
+	synchronized (lockFor(name)) {
+		data.remove(name);
+	}
+}
+
+void
+addElement(Name name, Element element) {
+	boolean added;
+	synchronized (lockFor(name)) {
+		Entry entry = (Entry) data.get(name);
+		if (entry == null)
+			data.put(name, new Entry(element));
+		else
+			data.put(name, new Entry(withElement(entry.types,
+							      element)));
+		added = (entry == null);
+	}
+	if (added)
+		trim();
+}
+
+private void
+removeElement(Name name, int type, Element only) {
+	synchronized (lockFor(name)) {
+		Entry entry = (Entry) data.get(name);
+		if (entry == null)
+			return;
+		Object types = withoutElement(entry.types, type, only);
+		if (types == entry.types)
+			return;
+		if (types == null)
+			data.remove(name);
+		else
+			data.put(name, new Entry(types));
+	}
+}
+
+void
+removeElement(Name name, int type) {
+	removeElement(name, type, null);
+}
+
+void
+removeExpired(Name name, Element element) {
+	removeElement(name, element.getType(), element);
+}
+
+/**
+ * Evicts entries until the cache is within its limit.  Each eviction looks
+ * at the next few entries under the clock hand and removes the one which was
+ * used least recently.
+ */
+private void
+trim() {
+	int max = maxsize;
+	if (max < 0 || data.size() <= max)
+		return;
+	synchronized (data) {
+		while (data.size() > max) {
+			Map.Entry victim = null;
+			long oldest = Long.MAX_VALUE;
+			for (int i = 0; i < evictionSample; i++) {
+				if (hand == null || !hand.hasNext())
+					hand = data.entrySet().iterator();
+				if (!hand.hasNext())
+					break;
+				Map.Entry e = (Map.Entry) hand.next();
+				long used = ((Entry) e.getValue()).used;
+				if (used < oldest) {
+					oldest = used;
+					victim = e;
+				}
+			}
+			if (victim == null)
+				break;
+			data.remove(victim.getKey(), victim.getValue());
+		}
+	}
+}
+
+/** Empties the Cache. */
+public void
+clearCache() {
+	data.clear();
+}
+
+/**
+ * Adds a record to the Cache.
+ * @param r The record to be added
+ * @param cred The credibility of the record
+ * @param o The source of the record (this could be a Message, for example)
+ * @see Record
+ */
+public void
+addRecord(Record r, int cred, Object o) {
+	synchronized (lockFor(r.getName())) {
+		doAddRecord(r, cred);
+	}
+}
+
+/**
+ * Adds an RRset to the Cache.
+ * @param rrset The RRset to be added
+ * @param cred The credibility of these records
+ * @see RRset
+ */
+public void
+addRRset(RRset rrset, int cred) {
+	synchronized (lockFor(rrset.getName())) {
+		doAddRRset(rrset, cred);
+	}
+}
+
+/**
+ * Adds a negative entry to the Cache.
+ * @param name The name of the negative entry
+ * @param type The type of the negative entry
+ * @param soa The SOA record to add to the negative cache entry, or null.
+ * The negative cache ttl is derived from the SOA.
+ * @param cred The credibility of the negative entry
+ */
+public void
+addNegative(Name name, int type, SOARecord soa, int cred) {
+	synchronized (lockFor(name)) {
+		doAddNegative(name, type, soa, cred);
+	}
+}
+
+/**
+ * Finds all matching sets or something that causes the lookup to stop.
+ */
+protected SetResponse
+lookup(Name name, int type, int minCred) {
+	return doLookup(name, type, minCred);
+}
+
+/**
+ * Gets the current number of entries in the Cache, where an entry consists
+ * of all records with a specific Name.
+ */
+public int
+getSize() {
+	return data.size();
+}
+
+/**
+ * Gets the maximum number of entries in the Cache, where an entry consists
+ * of all records with a specific Name.  A negative value is treated as an
+ * infinite limit.
+ */
+public int
+getMaxEntries() {
+	return maxsize;
+}
+
+/**
+ * Sets the maximum number of entries in the Cache, where an entry consists
+ * of all records with a specific Name.  A negative value is treated as an
+ * infinite limit.
+ *
+ * Note that setting this to a value lower than the current number
+ * of entries will not cause the Cache to shrink immediately.
+ *
+ * The default maximum number of entries is 50000.
+ *
+ * @param entries The maximum number of entries in the Cache.
+ */
+public void
+setMaxEntries(int entries) {
+	maxsize = entries;
+}
+
+/**
+ * Returns the contents of the Cache as a string.
+ */
+public String
+toString() {
+	StringBuffer sb = new StringBuffer();
+	Iterator it = data.values().iterator();
+	while (it.hasNext()) {
+		Element [] elements = allElements(((Entry) it.next()).types);
+		for (int i = 0; i < elements.length; i++) {
+			sb.append(elements[i]);
+			sb.append("\n");
+		}
+	}
+	return sb.toString();
+}
+
+}
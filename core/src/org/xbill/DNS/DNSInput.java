@@ -16,6 +16,19 @@ private int end;
 private int saved_pos;
 private int saved_end;
 
+/*
+ * Names read from the input, with the position of their first label and the
+ * number of labels stored contiguously there.
+ */
+private static final int MAXNAMES = 32;
+private Name [] names;
+private int [] namePositions;
+private int [] nameLabels;
+private int nameCount;
+
+/* Holds the labels of the name being read. */
+private byte [] nameBuffer;
+
 /**
  * Creates a new DNSInput
  * @param input The byte array to read from
@@ -116,6 +129,74 @@ jump(int index) {
 	end = array.length;
 }
 
+/**
+ * Skips bytes in the input stream.
+ * @param n The number of bytes to skip.
+ * @throws WireParseException The end of the stream was reached.
+ */
+public void
+skip(int n) throws WireParseException {
+	require(n);
+	pos += n;
+}
+
+/**
+ * Makes the names read from this stream remember each other, so that a
+ * compression pointer to a name already read reuses its storage instead of
+ * decoding the labels again.
+ */
+void
+internNames() {
+	names = new Name[MAXNAMES];
+	namePositions = new int[MAXNAMES];
+	nameLabels = new int[MAXNAMES];
+}
+
+/**
+ * Returns a buffer large enough for the labels of a name.
+ */
+byte []
+getNameBuffer() {
+	if (nameBuffer == null)
+		nameBuffer = new byte[255];
+	return nameBuffer;
+}
+
+/**
+ * Returns a name already read from this stream which has a label at the
+ * given position, or null.
+ */
+Name
+findName(int position) {
+	for (int i = 0; i < nameCount; i++) {
+		int distance = position - namePositions[i];
+		if (distance < 0)
+			continue;
+		int n = names[i].labelAt(distance, nameLabels[i]);
+		if (n == 0)
+			return names[i];
+		else if (n > 0)
+			return new Name(names[i], n);
+	}
+	return null;
+}
+
+/**
+ * Remembers a name read from this stream, if the names are interned.
+ * @param position The position of the first label of the name.
+ * @param name The name.
+ * @param labels The number of labels found contiguously at this position.
+ */
+void
+addName(int position, Name name, int labels) {
+	if (names == null || nameCount == MAXNAMES || labels == 0)
+		return;
+	names[nameCount] = name;
+	namePositions[nameCount] = position;
+	nameLabels[nameCount] = labels;
+	nameCount++;
+}
+
 /**
  * Saves the current state of the input stream.  Both the current position and
  * the end of the active region are saved.
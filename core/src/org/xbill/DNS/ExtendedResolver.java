@@ -57,8 +57,12 @@ private static class Resolution implements ResolverListener {
 		this.query = query;
 	}
 
-	/* Asynchronously sends a message. */
-	public void
+	/*
+	 * Asynchronously sends a message.  The lock is held until the id is
+	 * recorded, as the callback may be invoked by another thread before
+	 * sendAsync() returns.
+	 */
+	public synchronized void
 	send(int n) {
 		sent[n]++;
 		outstanding++;
@@ -66,13 +70,11 @@ private static class Resolution implements ResolverListener {
 			inprogress[n] = resolvers[n].sendAsync(query, this);
 		}
 		catch (Throwable t) {
-			synchronized (this) {
-				thrown = t;
-				done = true;
-				if (listener == null) {
-					notifyAll();
-					return;
-				}
+			thrown = t;
+			done = true;
+			if (listener == null) {
+				notifyAll();
+				return;
 			}
 		}
 	}
@@ -80,27 +82,13 @@ private static class Resolution implements ResolverListener {
 	/* Start a synchronous resolution */
 	public Message
 	start() throws IOException {
-		try {
-			/*
-			 * First, try sending synchronously.  If this works,
-			 * we're done.  Otherwise, we'll get an exception
-			 * and continue.  It would be easier to call send(0),
-			 * but this avoids a thread creation.  If and when
-			 * SimpleResolver.sendAsync() can be made to not
-			 * create a thread, this could be changed.
-			 */
-			sent[0]++;
-			outstanding++;
-			inprogress[0] = new Object();
-			return resolvers[0].send(query);
-		}
-		catch (Exception e) {
-			/*
-			 * This will either cause more queries to be sent
-			 * asynchronously or will set the 'done' flag.
-			 */
-			handleException(inprogress[0], e);
-		}
+		/*
+		 * SimpleResolver.sendAsync() doesn't create a thread, so
+		 * the first query is sent asynchronously as well.  This
+		 * will either get a response or cause more queries to be
+		 * sent.
+		 */
+		send(0);
 		/*
 		 * Wait for a successful response or for each
 		 * subresolver to fail.
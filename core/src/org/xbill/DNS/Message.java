@@ -96,16 +96,29 @@ newUpdate(Name zone) {
 }
 
 Message(DNSInput in) throws IOException {
+	this(in, false);
+}
+
+Message(DNSInput in, boolean lazy) throws IOException {
 	this(new Header(in));
 	boolean isUpdate = (header.getOpcode() == Opcode.UPDATE);
 	boolean truncated = header.getFlag(Flags.TC);
+	in.internNames();
 	try {
 		for (int i = 0; i < 4; i++) {
 			int count = header.getCount(i);
-			if (count > 0)
+			if (count > 0 && lazy)
+				sections[i] = new LazySection(in, i, isUpdate,
+							      count);
+			else if (count > 0)
 				sections[i] = new ArrayList(count);
 			for (int j = 0; j < count; j++) {
 				int pos = in.current();
+				if (lazy) {
+					indexRecord(in, i, pos);
+					((LazySection) sections[i]).add(pos);
+					continue;
+				}
 				Record rec = Record.fromWire(in, i, isUpdate);
 				sections[i].add(rec);
 				if (rec.getType() == Type.TSIG)
@@ -131,6 +144,115 @@ Message(byte [] b) throws IOException {
 	this(new DNSInput(b));
 }
 
+/**
+ * Creates a new Message from its DNS wire format representation, optionally
+ * deferring the parsing of the records.  In lazy mode, only the position of
+ * each record is found when the message is created; a record is parsed the
+ * first time it is accessed.  This saves work when only part of a large
+ * response is used.  Since the record data is not validated up front, a
+ * malformed record is reported by an IllegalStateException on access.
+ * @param b A byte array containing the DNS Message.
+ * @param lazy Whether the records are parsed on access.
+ */
+public
+Message(byte [] b, boolean lazy) throws IOException {
+	this(new DNSInput(b), lazy);
+}
+
+/*
+ * Skips over a record, noting the position of TSIG and SIG(0) records as the
+ * full parsing does.
+ */
+private void
+indexRecord(DNSInput in, int section, int pos) throws IOException {
+	int len;
+	do {
+		len = in.readU8();
+		if ((len & 0xC0) == 0xC0) {
+			in.readU8();
+			break;
+		} else if ((len & 0xC0) != 0)
+			throw new WireParseException("bad label type");
+		in.skip(len);
+	} while (len != 0);
+	int type = in.readU16();
+	in.readU16();
+	if (section == Section.QUESTION)
+		return;
+	in.readU32();
+	int length = in.readU16();
+	if (type == Type.TSIG)
+		tsigstart = pos;
+	if (type == Type.SIG && length >= 2) {
+		int covered = in.readU16();
+		length -= 2;
+		if (covered == 0)
+			sig0start = pos;
+	}
+	in.skip(length);
+}
+
+/*
+ * A section whose records are parsed the first time they are accessed.
+ * All the sections of a message share its input stream, which is locked
+ * while a record is parsed.
+ */
+private static class LazySection extends AbstractList {
+	private DNSInput in;
+	private int section;
+	private boolean isUpdate;
+	private int [] positions;
+	private Record [] records;
+	private int count;
+
+	LazySection(DNSInput in, int section, boolean isUpdate, int max) {
+		this.in = in;
+		this.section = section;
+		this.isUpdate = isUpdate;
+		positions = new int[max];
+		records = new Record[max];
+	}
+
+	void
+	add(int position) {
+		positions[count++] = position;
+	}
+
+	public Object
+	get(int i) {
+		if (i >= count)
+			throw new IndexOutOfBoundsException();
+		synchronized (in) {
+			if (records[i] == null) {
+				in.jump(positions[i]);
+				try {
+					records[i] = Record.fromWire(in, section,
+								     isUpdate);
+				}
+				catch (IOException e) {
+					throw new IllegalStateException(
+						"invalid record: " +
+						e.getMessage());
+				}
+			}
+			return records[i];
+		}
+	}
+
+	public int
+	size() {
+		return count;
+	}
+}
+
+/* Returns a section which can be modified. */
+private List
+editableSection(int section) {
+	if (sections[section] instanceof LazySection)
+		sections[section] = new LinkedList(sections[section]);
+	return sections[section];
+}
+
 /**
  * Replaces the Header with a new one.
  * @see Header
@@ -159,7 +281,7 @@ addRecord(Record r, int section) {
 	if (sections[section] == null)
 		sections[section] = new LinkedList();
 	header.incCount(section);
-	sections[section].add(r);
+	editableSection(section).add(r);
 }
 
 /**
@@ -169,7 +291,7 @@ addRecord(Record r, int section) {
  */
 public boolean
 removeRecord(Record r, int section) {
-	if (sections[section] != null && sections[section].remove(r)) {
+	if (sections[section] != null && editableSection(section).remove(r)) {
 		header.decCount(section);
 		return true;
 	}
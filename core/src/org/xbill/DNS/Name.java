@@ -136,6 +136,33 @@ copy(Name src, Name dst) {
 	}
 }
 
+/* Makes this name use the storage of src, without its first n labels. */
+private final void
+share(Name src, int n) {
+	int slabels = src.labels();
+	name = src.name;
+	setlabels(slabels - n);
+	for (int i = 0; i < MAXOFFSETS && i < slabels - n; i++)
+		setoffset(i, src.offset(i + n));
+}
+
+/*
+ * Returns the index of the label found at the given distance from the start
+ * of the name, looking at the first n labels only, or -1.
+ */
+final int
+labelAt(int distance, int n) {
+	int start = offset(0);
+	for (int i = 0; i < n; i++) {
+		int d = offset(i) - start;
+		if (d == distance)
+			return i;
+		if (d > distance)
+			break;
+	}
+	return -1;
+}
+
 private final void
 append(byte [] array, int start, int n) throws NameTooLongException {
 	int length = (name == null ? 0 : (name.length - offset(0)));
@@ -344,23 +371,40 @@ public
 Name(DNSInput in) throws WireParseException {
 	int len, pos;
 	boolean done = false;
-	byte [] label = new byte[MAXLABEL + 1];
 	boolean savedState = false;
+	int start = -1;
+	int contiguous = 0;
+	boolean inPlace = false;
+
+	/*
+	 * Labels are collected in a buffer and appended all at once when a
+	 * compression pointer or the end of the name is reached.
+	 */
+	byte [] buffer = in.getNameBuffer();
+	int buffered = 0;
+	int bufferedLabels = 0;
 
 	while (!done) {
+		int current = in.current();
 		len = in.readU8();
 		switch (len & LABEL_MASK) {
 		case LABEL_NORMAL:
-			if (getlabels() >= MAXLABELS)
+			if (getlabels() + bufferedLabels >= MAXLABELS)
 				throw new WireParseException("too many labels");
-			if (len == 0) {
-				append(emptyLabel, 0, 1);
-				done = true;
-			} else {
-				label[0] = (byte)len;
-				in.readByteArray(label, 1, len);
-				append(label, 0, 1);
+			if (start < 0) {
+				start = current;
+				inPlace = true;
 			}
+			if (buffered + len + 1 > MAXNAME)
+				throw new NameTooLongException();
+			buffer[buffered] = (byte)len;
+			in.readByteArray(buffer, buffered + 1, len);
+			buffered += len + 1;
+			bufferedLabels++;
+			if (len == 0)
+				done = true;
+			if (inPlace)
+				contiguous++;
 			break;
 		case LABEL_COMPRESSION:
 			pos = in.readU8();
@@ -371,6 +415,23 @@ Name(DNSInput in) throws WireParseException {
 
 			if (pos >= in.current() - 2)
 				throw new WireParseException("bad compression");
+			inPlace = false;
+			if (bufferedLabels > 0) {
+				append(buffer, 0, bufferedLabels);
+				buffered = 0;
+				bufferedLabels = 0;
+			}
+			Name known = in.findName(pos);
+			if (known != null) {
+				/* Share the storage of an already decoded name. */
+				if (getlabels() == 0)
+					share(known, 0);
+				else
+					append(known.name, known.offset(0),
+					       known.getlabels());
+				done = true;
+				break;
+			}
 			if (!savedState) {
 				in.save();
 				savedState = true;
@@ -384,9 +445,13 @@ Name(DNSInput in) throws WireParseException {
 			throw new WireParseException("bad label type");
 		}
 	}
+	if (bufferedLabels > 0)
+		append(buffer, 0, bufferedLabels);
 	if (savedState) {
 		in.restore();
 	}
+	if (start >= 0)
+		in.addName(start, this, contiguous);
 }
 
 /**
@@ -409,10 +474,7 @@ Name(Name src, int n) {
 	if (n > slabels)
 		throw new IllegalArgumentException("attempted to remove too " +
 						   "many labels");
-	name = src.name;
-	setlabels(slabels - n);
-	for (int i = 0; i < MAXOFFSETS && i < slabels - n; i++)
-		setoffset(i, src.offset(i + n));
+	share(src, n);
 }
 
 /**
@@ -0,0 +1,373 @@
+/*******************************************************************************
+ * Software Name : RCS IMS Stack
+ *
+ * Copyright (C) 2010 France Telecom S.A.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *      http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ ******************************************************************************/
+
+package org.xbill.DNS;
+
+import java.io.*;
+import java.net.*;
+import java.nio.*;
+import java.nio.channels.*;
+import java.util.*;
+
+/**
+ * Sends queries without blocking the caller.  All the queries share one
+ * selector and one daemon thread.  Each UDP query gets its own socket, bound
+ * to a random source port as in UDPClient, and all the UDP responses are
+ * received in a single buffer; each TCP query gets its own connection.  The
+ * timeouts of all the queries are kept in one queue, ordered by deadline,
+ * which the selector thread checks between two selects.
+ * <p>
+ * The handlers are called on the selector thread, so they must not block.
+ */
+
+final class NioClient implements Runnable {
+
+/** Receives the result of a query. */
+interface Handler {
+	/** Called with the raw response. */
+	void response(byte [] data);
+
+	/** Called when the query has failed or timed out. */
+	void failure(IOException e);
+}
+
+private static NioClient instance;
+
+private final Selector selector;
+private final LinkedList registrations = new LinkedList();
+private final PriorityQueue timeouts;
+private final ByteBuffer buffer = ByteBuffer.allocate(Message.MAXLENGTH);
+
+private abstract static class Query implements Comparable {
+	final SocketAddress remote;
+	final byte [] data;
+	final long endTime;
+	final Handler handler;
+	boolean done;
+
+	Query(SocketAddress remote, byte [] data, long endTime,
+	      Handler handler)
+	{
+		this.remote = remote;
+		this.data = data;
+		this.endTime = endTime;
+		this.handler = handler;
+	}
+
+	public int
+	compareTo(Object o) {
+		long other = ((Query) o).endTime;
+		return (endTime < other) ? -1 : ((endTime == other) ? 0 : 1);
+	}
+}
+
+private static class UDPQuery extends Query {
+	DatagramChannel channel;
+	int id;
+
+	UDPQuery(SocketAddress remote, byte [] data, long endTime,
+		 Handler handler)
+	{
+		super(remote, data, endTime, handler);
+		id = ((data[0] & 0xFF) << 8) + (data[1] & 0xFF);
+	}
+}
+
+private static class TCPQuery extends Query {
+	SocketChannel channel;
+	ByteBuffer [] out;
+	ByteBuffer length = ByteBuffer.allocate(2);
+	ByteBuffer in;
+
+	TCPQuery(SocketAddress remote, byte [] data, long endTime,
+		 Handler handler)
+	{
+		super(remote, data, endTime, handler);
+		byte [] lengthArray = new byte[2];
+		lengthArray[0] = (byte)(data.length >>> 8);
+		lengthArray[1] = (byte)(data.length & 0xFF);
+		out = new ByteBuffer[] {ByteBuffer.wrap(lengthArray),
+					ByteBuffer.wrap(data)};
+	}
+}
+
+private
+NioClient() throws IOException {
+	selector = Selector.open();
+	timeouts = new PriorityQueue();
+	Thread thread = new Thread(this, "dnsjava NIO client");
+	thread.setDaemon(true);
+	thread.start();
+}
+
+/**
+ * Returns the client shared by all the resolvers, starting it if needed.
+ */
+static synchronized NioClient
+getInstance() throws IOException {
+	if (instance == null)
+		instance = new NioClient();
+	return instance;
+}
+
+/**
+ * Sends a query over UDP.
+ * @param remote The server address.
+ * @param data The query, in wire format.
+ * @param endTime The time at which the query times out.
+ * @param handler Receives the response or the failure.
+ */
+void
+sendUDP(SocketAddress remote, byte [] data, long endTime, Handler handler) {
+	enqueue(new UDPQuery(remote, data, endTime, handler));
+}
+
+/**
+ * Sends a query over TCP.
+ * @param remote The server address.
+ * @param data The query, in wire format.
+ * @param endTime The time at which the query times out.
+ * @param handler Receives the response or the failure.
+ */
+void
+sendTCP(SocketAddress remote, byte [] data, long endTime, Handler handler) {
+	enqueue(new TCPQuery(remote, data, endTime, handler));
+}
+
+private void
+enqueue(Query query) {
+	synchronized (registrations) {
+		registrations.add(query);
+	}
+	selector.wakeup();
+}
+
+public void
+run() {
+	while (true) {
+		try {
+			long timeout = 0;
+			Query first = (Query) timeouts.peek();
+			if (first != null)
+				timeout = Math.max(1, first.endTime -
+						   System.currentTimeMillis());
+			selector.select(timeout);
+			register();
+			Iterator it = selector.selectedKeys().iterator();
+			while (it.hasNext()) {
+				SelectionKey key = (SelectionKey) it.next();
+				it.remove();
+				if (!key.isValid())
+					continue;
+				if (key.attachment() instanceof TCPQuery)
+					processTCP(key);
+				else
+					processUDP(key);
+			}
+			expire();
+		}
+		catch (IOException e) {
+			if (Options.check("verbose"))
+				e.printStackTrace();
+		}
+		catch (RuntimeException e) {
+			if (Options.check("verbose"))
+				e.printStackTrace();
+		}
+	}
+}
+
+private void
+register() {
+	while (true) {
+		Query query;
+		synchronized (registrations) {
+			if (registrations.isEmpty())
+				return;
+			query = (Query) registrations.removeFirst();
+		}
+		timeouts.add(query);
+		try {
+			if (query instanceof UDPQuery)
+				startUDP((UDPQuery) query);
+			else
+				startTCP((TCPQuery) query);
+		}
+		catch (IOException e) {
+			fail(query, e);
+		}
+	}
+}
+
+private void
+startUDP(UDPQuery query) throws IOException {
+	DatagramChannel channel = DatagramChannel.open();
+	query.channel = channel;
+	channel.configureBlocking(false);
+	if (!UDPClient.bind_random(channel, null))
+		channel.socket().bind(null);
+	channel.connect(query.remote);
+	channel.register(selector, SelectionKey.OP_READ, query);
+	Client.verboseLog("UDP write", query.data);
+	/*
+	 * If the datagram can't be sent now, the query times out and the
+	 * caller may retry.
+	 */
+	channel.write(ByteBuffer.wrap(query.data));
+}
+
+private void
+startTCP(TCPQuery query) throws IOException {
+	SocketChannel channel = SocketChannel.open();
+	query.channel = channel;
+	channel.configureBlocking(false);
+	if (channel.connect(query.remote))
+		channel.register(selector, SelectionKey.OP_WRITE, query);
+	else
+		channel.register(selector, SelectionKey.OP_CONNECT, query);
+}
+
+private void
+processUDP(SelectionKey key) {
+	UDPQuery query = (UDPQuery) key.attachment();
+	try {
+		while (true) {
+			buffer.clear();
+			/*
+			 * The channel is connected to the server, so only its
+			 * datagrams are received.
+			 */
+			if (query.channel.receive(buffer) == null)
+				return;
+			buffer.flip();
+			if (buffer.remaining() < 2 ||
+			    (buffer.getShort(0) & 0xFFFF) != query.id)
+				continue;
+			byte [] data = new byte[buffer.remaining()];
+			buffer.get(data);
+			Client.verboseLog("UDP read", data);
+			close(query);
+			complete(query, data);
+			return;
+		}
+	}
+	catch (IOException e) {
+		fail(query, e);
+	}
+}
+
+private void
+processTCP(SelectionKey key) {
+	TCPQuery query = (TCPQuery) key.attachment();
+	SocketChannel channel = query.channel;
+	try {
+		if (key.isConnectable()) {
+			if (!channel.finishConnect())
+				return;
+			key.interestOps(SelectionKey.OP_WRITE);
+		}
+		if (key.isWritable()) {
+			if (channel.write(query.out) < 0)
+				throw new EOFException();
+			if (query.out[1].hasRemaining())
+				return;
+			Client.verboseLog("TCP write", query.data);
+			key.interestOps(SelectionKey.OP_READ);
+			return;
+		}
+		if (key.isReadable()) {
+			ByteBuffer in = (query.in != null) ? query.in :
+							     query.length;
+			if (channel.read(in) < 0)
+				throw new EOFException();
+			if (in.hasRemaining())
+				return;
+			if (query.in == null) {
+				int length = query.length.getShort(0) & 0xFFFF;
+				query.in = ByteBuffer.allocate(length);
+				if (length > 0)
+					return;
+			}
+			byte [] data = query.in.array();
+			Client.verboseLog("TCP read", data);
+			close(query);
+			complete(query, data);
+		}
+	}
+	catch (IOException e) {
+		fail(query, e);
+	}
+}
+
+private void
+expire() {
+	long now = System.currentTimeMillis();
+	while (true) {
+		Query query = (Query) timeouts.peek();
+		if (query == null || (!query.done && query.endTime > now))
+			return;
+		timeouts.poll();
+		if (!query.done)
+			fail(query, new SocketTimeoutException());
+	}
+}
+
+private void
+close(Query query) {
+	SelectableChannel channel;
+	if (query instanceof UDPQuery)
+		channel = ((UDPQuery) query).channel;
+	else
+		channel = ((TCPQuery) query).channel;
+	if (channel == null)
+		return;
+	try {
+		channel.close();
+	}
+	catch (IOException e) {
+	}
+}
+
+private void
+complete(Query query, byte [] data) {
+	query.done = true;
+	try {
+		query.handler.response(data);
+	}
+	catch (RuntimeException e) {
+		if (Options.check("verbose"))
+			e.printStackTrace();
+	}
+}
+
+private void
+fail(Query query, IOException e) {
+	if (query.done)
+		return;
+	query.done = true;
+	close(query);
+	try {
+		query.handler.failure(e);
+	}
+	catch (RuntimeException re) {
+		if (Options.check("verbose"))
+			re.printStackTrace();
+	}
+}
+
+}
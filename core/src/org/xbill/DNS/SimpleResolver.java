@@ -301,6 +301,10 @@ send(Message query) throws IOException {
  * to receive a callback on success or exception.  Multiple asynchronous
  * lookups can be performed in parallel.  Since the callback may be invoked
  * before the function returns, external synchronization is necessary.
+ * <p>
+ * Unless a local address is set, the query is sent without creating a thread:
+ * all the asynchronous queries share one selector, and the callbacks are
+ * invoked from its thread, so they should not block.
  * @param query The query to send
  * @param listener The object containing the callbacks.
  * @return An identifier, which is also a parameter in the callback
@@ -311,20 +315,127 @@ sendAsync(final Message query, final ResolverListener listener) {
 	synchronized (this) {
 		id = new Integer(uniqueID++);
 	}
-	Record question = query.getQuestion();
-	String qname;
-	if (question != null)
-		qname = question.getName().toString();
-	else
-		qname = "(none)";
-	String name = this.getClass() + ": " + qname;
-	Thread thread = new ResolveThread(this, query, id, listener);
-	thread.setName(name);
-	thread.setDaemon(true);
-	thread.start();
+	NioClient client = null;
+	if (localAddress == null && !isAXFR(query)) {
+		try {
+			client = NioClient.getInstance();
+		}
+		catch (IOException e) {
+			if (Options.check("verbose"))
+				e.printStackTrace();
+		}
+	}
+	if (client == null) {
+		/*
+		 * The shared client does not bind to a given address, and
+		 * zone transfers are done synchronously.
+		 */
+		Record question = query.getQuestion();
+		String qname;
+		if (question != null)
+			qname = question.getName().toString();
+		else
+			qname = "(none)";
+		String name = this.getClass() + ": " + qname;
+		Thread thread = new ResolveThread(this, query, id, listener);
+		thread.setName(name);
+		thread.setDaemon(true);
+		thread.start();
+		return id;
+	}
+	new AsyncQuery(client, query, id, listener).send();
 	return id;
 }
 
+private boolean
+isAXFR(Message query) {
+	if (query.getHeader().getOpcode() != Opcode.QUERY)
+		return false;
+	Record question = query.getQuestion();
+	return (question != null && question.getType() == Type.AXFR);
+}
+
+/**
+ * A query sent through the shared NioClient.  A truncated UDP response
+ * causes the query to be sent again over TCP.
+ */
+private class AsyncQuery implements NioClient.Handler {
+	private NioClient client;
+	private Message query;
+	private Object id;
+	private ResolverListener listener;
+	private byte [] out;
+	private int udpSize;
+	private long endTime;
+	private boolean tcp;
+
+	AsyncQuery(NioClient client, Message query, Object id,
+		   ResolverListener listener)
+	{
+		this.client = client;
+		this.query = (Message) query.clone();
+		this.id = id;
+		this.listener = listener;
+		applyEDNS(this.query);
+		if (tsig != null)
+			tsig.apply(this.query, null);
+		out = this.query.toWire(Message.MAXLENGTH);
+		udpSize = maxUDPSize(this.query);
+		endTime = System.currentTimeMillis() + timeoutValue;
+		tcp = useTCP || out.length > udpSize;
+	}
+
+	void
+	send() {
+		if (Options.check("verbose"))
+			System.err.println("Sending to " +
+					   address.getAddress().getHostAddress() +
+					   ":" + address.getPort());
+		if (tcp)
+			client.sendTCP(address, out, endTime, this);
+		else
+			client.sendUDP(address, out, endTime, this);
+	}
+
+	public void
+	response(byte [] in) {
+		Message response;
+		try {
+			if (in.length < Header.LENGTH) {
+				throw new WireParseException("invalid DNS " +
+							     "header - too short");
+			}
+			int rid = ((in[0] & 0xFF) << 8) + (in[1] & 0xFF);
+			int qid = query.getHeader().getID();
+			if (rid != qid) {
+				throw new WireParseException("invalid message " +
+							     "id: expected " +
+							     qid + "; got id " +
+							     rid);
+			}
+			response = parseMessage(in);
+			verifyTSIG(query, response, in, tsig);
+		}
+		catch (IOException e) {
+			listener.handleException(id, e);
+			return;
+		}
+		if (!tcp && !ignoreTruncation &&
+		    response.getHeader().getFlag(Flags.TC))
+		{
+			tcp = true;
+			send();
+			return;
+		}
+		listener.receiveMessage(id, response);
+	}
+
+	public void
+	failure(IOException e) {
+		listener.handleException(id, e);
+	}
+}
+
 private Message
 sendAXFR(Message query) throws IOException {
 	Name qname = query.getQuestion().getName();
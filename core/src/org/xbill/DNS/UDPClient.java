@@ -49,6 +49,22 @@ UDPClient(long endTime) throws IOException {
 
 private void
 bind_random(InetSocketAddress addr) throws IOException
+{
+	DatagramChannel channel = (DatagramChannel) key.channel();
+	if (bind_random(channel, addr))
+		bound = true;
+}
+
+/**
+ * Binds a channel to a random source port.
+ * @param channel The channel.
+ * @param addr The local address, or null for any address.
+ * @return true if the channel is bound, false if no random port could be
+ * used.
+ */
+static boolean
+bind_random(DatagramChannel channel, InetSocketAddress addr)
+throws IOException
 {
 	if (prng_initializing) {
 		try {
@@ -57,10 +73,9 @@ bind_random(InetSocketAddress addr) throws IOException
 		catch (InterruptedException e) {
 		}
 		if (prng_initializing)
-			return;
+			return false;
 	}
 
-	DatagramChannel channel = (DatagramChannel) key.channel();
 	InetSocketAddress temp;
 
 	for (int i = 0; i < 1024; i++) {
@@ -73,12 +88,12 @@ bind_random(InetSocketAddress addr) throws IOException
 			else
 				temp = new InetSocketAddress(port);
 			channel.socket().bind(temp);
-			bound = true;
-			return;
+			return true;
 		}
 		catch (SocketException e) {
 		}
 	}
+	return false;
 }
 
 void
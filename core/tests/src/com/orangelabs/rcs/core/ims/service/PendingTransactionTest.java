@@ -0,0 +1,133 @@
+package com.orangelabs.rcs.core.ims.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.CyclicBarrier;
+import java.util.concurrent.TimeUnit;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.protocol.sip.SipException;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionContext;
+import com.orangelabs.rcs.core.ims.protocol.sip.SipTransactionListener;
+
+public class PendingTransactionTest extends TestCase {
+	/**
+	 * Listener of the session, recording the events
+	 */
+	private static class Listener implements SipTransactionListener {
+		List<Object> results = Collections.synchronizedList(new ArrayList<Object>());
+
+		public void transactionCompleted(SipTransactionContext ctx) {
+			results.add(ctx);
+		}
+
+		public void transactionFailed(SipException e) {
+			results.add(e);
+		}
+	}
+
+	private SessionEventQueue events;
+	private Listener listener;
+	private SipTransactionContext sent;
+	private SipTransactionContext received;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		events = new SessionEventQueue();
+		listener = new Listener();
+		sent = new SipTransactionContext(null);
+		received = new SipTransactionContext(null);
+	}
+
+	private void waitEvents() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		events.post(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+
+	public void testResponse() throws Exception {
+		PendingTransaction pending = new PendingTransaction(events, listener);
+		pending.startTimer(sent, 1);
+		pending.transactionCompleted(received);
+		waitEvents();
+		assertEquals(1, listener.results.size());
+		assertSame(received, listener.results.get(0));
+
+		// The timer has been cancelled
+		Thread.sleep(1500);
+		waitEvents();
+		assertEquals(1, listener.results.size());
+	}
+
+	public void testTimeout() throws Exception {
+		PendingTransaction pending = new PendingTransaction(events, listener);
+		pending.startTimer(sent, 1);
+		Thread.sleep(1500);
+		waitEvents();
+		assertEquals(1, listener.results.size());
+		assertSame(sent, listener.results.get(0));
+
+		// A response after the timeout is ignored
+		pending.transactionCompleted(received);
+		pending.transactionFailed(new SipException("Late failure"));
+		waitEvents();
+		assertEquals(1, listener.results.size());
+	}
+
+	public void testResponseBeforeTimer() throws Exception {
+		// The response is received before the sending returns
+		PendingTransaction pending = new PendingTransaction(events, listener);
+		pending.transactionCompleted(received);
+		pending.startTimer(sent, 1);
+		Thread.sleep(1500);
+		waitEvents();
+		assertEquals(1, listener.results.size());
+		assertSame(received, listener.results.get(0));
+	}
+
+	public void testFailure() throws Exception {
+		SipException failure = new SipException("Transaction terminated");
+		PendingTransaction pending = new PendingTransaction(events, listener);
+		pending.startTimer(sent, 1);
+		pending.transactionFailed(failure);
+		pending.transactionCompleted(received);
+		Thread.sleep(1500);
+		waitEvents();
+		assertEquals(1, listener.results.size());
+		assertSame(failure, listener.results.get(0));
+	}
+
+	public void testTimeoutResponseRace() throws Exception {
+		for (int i = 0; i < 200; i++) {
+			final PendingTransaction pending = new PendingTransaction(events, listener);
+			final CyclicBarrier barrier = new CyclicBarrier(2);
+			Thread timer = new Thread() {
+				public void run() {
+					try {
+						barrier.await();
+					} catch(Exception e) {
+						return;
+					}
+					// Timeout
+					pending.run();
+				}
+			};
+			timer.start();
+			barrier.await();
+			pending.transactionCompleted(received);
+			timer.join();
+		}
+		waitEvents();
+
+		// Only one of the response and the timeout is posted per transaction
+		assertEquals(200, listener.results.size());
+	}
+}
@@ -0,0 +1,132 @@
+package com.orangelabs.rcs.core.ims.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import junit.framework.TestCase;
+
+public class SessionEventQueueTest extends TestCase {
+	private SessionEventQueue queue;
+	private List<String> processed;
+	private AtomicInteger running;
+	private AtomicInteger maxRunning;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		queue = new SessionEventQueue();
+		processed = Collections.synchronizedList(new ArrayList<String>());
+		running = new AtomicInteger();
+		maxRunning = new AtomicInteger();
+	}
+
+	private Runnable event(final String name) {
+		return new Runnable() {
+			public void run() {
+				int count = running.incrementAndGet();
+				int max = maxRunning.get();
+				while ((count > max) && !maxRunning.compareAndSet(max, count)) {
+					max = maxRunning.get();
+				}
+				processed.add(name);
+				Thread.yield();
+				running.decrementAndGet();
+			}
+		};
+	}
+
+	private void waitEvents() throws InterruptedException {
+		final CountDownLatch done = new CountDownLatch(1);
+		queue.post(new Runnable() {
+			public void run() {
+				done.countDown();
+			}
+		});
+		assertTrue(done.await(10, TimeUnit.SECONDS));
+	}
+
+	public void testOrder() throws Exception {
+		for (int i = 0; i < 1000; i++) {
+			queue.post(event("" + i));
+		}
+		waitEvents();
+		assertEquals(1000, processed.size());
+		for (int i = 0; i < 1000; i++) {
+			assertEquals("" + i, processed.get(i));
+		}
+		assertEquals(1, maxRunning.get());
+	}
+
+	public void testConcurrentPosts() throws Exception {
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 500; i++) {
+						queue.post(event(thread + "-" + i));
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+		waitEvents();
+
+		// One event at a time, in the order of each thread
+		assertEquals(4000, processed.size());
+		assertEquals(1, maxRunning.get());
+		int[] next = new int[threads.length];
+		for (String name : processed) {
+			int thread = Integer.parseInt(name.substring(0, name.indexOf('-')));
+			assertEquals(name, next[thread]++, Integer.parseInt(name.substring(name.indexOf('-') + 1)));
+		}
+	}
+
+	public void testPostFromEvent() throws Exception {
+		final CountDownLatch secondPosted = new CountDownLatch(1);
+		queue.post(new Runnable() {
+			public void run() {
+				try {
+					secondPosted.await(10, TimeUnit.SECONDS);
+				} catch(InterruptedException e) {
+					return;
+				}
+				processed.add("first");
+				queue.post(event("posted"));
+				processed.add("end of first");
+			}
+		});
+		queue.post(event("second"));
+		secondPosted.countDown();
+		waitEvents();
+		// The event posted by the first one may follow the end of the wait
+		waitEvents();
+
+		// The posted event is processed after the current and waiting events
+		assertEquals("[first, end of first, second, posted]", processed.toString());
+	}
+
+	public void testFailedEvent() throws Exception {
+		queue.post(event("first"));
+		queue.post(new Runnable() {
+			public void run() {
+				throw new IllegalStateException("Event failure");
+			}
+		});
+		queue.post(event("third"));
+		waitEvents();
+		assertEquals("[first, third]", processed.toString());
+
+		// The queue is still processed after a failure
+		queue.post(event("fourth"));
+		waitEvents();
+		assertEquals("[first, third, fourth]", processed.toString());
+	}
+}
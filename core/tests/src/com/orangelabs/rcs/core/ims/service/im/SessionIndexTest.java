@@ -0,0 +1,164 @@
+package com.orangelabs.rcs.core.ims.service.im;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+
+public class SessionIndexTest extends TestCase {
+	private SessionIndex<String> index;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		index = new SessionIndex<String>();
+	}
+
+	public void testEmpty() {
+		assertTrue(index.getSessions().isEmpty());
+		assertTrue(index.getSessions("+33600000001").isEmpty());
+		assertTrue(index.getSessions(null).isEmpty());
+		assertFalse(index.remove("1"));
+	}
+
+	public void testAddRemove() {
+		index.add("1", "+33600000001", "session 1");
+		index.add("2", "+33600000002", "session 2");
+		index.add("3", "+33600000001", "session 3");
+		assertEquals("[session 1, session 2, session 3]", index.getSessions().toString());
+		assertEquals("[session 1, session 3]", index.getSessions("+33600000001").toString());
+		assertEquals("[session 2]", index.getSessions("+33600000002").toString());
+
+		assertTrue(index.remove("1"));
+		assertEquals("[session 2, session 3]", index.getSessions().toString());
+		assertEquals("[session 3]", index.getSessions("+33600000001").toString());
+
+		// A removed session is not removed again
+		assertFalse(index.remove("1"));
+		assertEquals("[session 2, session 3]", index.getSessions().toString());
+
+		assertTrue(index.remove("3"));
+		assertTrue(index.remove("2"));
+		assertTrue(index.getSessions().isEmpty());
+		assertTrue(index.getSessions("+33600000001").isEmpty());
+		assertTrue(index.getSessions("+33600000002").isEmpty());
+	}
+
+	public void testSessionWithoutContact() {
+		// A group chat is not indexed by contact
+		index.add("1", null, "group chat");
+		assertEquals("[group chat]", index.getSessions().toString());
+		assertTrue(index.getSessions(null).isEmpty());
+
+		assertTrue(index.remove("1"));
+		assertTrue(index.getSessions().isEmpty());
+	}
+
+	public void testAddSameId() {
+		index.add("1", "+33600000001", "session 1");
+		index.add("1", "+33600000002", "session 1 again");
+
+		// The session is replaced in all the indexes
+		assertEquals("[session 1 again]", index.getSessions().toString());
+		assertTrue(index.getSessions("+33600000001").isEmpty());
+		assertEquals("[session 1 again]", index.getSessions("+33600000002").toString());
+
+		assertTrue(index.remove("1"));
+		assertTrue(index.getSessions().isEmpty());
+		assertTrue(index.getSessions("+33600000002").isEmpty());
+	}
+
+	public void testReadOnlyLists() {
+		index.add("1", "+33600000001", "session 1");
+		List<String> sessions = index.getSessions();
+		List<String> contactSessions = index.getSessions("+33600000001");
+		try {
+			sessions.add("session 2");
+			fail("The list of sessions can be modified");
+		} catch(UnsupportedOperationException e) {
+			// Expected
+		}
+
+		// The returned lists are not changed by the next updates
+		index.add("2", "+33600000001", "session 2");
+		index.remove("1");
+		assertEquals("[session 1]", sessions.toString());
+		assertEquals("[session 1]", contactSessions.toString());
+		assertEquals("[session 2]", index.getSessions().toString());
+	}
+
+	public void testRandomUpdates() {
+		// The indexes are compared with the expected sessions after each update
+		Random random = new Random(0);
+		List<String> ids = new ArrayList<String>();
+		for (int i = 0; i < 5000; i++) {
+			if (ids.isEmpty() || (random.nextInt(3) != 0)) {
+				String id = "" + i;
+				index.add(id, getNumber(id), "session " + id);
+				ids.add(id);
+			} else {
+				String id = ids.remove(random.nextInt(ids.size()));
+				assertTrue(index.remove(id));
+			}
+			checkIndex(ids);
+		}
+		while (!ids.isEmpty()) {
+			assertTrue(index.remove(ids.remove(0)));
+		}
+		checkIndex(ids);
+	}
+
+	public void testConcurrentUpdates() throws Exception {
+		Thread[] threads = new Thread[8];
+		for (int t = 0; t < threads.length; t++) {
+			final int thread = t;
+			threads[t] = new Thread() {
+				public void run() {
+					for (int i = 0; i < 1000; i++) {
+						String id = thread + "-" + i;
+						index.add(id, getNumber(id), "session " + id);
+						if (i % 2 == 0) {
+							index.remove(id);
+						}
+					}
+				}
+			};
+			threads[t].start();
+		}
+		for (Thread thread : threads) {
+			thread.join();
+		}
+
+		List<String> ids = new ArrayList<String>();
+		for (int t = 0; t < threads.length; t++) {
+			for (int i = 1; i < 1000; i += 2) {
+				ids.add(t + "-" + i);
+			}
+		}
+		checkIndex(ids);
+	}
+
+	private static String getNumber(String id) {
+		return (id.hashCode() % 4 == 0) ? null : "+3360000000" + ((id.hashCode() & 0x7FFFFFFF) % 10);
+	}
+
+	private void checkIndex(List<String> ids) {
+		assertEquals(ids.size(), index.getSessions().size());
+		for (String id : ids) {
+			assertTrue(id, index.getSessions().contains("session " + id));
+		}
+		for (int n = 0; n < 10; n++) {
+			String number = "+3360000000" + n;
+			List<String> expected = new ArrayList<String>();
+			for (String id : ids) {
+				if (number.equals(getNumber(id))) {
+					expected.add("session " + id);
+				}
+			}
+			List<String> sessions = index.getSessions(number);
+			assertEquals(number, expected.size(), sessions.size());
+			assertTrue(number, sessions.containsAll(expected));
+		}
+	}
+}
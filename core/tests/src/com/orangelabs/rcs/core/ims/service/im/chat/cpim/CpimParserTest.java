@@ -0,0 +1,209 @@
+package com.orangelabs.rcs.core.ims.service.im.chat.cpim;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+
+import junit.framework.TestCase;
+import android.util.Log;
+
+public class CpimParserTest extends TestCase {
+	private static final String TAG = "CpimParserTest";
+
+	private static final String FROM = "<sip:+33600000001@domain.com>";
+
+	private static final String TO = "<sip:+33600000002@domain.com>";
+
+	private static final String IMDN_CONTENT =
+		"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+		"<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">\r\n" +
+		"<message-id>Msg1234</message-id>\r\n" +
+		"<datetime>2013-01-27T10:43:00.000Z</datetime>\r\n" +
+		"<delivery-notification><status><delivered/></status></delivery-notification>\r\n" +
+		"</imdn>";
+
+	private static final String FT_HTTP_CONTENT =
+		"<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+		"<file xmlns=\"urn:gsma:params:xml:ns:rcs:rcs:fthttp\">\r\n" +
+		"<file-info type=\"thumbnail\"><file-size>7427</file-size><content-type>image/jpeg</content-type>" +
+		"<data url=\"https://ftserver.domain.com/t/thumb1\" until=\"2013-02-03T10:43:00.000Z\"/></file-info>\r\n" +
+		"<file-info type=\"file\"><file-size>183524</file-size><file-name>photo.jpg</file-name>" +
+		"<content-type>image/jpeg</content-type>" +
+		"<data url=\"https://ftserver.domain.com/f/file1\" until=\"2013-02-03T10:43:00.000Z\"/></file-info>\r\n" +
+		"</file>";
+
+	/**
+	 * Write a CPIM message as ChatUtils does
+	 */
+	private static byte[] write(CpimWriter writer, String contentType, String content) {
+		writer.reset();
+		writer.writeHeader(CpimMessage.HEADER_FROM, FROM);
+		writer.writeHeader(CpimMessage.HEADER_TO, TO);
+		writer.writeHeader(CpimMessage.HEADER_NS, "imdn <urn:ietf:params:imdn>");
+		writer.writeHeader("imdn.Message-ID", "Msg1234");
+		writer.writeHeader(CpimMessage.HEADER_DATETIME, "2013-01-27T10:43:00.000Z");
+		writer.endHeaders();
+		writer.writeHeader(CpimMessage.HEADER_CONTENT_TYPE, contentType + ";charset=utf-8");
+		writer.writeHeader(CpimMessage.HEADER_CONTENT_LENGTH, String.valueOf(CpimWriter.getUtf8Length(content)));
+		writer.endHeaders();
+		writer.writeContent(content);
+		return writer.toByteArray();
+	}
+
+	private static CpimMessage parse(byte[] data) throws Exception {
+		return new CpimParser(data).getCpimMessage();
+	}
+
+	private static byte[] utf8(String str) throws UnsupportedEncodingException {
+		return str.getBytes("UTF-8");
+	}
+
+	private void checkRoundTrip(String content, String expected) throws Exception {
+		byte[] data = write(new CpimWriter(), "text/plain", content);
+		CpimMessage msg = parse(data);
+		assertEquals(FROM, msg.getHeader(CpimMessage.HEADER_FROM));
+		assertEquals(TO, msg.getHeader(CpimMessage.HEADER_TO));
+		assertEquals("Msg1234", msg.getHeader("imdn.Message-ID"));
+		assertEquals("text/plain;charset=utf-8", msg.getContentType());
+		assertEquals(expected, msg.getMessageContent());
+		assertTrue(Arrays.equals(utf8(expected), msg.getMessageBytes()));
+
+		// The announced length is the length of the written content
+		int length = Integer.parseInt(msg.getContentHeader(CpimMessage.HEADER_CONTENT_LENGTH));
+		assertEquals(msg.getMessageBytes().length, length);
+	}
+
+	public void testAsciiContent() throws Exception {
+		checkRoundTrip("Hello", "Hello");
+	}
+
+	public void testEmptyContent() throws Exception {
+		checkRoundTrip("", "");
+	}
+
+	public void testNonAsciiContent() throws Exception {
+		// 2, 3 and 4 bytes characters
+		String content = "Héllo wörld € 日本 😀!";
+		checkRoundTrip(content, content);
+	}
+
+	public void testContentWithBlankLines() throws Exception {
+		// Only the two first blocks are headers
+		String content = "Line 1\r\n\r\nLine 2: not a header\r\n\r\n";
+		checkRoundTrip(content, content);
+	}
+
+	public void testUnpairedSurrogates() throws Exception {
+		// An unpaired surrogate is encoded as '?'
+		checkRoundTrip("a\ud83db", "a?b");
+		checkRoundTrip("\ude00a", "?a");
+		checkRoundTrip("a\ud83d", "a?");
+		checkRoundTrip("é\ud83dé", "é?é");
+	}
+
+	public void testUtf8Length() throws Exception {
+		String[] strings = {
+			"", "abc", "é", "€", "😀", "x😀é€y"
+		};
+		for (int i = 0; i < strings.length; i++) {
+			assertEquals(strings[i], utf8(strings[i]).length, CpimWriter.getUtf8Length(strings[i]));
+		}
+		assertEquals(3, CpimWriter.getUtf8Length("a\ud83db"));
+		assertEquals(2, CpimWriter.getUtf8Length("\ude00\ud83d"));
+	}
+
+	public void testWriterReuse() throws Exception {
+		CpimWriter writer = new CpimWriter();
+		StringBuffer large = new StringBuffer();
+		for (int i = 0; i < 2000; i++) {
+			large.append("été ");
+		}
+		assertEquals(large.toString(), parse(write(writer, "text/plain", large.toString())).getMessageContent());
+
+		// A shorter message does not keep bytes of the previous one
+		byte[] data = write(writer, "text/plain", "short");
+		assertEquals(writer.size(), data.length);
+		assertEquals("short", parse(data).getMessageContent());
+		assertEquals(new String(data, "UTF-8"), writer.toString());
+	}
+
+	public void testContentCharset() throws Exception {
+		byte[] data = utf8("From: " + FROM + "\r\nTo: " + TO + "\r\n\r\n" +
+				"Content-type: text/plain; charset=\"ISO-8859-1\"\r\n\r\n");
+		byte[] content = { 'c', 'a', 'f', (byte)0xe9 };
+		byte[] message = new byte[data.length + content.length];
+		System.arraycopy(data, 0, message, 0, data.length);
+		System.arraycopy(content, 0, message, data.length, content.length);
+		CpimMessage msg = parse(message);
+		assertEquals("ISO-8859-1", msg.getContentCharset().name());
+		assertEquals("café", msg.getMessageContent());
+		assertTrue(Arrays.equals(content, msg.getMessageBytes()));
+	}
+
+	public void testHeaderValueWithColon() throws Exception {
+		CpimMessage msg = parse(utf8("From: " + FROM + "\r\nDateTime: 2013-01-27T10:43:00Z\r\n\r\n" +
+				"Content-Type: text/plain\r\n\r\nbody"));
+		assertEquals("2013-01-27T10:43:00Z", msg.getHeader(CpimMessage.HEADER_DATETIME));
+		assertEquals("text/plain", msg.getContentType());
+		assertEquals("body", msg.getMessageContent());
+	}
+
+	private void checkBadFormat(String data) throws Exception {
+		try {
+			parse(utf8(data));
+			fail("Bad format not detected: " + data);
+		} catch(Exception e) {
+			assertEquals("Bad CPIM message format", e.getMessage());
+		}
+	}
+
+	public void testMissingSeparator() throws Exception {
+		checkBadFormat("");
+		checkBadFormat("From: " + FROM + "\r\nTo: " + TO + "\r\n");
+		checkBadFormat("From: " + FROM + "\r\nTo: " + TO + "\r\n\r\nContent-type: text/plain\r\nbody");
+		checkBadFormat("From: " + FROM + "\r\nTo: " + TO + "\r\n\r\nContent-type: text/plain\r\n");
+	}
+
+	public void testBareLfSeparators() throws Exception {
+		// The blocks are separated by CRLF CRLF only
+		checkBadFormat("From: " + FROM + "\nTo: " + TO + "\n\nContent-type: text/plain\n\nbody");
+		checkBadFormat("From: " + FROM + "\r\nTo: " + TO + "\r\n\nContent-type: text/plain\r\n\r\nbody");
+	}
+
+	public void testHeaderWithoutColon() throws Exception {
+		checkBadFormat("Subject hello\r\n\r\nContent-type: text/plain\r\n\r\nbody");
+	}
+
+	private void benchmark(String name, String contentType, String content) throws Exception {
+		int iterations = 2000;
+		CpimWriter writer = new CpimWriter();
+		byte[] data = write(writer, contentType, content);
+		assertEquals(content, parse(data).getMessageContent());
+
+		long start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			write(writer, contentType, content);
+		}
+		long writeTime = System.nanoTime() - start;
+
+		start = System.nanoTime();
+		for (int i = 0; i < iterations; i++) {
+			parse(data).getMessageContent();
+		}
+		long parseTime = System.nanoTime() - start;
+
+		Log.i(TAG, name + " (" + data.length + " bytes): write " + (writeTime / iterations) +
+				" ns, parse " + (parseTime / iterations) + " ns");
+	}
+
+	public void testBenchmarkText() throws Exception {
+		benchmark("Text", "text/plain", "Hello, are you coming tonight? À ce soir 😀");
+	}
+
+	public void testBenchmarkImdn() throws Exception {
+		benchmark("IMDN", "message/imdn+xml", IMDN_CONTENT);
+	}
+
+	public void testBenchmarkFileTransferHttp() throws Exception {
+		benchmark("FT over HTTP", "application/vnd.gsma.rcs-ft-http+xml", FT_HTTP_CONTENT);
+	}
+}
@@ -0,0 +1,188 @@
+package com.orangelabs.rcs.core.ims.service.im.chat.standfw;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.TestCase;
+
+import com.orangelabs.rcs.core.ims.service.im.chat.InstantMessage;
+
+public class StoredMessageBatchTest extends TestCase {
+	/**
+	 * Batch recording what is sent and notified instead of using a session
+	 */
+	private static class Batch extends StoredMessageBatch {
+		Set<String> history = new HashSet<String>();
+		List<String> events = new ArrayList<String>();
+		List<List<InstantMessage>> notified = new ArrayList<List<InstantMessage>>();
+		int queries = 0;
+
+		Batch() {
+			super(null);
+		}
+
+		synchronized void sendDeliveryReports(List<String> msgIds) {
+			for (String msgId : msgIds) {
+				events.add("report " + msgId);
+			}
+		}
+
+		synchronized Set<String> getExistingMessageIds(List<String> msgIds) {
+			queries++;
+			Set<String> result = new HashSet<String>();
+			for (String msgId : msgIds) {
+				if (history.contains(msgId)) {
+					result.add(msgId);
+				}
+			}
+			return result;
+		}
+
+		synchronized void notifyMessages(List<InstantMessage> received) {
+			StringBuilder ids = new StringBuilder();
+			for (InstantMessage msg : received) {
+				ids.append(ids.length() == 0 ? "" : ",").append(msg.getMessageId());
+			}
+			events.add("notify " + ids);
+			notified.add(received);
+			notifyAll();
+		}
+
+		synchronized boolean waitNotified(int count, long timeout) throws InterruptedException {
+			long end = System.currentTimeMillis() + timeout;
+			while (notified.size() < count) {
+				long delay = end - System.currentTimeMillis();
+				if (delay <= 0) {
+					return false;
+				}
+				wait(delay);
+			}
+			return true;
+		}
+
+		synchronized String getEvents() {
+			return events.toString();
+		}
+	}
+
+	private Batch batch;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		batch = new Batch();
+	}
+
+	private static InstantMessage message(String msgId) {
+		return new InstantMessage(msgId, "sip:+33600000001@domain.com", "Hello " + msgId, false, null);
+	}
+
+	public void testFlushOnSize() throws Exception {
+		for (int i = 0; i < 99; i++) {
+			batch.addMessage(message("msg-" + i));
+		}
+		assertEquals(0, batch.notified.size());
+
+		// The 100th message fills the batch, which is processed at once
+		batch.addMessage(message("msg-99"));
+		assertEquals(1, batch.notified.size());
+		assertEquals(100, batch.notified.get(0).size());
+		for (int i = 0; i < 100; i++) {
+			assertEquals("msg-" + i, batch.notified.get(0).get(i).getMessageId());
+		}
+		assertEquals(1, batch.queries);
+
+		// The timer of the batch has been cancelled
+		Thread.sleep(1000);
+		assertEquals(1, batch.notified.size());
+		assertEquals(1, batch.queries);
+	}
+
+	public void testFlushOnTimer() throws Exception {
+		batch.addMessage(message("msg-1"));
+		batch.addMessage(message("msg-2"));
+		batch.addMessage(message("msg-3"));
+		assertEquals(0, batch.notified.size());
+
+		// The messages are processed together after the aggregation period
+		assertTrue(batch.waitNotified(1, 5000));
+		assertEquals("[notify msg-1,msg-2,msg-3]", batch.getEvents());
+		assertEquals(1, batch.queries);
+
+		// A new message starts a new batch
+		batch.addMessage(message("msg-4"));
+		assertTrue(batch.waitNotified(2, 5000));
+		assertEquals("[notify msg-1,msg-2,msg-3, notify msg-4]", batch.getEvents());
+	}
+
+	public void testFlushOnClose() throws Exception {
+		batch.addMessage(message("msg-1"));
+		batch.addDeliveryReport("msg-1");
+		batch.addMessage(message("msg-2"));
+		batch.addDeliveryReport("msg-2");
+
+		// The pending messages are processed at the end of the session
+		batch.flush();
+		assertEquals("[report msg-1, report msg-2, notify msg-1,msg-2]", batch.getEvents());
+
+		// Nothing is left for the timer
+		Thread.sleep(1000);
+		assertEquals(1, batch.notified.size());
+		assertEquals(1, batch.queries);
+		batch.flush();
+		assertEquals(1, batch.notified.size());
+	}
+
+	public void testReportsOnSize() throws Exception {
+		for (int i = 0; i < 100; i++) {
+			batch.addDeliveryReport("msg-" + i);
+		}
+
+		// The full batch of reports is sent at once, without any message
+		assertEquals(100, batch.events.size());
+		assertEquals("report msg-99", batch.events.get(99));
+		assertEquals(0, batch.notified.size());
+	}
+
+	public void testDuplicatesInBatch() throws Exception {
+		batch.addMessage(message("msg-1"));
+		batch.addMessage(message("msg-2"));
+		batch.addMessage(message("msg-1"));
+		batch.addMessage(message("msg-3"));
+		batch.addMessage(message("msg-2"));
+		batch.addMessage(message("msg-1"));
+		batch.flush();
+
+		// Only the first copy of each message is notified
+		assertEquals("[notify msg-1,msg-2,msg-3]", batch.getEvents());
+	}
+
+	public void testDuplicatesInHistory() throws Exception {
+		batch.history.add("msg-2");
+		batch.addMessage(message("msg-1"));
+		batch.addMessage(message("msg-2"));
+		batch.addMessage(message("msg-3"));
+		batch.flush();
+		assertEquals("[notify msg-1,msg-3]", batch.getEvents());
+
+		// A batch of known messages is not notified
+		batch.history.add("msg-4");
+		batch.addMessage(message("msg-4"));
+		batch.addMessage(message("msg-4"));
+		batch.flush();
+		assertEquals(1, batch.notified.size());
+		assertEquals(2, batch.queries);
+	}
+
+	public void testMessagesWithoutId() throws Exception {
+		batch.addMessage(message(null));
+		batch.addMessage(message(null));
+		batch.flush();
+
+		// The messages without ID can't be checked: they are all notified
+		assertEquals(1, batch.notified.size());
+		assertEquals(2, batch.notified.get(0).size());
+	}
+}
@@ -0,0 +1,256 @@
+package com.orangelabs.rcs.provider.messaging;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Random;
+
+import junit.framework.TestCase;
+import android.database.Cursor;
+import android.database.MatrixCursor;
+import android.net.Uri;
+import android.test.mock.MockContentProvider;
+import android.test.mock.MockContentResolver;
+import android.util.Log;
+
+public class MessageIdIndexTest extends TestCase {
+	private static final String TAG = "MessageIdIndexTest";
+
+	/**
+	 * Message history of the test, queried by the index
+	 */
+	private static class History extends MockContentProvider {
+		HashMap<String, List<String>> chats = new HashMap<String, List<String>>();
+		int queryCount = 0;
+		boolean failing = false;
+
+		void store(String chatId, String msgId) {
+			List<String> msgIds = chats.get(chatId);
+			if (msgIds == null) {
+				msgIds = new ArrayList<String>();
+				chats.put(chatId, msgIds);
+			}
+			msgIds.add(msgId);
+		}
+
+		boolean contains(String chatId, String msgId) {
+			List<String> msgIds = chats.get(chatId);
+			return (msgIds != null) && msgIds.contains(msgId);
+		}
+
+		public Cursor query(Uri uri, String[] projection, String selection, String[] selectionArgs, String sortOrder) {
+			queryCount++;
+			if (failing) {
+				throw new IllegalStateException("Database not available");
+			}
+			MatrixCursor cursor = new MatrixCursor(projection);
+			List<String> msgIds = chats.get(selectionArgs[0]);
+			if (msgIds != null) {
+				for (String msgId : msgIds) {
+					cursor.addRow(new Object[] { msgId });
+				}
+			}
+			return cursor;
+		}
+	}
+
+	private History history;
+	private MessageIdIndex index;
+
+	protected void setUp() throws Exception {
+		super.setUp();
+
+		history = new History();
+		index = createIndex();
+	}
+
+	private MessageIdIndex createIndex() {
+		MockContentResolver cr = new MockContentResolver();
+		cr.addProvider(MessageData.CONTENT_URI.getAuthority(), history);
+		return new MessageIdIndex(cr, MessageData.CONTENT_URI);
+	}
+
+	/**
+	 * Store a message as the history does: the row first, then the index
+	 */
+	private void store(String chatId, String msgId) {
+		history.store(chatId, msgId);
+		index.add(chatId, msgId);
+	}
+
+	public void testUnknownChat() {
+		assertEquals(MessageIdIndex.ABSENT, index.check("+33600000001", "msg-1"));
+		assertEquals(1, history.queryCount);
+
+		// The filter is kept
+		assertEquals(MessageIdIndex.ABSENT, index.check("+33600000001", "msg-2"));
+		assertEquals(1, history.queryCount);
+	}
+
+	public void testNullIds() {
+		assertEquals(MessageIdIndex.UNKNOWN, index.check(null, "msg-1"));
+		assertEquals(MessageIdIndex.UNKNOWN, index.check("+33600000001", null));
+		index.add(null, "msg-1");
+		index.add("+33600000001", null);
+		assertEquals(0, history.queryCount);
+	}
+
+	public void testNoFalseNegativeAfterAdd() {
+		String chatId = "+33600000001";
+		index.check(chatId, "first");
+
+		// More IDs than the cache and than the first filter can hold
+		for (int i = 0; i < 5000; i++) {
+			store(chatId, "msg-" + i);
+		}
+		for (int i = 0; i < 5000; i++) {
+			assertTrue("msg-" + i, index.check(chatId, "msg-" + i) != MessageIdIndex.ABSENT);
+		}
+	}
+
+	public void testNoFalseNegativeWithManyChats() {
+		// More chats than the index keeps: the first ones are loaded again
+		for (int round = 0; round < 3; round++) {
+			for (int chat = 0; chat < 40; chat++) {
+				String chatId = "+336000000" + chat;
+				index.check(chatId, "first");
+				for (int i = 0; i < 100; i++) {
+					store(chatId, round + "-" + i);
+				}
+			}
+		}
+		for (int chat = 0; chat < 40; chat++) {
+			String chatId = "+336000000" + chat;
+			for (int round = 0; round < 3; round++) {
+				for (int i = 0; i < 100; i++) {
+					assertTrue(chatId + " " + round + "-" + i,
+							index.check(chatId, round + "-" + i) != MessageIdIndex.ABSENT);
+				}
+			}
+		}
+	}
+
+	public void testFullFilterReload() {
+		String chatId = "+33600000001";
+		index.check(chatId, "first");
+		assertEquals(1, history.queryCount);
+
+		// The first filter holds 256 IDs
+		for (int i = 0; i < 256; i++) {
+			store(chatId, "msg-" + i);
+		}
+		index.check(chatId, "other");
+		assertEquals(1, history.queryCount);
+
+		// The next ID drops the full filter, which is loaded again when needed
+		store(chatId, "msg-256");
+		index.check(chatId, "other");
+		assertEquals(2, history.queryCount);
+
+		// The new filter has room for the loaded IDs and as many new ones
+		for (int i = 257; i < 514; i++) {
+			store(chatId, "msg-" + i);
+		}
+		index.check(chatId, "other");
+		assertEquals(2, history.queryCount);
+		for (int i = 0; i < 514; i++) {
+			assertTrue("msg-" + i, index.check(chatId, "msg-" + i) != MessageIdIndex.ABSENT);
+		}
+		assertEquals(2, history.queryCount);
+	}
+
+	public void testRestartWarmUp() {
+		String chatId = "+33600000001";
+		for (int i = 0; i < 1000; i++) {
+			history.store(chatId, "msg-" + i);
+		}
+
+		// After a restart, the filter is loaded from the history by the first check
+		assertEquals(MessageIdIndex.UNKNOWN, index.check(chatId, "msg-0"));
+		assertEquals(1, history.queryCount);
+		int absent = 0;
+		for (int i = 0; i < 1000; i++) {
+			assertTrue("msg-" + i, index.check(chatId, "msg-" + i) != MessageIdIndex.ABSENT);
+			if (index.check(chatId, "new-" + i) == MessageIdIndex.ABSENT) {
+				absent++;
+			}
+		}
+		assertEquals(1, history.queryCount);
+		assertTrue("absent=" + absent, absent > 950);
+	}
+
+	public void testQueryResult() {
+		String chatId = "+33600000001";
+		history.store(chatId, "msg-1");
+		assertEquals(MessageIdIndex.UNKNOWN, index.check(chatId, "msg-1"));
+
+		// A message found in the history is answered by the cache
+		index.setQueryResult(chatId, "msg-1", true);
+		assertEquals(MessageIdIndex.PRESENT, index.check(chatId, "msg-1"));
+		assertTrue(index.getStatistics(), index.getStatistics().contains("cached=1"));
+
+		// A message not found is a false positive of the filter
+		index.setQueryResult(chatId, "msg-2", false);
+		assertTrue(index.getStatistics(), index.getStatistics().contains("false positives=1"));
+	}
+
+	public void testHistoryFailure() {
+		String chatId = "+33600000001";
+		history.failing = true;
+		assertEquals(MessageIdIndex.UNKNOWN, index.check(chatId, "msg-1"));
+		assertEquals(MessageIdIndex.UNKNOWN, index.check(chatId, "msg-1"));
+		assertEquals(2, history.queryCount);
+
+		// The filter is loaded once the history can be read
+		history.failing = false;
+		assertEquals(MessageIdIndex.ABSENT, index.check(chatId, "msg-1"));
+		assertEquals(MessageIdIndex.ABSENT, index.check(chatId, "msg-2"));
+		assertEquals(3, history.queryCount);
+	}
+
+	public void testReplay() {
+		// Messages received on 10 chats, one out of ten being a retransmission
+		Random random = new Random(0);
+		List<String> received = new ArrayList<String>();
+		int duplicates = 0;
+		int queries = 0;
+		long start = System.nanoTime();
+		for (int i = 0; i < 20000; i++) {
+			String chatId = "+3360000000" + random.nextInt(10);
+			String msgId;
+			if (!received.isEmpty() && (random.nextInt(10) == 0)) {
+				msgId = received.get(random.nextInt(received.size()));
+				chatId = msgId.substring(0, msgId.indexOf('/'));
+				duplicates++;
+			} else {
+				msgId = chatId + "/" + i;
+			}
+			boolean present;
+			switch(index.check(chatId, msgId)) {
+				case MessageIdIndex.ABSENT:
+					present = false;
+					break;
+				case MessageIdIndex.PRESENT:
+					present = true;
+					break;
+				default:
+					queries++;
+					present = history.contains(chatId, msgId);
+					index.setQueryResult(chatId, msgId, present);
+					break;
+			}
+			assertEquals(msgId, history.contains(chatId, msgId), present);
+			if (!present) {
+				store(chatId, msgId);
+				received.add(msgId);
+			}
+		}
+		long time = (System.nanoTime() - start) / 1000000;
+		Log.i(TAG, "Replay of 20000 messages: " + duplicates + " duplicates, " + queries +
+				" queries of the history, " + history.queryCount + " loads, " + time + " ms");
+		Log.i(TAG, index.getStatistics());
+
+		// Only the duplicates missed by the cache and the false positives are queried
+		assertTrue("queries=" + queries, queries < duplicates + 20000 / 50);
+	}
+}
@@ -0,0 +1,389 @@
+package com.orangelabs.rcs.utils;
+
+import java.io.ByteArrayInputStream;
+
+import javax.xml.parsers.SAXParserFactory;
+
+import junit.framework.TestCase;
+
+import org.xml.sax.Attributes;
+import org.xml.sax.InputSource;
+import org.xml.sax.SAXException;
+import org.xml.sax.helpers.DefaultHandler;
+
+public class XmlParserTest extends TestCase {
+	/**
+	 * Handler recording the SAX events as text, the consecutive characters
+	 * being merged
+	 */
+	private static class Recorder extends DefaultHandler {
+		private StringBuffer events = new StringBuffer();
+
+		private StringBuffer text = new StringBuffer();
+
+		private void flush() {
+			if (text.length() > 0) {
+				events.append("text [").append(text).append("]\n");
+				text.setLength(0);
+			}
+		}
+
+		public void startDocument() {
+			events.append("startDocument\n");
+		}
+
+		public void endDocument() {
+			flush();
+			events.append("endDocument\n");
+		}
+
+		public void startElement(String uri, String localName, String qName, Attributes attr) {
+			flush();
+			events.append("start {").append(uri).append('}').append(localName).append(' ').append(qName);
+			for (int i = 0; i < attr.getLength(); i++) {
+				events.append(" {").append(attr.getURI(i)).append('}').append(attr.getLocalName(i))
+					.append(' ').append(attr.getQName(i)).append("=[").append(attr.getValue(i)).append(']');
+				assertEquals(attr.getValue(i), attr.getValue(attr.getQName(i)));
+				assertEquals(attr.getValue(i), attr.getValue(attr.getURI(i), attr.getLocalName(i)));
+			}
+			events.append('\n');
+		}
+
+		public void endElement(String uri, String localName, String qName) {
+			flush();
+			events.append("end {").append(uri).append('}').append(localName).append(' ').append(qName).append('\n');
+		}
+
+		public void characters(char[] ch, int start, int length) {
+			text.append(ch, start, length);
+		}
+
+		public String toString() {
+			return events.toString();
+		}
+	}
+
+	private static String parseWithSax(byte[] data) throws Exception {
+		SAXParserFactory factory = SAXParserFactory.newInstance();
+		factory.setNamespaceAware(true);
+		Recorder recorder = new Recorder();
+		factory.newSAXParser().parse(new InputSource(new ByteArrayInputStream(data)), recorder);
+		return recorder.toString();
+	}
+
+	private static String parse(byte[] data) throws Exception {
+		Recorder recorder = new Recorder();
+		XmlParser.parse(data, recorder);
+		return recorder.toString();
+	}
+
+	private static String parse(InputSource input) throws Exception {
+		Recorder recorder = new Recorder();
+		XmlParser.parse(input, recorder);
+		return recorder.toString();
+	}
+
+	/**
+	 * Check that the parser delivers the same events as the platform SAX parser
+	 */
+	private static String check(byte[] data) throws Exception {
+		String expected = parseWithSax(data);
+		assertEquals(expected, parse(data));
+		assertEquals(expected, parse(new InputSource(new ByteArrayInputStream(data))));
+		return expected;
+	}
+
+	private static String check(String document) throws Exception {
+		return check(document.getBytes("UTF-8"));
+	}
+
+	private static void checkError(String document) throws Exception {
+		try {
+			parse(document.getBytes("UTF-8"));
+			fail("Error not detected: " + document);
+		} catch(SAXException e) {
+			// Expected
+		}
+	}
+
+	public void testConferenceInfo() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+			"<conference-info xmlns=\"urn:ietf:params:xml:ns:conference-info\" entity=\"sips:conf233@example.com\" state=\"full\" version=\"1\">\r\n" +
+			" <!-- CONFERENCE INFO -->\r\n" +
+			" <conference-description>\r\n" +
+			"  <subject>Agenda: This month's goals</subject>\r\n" +
+			"  <maximum-user-count>50</maximum-user-count>\r\n" +
+			" </conference-description>\r\n" +
+			" <users>\r\n" +
+			"  <user entity=\"sip:bob@example.com\" state=\"full\">\r\n" +
+			"   <display-text>Bob Hoskins</display-text>\r\n" +
+			"   <endpoint entity=\"sip:bob@pc33.example.com\">\r\n" +
+			"    <status>disconnected</status>\r\n" +
+			"    <disconnection-method>departed</disconnection-method>\r\n" +
+			"    <media id=\"1\"><type>audio</type><status>sendrecv</status></media>\r\n" +
+			"   </endpoint>\r\n" +
+			"  </user>\r\n" +
+			" </users>\r\n" +
+			"</conference-info>");
+	}
+
+	public void testGeolocInfo() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<rcsenvelope xmlns=\"urn:gsma:params:xml:ns:rcs:rcs:geolocation\" xmlns:rpid=\"urn:ietf:params:xml:ns:pidf:rpid\" " +
+			"xmlns:gp=\"urn:ietf:params:xml:ns:pidf:geopriv10\" xmlns:gml=\"http://www.opengis.net/gml\" " +
+			"xmlns:gs=\"http://www.opengis.net/pidflo/1.0\" entity=\"tel:+12345678901\">\n" +
+			"<rcspushlocation id=\"a123\" label =\"meeting location\" >\n" +
+			"<rpid:place-type rpid:until=\"2012-03-15T21:00:00-05:00\">\n</rpid:place-type>\n" +
+			"<rpid:time-offset rpid:until=\"2012-03-15T21:00:00-05:00\"></rpid:time-offset>\n" +
+			"<gp:geopriv><gp:location-info>\n" +
+			"<gs:Circle srsName=\"urn:ogc:def:crs:EPSG::4326\">\n" +
+			"<gml:pos>48.731964 -3.45829</gml:pos>\n" +
+			"<gs:radius uom=\"urn:ogc:def:uom:EPSG::9001\">10</gs:radius>\n" +
+			"</gs:Circle>\n" +
+			"</gp:location-info></gp:geopriv>\n" +
+			"<timestamp>2012-03-15T16:09:44-05:00</timestamp>\n" +
+			"</rcspushlocation>\n" +
+			"</rcsenvelope>");
+	}
+
+	public void testImdn() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\r\n" +
+			"<imdn xmlns=\"urn:ietf:params:xml:ns:imdn\">\r\n" +
+			"<message-id>34jk324j</message-id>\r\n" +
+			"<datetime>2008-04-04T12:16:49-05:00</datetime>\r\n" +
+			"<display-notification><status><displayed/></status></display-notification>\r\n" +
+			"</imdn>");
+	}
+
+	public void testIsComposing() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<isComposing xmlns=\"urn:ietf:params:xml:ns:im-iscomposing\"\n" +
+			"  xmlns:xsi=\"http://www.w3.org/2001/XMLSchema-instance\"\n" +
+			"  xsi:schemaLocation=\"urn:ietf:params:xml:ns:im-composing iscomposing.xsd\">\n" +
+			"<state>active</state>\n" +
+			"<contenttype>text/plain</contenttype>\n" +
+			"<refresh>60</refresh>\n" +
+			"</isComposing>");
+	}
+
+	public void testResourceList() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\" xmlns:cp=\"urn:ietf:params:xml:ns:copycontrol\">\n" +
+			"<list>\n" +
+			"<entry uri=\"sip:bill@example.com\" cp:copyControl=\"to\"  />\n" +
+			"<entry uri=\"sip:joe@example.org\" cp:copyControl=\"cc\" />\n" +
+			"<entry uri='sip:ted@example.net' cp:copyControl='bcc'/>\n" +
+			"</list>\n" +
+			"</resource-lists>");
+	}
+
+	public void testFileTransferHttpInfo() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<file xmlns=\"urn:gsma:params:xml:ns:rcs:rcs:fthttp\" xmlns:am=\"urn:gsma:params:xml:ns:rcs:rcs:rram\">\n" +
+			"<file-info type=\"thumbnail\">\n" +
+			"<file-size>7427</file-size>\n" +
+			"<content-type>image/jpeg</content-type>\n" +
+			"<data url = \"https://ftcontentserver.rcs/download?id=001\" until = \"2014-08-13T17:42:10.000+02:00\"/>\n" +
+			"</file-info>\n" +
+			"<file-info type=\"file\" file-disposition=\"render\">\n" +
+			"<file-size>183524</file-size>\n" +
+			"<file-name>Photo été.jpg</file-name>\n" +
+			"<content-type>image/jpeg</content-type>\n" +
+			"<data url=\"https://ftcontentserver.rcs/download?id=002&amp;t=1\" until=\"2014-08-13T17:42:10.000+02:00\"/>\n" +
+			"<am:playing-length>12</am:playing-length>\n" +
+			"</file-info>\n" +
+			"</file>");
+	}
+
+	public void testFileTransferHttpResumeInfo() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<file-resume-info>\n" +
+			"<file-range start=\"0\" end=\"65535\"/>\n" +
+			"<data url=\"https://ftcontentserver.rcs/upload?tid=001\"/>\n" +
+			"</file-resume-info>");
+	}
+
+	public void testXcapDirectory() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<xcap-directory xmlns=\"urn:oma:xml:xdm:xcap-directory\">\n" +
+			"<folder auid=\"resource-lists\">\n" +
+			"<entry uri=\"http://xcap.example.com/resource-lists/users/sip:joe@example.com/index\" " +
+			"etag=\"ef0ab2\" last-modified=\"2009-04-24T16:58:32Z\" size=\"2148\"/>\n" +
+			"</folder>\n" +
+			"<folder auid=\"org.openmobilealliance.pres-rules\"><error-code>404</error-code></folder>\n" +
+			"</xcap-directory>");
+	}
+
+	public void testPidf() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<presence xmlns=\"urn:ietf:params:xml:ns:pidf\" xmlns:op=\"urn:oma:xml:prs:pidf:oma-pres\" " +
+			"xmlns:pdm=\"urn:ietf:params:xml:ns:pidf:data-model\" entity=\"sip:+33960810101@domain.com\" version=\"1\">\n" +
+			" <ep:tuple xmlns:ep=\"urn:ietf:params:xml:ns:pidf\" id=\"id5\">\n" +
+			"  <ep:status><ep:basic>open</ep:basic></ep:status>\n" +
+			"  <op:service-description>\n" +
+			"   <op:service-id>org.gsma.videoshare</op:service-id>\n" +
+			"   <op:version>1.0</op:version>\n" +
+			"  </op:service-description>\n" +
+			"  <ep:contact>sip:+33960810101@domain.com</ep:contact>\n" +
+			"  <ep:timestamp>2009-04-24T16:58:32Z</ep:timestamp>\n" +
+			" </ep:tuple>\n" +
+			" <pdm:person id=\"p1\">\n" +
+			"  <op:overriding-willingness><op:basic>open</op:basic></op:overriding-willingness>\n" +
+			"  <pdm:note>Free text &lt;with&gt; “quotes” 😀</pdm:note>\n" +
+			" </pdm:person>\n" +
+			"</presence>");
+	}
+
+	public void testRlmi() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<list xmlns=\"urn:ietf:params:xml:ns:rlmi\" uri=\"sip:+33960810101@domain.com;pres-list=rcs\" version=\"1\" fullState=\"true\"><name>rcs</name>\n" +
+			"  <resource uri=\"sip:+33960810100@domain.com\">\n" +
+			"    <instance id=\"001\" state=\"pending\" reason=\"subscribe\"/>\n" +
+			"  </resource>\n" +
+			"</list>");
+	}
+
+	public void testWatcherInfo() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\" ?>\n" +
+			"<watcherinfo xmlns=\"urn:ietf:params:xml:ns:watcherinfo\" version=\"0\" state=\"full\">\n" +
+			"  <watcher-list resource=\"sip:+33960810100@domain.com\" package=\"presence\">\n" +
+			"  <watcher status=\"active\" id=\"-838173480\" duration-subscribed=\"3\" event=\"subscribe\">tel:+33960810100</watcher>\n" +
+			"  </watcher-list>\n" +
+			"</watcherinfo>");
+	}
+
+	public void testXcapResponse() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<resource-lists xmlns=\"urn:ietf:params:xml:ns:resource-lists\">\n" +
+			"<list name=\"rcs\">\n" +
+			"<entry uri=\"tel:+33600000001\"><display-name>Joe</display-name></entry>\n" +
+			"<entry uri=\"tel:+33600000002\"/>\n" +
+			"</list>\n" +
+			"</resource-lists>");
+	}
+
+	public void testXcapPhotoIconResponse() throws Exception {
+		check("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+			"<content xmlns=\"urn:oma:xml:prs:pres-content\">\n" +
+			"<mime-type>image/png</mime-type>\n" +
+			"<encoding>base64</encoding>\n" +
+			"<description>my photo</description>\n" +
+			"<data>iVBORw0KGgoAAAANSUhEUgAAAAEAAAABCAYAAAAfFcSJAAAADUlEQVR42mNk+M9QDwADhgGAWjR9awAAAABJRU5ErkJggg==</data>\n" +
+			"</content>");
+	}
+
+	public void testEndUserNotification() throws Exception {
+		check("<?xml version=\"1.0\" standalone=\"yes\"?>\n" +
+			"<EndUserNotification id=\"xxxxxxxxx\">\n" +
+			"  <Subject xml:lang=\"en\">Subject</Subject>\n" +
+			"  <Subject xml:lang=\"fr\">Sujet</Subject>\n" +
+			"  <Text xml:lang=\"en\">Text</Text>\n" +
+			"  <Text xml:lang=\"fr\">Texte accentué</Text>\n" +
+			"  <ButtonOK xml:lang=\"en\">OK</ButtonOK>\n" +
+			"</EndUserNotification>");
+	}
+
+	public void testTermsAck() throws Exception {
+		check("<?xml version=\"1.0\" standalone=\"yes\"?>\n" +
+			"<EndUserConfirmationAck id=\"xxxxxxxxx\" status=\"accepted\">\n" +
+			"  <Subject>Subject</Subject>\n" +
+			"  <Text>Text</Text>\n" +
+			"</EndUserConfirmationAck>");
+	}
+
+	public void testTermsRequest() throws Exception {
+		check("<?xml version=\"1.0\" standalone=\"yes\"?>\n" +
+			"<EndUserConfirmationRequest id=\"xxxxxxx\" type=\"Volatile\" pin=\"false\" timeout=\"120\">\n" +
+			"  <Subject xml:lang=\"en\">Subject</Subject>\n" +
+			"  <Text xml:lang=\"en\">Text</Text>\n" +
+			"  <ButtonAccept xml:lang=\"en\">Accept</ButtonAccept>\n" +
+			"  <ButtonReject xml:lang=\"en\">Reject</ButtonReject>\n" +
+			"</EndUserConfirmationRequest>");
+	}
+
+	public void testNamespaces() throws Exception {
+		String events = check("<a:root xmlns:a=\"urn:a\" xmlns=\"urn:default\" a:attr=\"1\" attr=\"2\">" +
+			"<child xml:lang=\"en\"/>" +
+			"<child xmlns=\"urn:other\"><a:leaf xmlns:a=\"urn:b\">x</a:leaf></child>" +
+			"<child xmlns=\"\"/>" +
+			"<a:leaf/>" +
+			"</a:root>");
+		assertTrue(events.indexOf("start {urn:b}leaf a:leaf") != -1);
+		assertTrue(events.indexOf("start {urn:a}leaf a:leaf") != -1);
+	}
+
+	public void testCdata() throws Exception {
+		String events = check("<a>x<![CDATA[<b>&amp;</b> é]]>y<![CDATA[]]></a>");
+		assertTrue(events.indexOf("text [x<b>&amp;</b> éy]") != -1);
+	}
+
+	public void testEntities() throws Exception {
+		String events = check("<a v=\"&lt;&amp;&quot;&apos;&gt; &#233;&#xE9;\">&lt;&gt;&amp;&quot;&apos; &#233;&#xe9; &#x1F600;</a>");
+		assertTrue(events.indexOf("text [<>&\"' éé 😀]") != -1);
+	}
+
+	public void testWhitespaces() throws Exception {
+		// Line ends are normalized, whitespaces of the attributes are replaced by spaces
+		check("<a v=\"1\t2\n3\r\n4\">\r\nline 1\rline 2\r\n</a>");
+	}
+
+	public void testCommentsAndProcessingInstructions() throws Exception {
+		check("<?xml version=\"1.0\"?>\n<!-- comment -->\n<?pi data?>\n<a><!-- <b/> --><?pi?>text</a>\n<!-- end -->\n");
+	}
+
+	public void testByteOrderMark() throws Exception {
+		byte[] document = "<?xml version=\"1.0\" encoding=\"UTF-8\"?><a>é</a>".getBytes("UTF-8");
+		byte[] data = new byte[document.length + 3];
+		data[0] = (byte)0xEF;
+		data[1] = (byte)0xBB;
+		data[2] = (byte)0xBF;
+		System.arraycopy(document, 0, data, 3, document.length);
+		assertTrue(check(data).indexOf("text [é]") != -1);
+	}
+
+	public void testDtdFallback() throws Exception {
+		// Passed to the platform parser, which resolves the internal entities
+		String events = check("<?xml version=\"1.0\"?>\n<!DOCTYPE a [<!ENTITY e \"entity\">]>\n<a>&e;</a>");
+		assertTrue(events.indexOf("text [entity]") != -1);
+	}
+
+	public void testNonUtf8Fallback() throws Exception {
+		byte[] data = "<?xml version=\"1.0\" encoding=\"ISO-8859-1\"?><a v=\"é\">café</a>".getBytes("ISO-8859-1");
+		String events = check(data);
+		assertTrue(events.indexOf("text [café]") != -1);
+
+		// Encoding given by the input source
+		data = "<a>café</a>".getBytes("ISO-8859-1");
+		InputSource input = new InputSource(new ByteArrayInputStream(data));
+		input.setEncoding("ISO-8859-1");
+		assertTrue(parse(input).indexOf("text [café]") != -1);
+	}
+
+	public void testErrors() throws Exception {
+		checkError("");
+		checkError("<a>");
+		checkError("<a></b>");
+		checkError("<a><b></a></b>");
+		checkError("<a v=1/>");
+		checkError("<a v=\"1/>");
+		checkError("<a>&unknown;</a>");
+		checkError("<a>&amp</a>");
+		checkError("<a><![CDATA[x</a>");
+		checkError("<a><!-- x</a>");
+		checkError("<a><!ELEMENT x></a>");
+	}
+
+	public void testParserReuse() throws Exception {
+		StringBuffer large = new StringBuffer("<a xmlns=\"urn:large\">");
+		for (int i = 0; i < 2000; i++) {
+			large.append("<b id=\"").append(i).append("\">text ").append(i).append("</b>");
+		}
+		large.append("</a>");
+		check(large.toString());
+
+		// The state of the previous document is not kept
+		assertEquals("startDocument\nstart {}c c\nend {}c c\nendDocument\n", check("<c/>"));
+		checkError("<a>");
+		assertEquals("startDocument\nstart {}c c\ntext [x]\nend {}c c\nendDocument\n", check("<c>x</c>"));
+	}
+}
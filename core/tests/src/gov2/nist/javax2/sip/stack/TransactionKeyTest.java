@@ -0,0 +1,147 @@
+package gov2.nist.javax2.sip.stack;
+
+import gov2.nist.javax2.sip.message.SIPMessage;
+import gov2.nist.javax2.sip.parser.StringMsgParser;
+import junit.framework.TestCase;
+
+public class TransactionKeyTest extends TestCase {
+	private static final String BRANCH = "z9hG4bK776asdhds";
+
+	private static SIPMessage request(String method, int cseq, String via) throws Exception {
+		return new StringMsgParser().parseSIPMessage(
+			method + " sip:bob@biloxi.com SIP/2.0\r\n" +
+			"Via: " + via + "\r\n" +
+			"Max-Forwards: 70\r\n" +
+			"To: Bob <sip:bob@biloxi.com>\r\n" +
+			"From: Alice <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+			"Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+			"CSeq: " + cseq + " " + method + "\r\n" +
+			"Contact: <sip:alice@pc33.atlanta.com>\r\n" +
+			"Content-Length: 0\r\n\r\n");
+	}
+
+	private static SIPMessage response(int status, String method, int cseq, String via) throws Exception {
+		return new StringMsgParser().parseSIPMessage(
+			"SIP/2.0 " + status + " Reason\r\n" +
+			"Via: " + via + "\r\n" +
+			"To: Bob <sip:bob@biloxi.com>;tag=a6c85cf\r\n" +
+			"From: Alice <sip:alice@atlanta.com>;tag=1928301774\r\n" +
+			"Call-ID: a84b4c76e66710@pc33.atlanta.com\r\n" +
+			"CSeq: " + cseq + " " + method + "\r\n" +
+			"Content-Length: 0\r\n\r\n");
+	}
+
+	private static String via(String sentBy, String branch) {
+		return "SIP/2.0/UDP " + sentBy + (branch != null ? ";branch=" + branch : "");
+	}
+
+	private static void assertSameKey(TransactionKey key1, TransactionKey key2) {
+		assertEquals(key1, key2);
+		assertEquals(key2, key1);
+		assertEquals(key1.hashCode(), key2.hashCode());
+	}
+
+	private static void assertDifferentKey(TransactionKey key1, TransactionKey key2) {
+		assertFalse(key1.equals(key2));
+		assertFalse(key2.equals(key1));
+	}
+
+	public void testRFC3261Branch() throws Exception {
+		assertTrue(TransactionKey.isRFC3261Branch(BRANCH));
+		assertTrue(TransactionKey.isRFC3261Branch("Z9HG4BK776asdhds"));
+		assertTrue(TransactionKey.isRFC3261Branch("z9hG4bK"));
+		assertFalse(TransactionKey.isRFC3261Branch(null));
+		assertFalse(TransactionKey.isRFC3261Branch(""));
+		assertFalse(TransactionKey.isRFC3261Branch("z9hG4b"));
+		assertFalse(TransactionKey.isRFC3261Branch("776asdhds"));
+	}
+
+	public void testClientKey() throws Exception {
+		String via = via("pc33.atlanta.com", BRANCH);
+		TransactionKey key = TransactionKey.forClient(request("INVITE", 1, via));
+		assertTrue(key.isRFC3261());
+
+		// The responses of the transaction
+		assertSameKey(key, TransactionKey.forClient(response(180, "INVITE", 1, via)));
+		assertSameKey(key, TransactionKey.forClient(response(200, "INVITE", 1, via)));
+
+		// The branch is not case sensitive
+		assertSameKey(key, TransactionKey.forClient(response(200, "INVITE", 1, via("pc33.atlanta.com", BRANCH.toUpperCase()))));
+
+		// The sent-by of a response does not identify the client transaction
+		assertSameKey(key, TransactionKey.forClient(response(200, "INVITE", 1, via("other.atlanta.com:5070", BRANCH))));
+
+		// Another branch
+		assertDifferentKey(key, TransactionKey.forClient(response(200, "INVITE", 1, via("pc33.atlanta.com", BRANCH + "1"))));
+	}
+
+	public void testCancelKey() throws Exception {
+		String via = via("pc33.atlanta.com", BRANCH);
+		TransactionKey invite = TransactionKey.forServer(request("INVITE", 1, via));
+		TransactionKey cancel = TransactionKey.forServer(request("CANCEL", 1, via));
+
+		// A CANCEL has the branch of the INVITE but its own transaction
+		assertTrue(cancel.isRFC3261());
+		assertDifferentKey(invite, cancel);
+		assertDifferentKey(TransactionKey.forClient(request("INVITE", 1, via)),
+				TransactionKey.forClient(request("CANCEL", 1, via)));
+
+		// The responses of the CANCEL
+		assertSameKey(cancel, TransactionKey.forServer(response(200, "CANCEL", 1, via)));
+		assertSameKey(TransactionKey.forClient(request("CANCEL", 1, via)),
+				TransactionKey.forClient(response(200, "CANCEL", 1, via)));
+
+		// The ACK of a non 2xx response matches the INVITE
+		assertSameKey(invite, TransactionKey.forServer(request("ACK", 1, via)));
+	}
+
+	public void testServerKey() throws Exception {
+		TransactionKey key = TransactionKey.forServer(request("MESSAGE", 1, via("pc33.atlanta.com:5060", BRANCH)));
+		assertTrue(key.isRFC3261());
+
+		// The response sent by the server transaction
+		assertSameKey(key, TransactionKey.forServer(response(200, "MESSAGE", 1, via("pc33.atlanta.com:5060", BRANCH))));
+
+		// The sent-by host is not case sensitive
+		assertSameKey(key, TransactionKey.forServer(request("MESSAGE", 1, via("PC33.Atlanta.com:5060", BRANCH))));
+
+		// Same branch from another sent-by host or port: another transaction
+		assertDifferentKey(key, TransactionKey.forServer(request("MESSAGE", 1, via("pc34.atlanta.com:5060", BRANCH))));
+		assertDifferentKey(key, TransactionKey.forServer(request("MESSAGE", 1, via("pc33.atlanta.com:5070", BRANCH))));
+		assertDifferentKey(key, TransactionKey.forServer(request("MESSAGE", 1, via("pc33.atlanta.com", BRANCH))));
+
+		// A server key is not a client key
+		assertDifferentKey(key, TransactionKey.forClient(request("MESSAGE", 1, via("pc33.atlanta.com:5060", BRANCH))));
+	}
+
+	public void testRFC2543Key() throws Exception {
+		String via = via("pc33.atlanta.com", "776asdhds");
+		SIPMessage request = request("INVITE", 1, via);
+		TransactionKey key = TransactionKey.forServer(request);
+		assertFalse(key.isRFC3261());
+		assertEquals(request.getTransactionId(), key.toString());
+
+		// The key is built from the transaction ID of the message
+		assertSameKey(key, TransactionKey.forServer(request("INVITE", 1, via)));
+		assertSameKey(key, TransactionKey.forServer(response(200, "INVITE", 1, via)));
+		assertSameKey(key, TransactionKey.forClient(request("INVITE", 1, via)));
+		assertDifferentKey(key, TransactionKey.forServer(request("INVITE", 2, via)));
+		assertDifferentKey(key, TransactionKey.forServer(request("CANCEL", 1, via)));
+		assertDifferentKey(key, TransactionKey.forServer(request("INVITE", 1, via("pc34.atlanta.com", "776asdhds"))));
+
+		// Without branch
+		TransactionKey noBranch = TransactionKey.forServer(request("INVITE", 1, via("pc33.atlanta.com", null)));
+		assertFalse(noBranch.isRFC3261());
+		assertSameKey(noBranch, TransactionKey.forServer(response(200, "INVITE", 1, via("pc33.atlanta.com", null))));
+
+		// Never equal to an RFC 3261 key
+		assertDifferentKey(key, TransactionKey.forServer(request("INVITE", 1, via("pc33.atlanta.com", BRANCH))));
+	}
+
+	public void testToString() throws Exception {
+		assertEquals(BRANCH.toLowerCase(),
+				TransactionKey.forClient(request("INVITE", 1, via("pc33.atlanta.com", BRANCH))).toString());
+		assertEquals(BRANCH.toLowerCase() + ":cancel/pc33.atlanta.com:5060",
+				TransactionKey.forServer(request("CANCEL", 1, via("PC33.atlanta.com:5060", BRANCH))).toString());
+	}
+}